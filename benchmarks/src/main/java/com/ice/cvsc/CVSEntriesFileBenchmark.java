@@ -0,0 +1,141 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures the opening of a project whose directory has one large
+ * 'Entries' file. The time is dominated by reading and parsing the
+ * file, which CVSProject.readEntriesFile() does.
+ *
+ * @version $Revision: 1.1 $
+ */
+
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 2 )
+public
+class		CVSEntriesFileBenchmark
+	{
+	public static final String		RCS_ID = "$Id: CVSEntriesFileBenchmark.java,v 1.1 $";
+	public static final String		RCS_REV = "$Revision: 1.1 $";
+
+	/**
+	 * The number of lines in the 'Entries' file.
+	 */
+	@Param( { "1000", "10000", "100000" } )
+	public int						entries;
+
+	private File					projectDir;
+
+
+	@Setup
+	public void
+	setUp()
+		throws IOException
+		{
+		this.projectDir =
+			Files.createTempDirectory( "jcvs-entries" ).toFile();
+
+		final File adminDir = new File( this.projectDir, "CVS" );
+		adminDir.mkdir();
+
+		Files.write
+			( new File( adminDir, "Root" ).toPath(),
+				":pserver:bench@127.0.0.1:/cvs\n"
+					.getBytes( StandardCharsets.ISO_8859_1 ) );
+
+		Files.write
+			( new File( adminDir, "Repository" ).toPath(),
+				"mod\n".getBytes( StandardCharsets.ISO_8859_1 ) );
+
+		final String stamp =
+			CVSTimestampFormat.getInstance().format( new Date( 1041856496000L ) );
+
+		try ( PrintWriter out =
+				new PrintWriter( new File( adminDir, "Entries" ), "ISO-8859-1" ) )
+			{
+			for ( int i = 0 ; i < this.entries ; ++i )
+				{
+				out.print( String.format( "/f%06d.java/1.%d/", i, 1 + i % 17 ) );
+				out.print( stamp );
+				out.print( i % 10 == 9 ? "/-kb/\n" : "//\n" );
+				}
+			}
+		}
+
+	@TearDown
+	public void
+	tearDown()
+		{
+		deleteTree( this.projectDir );
+		}
+
+	private static void
+	deleteTree( final File f )
+		{
+		final File[] list = f.listFiles();
+		if ( list != null )
+			for ( final File child : list )
+				deleteTree( child );
+		f.delete();
+		}
+
+	@Benchmark
+	public CVSProject
+	openProject()
+		throws IOException
+		{
+		final CVSProject project = new CVSProject( new CVSClient() );
+		project.openProject( this.projectDir );
+		return project;
+		}
+
+	}
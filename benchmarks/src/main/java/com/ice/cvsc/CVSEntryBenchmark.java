@@ -0,0 +1,115 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures the parsing and formatting of entry lines, which
+ * happens for every file of every 'Entries' file read, and of
+ * every request sent.
+ *
+ * @version $Revision: 1.1 $
+ */
+
+@State( Scope.Thread )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 2 )
+public
+class		CVSEntryBenchmark
+	{
+	public static final String		RCS_ID = "$Id: CVSEntryBenchmark.java,v 1.1 $";
+	public static final String		RCS_REV = "$Revision: 1.1 $";
+
+	private static final String		ADMIN_LINE =
+		"/CVSEntryBenchmark.java/1.42/Mon Jan  6 12:34:56 2003//";
+
+	private static final String		SERVER_LINE =
+		"/CVSEntryBenchmark.java/1.43//-kb/Tbranch_5_3";
+
+	private CVSEntry				entry;
+
+
+	@Setup
+	public void
+	setUp()
+		throws ParseException
+		{
+		this.entry = new CVSEntry();
+		this.entry.parseEntryLine( ADMIN_LINE, false );
+		}
+
+	@Benchmark
+	public CVSEntry
+	parseAdminEntryLine()
+		throws ParseException
+		{
+		final CVSEntry result = new CVSEntry();
+		result.parseEntryLine( ADMIN_LINE, false );
+		return result;
+		}
+
+	@Benchmark
+	public CVSEntry
+	parseServerEntryLine()
+		throws ParseException
+		{
+		final CVSEntry result = new CVSEntry();
+		result.parseEntryLine( SERVER_LINE, true );
+		return result;
+		}
+
+	@Benchmark
+	public String
+	getServerEntryLine()
+		{
+		return this.entry.getServerEntryLine( true, false );
+		}
+
+	@Benchmark
+	public String
+	getModifiedServerEntryLine()
+		{
+		return this.entry.getServerEntryLine( true, true );
+		}
+
+	}
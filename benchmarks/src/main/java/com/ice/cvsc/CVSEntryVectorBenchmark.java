@@ -0,0 +1,114 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures the lookup of an entry by name in the entries of one
+ * directory, which the project does for every response item.
+ *
+ * @version $Revision: 1.1 $
+ */
+
+@State( Scope.Thread )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 2 )
+public
+class		CVSEntryVectorBenchmark
+	{
+	public static final String		RCS_ID = "$Id: CVSEntryVectorBenchmark.java,v 1.1 $";
+	public static final String		RCS_REV = "$Revision: 1.1 $";
+
+	/**
+	 * The number of entries in the directory.
+	 */
+	@Param( { "10", "100", "1000", "10000" } )
+	public int						size;
+
+	private CVSEntryVector			entries;
+	private String[]				names;
+	private int						index;
+
+
+	@Setup
+	public void
+	setUp()
+		{
+		this.entries = new CVSEntryVector();
+		this.names = new String[ this.size ];
+
+		for ( int i = 0 ; i < this.size ; ++i )
+			{
+			final CVSEntry entry = new CVSEntry();
+			entry.setName( String.format( "f%05d.java", i ) );
+			entry.setVersion( "1.1" );
+			this.entries.appendEntry( entry );
+
+			// Look the names up with equal, but not identical, strings,
+			// as the names parsed from a response would be.
+			this.names[i] = new String( entry.getName() );
+			}
+
+		this.index = 0;
+		}
+
+	@Benchmark
+	public CVSEntry
+	locateEntry()
+		{
+		final String name = this.names[ this.index ];
+
+		if ( ++this.index == this.size )
+			this.index = 0;
+
+		return this.entries.locateEntry( name );
+		}
+
+	@Benchmark
+	public CVSEntry
+	locateMissingEntry()
+		{
+		return this.entries.locateEntry( "missing.java" );
+		}
+
+	}
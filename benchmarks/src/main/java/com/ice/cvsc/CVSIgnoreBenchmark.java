@@ -0,0 +1,94 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures the cvsignore matching, which is applied to every file
+ * name of every directory that is scanned for new files.
+ *
+ * @version $Revision: 1.1 $
+ */
+
+@State( Scope.Thread )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 2 )
+public
+class		CVSIgnoreBenchmark
+	{
+	public static final String		RCS_ID = "$Id: CVSIgnoreBenchmark.java,v 1.1 $";
+	public static final String		RCS_REV = "$Revision: 1.1 $";
+
+	/**
+	 * A mix of names, most of which are not ignored, as in a
+	 * typical source directory. The length is a power of two.
+	 */
+	private static final String[]	NAMES =
+		{
+		"CVSClient.java", "CVSProject.java", "CVSClient.class", "Makefile",
+		"README.adoc", "core", "build.xml", "#CVSEntry.java#",
+		"CVSEntry.java~", "pom.xml", "index.html", "notes.txt",
+		"a.out", "CVSLog.java", ".#CVSIgnore.java.1.4", "tags",
+		};
+
+	private CVSIgnore				ignore;
+	private int						index;
+
+
+	@Setup
+	public void
+	setUp()
+		{
+		this.ignore = new CVSIgnore();
+		this.ignore.addIgnoreSpec( "*.jar target build .settings" );
+		this.index = 0;
+		}
+
+	@Benchmark
+	public boolean
+	isFileToBeIgnored()
+		{
+		final String name = NAMES[ this.index++ & ( NAMES.length - 1 ) ];
+		return this.ignore.isFileToBeIgnored( name );
+		}
+
+	}
@@ -0,0 +1,133 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures the reading of a captured checkout response, line by
+ * line and body by body, the way CVSClient.readLine() and the
+ * response processing consume the server's stream. The response
+ * is captured once from a FakeCVSServer.
+ *
+ * @version $Revision: 1.1 $
+ */
+
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 2 )
+public
+class		CVSResponseReadBenchmark
+	{
+	public static final String		RCS_ID = "$Id: CVSResponseReadBenchmark.java,v 1.1 $";
+	public static final String		RCS_REV = "$Revision: 1.1 $";
+
+	/**
+	 * The average size of the files in the response.
+	 */
+	@Param( { "256", "8192" } )
+	public int						fileSize;
+
+	private byte[]					response;
+
+
+	@Setup
+	public void
+	setUp()
+		throws IOException
+		{
+		final SyntheticRepository repos =
+			new SyntheticRepository
+				( "mod", 10, 4, 20, 10, this.fileSize, 1L );
+
+		final FakeCVSServer server = new FakeCVSServer( repos );
+
+		final String request =
+			"Root " + server.getRoot() + '\n'
+			+ "Argument mod\n"
+			+ "Directory .\n"
+			+ server.getRoot() + '\n'
+			+ "co\n";
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		server.serve
+			( new ByteArrayInputStream
+				( request.getBytes( StandardCharsets.ISO_8859_1 ) ), out );
+
+		this.response = out.toByteArray();
+		}
+
+	@Benchmark
+	public int
+	readResponse()
+		throws IOException
+		{
+		final CVSInputBuffer in =
+			new CVSInputBuffer( new ByteArrayInputStream( this.response ) );
+
+		int lines = 0;
+
+		for ( String line ; ( line = in.readLine() ) != null ; )
+			{
+			++lines;
+
+			if ( line.startsWith( "Updated " ) )
+				{
+				in.readLine();		// repository path
+				in.readLine();		// entry line
+				in.readLine();		// mode line
+				final long size = Long.parseLong( in.readLine() );
+
+				in.openBody( size ).drain();
+				lines += 4;
+				}
+			}
+
+		return lines;
+		}
+
+	}
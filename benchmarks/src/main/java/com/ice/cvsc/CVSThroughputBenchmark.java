@@ -0,0 +1,349 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Vector;
+
+
+/**
+ * Measures whole commands against a FakeCVSServer, to give a
+ * baseline of the client's throughput. For each transfer mode, the
+ * suite checks out a synthetic module, runs an update that changes
+ * nothing, runs an update after one percent of the files have been
+ * revised, and commits edits to 500 files.
+ *
+ * For each command the suite reports the wall time, the files
+ * transferred per second, the bytes on the wire and their rate,
+ * the round trips, and the peak heap in use.
+ *
+ * Usage:
+ * <pre>
+ * java -cp target/benchmarks.jar com.ice.cvsc.CVSThroughputBenchmark
+ *     [-files 100000] [-size 2048] [-gzip 0,6] [-pipes] [-latency ms] [-dir path]
+ * </pre>
+ *
+ * The '-gzip' option lists the Gzip-stream levels to run, where
+ * zero runs uncompressed, and a negative level runs with
+ * 'gzip-file-contents' in place of the stream compression.
+ *
+ * @version $Revision: 1.1 $
+ */
+
+public
+class		CVSThroughputBenchmark
+	{
+	public static final String		RCS_ID = "$Id: CVSThroughputBenchmark.java,v 1.1 $";
+	public static final String		RCS_REV = "$Revision: 1.1 $";
+
+	private static final int		TOP_DIRS = 20;
+	private static final int		SUB_DIRS = 20;
+	private static final int		COMMIT_FILES = 500;
+
+	private int						fileCount;
+	private int						fileSize;
+	private int[]					gzipLevels;
+	private boolean					usePipes;
+	private long					latency;
+	private File					workDir;
+
+
+	private
+	CVSThroughputBenchmark()
+		{
+		this.fileCount = 100000;
+		this.fileSize = 2048;
+		this.gzipLevels = new int[] { 0, 6 };
+		this.usePipes = false;
+		this.latency = 0;
+		this.workDir = null;
+		}
+
+	public static void
+	main( final String... argv )
+		throws IOException
+		{
+		final CVSThroughputBenchmark bench = new CVSThroughputBenchmark();
+
+		if ( ! bench.parseArguments( argv ) )
+			{
+			System.err.println
+				( "usage: CVSThroughputBenchmark [-files n] [-size bytes]"
+					+ " [-gzip 0,6,-6] [-pipes] [-latency ms] [-dir path]" );
+			System.exit( 1 );
+			}
+
+		bench.run();
+		}
+
+	private boolean
+	parseArguments( final String... argv )
+		{
+		for ( int i = 0 ; i < argv.length ; ++i )
+			{
+			final String arg = argv[i];
+			final boolean hasValue = i + 1 < argv.length;
+
+			if ( arg.equals( "-pipes" ) )
+				{
+				this.usePipes = true;
+				}
+			else if ( arg.equals( "-files" ) && hasValue )
+				{
+				this.fileCount = Integer.parseInt( argv[++i] );
+				}
+			else if ( arg.equals( "-size" ) && hasValue )
+				{
+				this.fileSize = Integer.parseInt( argv[++i] );
+				}
+			else if ( arg.equals( "-latency" ) && hasValue )
+				{
+				this.latency = Long.parseLong( argv[++i] );
+				}
+			else if ( arg.equals( "-dir" ) && hasValue )
+				{
+				this.workDir = new File( argv[++i] );
+				}
+			else if ( arg.equals( "-gzip" ) && hasValue )
+				{
+				final String[] levels = argv[++i].split( "," );
+				this.gzipLevels = new int[ levels.length ];
+				for ( int j = 0 ; j < levels.length ; ++j )
+					this.gzipLevels[j] = Integer.parseInt( levels[j].trim() );
+				}
+			else
+				{
+				return false;
+				}
+			}
+
+		return true;
+		}
+
+	private void
+	run()
+		throws IOException
+		{
+		if ( this.workDir == null )
+			this.workDir = Files.createTempDirectory( "jcvs-throughput" ).toFile();
+
+		final int directories = 1 + TOP_DIRS + TOP_DIRS * SUB_DIRS;
+		final int filesPerDir = Math.max( 1, this.fileCount / directories );
+
+		System.out.println
+			( "Module of " + directories * filesPerDir + " files in "
+				+ directories + " directories, about " + this.fileSize
+				+ " bytes each, over " + ( this.usePipes ? "pipes" : "loopback" )
+				+ ( this.latency > 0 ? ", latency " + this.latency + "ms" : "" )
+				+ '.' );
+
+		System.out.println
+			( String.format
+				( "%-12s %-8s %9s %8s %9s %12s %9s %7s %9s",
+					"command", "mode", "ms", "files", "files/s",
+					"wire bytes", "wire MB/s", "trips", "heap MB" ) );
+
+		for ( final int level : this.gzipLevels )
+			{
+			final SyntheticRepository repos =
+				new SyntheticRepository
+					( "mod", TOP_DIRS, SUB_DIRS, filesPerDir, 10, this.fileSize, 1L );
+
+			final FakeCVSServer server = new FakeCVSServer( repos );
+			server.setLatency( this.latency );
+
+			if ( ! this.usePipes )
+				server.start();
+
+			try {
+				this.runMode( server, repos, level );
+				}
+			finally
+				{
+				server.stop();
+				}
+			}
+
+		deleteTree( this.workDir );
+		}
+
+	private void
+	runMode(
+			final FakeCVSServer server, final SyntheticRepository repos,
+			final int level )
+		throws IOException
+		{
+		final String mode =
+			level > 0 ? "gzip" + level
+				: level < 0 ? "file" + -level : "plain";
+
+		final FakeCVSProjects client = new FakeCVSProjects( server, this.usePipes );
+		client.setGzipStreamLevel( Math.max( 0, level ) );
+		client.setAllowsGzipFileMode( level < 0 );
+		client.setTempDirectory( this.workDir.getPath() );
+
+		final File localDir = new File( this.workDir, mode );
+		deleteTree( localDir );
+
+		CVSResponse response = new CVSResponse();
+
+		this.begin( server );
+		final CVSProject project = client.checkout( localDir, repos.getModule(), response );
+		this.report( "checkout", mode, server, repos.getFileCount(), response );
+
+		if ( project == null )
+			return;
+
+		response = new CVSResponse();
+		this.begin( server );
+		client.update( project, response );
+		this.report( "update", mode, server, 0, response );
+
+		final int revised = repos.reviseFiles( 0.01, 2L );
+		response = new CVSResponse();
+		this.begin( server );
+		client.update( project, response );
+		this.report( "update 1%", mode, server, revised, response );
+
+		final int edited =
+			this.editFiles
+				( repos, new File( localDir, repos.getModule() ), COMMIT_FILES );
+
+		response = new CVSResponse();
+		this.begin( server );
+		client.commit( project, "Edit " + edited + " files.", response );
+		this.report( "commit", mode, server, edited, response );
+		}
+
+	/**
+	 * Rewrites the first text files of the working copy. The edits are
+	 * dated back, so that the client can tell them from the checkout.
+	 *
+	 * @return The number of files edited.
+	 */
+	private int
+	editFiles(
+			final SyntheticRepository repos, final File localRoot,
+			final int count )
+		throws IOException
+		{
+		final String module = repos.getModule();
+		final long stamp = System.currentTimeMillis() - 60 * 60 * 1000;
+		int result = 0;
+
+		for ( final String dir : repos.getAllDirectories() )
+			{
+			final Vector<String> names = repos.getFileNames( dir );
+			final File local =
+				new File( localRoot, dir.substring( module.length() ) );
+
+			for ( final String name : names )
+				{
+				if ( result >= count )
+					return result;
+
+				if ( repos.isBinary( dir + '/' + name ) )
+					continue;
+
+				final File f = new File( local, name );
+				Files.write
+					( f.toPath(),
+						( "edited " + name + '\n' )
+							.getBytes( StandardCharsets.ISO_8859_1 ) );
+				f.setLastModified( stamp );
+				++result;
+				}
+			}
+
+		return result;
+		}
+
+	private long			startNanos;
+
+	private void
+	begin( final FakeCVSServer server )
+		{
+		System.gc();
+
+		for ( final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+			{
+			if ( pool.getType() == MemoryType.HEAP )
+				pool.resetPeakUsage();
+			}
+
+		server.resetStatistics();
+		this.startNanos = System.nanoTime();
+		}
+
+	private void
+	report(
+			final String command, final String mode,
+			final FakeCVSServer server, final int files,
+			final CVSResponse response )
+		{
+		final long nanos = System.nanoTime() - this.startNanos;
+		final double seconds = nanos / 1.0e9;
+
+		long peak = 0;
+		for ( final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+			{
+			if ( pool.getType() == MemoryType.HEAP )
+				peak += pool.getPeakUsage().getUsed();
+			}
+
+		final long wire = server.getBytesReceived() + server.getBytesSent();
+
+		System.out.println
+			( String.format
+				( "%-12s %-8s %9d %8d %9.0f %12d %9.2f %7d %9.1f%s",
+					command, mode, nanos / 1000000, files,
+					files / seconds, wire, wire / seconds / ( 1024 * 1024 ),
+					server.getRoundTrips(), peak / ( 1024.0 * 1024.0 ),
+					response.getStatus() == CVSResponse.OK ? "" : "  FAILED" ) );
+
+		if ( response.getStatus() != CVSResponse.OK )
+			System.out.println( response.getStderr().trim() );
+
+		response.deleteTempFiles();
+		}
+
+	private static void
+	deleteTree( final File f )
+		{
+		final File[] list = f.listFiles();
+		if ( list != null )
+			for ( final File child : list )
+				deleteTree( child );
+		f.delete();
+		}
+
+	}
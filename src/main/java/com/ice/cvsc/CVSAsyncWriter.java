@@ -0,0 +1,268 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+import java.util.function.Consumer;
+
+
+/**
+ * Writes log and trace lines on a thread of its own, so that the
+ * thread that logs, such as a CVSClient talking to the server, does
+ * not wait on the file or console the lines are written to.
+ *
+ * Lines are held in a ring buffer of fixed size until the writer
+ * thread gets to them. When the ring is full, new lines are dropped
+ * rather than making the caller wait, and the number of dropped
+ * lines is written ahead of the next line that makes it through.
+ *
+ * Each line is given with the sink that writes it, so that the lines
+ * of CVSLog and CVSTracer keep their order when they share a writer.
+ *
+ * @version $Revision: 1.1 $
+ * @see CVSLog#setAsynchronous
+ * @see CVSTracer#setAsynchronous
+ */
+
+final
+class		CVSAsyncWriter
+implements	Runnable
+	{
+	public static final String		RCS_ID = "$Id: CVSAsyncWriter.java,v 1.1 $";
+	public static final String		RCS_REV = "$Revision: 1.1 $";
+
+	private static final int		DEFAULT_CAPACITY = 8 * 1024;
+
+	/**
+	 * How long we wait for the pending lines to be written
+	 * when the virtual machine exits.
+	 */
+	private static final long		EXIT_FLUSH_MILLIS = 5000;
+
+	private static CVSAsyncWriter	defaultWriter;
+
+	private final String[]			lines;
+	private final Consumer<String>[]	sinks;
+	private int						head;
+	private int						count;
+	private long					dropped;
+
+	private Thread					thread;
+	private boolean					writing;
+
+
+	/**
+	 * Returns the writer shared by CVSLog and CVSTracer.
+	 */
+	static synchronized CVSAsyncWriter
+	getDefault()
+		{
+		if ( CVSAsyncWriter.defaultWriter == null )
+			{
+			CVSAsyncWriter.defaultWriter =
+				new CVSAsyncWriter( DEFAULT_CAPACITY );
+			}
+
+		return CVSAsyncWriter.defaultWriter;
+		}
+
+	@SuppressWarnings( "unchecked" )
+	CVSAsyncWriter( final int capacity )
+		{
+		super();
+
+		this.lines = new String[ capacity ];
+		this.sinks = new Consumer[ capacity ];
+		this.head = 0;
+		this.count = 0;
+		this.dropped = 0;
+		this.thread = null;
+		this.writing = false;
+		}
+
+	/**
+	 * Queues a line to be written. This never waits.
+	 *
+	 * @param sink Writes the line, on the writer thread.
+	 * @param line The line.
+	 * @return False if the ring was full, and the line was dropped.
+	 */
+	synchronized boolean
+	write( final Consumer<String> sink, final String line )
+		{
+		if ( this.count == this.lines.length )
+			{
+			++this.dropped;
+			return false;
+			}
+
+		final int index = ( this.head + this.count ) % this.lines.length;
+
+		this.lines[ index ] = line;
+		this.sinks[ index ] = sink;
+		++this.count;
+
+		if ( this.thread == null )
+			{
+			this.start();
+			}
+
+		this.notifyAll();
+
+		return true;
+		}
+
+	/**
+	 * Waits until every line queued so far has been written.
+	 */
+	void
+	flush()
+		{
+		this.flush( 0 );
+		}
+
+	/**
+	 * Waits until every line queued so far has been written,
+	 * or until the time is up.
+	 *
+	 * @param millis The most time to wait, zero to wait for good.
+	 */
+	synchronized void
+	flush( final long millis )
+		{
+		// A sink that flushes would otherwise wait on itself.
+		if ( Thread.currentThread() == this.thread )
+			return;
+
+		final long deadline = System.currentTimeMillis() + millis;
+
+		try {
+			while ( this.count > 0 || this.writing )
+				{
+				if ( millis == 0 )
+					{
+					this.wait();
+					}
+				else
+					{
+					final long remaining =
+						deadline - System.currentTimeMillis();
+
+					if ( remaining <= 0 )
+						break;
+
+					this.wait( remaining );
+					}
+				}
+			}
+		catch ( final InterruptedException ex )
+			{
+			Thread.currentThread().interrupt();
+			}
+		}
+
+	/**
+	 * Returns the number of lines that have been dropped
+	 * and not yet reported.
+	 */
+	synchronized long
+	getDroppedCount()
+		{
+		return this.dropped;
+		}
+
+	private void
+	start()
+		{
+		this.thread = new Thread( this, "CVSAsyncWriter" );
+		this.thread.setDaemon( true );
+		this.thread.start();
+
+		Runtime.getRuntime().addShutdownHook
+			( new Thread( () -> this.flush( EXIT_FLUSH_MILLIS ) ) );
+		}
+
+	@Override
+	public void
+	run()
+		{
+		for ( ; ; )
+			{
+			final Consumer<String> sink;
+			final String line;
+			final long lost;
+
+			synchronized ( this )
+				{
+				while ( this.count == 0 )
+					{
+					try {
+						this.wait();
+						}
+					catch ( final InterruptedException ex )
+						{
+						// We are a daemon, and never stop.
+						}
+					}
+
+				sink = this.sinks[ this.head ];
+				line = this.lines[ this.head ];
+				this.sinks[ this.head ] = null;
+				this.lines[ this.head ] = null;
+				this.head = ( this.head + 1 ) % this.lines.length;
+				--this.count;
+
+				lost = this.dropped;
+				this.dropped = 0;
+				this.writing = true;
+				}
+
+			try {
+				if ( lost > 0 )
+					{
+					sink.accept
+						( "CVSAsyncWriter: " + lost
+							+ " lines were dropped, the writer fell behind." );
+					}
+
+				sink.accept( line );
+				}
+			catch ( final RuntimeException ex )
+				{
+				ex.printStackTrace( System.err );
+				}
+			finally
+				{
+				synchronized ( this )
+					{
+					this.writing = false;
+					this.notifyAll();
+					}
+				}
+			}
+		}
+
+	}
+
@@ -25,6 +25,7 @@
 package com.ice.cvsc;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileReader;
@@ -32,7 +33,12 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.PrintWriter;
+import java.io.RandomAccessFile;
 import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
 import java.util.Vector;
 
 
@@ -263,6 +269,51 @@ CVSCUtilities {
 			}
 		}
 
+	/**
+	 * Appends lines to a text file, creating it if need be.
+	 *
+	 * @param f The file to append to.
+	 * @param lines The lines, without their line terminators.
+	 */
+	public static void
+	appendLines( final File f, final Iterable<String> lines )
+		throws IOException
+		{
+		try ( BufferedWriter writer =
+				new BufferedWriter( new FileWriter( f, true ) ) )
+			{
+			for ( final String line : lines )
+				{
+				writer.write( line );
+				writer.newLine();
+				}
+			}
+		}
+
+	/**
+	 * Renames a file over another, atomically when the file system
+	 * supports it. The files should be in the same directory.
+	 *
+	 * @param from The new contents, usually a temporary file.
+	 * @param to The file to be replaced.
+	 */
+	public static void
+	replaceFile( final File from, final File to )
+		throws IOException
+		{
+		try {
+			Files.move
+				( from.toPath(), to.toPath(),
+					StandardCopyOption.ATOMIC_MOVE );
+			}
+		catch ( final AtomicMoveNotSupportedException ex )
+			{
+			Files.move
+				( from.toPath(), to.toPath(),
+					StandardCopyOption.REPLACE_EXISTING );
+			}
+		}
+
 	public static String
 	readStringFile( final File f )
 		throws IOException
@@ -302,163 +353,139 @@ CVSCUtilities {
 			}
 		}
 
+	/**
+	 * Integrates the 'Entries.Log' file of an admin directory into its
+	 * 'Entries' file. The merged entries are written to 'Entries.Backup',
+	 * which then replaces 'Entries', and only then is the log deleted.
+	 * Replaying a log over entries that already include it gives the
+	 * same entries, so this is safe to repeat after a crash at any point.
+	 * A last log line that does not end with a newline was cut short by
+	 * a crash while it was being appended, and is ignored.
+	 *
+	 * @param adminDir The 'CVS' admin directory.
+	 */
 	public static void
 	integrateEntriesLog( final File adminDir )
 		throws IOException
 		{
-		PrintWriter outBak = null;
-		BufferedReader logIn = null;
-		BufferedReader entIn = null;
-
-	//	System.err.println( "INTEGRATE LOGFILE: " + adminDir.getPath() );
-
 		final File logF = new File( adminDir, "Entries.Log" );
 
 		if ( ! logF.exists() )
 			return;
 
-	//	System.err.println
-	//		( "Integrating '" + logF.getPath() + "' into 'Entries'" );
-
-		final Vector nameV = new Vector();
-		final Vector lineV = new Vector();
-
 		final File entF = new File( adminDir, "Entries" );
 		final File bakF = new File( adminDir, "Entries.Backup" );
 
-		try {
-			entIn = new BufferedReader( new FileReader( entF ) );
+		// The lines by entry name, in their order in the file.
+		final LinkedHashMap<String, String> lineTable = new LinkedHashMap<>();
 
-			for ( ; ; )
+		if ( entF.exists() )
+			{
+			try ( BufferedReader entIn =
+					new BufferedReader( new FileReader( entF ) ) )
 				{
-				final String inLine = entIn.readLine();
-				if ( inLine == null )
-					break;
-
-				final char ch = inLine.charAt(0);
-				if ( ch != '/' && ch != 'D' )
-					continue;
-
-				final int begIdx = ch == 'D' ? 2 : 1;
-				final int idx = inLine.indexOf('/', begIdx );
-				if ( idx == -1 )
-					continue;
-
-				lineV.addElement( inLine );
-				nameV.addElement( inLine.substring( begIdx, idx ) );
+				for ( String inLine ; (inLine = entIn.readLine()) != null ; )
+					{
+					final String name = entriesLineName( inLine, 0 );
+					if ( name != null )
+						{
+						lineTable.put( name, inLine );
+						}
+					}
 				}
+			}
 
-			entIn.close();
-			entIn = null;
-
-		//	System.err.println( "WE'VE READ " + lineV.size() + " entries" );
-
-			logIn = new BufferedReader( new FileReader( logF ) );
+		final boolean isTerminated = isNewlineTerminated( logF );
 
-			for ( ; ; )
+		try ( BufferedReader logIn =
+				new BufferedReader( new FileReader( logF ) ) )
+			{
+			String inLine = logIn.readLine();
+			while ( inLine != null )
 				{
-				final String inLine = logIn.readLine();
-				if ( inLine == null )
+				final String nextLine = logIn.readLine();
+
+				if ( nextLine == null && ! isTerminated )
 					break;
 
 				if ( inLine.length() < 5 )
 					break;
 
-			//	System.err.println( "Processing LOG LINE: " + inLine );
-
 				final char selCh = inLine.charAt(0);
-				final char sepCh = inLine.charAt(1);
-				if ( selCh != 'A' && selCh != 'R'
-						|| sepCh != ' ' )
-					{
-				//	System.err.println( "IGNORE bad selector: " + inLine );
-					continue;
-					}
-
-				final char ch = inLine.charAt(2);
-
-				final int begIdx = ch == 'D' ? 4 : 3;
-				int idx = inLine.indexOf('/', begIdx );
-				if ( idx == -1 )
-					continue;
+				final String name = inLine.charAt(1) == ' '
+					? entriesLineName( inLine, 2 ) : null;
 
-				final String name = inLine.substring( begIdx, idx );
-			//	System.err.println( "Processing LOG NAME: " + name );
-
-				if ( selCh == 'A' )
+				if ( name != null && selCh == 'A' )
 					{
-					if ( nameV.contains( name ) )
-						{
-					//	System.err.println( "OVERWRITING: " + name );
-						idx = nameV.indexOf( name );
-						lineV.setElementAt( inLine.substring(2), idx );
-						}
-					else
-						{
-					//	System.err.println( "APPENDING: " + name );
-						nameV.addElement( name );
-						lineV.addElement( inLine.substring(2) );
-						}
+					// Replaces any existing line in place.
+					lineTable.put( name, inLine.substring(2) );
 					}
-				else if ( selCh == 'R' )
+				else if ( name != null && selCh == 'R' )
 					{
-					if ( nameV.contains( name ) )
-						{
-					//	System.err.println( "REMOVING: " + name );
-						idx = nameV.indexOf( name );
-						nameV.removeElementAt( idx );
-						lineV.removeElementAt( idx );
-						}
-					else
-						{
-					//	System.err.println( "IGNORING: " + name );
-						}
+					lineTable.remove( name );
 					}
-				}
-
-			logIn.close();
-			logIn = null;
-
-		//	System.err.println( "WRITING BACKUP: " + bakF.getPath() );
-		//	System.err.println( "   nameV.size=" + nameV.size()
-		//						+ ", lineV.size=" + lineV.size() );
 
-			outBak = new PrintWriter( new FileWriter( bakF ) );
-
-			for ( int i = 0, sz = nameV.size() ; i < sz ; ++i )
-				{
-				outBak.println( lineV.elementAt(i) );
+				inLine = nextLine;
 				}
+			}
 
-			outBak.close();
-			outBak = null;
-
-		//	System.err.println( "RENAMING BACKUP: to " + entF.getPath() );
-
-			entF.delete();
-			if ( bakF.renameTo( entF ) )
+		try ( PrintWriter outBak =
+				new PrintWriter( new FileWriter( bakF ) ) )
+			{
+			for ( final String line : lineTable.values() )
 				{
-			//	System.err.println( "DELETING LOGFILE: " + logF.getPath() );
-				logF.delete();
+				outBak.println( line );
 				}
-			else
+
+			if ( outBak.checkError() )
 				{
 				throw new IOException
-					("RENAME FAILED from '" + bakF.getPath()
-					 + "' to '" + entF.getPath() + '\'');
+					( "WRITE FAILED to '" + bakF.getPath() + '\'' );
 				}
+			}
+
+		replaceFile( bakF, entF );
 
-		//	System.err.println( "DONE" );
+		if ( ! logF.delete() )
+			{
+			throw new IOException
+				( "DELETE FAILED of '" + logF.getPath() + '\'' );
 			}
-		finally
+		}
+
+	/**
+	 * Returns the entry name of an 'Entries' line, which starts at
+	 * the offset given, or null if it is not an entry line.
+	 */
+	private static String
+	entriesLineName( final String line, final int offset )
+		{
+		if ( line.length() <= offset )
+			return null;
+
+		final char ch = line.charAt( offset );
+		if ( ch != '/' && ch != 'D' )
+			return null;
+
+		final int begIdx = offset + ( ch == 'D' ? 2 : 1 );
+		final int idx = line.indexOf( '/', begIdx );
+
+		return idx == -1 ? null : line.substring( begIdx, idx );
+		}
+
+	private static boolean
+	isNewlineTerminated( final File f )
+		throws IOException
+		{
+		try ( RandomAccessFile raf = new RandomAccessFile( f, "r" ) )
 			{
-			try {
-				if ( entIn != null ) entIn.close();
-				if ( logIn != null ) logIn.close();
-				if ( outBak != null ) outBak.close();
-				}
-			catch ( final IOException ex )
-				{ }
+			if ( raf.length() == 0 )
+				return true;
+
+			raf.seek( raf.length() - 1 );
+			final int ch = raf.read();
+
+			return ch == '\n' || ch == '\r';
 			}
 		}
 
@@ -0,0 +1,221 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+import java.util.Hashtable;
+
+
+/**
+ * Remembers the requests that each cvs server said it supports,
+ * so that a request need not ask the server with 'valid-requests'
+ * before it gets to work. The protocol does not require the
+ * 'valid-requests' request, it only tells us which optional
+ * requests, such as 'Gzip-stream', 'gzip-file-contents' and
+ * 'UseUnchanged', we may use.
+ *
+ * Capabilities are keyed by the connection method, host, port,
+ * cvs root and server command, and are forgotten after the time
+ * to live. A CVSClient forgets the capabilities of a server when
+ * a request that used them fails, so that the next request asks
+ * the server again, in case the server has been changed.
+ *
+ * @version $Revision: 1.1 $
+ * @see CVSClient
+ */
+
+public
+class		CVSCapabilityCache
+	{
+	public static final String		RCS_ID = "$Id: CVSCapabilityCache.java,v 1.1 $";
+	public static final String		RCS_REV = "$Revision: 1.1 $";
+
+	public static boolean			traceCapabilities = false;
+
+	private static final long		DEFAULT_TIME_TO_LIVE = 10 * 60 * 1000;
+
+	private static final CVSCapabilityCache	defaultCache = new CVSCapabilityCache();
+
+	private long					timeToLive;
+
+	private final Hashtable<String, Capabilities>	servers;
+
+
+	/**
+	 * Returns the cache shared by all CVSClients by default.
+	 */
+	public static CVSCapabilityCache
+	getDefaultCache()
+		{
+		return CVSCapabilityCache.defaultCache;
+		}
+
+	public
+	CVSCapabilityCache()
+		{
+		super();
+
+		this.timeToLive = DEFAULT_TIME_TO_LIVE;
+		this.servers = new Hashtable<>();
+		}
+
+	public synchronized long
+	getTimeToLive()
+		{
+		return this.timeToLive;
+		}
+
+	/**
+	 * Sets the number of milliseconds that a server's capabilities
+	 * are trusted. Zero disables the cache.
+	 */
+	public synchronized void
+	setTimeToLive( final long millis )
+		{
+		this.timeToLive = millis;
+		}
+
+	/**
+	 * Returns the key used to cache the capabilities of the server
+	 * described by the request.
+	 *
+	 * @param request The request describing the server.
+	 */
+	public static String
+	getServerKey( final CVSRequest request )
+		{
+		return CVSRequest.getConnMethodName( request.getConnectionMethod() )
+			+ ( request.isPServer() ? "+auth" : "" )
+			+ ':' + request.getHostName()
+			+ ':' + request.getPort()
+			+ ':' + request.getRootDirectory()
+			+ ':' + request.getServerCommand();
+		}
+
+	/**
+	 * Copies the cached capabilities of the request's server into
+	 * the request, as if the request had asked with 'valid-requests'.
+	 *
+	 * @param request The request that is about to be sent.
+	 * @return True if the capabilities were known, otherwise the
+	 *         request must ask the server.
+	 */
+	public boolean
+	establishCapabilities( final CVSRequest request )
+		{
+		final String key = CVSCapabilityCache.getServerKey( request );
+		final Capabilities caps;
+
+		synchronized ( this )
+			{
+			caps = this.servers.get( key );
+
+			if ( caps == null )
+				return false;
+
+			if ( System.currentTimeMillis() - caps.createdMillis
+					>= this.timeToLive )
+				{
+				CVSTracer.traceIf( CVSCapabilityCache.traceCapabilities,
+					"CVSCapabilityCache: expired '{}'", key );
+				this.servers.remove( key );
+				return false;
+				}
+			}
+
+		request.validRequests = caps.validRequests;
+		request.useUnchanged = caps.useUnchanged;
+		request.useDirectory = caps.useDirectory;
+
+		CVSTracer.traceIf( CVSCapabilityCache.traceCapabilities,
+			"CVSCapabilityCache: using '{}'", key );
+
+		return true;
+		}
+
+	/**
+	 * Remembers the capabilities that the request's server
+	 * reported to the request.
+	 *
+	 * @param request A request that has received 'Valid-requests'.
+	 */
+	public void
+	rememberCapabilities( final CVSRequest request )
+		{
+		if ( request.validRequests == null )
+			return;
+
+		final String key = CVSCapabilityCache.getServerKey( request );
+
+		synchronized ( this )
+			{
+			if ( this.timeToLive <= 0 )
+				return;
+
+			this.servers.put( key, new Capabilities( request ) );
+			}
+
+		CVSTracer.traceIf( CVSCapabilityCache.traceCapabilities,
+			"CVSCapabilityCache: remembered '{}'", key );
+		}
+
+	/**
+	 * Forgets the capabilities of the request's server.
+	 *
+	 * @param request The request describing the server.
+	 */
+	public synchronized void
+	forgetCapabilities( final CVSRequest request )
+		{
+		this.servers.remove( CVSCapabilityCache.getServerKey( request ) );
+		}
+
+	/**
+	 * Forgets the capabilities of every server.
+	 */
+	public synchronized void
+	clear()
+		{
+		this.servers.clear();
+		}
+
+	private static final
+	class		Capabilities
+		{
+		private final String		validRequests;
+		private final boolean		useUnchanged;
+		private final boolean		useDirectory;
+		private final long			createdMillis;
+
+		private Capabilities( final CVSRequest request )
+			{
+			this.validRequests = request.validRequests;
+			this.useUnchanged = request.useUnchanged;
+			this.useDirectory = request.useDirectory;
+			this.createdMillis = System.currentTimeMillis();
+			}
+		}
+
+	}
@@ -0,0 +1,598 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Watches the working directories of a project, and remembers the
+ * files that have been touched, so that a project can find its
+ * modified files without checking the timestamp of every file.
+ *
+ * The tracker only knows what has changed since a baseline, which
+ * is the set of files that were modified when the project's files
+ * were last checked in full. Until a baseline is established, and
+ * again after the watch service reports an overflow, the tracker is
+ * not valid, and the project must check every file.
+ *
+ * Events arrive on a thread of the tracker's own, some time after
+ * the change, so a caller whose action depends on every change made
+ * so far, such as selecting the files to commit, must call sync()
+ * first. Watch keys are only ever taken from the watch service while
+ * holding the tracker's monitor, so that sync() can account for every
+ * event. Watch services that poll, rather than being told of changes
+ * by the system, may report a change some seconds after it happens,
+ * and sync() cannot wait for them, so the tracker will not start with
+ * one of those.
+ *
+ * @version $Revision: 1.1 $
+ * @see CVSProject#setTracksChanges
+ */
+
+public
+class		CVSChangeTracker
+implements	Runnable
+	{
+	public static final String		RCS_ID = "$Id: CVSChangeTracker.java,v 1.1 $";
+	public static final String		RCS_REV = "$Revision: 1.1 $";
+
+	/**
+	 * How long the event thread waits for the watch service,
+	 * before it looks again.
+	 */
+	private static final long		POLL_MILLIS = 250;
+
+	/**
+	 * How long sync() waits for its barrier file to be reported.
+	 */
+	private static final long		SYNC_TIMEOUT_MILLIS = 5000;
+
+	private static final String		BARRIER_PREFIX = "Sync.";
+
+	private final Path				rootPath;
+	private final Map<WatchKey, Path>	keyTable;
+	private final Set<Path>			touched;
+
+	/**
+	 * The names of the barrier files that sync() is waiting for.
+	 */
+	private final Set<String>		barriers;
+
+	private WatchService			watcher;
+	private Thread					thread;
+
+	/**
+	 * The key of the root's admin directory, where sync() creates
+	 * its barrier files, or null if it could not be watched.
+	 */
+	private WatchKey				barrierKey;
+	private int						barrierSerial;
+
+	private boolean					valid;
+	private int						generation;
+
+
+	/**
+	 * @param rootDir The project's local root directory.
+	 */
+	public
+	CVSChangeTracker( final File rootDir )
+		{
+		this.rootPath = normalizePath( rootDir );
+		this.keyTable = new HashMap<>();
+		this.touched = new HashSet<>();
+		this.barriers = new HashSet<>();
+		this.watcher = null;
+		this.thread = null;
+		this.barrierKey = null;
+		this.barrierSerial = 0;
+		this.valid = false;
+		this.generation = 0;
+		}
+
+	/**
+	 * Starts watching the project's directories.
+	 *
+	 * @return True if the directories are being watched.
+	 */
+	public synchronized boolean
+	start()
+		{
+		if ( this.watcher != null )
+			return true;
+
+		try {
+			this.watcher = FileSystems.getDefault().newWatchService();
+
+			if ( isPolling( this.watcher ) )
+				{
+				CVSLog.logMsg
+					( "CVSChangeTracker.start: the watch service polls for "
+						+ "changes, so changes to '" + this.rootPath
+						+ "' are not tracked" );
+				this.stop();
+				return false;
+				}
+
+			this.registerTree( this.rootPath, false );
+			this.registerBarrierDir();
+			}
+		catch ( final IOException | UnsupportedOperationException ex )
+			{
+			CVSLog.logMsg
+				( "CVSChangeTracker.start: could not watch '"
+					+ this.rootPath + "' - " + ex.getMessage() );
+			this.stop();
+			return false;
+			}
+
+		this.thread = new Thread( this, "CVSChangeTracker" );
+		this.thread.setDaemon( true );
+		this.thread.start();
+
+		return true;
+		}
+
+	/**
+	 * Stops watching the project's directories.
+	 */
+	public synchronized void
+	stop()
+		{
+		this.invalidate();
+
+		if ( this.watcher != null )
+			{
+			try { this.watcher.close(); }
+			catch ( final IOException ex ) { }
+			this.watcher = null;
+			}
+
+		this.thread = null;
+		this.barrierKey = null;
+		this.keyTable.clear();
+		this.touched.clear();
+		this.barriers.clear();
+
+		this.notifyAll();
+		}
+
+	/**
+	 * Determines if a baseline has been established, and no
+	 * events have been lost since.
+	 */
+	public synchronized boolean
+	isValid()
+		{
+		return this.valid;
+		}
+
+	/**
+	 * Forgets the baseline, so that the project's files must be
+	 * checked in full again.
+	 */
+	public synchronized void
+	invalidate()
+		{
+		this.valid = false;
+		++this.generation;
+		}
+
+	/**
+	 * Begins the full check of the project's files that establishes
+	 * the baseline. The files touched so far are forgotten, since
+	 * the check will see their current state.
+	 *
+	 * @return The value to pass to endBaseline().
+	 */
+	public synchronized int
+	beginBaseline()
+		{
+		this.touched.clear();
+		return this.generation;
+		}
+
+	/**
+	 * Ends the full check of the project's files, which makes the
+	 * tracker valid, unless it was invalidated during the check.
+	 *
+	 * @param generation The value returned by beginBaseline().
+	 * @param modified The files the check found to be modified.
+	 */
+	public synchronized void
+	endBaseline( final int generation, final Collection<File> modified )
+		{
+		if ( this.watcher == null || generation != this.generation )
+			return;
+
+		for ( final File file : modified )
+			{
+			this.touched.add( normalizePath( file ) );
+			}
+
+		this.valid = true;
+		}
+
+	/**
+	 * Determines if a file may have changed since the baseline,
+	 * because it was modified then, or it has been touched since.
+	 */
+	public synchronized boolean
+	isTouched( final File file )
+		{
+		return this.touched.contains( normalizePath( file ) );
+		}
+
+	/**
+	 * Returns the number of files that may have changed since the
+	 * baseline.
+	 */
+	public synchronized int
+	getTouchedCount()
+		{
+		return this.touched.size();
+		}
+
+	/**
+	 * Brings the tracker up to date with every change made before
+	 * this is called, by processing the events the watch service
+	 * has for them on the calling thread. To be sure the watch service
+	 * has received those events, a barrier file is created in the root's
+	 * admin directory, and its event awaited, since the events of a
+	 * watch service arrive in order.
+	 *
+	 * @return True if the barrier was seen, or the tracker lost track
+	 *         and is no longer valid, else the tracker has only
+	 *         processed the events that had arrived.
+	 */
+	public boolean
+	sync()
+		{
+		final String barrier;
+		final Path barrierPath;
+
+		synchronized ( this )
+			{
+			if ( this.watcher == null )
+				return false;
+
+			if ( this.barrierKey == null )
+				{
+				this.drainEvents();
+				return false;
+				}
+
+			barrier = BARRIER_PREFIX + ++this.barrierSerial;
+			barrierPath = this.keyTable.get( this.barrierKey ).resolve( barrier );
+			this.barriers.add( barrier );
+			}
+
+		boolean result = false;
+
+		try {
+			Files.createFile( barrierPath );
+			}
+		catch ( final FileAlreadyExistsException ex )
+			{
+			// Left over from an earlier session, so drop it first.
+			try {
+				Files.delete( barrierPath );
+				Files.createFile( barrierPath );
+				}
+			catch ( final IOException ex2 )
+				{
+				CVSTracer.traceIf( true,
+					"CVSChangeTracker.sync: could not create '{}' - {}",
+					barrierPath, ex2.getMessage() );
+				}
+			}
+		catch ( final IOException ex )
+			{
+			CVSTracer.traceIf( true,
+				"CVSChangeTracker.sync: could not create '{}' - {}",
+				barrierPath, ex.getMessage() );
+			}
+
+		synchronized ( this )
+			{
+			final long deadline = System.currentTimeMillis() + SYNC_TIMEOUT_MILLIS;
+
+			while ( this.watcher != null && this.barriers.contains( barrier ) )
+				{
+				final WatchKey key = this.watcher.poll();
+				if ( key != null )
+					{
+					this.processEvents( key );
+					continue;
+					}
+
+				final long remaining = deadline - System.currentTimeMillis();
+				if ( remaining <= 0 )
+					{
+					CVSTracer.traceIf( true,
+						"CVSChangeTracker.sync: timed out waiting for '{}'", barrier );
+					break;
+					}
+
+				try {
+					this.wait( Math.min( remaining, 10 ) );
+					}
+				catch ( final InterruptedException ex )
+					{
+					Thread.currentThread().interrupt();
+					break;
+					}
+				}
+
+			result = ! this.barriers.remove( barrier );
+			this.drainEvents();
+			}
+
+		try {
+			Files.deleteIfExists( barrierPath );
+			}
+		catch ( final IOException ex )
+			{
+			CVSTracer.traceIf( true,
+				"CVSChangeTracker.sync: could not delete '{}' - {}",
+				barrierPath, ex.getMessage() );
+			}
+
+		return result;
+		}
+
+	/**
+	 * Processes the events that the watch service has now,
+	 * without waiting for more.
+	 */
+	private void
+	drainEvents()
+		{
+		for ( WatchKey key ; this.watcher != null
+				&& (key = this.pollKey()) != null ; )
+			{
+			this.processEvents( key );
+			}
+		}
+
+	private WatchKey
+	pollKey()
+		{
+		try {
+			return this.watcher.poll();
+			}
+		catch ( final ClosedWatchServiceException ex )
+			{
+			return null;
+			}
+		}
+
+	@Override
+	public void
+	run()
+		{
+		final WatchService service;
+		synchronized ( this )
+			{
+			service = this.watcher;
+			}
+
+		for ( ; ; )
+			{
+			synchronized ( this )
+				{
+				if ( this.watcher != service )
+					break;
+
+				// Take one key at a time, so that the callers of
+				// isTouched() are not held up by a flood of events.
+				final WatchKey key = this.pollKey();
+				if ( key != null )
+					{
+					this.processEvents( key );
+					continue;
+					}
+
+				try {
+					this.wait( POLL_MILLIS );
+					}
+				catch ( final InterruptedException ex )
+					{
+					break;
+					}
+				}
+			}
+		}
+
+	private void
+	processEvents( final WatchKey key )
+		{
+		final Path dir = this.keyTable.get( key );
+
+		for ( final WatchEvent<?> event : key.pollEvents() )
+			{
+			if ( event.kind() == StandardWatchEventKinds.OVERFLOW )
+				{
+				CVSTracer.traceIf( true,
+					"CVSChangeTracker: OVERFLOW, falling back to a full check." );
+				this.invalidate();
+				this.barriers.clear();
+				continue;
+				}
+
+			if ( key == this.barrierKey )
+				{
+				this.barriers.remove( event.context().toString() );
+				continue;
+				}
+
+			if ( dir == null )
+				continue;
+
+			final Path path = dir.resolve( (Path) event.context() );
+
+			this.touched.add( path );
+
+			if ( event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+					&& Files.isDirectory( path ) && ! isAdminDir( path ) )
+				{
+				try {
+					this.registerTree( path, true );
+					}
+				catch ( final IOException ex )
+					{
+					CVSTracer.traceIf( true,
+						"CVSChangeTracker: could not watch '{}' - {}",
+						path, ex.getMessage() );
+					this.invalidate();
+					}
+				}
+			}
+
+		if ( ! key.reset() )
+			{
+			this.keyTable.remove( key );
+
+			if ( key == this.barrierKey )
+				this.barrierKey = null;
+			}
+
+		this.notifyAll();
+		}
+
+	/**
+	 * Watches the root's admin directory for the barrier files of
+	 * sync(). Without it, sync() only processes the events that have
+	 * arrived, so a failure here is not fatal.
+	 */
+	private void
+	registerBarrierDir()
+		{
+		final Path adminDir = this.rootPath.resolve( "CVS" );
+
+		if ( ! Files.isDirectory( adminDir ) )
+			return;
+
+		try {
+			this.barrierKey = adminDir.register
+				( this.watcher, StandardWatchEventKinds.ENTRY_CREATE );
+			this.keyTable.put( this.barrierKey, adminDir );
+			}
+		catch ( final IOException ex )
+			{
+			CVSTracer.traceIf( true,
+				"CVSChangeTracker: could not watch '{}' - {}",
+				adminDir, ex.getMessage() );
+			}
+		}
+
+	/**
+	 * Determines if a watch service finds changes by polling the
+	 * directories, as the JDK's fallback implementation does.
+	 */
+	private static boolean
+	isPolling( final WatchService service )
+		{
+		return service.getClass().getName().endsWith( ".PollingWatchService" );
+		}
+
+	/**
+	 * Watches a directory and the directories below it, other
+	 * than the admin directories, whose files are not entries.
+	 *
+	 * @param dir The directory to watch.
+	 * @param isNew If true, the directory has just been created, and
+	 *        its files may have been created before it was watched.
+	 */
+	private void
+	registerTree( final Path dir, final boolean isNew )
+		throws IOException
+		{
+		Files.walkFileTree( dir, new SimpleFileVisitor<Path>()
+			{
+			@Override
+			public FileVisitResult
+			preVisitDirectory( final Path path, final BasicFileAttributes attrs )
+				throws IOException
+				{
+				if ( isAdminDir( path ) )
+					return FileVisitResult.SKIP_SUBTREE;
+
+				final WatchKey key = path.register
+					( CVSChangeTracker.this.watcher,
+						StandardWatchEventKinds.ENTRY_CREATE,
+						StandardWatchEventKinds.ENTRY_DELETE,
+						StandardWatchEventKinds.ENTRY_MODIFY );
+
+				CVSChangeTracker.this.keyTable.put( key, path );
+				return FileVisitResult.CONTINUE;
+				}
+
+			@Override
+			public FileVisitResult
+			visitFile( final Path path, final BasicFileAttributes attrs )
+				{
+				if ( isNew )
+					CVSChangeTracker.this.touched.add( path );
+				return FileVisitResult.CONTINUE;
+				}
+			} );
+		}
+
+	private static boolean
+	isAdminDir( final Path path )
+		{
+		final Path name = path.getFileName();
+		return name != null && name.toString().equals( "CVS" );
+		}
+
+	private static Path
+	normalizePath( final File file )
+		{
+		return file.getAbsoluteFile().toPath().normalize();
+		}
+
+	}
+
@@ -28,11 +28,8 @@ package com.ice.cvsc;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
@@ -41,12 +38,22 @@ import java.io.OutputStream;
 import java.io.Reader;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.InflaterInputStream;
 
@@ -128,9 +135,75 @@ class		CVSClient
 	private static final int		MAX_FILE_SIZE = 1000000;
 	private static final boolean	LIMIT_FILE_SIZE = false;
 
+	/**
+	 * The initial size of the buffer that pipelined requests are
+	 * collected in. The buffer grows as needed.
+	 */
+	private static final int		SEND_BUFFER_SIZE = 16 * 1024;
+
+	/**
+	 * Once the pipelined requests exceed this many bytes, they are
+	 * written to the server, without a flush, to bound the buffer.
+	 */
+	private static final int		SEND_BUFFER_LIMIT = 256 * 1024;
+
+	/**
+	 * The default for the most bytes of a gzip-ed or translated
+	 * upload that are held in memory before it spills to a temp file.
+	 */
+	public static final int			DEFAULT_UPLOAD_BUFFER_LIMIT = 1024 * 1024;
+
+	/**
+	 * True if the platform's default encoding writes ASCII characters
+	 * as single ASCII bytes, which allows us to encode most protocol
+	 * lines without String.getBytes().
+	 */
+	private static final boolean	ASCII_DEFAULT_ENCODING =
+		Arrays.equals
+			( "A\012".getBytes(), new byte[] { 'A', '\012' } );
+
+	/**
+	 * Spreads the temporary file names of clients that are created
+	 * together, such as those of a parallel update, which would
+	 * otherwise start counting from the same clock value.
+	 */
+	private static final AtomicInteger	clientSerial = new AtomicInteger();
+
+	/**
+	 * The executor that runs asynchronous requests of clients that
+	 * have not been given one of their own.
+	 */
+	private static Executor			defaultExecutor;
+
+	/**
+	 * The listener that is told the metrics of the requests of
+	 * clients that have not been given a listener of their own.
+	 */
+	private static CVSMetricsListener	defaultMetricsListener;
+
 	private final Object			canLock = new Object();
 	private boolean				canceled;
 
+	/**
+	 * The asynchronous request that is currently being processed,
+	 * if any. Guarded by canLock.
+	 */
+	private RequestFuture			activeRequest;
+
+	/**
+	 * A client whose cancelation also cancels our requests, such
+	 * as the client of the project whose update we are a part of.
+	 */
+	private CVSClient				cancelSource;
+
+	/**
+	 * Asynchronous requests are processed one at a time, in order.
+	 * This completes when the most recently submitted one is done.
+	 * Guarded by canLock.
+	 */
+	private CompletableFuture<Void>	requestTail;
+	private Executor				executor;
+
 	private String				hostName;
 	private int					port;
 	private int					tempCounter;
@@ -138,15 +211,31 @@ class		CVSClient
 		private boolean				serverIsOpen;
 	private boolean				tracingTCPData;
 
-	private Process				process;
-	private Socket				socket;
-	private InputStream			instream;
+	private volatile Process	process;
+	private volatile Socket		socket;
+	private CVSInputBuffer		instream;
 	private OutputStream		outstream;
 
 	private String				tempPath;
 	private String				reason;
 	private String				recentEntryRepository;
 
+	/**
+	 * When we are pipelining, requests are collected in sendBuffer
+	 * and written to the server in large pieces, with a single flush
+	 * once the command has been sent.
+	 */
+	private boolean				pipelining;
+	private byte[]				sendBuffer;
+	private int					sendCount;
+
+	/**
+	 * Uploads that must be gzip-ed or translated before their size
+	 * is known are collected here. The buffer is reused for every file.
+	 */
+	private CVSUploadBuffer		uploadBuffer;
+	private int					uploadBufferLimit;
+
 	/**
 	 * Hashtable of all 'Directory' commands that we have sent
 	 * to above sending redundant commands.
@@ -166,7 +255,33 @@ class		CVSClient
 	 * SSH supporting fields
 	 */
 	private SshClient					sshClient;
-	private SessionChannelClient		sshSession;
+	private volatile SessionChannelClient	sshSession;
+
+	/**
+	 * The key of the pooled ssh transport we are using, or null
+	 * if our ssh transport is not owned by the connection pool.
+	 */
+	private String						sshTransportKey;
+
+	/**
+	 * The pool that keeps authenticated sessions between requests.
+	 * Only requests with 'usePooledConnection' set make use of it.
+	 */
+	private CVSConnectionPool			connectionPool;
+
+	/**
+	 * The cache of server capabilities that lets a request skip
+	 * the 'valid-requests' round trip, or null to always ask.
+	 */
+	private CVSCapabilityCache			capabilityCache;
+
+	/**
+	 * The listener told the metrics of each of our requests, and
+	 * the metrics of the request in progress. Both are null when
+	 * no one is listening, in which case nothing is measured.
+	 */
+	private CVSMetricsListener			metricsListener;
+	private CVSRequestMetrics			metrics;
 
 	/**
 	 * Creates a CVS client.
@@ -211,7 +326,8 @@ class		CVSClient
 		this.tempPath = DEFAULT_TEMP_PATH;
 
 		this.tempCounter =
-			(int)( System.currentTimeMillis() % 0x0FFFFFFF );
+			(int)( ( System.currentTimeMillis()
+				+ clientSerial.getAndIncrement() * 0x10000L ) % 0x0FFFFFFF );
 
 		this.serverIsOpen = false;
 		this.tracingTCPData = false;
@@ -222,6 +338,24 @@ class		CVSClient
 
 		this.reason = "";
 		this.recentEntryRepository = "";
+
+		this.pipelining = false;
+		this.sendBuffer = null;
+		this.sendCount = 0;
+
+		this.uploadBuffer = null;
+		this.uploadBufferLimit = DEFAULT_UPLOAD_BUFFER_LIMIT;
+
+		this.sshTransportKey = null;
+		this.connectionPool = CVSConnectionPool.getDefaultPool();
+		this.capabilityCache = CVSCapabilityCache.getDefaultCache();
+		this.metricsListener = null;
+		this.metrics = null;
+
+		this.activeRequest = null;
+		this.cancelSource = null;
+		this.requestTail = CompletableFuture.completedFuture( null );
+		this.executor = null;
 		}
 
 	/**
@@ -264,6 +398,182 @@ class		CVSClient
 		this.port = port;
 		}
 
+	/**
+	 * Returns the pool used to keep sessions between requests.
+	 */
+	public CVSConnectionPool
+	getConnectionPool()
+		{
+		return this.connectionPool;
+		}
+
+	/**
+	 * Sets the pool used to keep sessions between requests.
+	 *
+	 * @param pool The connection pool, or null to open a new
+	 *             connection for every request.
+	 */
+	public void
+	setConnectionPool( final CVSConnectionPool pool )
+		{
+		this.connectionPool = pool;
+		}
+
+	/**
+	 * Returns the cache of the capabilities of the servers.
+	 */
+	public CVSCapabilityCache
+	getCapabilityCache()
+		{
+		return this.capabilityCache;
+		}
+
+	/**
+	 * Sets the cache of the capabilities of the servers.
+	 *
+	 * @param cache The capability cache, or null to ask the server
+	 *              with 'valid-requests' on every request.
+	 */
+	public void
+	setCapabilityCache( final CVSCapabilityCache cache )
+		{
+		this.capabilityCache = cache;
+		}
+
+	/**
+	 * Returns the listener that is told the metrics of this
+	 * client's requests, or null if they are not measured.
+	 */
+	public CVSMetricsListener
+	getMetricsListener()
+		{
+		return this.metricsListener != null
+			? this.metricsListener : CVSClient.getDefaultMetricsListener();
+		}
+
+	/**
+	 * Sets the listener that is told the metrics of this client's
+	 * requests.
+	 *
+	 * @param listener The listener, or null to use the default listener.
+	 */
+	public void
+	setMetricsListener( final CVSMetricsListener listener )
+		{
+		this.metricsListener = listener;
+		}
+
+	public static synchronized CVSMetricsListener
+	getDefaultMetricsListener()
+		{
+		return CVSClient.defaultMetricsListener;
+		}
+
+	/**
+	 * Sets the listener that is told the metrics of the requests of
+	 * clients that have not been given a listener. There is none by
+	 * default, so that requests are not measured.
+	 *
+	 * @param listener The listener, or null to measure nothing.
+	 */
+	public static synchronized void
+	setDefaultMetricsListener( final CVSMetricsListener listener )
+		{
+		CVSClient.defaultMetricsListener = listener;
+		}
+
+	/**
+	 * Returns the most bytes of an upload that are held in memory.
+	 */
+	public int
+	getUploadBufferLimit()
+		{
+		return this.uploadBufferLimit;
+		}
+
+	/**
+	 * Sets the most bytes of a gzip-ed or translated upload that are
+	 * held in memory. Larger uploads are written to a temporary file
+	 * in the temporary directory.
+	 *
+	 * @param limit The limit in bytes, zero to always use a temporary file.
+	 */
+	public void
+	setUploadBufferLimit( final int limit )
+		{
+		this.uploadBufferLimit = limit;
+		}
+
+	/**
+	 * Returns the executor that runs this client's asynchronous
+	 * requests.
+	 */
+	public Executor
+	getExecutor()
+		{
+		return this.executor != null
+			? this.executor : CVSClient.getDefaultExecutor();
+		}
+
+	/**
+	 * Sets the executor that runs this client's asynchronous requests.
+	 * The requests of one client are always processed one at a time,
+	 * so only clients that are used at the same time need more than
+	 * one thread between them.
+	 *
+	 * @param executor The executor, or null to use the default executor.
+	 */
+	public void
+	setExecutor( final Executor executor )
+		{
+		this.executor = executor;
+		}
+
+	/**
+	 * Returns the executor used by clients that have not been
+	 * given an executor. Unless one is set, this is a pool of
+	 * daemon threads that grows with the number of requests
+	 * that are running at the same time.
+	 */
+	public static synchronized Executor
+	getDefaultExecutor()
+		{
+		if ( CVSClient.defaultExecutor == null )
+			{
+			final AtomicInteger count = new AtomicInteger();
+
+			final ThreadFactory factory = runner ->
+				{
+				final Thread t = new Thread
+					( runner, "CVSClient-" + count.incrementAndGet() );
+				t.setDaemon( true );
+				return t;
+				};
+
+			CVSClient.defaultExecutor = Executors.newCachedThreadPool( factory );
+			}
+
+		return CVSClient.defaultExecutor;
+		}
+
+	public static synchronized void
+	setDefaultExecutor( final Executor executor )
+		{
+		CVSClient.defaultExecutor = executor;
+		}
+
+	/**
+	 * Makes the cancelation of another client's request cancel
+	 * this client's request as well.
+	 *
+	 * @param source The client to follow, or null.
+	 */
+	void
+	setCancelSource( final CVSClient source )
+		{
+		this.cancelSource = source;
+		}
+
 	public boolean
 	getMultipleInterfaceSupport()
 		{
@@ -392,13 +702,13 @@ class		CVSClient
 		boolean result = true;
 
 		CVSTracer.traceIf( request.traceRequest,
-			"sendEntryRepository: " + entry.dumpString() );
+			() -> "sendEntryRepository: " + entry.dumpString() );
 
 		final String localDir =
 			CVSCUtilities.stripFinalSlash( entry.getLocalDirectory() );
 
 		CVSTracer.traceIf( request.traceRequest,
-				   "sendEntryRepository: localDir = '" + localDir + '\'');
+				   "sendEntryRepository: localDir = '{}'", localDir );
 
 		if ( ! localDir.equals( this.recentEntryRepository ) )
 			{
@@ -407,9 +717,9 @@ class		CVSClient
 			String repStr = entry.getRepository();
 
 			CVSTracer.traceIf( request.traceRequest,
-					   "sendEntryRepository: INITIAL \n" +
-					   "  dirStr = '" + dirStr + "'\n" +
-					   "  repStr = '" + repStr + '\'');
+					   "sendEntryRepository: INITIAL \n"
+					   + "  dirStr = '{}'\n"
+					   + "  repStr = '{}'", dirStr, repStr );
 
 			final Vector v = new Vector();
 			stickyStr = this.getStickTag( request, dirStr );
@@ -509,6 +819,8 @@ class		CVSClient
 		{
 		boolean		result = true;
 
+		final int phase = this.enterPhase( CVSRequestMetrics.PHASE_UPLOAD );
+
 		result = this.sendEntryRepository( request, entry );
 
 		if ( result )
@@ -538,12 +850,18 @@ class		CVSClient
 				}
 			}
 
+		this.exitPhase( phase );
+
 		if ( ! result )
 			{
 			CVSLog.logMsg
 				( "CVSClient.sendModified: ERROR sending file: "
 					+ this.getReason() );
 			}
+		else if ( this.metrics != null )
+			{
+			this.metrics.countFileSent();
+			}
 
 		return result;
 		}
@@ -614,7 +932,7 @@ class		CVSClient
 		boolean		fileIsModified = false;
 
 		CVSTracer.traceIf
-			( request.traceRequest, "sendCVSEntry: " + entry.dumpString() );
+			( request.traceRequest, () -> "sendCVSEntry: " + entry.dumpString() );
 
 		// SPECIAL CASE for directories. This is currently only used when we
 		// are adding directories, usually to support adding new files.
@@ -656,6 +974,22 @@ class		CVSClient
 			{
 			fileExists = true;
 			fileIsModified = entry.isLocalFileModified( entryFile );
+
+			if ( fileIsModified && request.digestIndex != null
+					&& ! entry.isForceModified() && ! entry.isInConflict()
+					&& ! entry.isNewUserFile() && ! entry.isToBeRemoved()
+					&& request.digestIndex.isUnchanged( entryFile ) )
+				{
+				// The file was only touched, so we refresh its
+				// timestamp rather than send its contents.
+				CVSTracer.traceIf( request.traceRequest,
+					"sendCVSEntry: '{}' is touched, but unchanged.",
+					entry.getFullName() );
+
+				entry.setTimestamp( entryFile );
+				entry.setDirty( true );
+				fileIsModified = false;
+				}
 			}
 
 		final int trans = CVSCUtilities.computeTranslation( entry );
@@ -1017,7 +1351,7 @@ class		CVSClient
 		final String reply = this.readLine();
 
 		CVSTracer.traceIf( request.traceRequest,
-				   "AUTHENTICATE: REPLY: '" + reply + '\'');
+				   "AUTHENTICATE: REPLY: '{}'", reply );
 
 		if ( reply != null )
 			if ( reply.startsWith( "I LOVE YOU" ) )
@@ -1128,13 +1462,155 @@ class		CVSClient
 		return this.processCVSRequest( request, new CVSResponse() );
 		}
 
-	private boolean
+	/**
+	 * Processes a request on this client's executor. The request is
+	 * processed after any asynchronous requests that were submitted
+	 * to this client before it. Canceling the result cancels the
+	 * request, and closes its connection to the server, so that it
+	 * does not wait on the server.
+	 *
+	 * @param request The CVSRequest describing our request.
+	 * @return The future response, as processCVSRequest() returns it.
+	 */
+	public CompletableFuture<CVSResponse>
+	processCVSRequestAsync( final CVSRequest request )
+		{
+		return this.processCVSRequestAsync( request, new CVSResponse() );
+		}
+
+	public CompletableFuture<CVSResponse>
+	processCVSRequestAsync( final CVSRequest request, final CVSResponse response )
+		{
+		return this.submitRequest
+			( () -> this.processCVSRequest( request, response ) );
+		}
+
+	/**
+	 * Runs work that uses this client on our executor, after the
+	 * asynchronous requests that were submitted before it.
+	 *
+	 * @param work The work, which returns its response.
+	 * @return The future response.
+	 */
+	CompletableFuture<CVSResponse>
+	submitRequest( final Supplier<CVSResponse> work )
+		{
+		final RequestFuture result = new RequestFuture();
+		final CompletableFuture<Void> done = new CompletableFuture<>();
+		final CompletableFuture<Void> previous;
+
+		synchronized ( this.canLock )
+			{
+			previous = this.requestTail;
+			this.requestTail = done;
+			}
+
+		final Runnable task = () ->
+			{
+			try {
+				synchronized ( this.canLock )
+					{
+					if ( result.isCancelled() )
+						return;
+
+					this.activeRequest = result;
+					}
+
+				result.complete( work.get() );
+				}
+			catch ( final RuntimeException ex )
+				{
+				result.completeExceptionally( ex );
+				}
+			finally
+				{
+				synchronized ( this.canLock )
+					{
+					if ( this.activeRequest == result )
+						this.activeRequest = null;
+					}
+
+				done.complete( null );
+				}
+			};
+
+		final Executor exec = this.getExecutor();
+
+		previous.whenComplete( (ignore, ex) ->
+			{
+			try {
+				exec.execute( task );
+				}
+			catch ( final RuntimeException rex )
+				{
+				result.completeExceptionally( rex );
+				done.complete( null );
+				}
+			} );
+
+		return result;
+		}
+
+	/**
+	 * Cancels the asynchronous request, if it is being processed,
+	 * and closes its connection from this thread, so that a read or
+	 * write blocked on the server fails at once. The thread that is
+	 * processing the request cleans up as usual.
+	 */
+	private void
+	abortRequest( final RequestFuture request )
+		{
+		synchronized ( this.canLock )
+			{
+			if ( this.activeRequest != request )
+				return;
+			}
+
+		this.abortConnection();
+		}
+
+	/**
+	 * Closes the connection to the server out from under the
+	 * request that is using it.
+	 */
+	void
+	abortConnection()
+		{
+		final SessionChannelClient session = this.sshSession;
+		final Socket sock = this.socket;
+		final Process proc = this.process;
+
+		try {
+			if ( session != null )
+				session.close();
+
+			if ( sock != null )
+				sock.close();
+			else if ( proc != null )
+				proc.destroy();
+			}
+		catch ( final IOException ex )
+			{
+			CVSLog.logMsg
+				( "CVSClient.abortConnection: " + ex.getMessage() );
+			}
+		}
+
+	boolean
 	isCanceled()
 		{
 		synchronized ( this.canLock )
 			{
-			return this.canceled;
+			if ( this.canceled )
+				return true;
+
+			if ( this.activeRequest != null
+					&& this.activeRequest.isCancelled() )
+				return true;
 			}
+
+		return this.cancelSource != null
+			&& this.cancelSource.isCanceled();
 		}
 
 	public void
@@ -1166,6 +1642,34 @@ class		CVSClient
 
 	public CVSResponse
 	processCVSRequest( final CVSRequest request, final CVSResponse response )
+		{
+		final CVSMetricsListener listener = this.getMetricsListener();
+
+		if ( listener == null )
+			{
+			return this.performRequest( request, response );
+			}
+
+		this.metrics =
+			new CVSRequestMetrics
+				( CVSRequestMetrics.getServerKey( request ),
+					request.getCommand() );
+
+		try {
+			return this.performRequest( request, response );
+			}
+		finally
+			{
+			final CVSRequestMetrics done = this.metrics;
+			this.metrics = null;
+
+			done.finish( response.getStatus() );
+			listener.requestCompleted( done );
+			}
+		}
+
+	private CVSResponse
+	performRequest( final CVSRequest request, final CVSResponse response )
 		{
 		this.setCanceled( false );
 
@@ -1177,6 +1681,7 @@ class		CVSClient
 		final String[] vars = request.getSetVariables();
 
 			boolean usingGZIP = false;
+		DeflaterOutputStream deflater = null;
 		this.setReason( "" );
 		this.recentEntryRepository = "";
 		this.dirHash = new Hashtable();
@@ -1324,7 +1829,7 @@ class		CVSClient
 		if ( portNum == 0 )
 			{
 			CVSTracer.traceIf( request.traceRequest,
-					   "CVSRequest: default port number to '" + this.port + '\'');
+					   "CVSRequest: default port number to '{}'", this.port );
 			portNum = this.port;
 			}
 
@@ -1333,41 +1838,74 @@ class		CVSClient
 			return response;
 			}
 
-		CVSTracer.traceIf( request.traceRequest,
-			"CVSRequest: opening server..." );
-
-		ui.uiDisplayProgressMsg
-			("Opening server '" + request.getPort()
-			 + '@' + request.getHostName() + "'..." );
-
-		isok = this.openServer( request );
+		final boolean pooling =
+			request.usePooledConnection
+				&& ! request.verificationOnly
+				&& this.connectionPool != null;
 
-		CVSTracer.traceIf( request.traceRequest,
-			"CVSRequest: server is " + (isok?"":"not ") + "open." );
+		final CVSConnection pooled =
+			pooling
+				? this.connectionPool.borrow
+					( CVSConnectionPool.getConnectionKey( request ) )
+				: null;
 
-		if ( ! isok )
+		if ( pooled != null )
 			{
-			final String why = this.getReason();
-
-			this.buildErrorResponse
-				( request, response,
-				  "Failed to open socket to connect to cvs server '"
-				  + request.getPort() + '@' + request.getHostName()
-				  + "'.\n" + why );
+			CVSTracer.traceIf( request.traceRequest,
+				"CVSRequest: using pooled connection " + pooled );
 
 			ui.uiDisplayProgressMsg
-				("Failed to open '" + request.getPort()
-				 + '@' + request.getHostName() + "'." );
+				("Using open connection to '" + request.getPort()
+				 + '@' + request.getHostName() + "'..." );
 
-			return response;
+			this.attachConnection( pooled, request );
 			}
-
-		if ( this.checkForCancel( response ) )
+		else
+			{
+			CVSTracer.traceIf( request.traceRequest,
+				"CVSRequest: opening server..." );
+
+			ui.uiDisplayProgressMsg
+				("Opening server '" + request.getPort()
+				 + '@' + request.getHostName() + "'..." );
+
+			final int phase = this.enterPhase( CVSRequestMetrics.PHASE_CONNECT );
+			isok = this.openServer( request );
+			this.exitPhase( phase );
+
+			CVSTracer.traceIf( request.traceRequest,
+				"CVSRequest: server is " + (isok?"":"not ") + "open." );
+			}
+
+		if ( isok && this.metrics != null )
+			{
+			this.metrics.beginConnection
+				( this.instream, this.outstream, pooled != null );
+			}
+
+		if ( ! isok )
+			{
+			final String why = this.getReason();
+
+			this.buildErrorResponse
+				( request, response,
+				  "Failed to open socket to connect to cvs server '"
+				  + request.getPort() + '@' + request.getHostName()
+				  + "'.\n" + why );
+
+			ui.uiDisplayProgressMsg
+				("Failed to open '" + request.getPort()
+				 + '@' + request.getHostName() + "'." );
+
+			return response;
+			}
+
+		if ( this.checkForCancel( response ) )
 			{
 			return response;
 			}
 
-		if ( request.isPServer() )
+		if ( pooled == null && request.isPServer() )
 			{
  			if ( request.getUserName() == null
 					|| request.getPassword() == null )
@@ -1390,7 +1928,11 @@ class		CVSClient
 				("Authenticating '" + request.getUserName()
 				 + '@' + request.getHostName() + "'..." );
 
-			if ( ! this.performLogin( request ) )
+			final int phase = this.enterPhase( CVSRequestMetrics.PHASE_AUTH );
+			final boolean loggedIn = this.performLogin( request );
+			this.exitPhase( phase );
+
+			if ( ! loggedIn )
 				{
 				this.buildErrorResponse
 					( request, response,
@@ -1427,9 +1969,45 @@ class		CVSClient
 			return response;
 			}
 
-		if ( isok )
+		boolean cachedCapabilities = false;
+
+		if ( isok && pooled == null )
+			{
+			final int phase =
+				this.enterPhase( CVSRequestMetrics.PHASE_VALID_REQUESTS );
+
+			cachedCapabilities =
+				this.capabilityCache != null
+					&& this.capabilityCache.establishCapabilities( request );
+
+			if ( ! cachedCapabilities )
+				{
+				isok = this.requestValidRequests( request );
+
+				if ( isok && this.capabilityCache != null )
+					this.capabilityCache.rememberCapabilities( request );
+				}
+
+			this.exitPhase( phase );
+			}
+
+		// NOTE
+		// The session we just established, or borrowed, will execute
+		// this request's command. So, we have the pool prepare another
+		// session for the next request while this one is in progress.
+		//
+		if ( isok && pooling )
+			{
+			this.connectionPool.replenish( request );
+			}
+
+		// From here until the command itself, we do not need to hear
+		// from the server. So, we collect the requests and send them
+		// all at once, rather than flushing each line.
+		//
+		if ( isok && request.pipelineRequests )
 			{
-			isok = this.requestValidRequests( request );
+			this.beginPipeline();
 			}
 
 		CVSTracer.traceIf( request.traceRequest,
@@ -1469,8 +2047,29 @@ class		CVSClient
 					"Utilitizing Gzip-stream mode at level 6." );
 				usingGZIP = true;
 			this.sendLine( "Gzip-stream 6" );
-			this.instream = new InflaterInputStream( this.instream );
-			this.outstream = new DeflaterOutputStream( this.outstream );
+
+			// Everything up to, and including, the 'Gzip-stream'
+			// request must reach the server uncompressed.
+			if ( this.pipelining )
+				{
+				isok = this.drainPipeline();
+				}
+
+			deflater = new DeflaterOutputStream( this.outstream );
+
+			final CVSInputBuffer inflated =
+				new CVSInputBuffer
+					( new InflaterInputStream( this.instream ) );
+			final CVSCountingOutputStream deflated =
+				new CVSCountingOutputStream( deflater );
+
+			if ( this.metrics != null )
+				{
+				this.metrics.beginCompression( inflated, deflated );
+				}
+
+			this.instream = inflated;
+			this.outstream = deflated;
 			}
 
 		if ( isok )
@@ -1481,7 +2080,10 @@ class		CVSClient
 		ui.uiDisplayProgressMsg
 			( "Negotiating cvs protocol..." );
 
-		this.sendValidResponses( request, "" );
+		this.sendValidResponses
+			( request,
+				( request.useRcsDiff ? "Rcs-diff " : "" )
+				+ ( request.responseListener != null ? "MT" : "" ) );
 
 		ui.uiDisplayProgressMsg
 			( "Sending command request, '" +request.getCommand()+ "'..." );
@@ -1521,7 +2123,11 @@ class		CVSClient
 			{
 			CVSTracer.traceIf( request.traceRequest,
 				"CVSRequest: send entries..." );
+
+			final int phase =
+				this.enterPhase( CVSRequestMetrics.PHASE_SEND_ENTRIES );
 			isok = this.sendCVSEntries( request );
+			this.exitPhase( phase );
 			}
 
 		if ( this.checkForCancel( response ) )
@@ -1557,6 +2163,16 @@ class		CVSClient
 			return response;
 			}
 
+		if ( isok && request.useRcsDiff
+				&& request.getCommand().equals( "update" )
+				&& request.validRequests != null
+				&& request.validRequests.contains( "update-patches" ) )
+			{
+			CVSTracer.traceIf( request.traceRequest,
+					"CVSRequest: request rcs diffs..." );
+			isok = this.sendLine( "Argument -u" );
+			}
+
 		if ( isok && request.sendArguments )
 			{
 			CVSTracer.traceIf( request.traceRequest,
@@ -1591,12 +2207,16 @@ class		CVSClient
 		if ( isok )
 			{
 			CVSTracer.traceIf( request.traceRequest,
-					   "CVSRequest: send command '"
-					   + request.getCommand() + '\'');
+					   "CVSRequest: send command '{}'", request.getCommand() );
 
 			isok = this.sendLine( request.getCommand() );
 			}
 
+		if ( this.pipelining )
+			{
+			isok = this.endPipeline() && isok;
+			}
+
 		if ( this.checkForCancel( response ) )
 			{
 			return response;
@@ -1605,7 +2225,7 @@ class		CVSClient
 		try {
 			if (usingGZIP)
 				{
-				((DeflaterOutputStream) this.outstream).finish();
+				deflater.finish();
 
 				// SW-flush-output
 				// Since out GZIP stream was wrapped in a BufferedOutputStream
@@ -1625,7 +2245,10 @@ class		CVSClient
 			ui.uiDisplayProgressMsg
 				( "Reading server response..." );
 
+			final int phase =
+				this.enterPhase( CVSRequestMetrics.PHASE_RESPONSE_PARSE );
 			this.readAndParseResponse( request, response );
+			this.exitPhase( phase );
 			}
 		else
 			{
@@ -1643,6 +2266,17 @@ class		CVSClient
 							: ": {" + this.getReason() + '}') );
 			}
 
+		// NOTE
+		// If we did not ask the server for its capabilities, they
+		// may be the reason this request failed. We forget them, so
+		// that the next request asks again.
+		//
+		if ( cachedCapabilities
+				&& response.getStatus() != CVSResponse.OK )
+			{
+			this.capabilityCache.forgetCapabilities( request );
+			}
+
 		ui.uiDisplayProgressMsg
 			( "Closing CVS server connection." );
 
@@ -1682,8 +2316,7 @@ class		CVSClient
 		final String result = 'T' + randStr + ".cvs";
 
 		CVSTracer.traceIf( false,
-				   "TEMPFILE: counter '" + this.tempCounter
-				   + "' name '" + result + '\'');
+				   "TEMPFILE: counter '{}' name '{}'", this.tempCounter, result );
 
 		return result;
 		}
@@ -1712,6 +2345,32 @@ class		CVSClient
 		return path;
 		}
 
+	/**
+	 * Asks the request's response handler for the working file into
+	 * which the item's contents should be delivered. Delivery requires
+	 * that the item be processed as soon as it is read, since the
+	 * working file is replaced before the handler sees the item.
+	 *
+	 * @return The working file, or null to use a temporary file.
+	 */
+	private File
+	getDeliveryFile( final CVSRequest request, final CVSResponseItem item )
+		{
+		if ( ! request.deliverFilesDirectly
+				|| this.requestIsQueued( request )
+				|| ! ( request.responseHandler instanceof CVSFileReceiver ) )
+			return null;
+
+		final File result =
+			((CVSFileReceiver) request.responseHandler).getDeliveryFile
+				( request, item );
+
+		CVSTracer.traceIf( request.traceResponse,
+			"PARSE: deliver to '{}'", result );
+
+		return result;
+		}
+
 	private boolean
 	requestIsQueued( final CVSRequest request )
 		{
@@ -1725,6 +2384,11 @@ class		CVSClient
 		{
 		boolean result = true;
 
+		if ( this.metrics != null )
+			{
+			this.metrics.countItem( item.getType() );
+			}
+
 		// NOTE
 		// SPECIAL CASE
 		// We need to handle the local directories returned when we use
@@ -1746,6 +2410,13 @@ class		CVSClient
 				}
 			}
 
+		if ( request.responseListener != null
+				&& ! request.responseListener.responseItem
+						( request, response, item ) )
+			{
+			this.setCanceled( true );
+			}
+
 		if ( this.requestIsQueued( request ) )
 			{
 			response.addResponseItem( item );
@@ -1771,6 +2442,9 @@ class		CVSClient
 		String		line = null;
 
 		CVSResponseItem	currItem = null;
+		String			checksum = null;
+
+		final CVSResponseListener listener = request.responseListener;
 
 		for ( isok = true ; isok ; )
 			{
@@ -1787,10 +2461,8 @@ class		CVSClient
 				}
 
 			CVSTracer.traceIf( false,
-					   "CVSClient.readAndParseResponse: INLINE '"
-					   + line + "' currItem '"
-					   + ( currItem==null
-					? "(null)" : currItem.toString() ) + '\'');
+					   "CVSClient.readAndParseResponse: INLINE '{}' currItem '{}'",
+					   line, currItem );
 
 			if ( currItem != null )
 				{
@@ -1799,7 +2471,7 @@ class		CVSClient
 					switch (currItem.getAddState()) {
 					case CVSResponseItem.GET_FULL_PATH:
 						CVSTracer.traceIf(request.traceResponse,
-								  "PARSE: FullPath '" + line + '\'');
+								  "PARSE: FullPath '{}'", line );
 
 						if (line.endsWith("/./")) {
 							// SPECIAL CASE
@@ -1809,34 +2481,34 @@ class		CVSClient
 							// This confuses our code, so we adjust here...
 							line = line.substring(0, line.length() - 2);
 							CVSTracer.traceIf(request.traceResponse,
-									  "PARSE: Adjusted FullPath '" + line + '\'');
+									  "PARSE: Adjusted FullPath '{}'", line );
 						}
 
 						currItem.setRepositoryName(line);
 						break;
 					case CVSResponseItem.GET_ENTRIES_LINE:
 						CVSTracer.traceIf(request.traceResponse,
-								  "PARSE: Entry '" + line + '\'');
+								  "PARSE: Entry '{}'", line );
 						currItem.setEntriesLine(line);
 						break;
 					case CVSResponseItem.GET_MODE_LINE:
 						CVSTracer.traceIf(request.traceResponse,
-								  "PARSE: Mode '" + line + '\'');
+								  "PARSE: Mode '{}'", line );
 						currItem.setModeLine(line);
 						break;
 					case CVSResponseItem.GET_TAG_SPEC:
 						CVSTracer.traceIf(request.traceResponse,
-								  "PARSE: Tag Spec '" + line + '\'');
+								  "PARSE: Tag Spec '{}'", line );
 						currItem.setTagSpec(line);
 						break;
 					case CVSResponseItem.GET_PROGRAM:
 						CVSTracer.traceIf(request.traceResponse,
-								  "PARSE: Program Name '" + line + '\'');
+								  "PARSE: Program Name '{}'", line );
 						currItem.setProgram(line);
 						break;
 					case CVSResponseItem.GET_NEW_NAME:
 						CVSTracer.traceIf(request.traceResponse,
-								  "PARSE: New Name '" + line + '\'');
+								  "PARSE: New Name '{}'", line );
 						currItem.setNewName(line);
 						break;
 					}
@@ -1846,6 +2518,7 @@ class		CVSClient
 					case CVSResponseItem.CREATED:
 					case CVSResponseItem.MERGED:
 					case CVSResponseItem.PATCHED:
+					case CVSResponseItem.RCS_DIFF:
 					case CVSResponseItem.UPDATED:
 					case CVSResponseItem.UPDATE_EXISTING:
 						final String itemCmdName =
@@ -1855,6 +2528,8 @@ class		CVSClient
 						? "Merged"
 						: itemType == CVSResponseItem.PATCHED
 						? "Patched"
+						: itemType == CVSResponseItem.RCS_DIFF
+						? "Rcs-diff"
 						: itemType == CVSResponseItem.UPDATED
 						? "Updated"
 						: "Update-existing";
@@ -1875,8 +2550,17 @@ class		CVSClient
 								currItem.setAddState
 									( CVSResponseItem.GET_FILE );
 
-								final File file = new
-									File( this.generateTempPath() );
+								if ( checksum != null )
+									{
+									currItem.setChecksum( checksum );
+									checksum = null;
+									}
+
+								final File target = this.getDeliveryFile
+									( request, currItem );
+
+								final File file = target != null ? target
+									: new File( this.generateTempPath() );
 
 								String name = currItem.getRepositoryName();
 								index = name.lastIndexOf( '/' );
@@ -1891,7 +2575,26 @@ class		CVSClient
 									request.getUserInterface().uiDisplayProgressMsg
 										( "Downloading file '" + name + "'..." );
 
-								if ( this.retrieveFile( currItem, file ) )
+								final int phase =
+									this.enterPhase( CVSRequestMetrics.PHASE_FILE_WRITE );
+
+								final boolean received =
+									target != null
+										? this.deliverFile( currItem, target )
+										: this.retrieveFile( currItem, file );
+
+								this.exitPhase( phase );
+
+								if ( received && this.metrics != null )
+									this.metrics.countFileReceived();
+
+								if ( received && target != null )
+									{
+									currItem.setDelivered( true );
+									isok = this.processResponseItem
+										( request, response, currItem );
+									}
+								else if ( received )
 									{
 									currItem.setFile( file );
 									isok = this.processResponseItem
@@ -1902,7 +2605,9 @@ class		CVSClient
 									response.appendStdErr
 										( "ERROR downloading '" + itemCmdName
 										+ "' file '" + name
-										+ "'\n      into temporary file '"
+										+ ( target != null
+											? "'\n      into working file '"
+											: "'\n      into temporary file '" )
 										+ file.getPath() + "'.\n" );
 									response.appendStdErr
 										("REASON " + this.getReason() + '\n');
@@ -1995,7 +2700,7 @@ class		CVSClient
 			else if ( line.startsWith( "error" ) )
 				{
 				CVSTracer.traceIf
-					( request.traceResponse, "PARSE: error '" + line + '\'');
+					( request.traceResponse, "PARSE: error '{}'", line );
 
 				gotStatus = true;
 
@@ -2059,7 +2764,7 @@ class		CVSClient
 				{
 				final String pathName = line.substring( 8 );
 				CVSTracer.traceIf( request.traceResponse,
-						   "PARSE: Update '" + pathName + '\'');
+						   "PARSE: Update '{}'", pathName );
 
 				final CVSResponseItem newItem = new
 					CVSResponseItem( CVSResponseItem.UPDATED );
@@ -2078,7 +2783,7 @@ class		CVSClient
 				{
 				final String pathName = line.substring( 7 );
 				CVSTracer.traceIf( request.traceResponse,
-						   "PARSE: Merged '" + pathName + '\'');
+						   "PARSE: Merged '{}'", pathName );
 
 				final CVSResponseItem newItem = new
 					CVSResponseItem( CVSResponseItem.MERGED );
@@ -2096,7 +2801,7 @@ class		CVSClient
 				{
 				final String pathName = line.substring( 16 );
 				CVSTracer.traceIf( request.traceResponse,
-						   "PARSE: Update-existing '" + pathName + '\'');
+						   "PARSE: Update-existing '{}'", pathName );
 
 				final CVSResponseItem newItem = new
 					CVSResponseItem( CVSResponseItem.UPDATE_EXISTING );
@@ -2114,7 +2819,7 @@ class		CVSClient
 				{
 				final String pathName = line.substring( 8 );
 				CVSTracer.traceIf( request.traceResponse,
-						   "PARSE: Created '" + pathName + '\'');
+						   "PARSE: Created '{}'", pathName );
 
 				final CVSResponseItem newItem = new
 					CVSResponseItem( CVSResponseItem.CREATED );
@@ -2132,7 +2837,7 @@ class		CVSClient
 				{
 				final String pathName = line.substring( 8 );
 				CVSTracer.traceIf( request.traceResponse,
-						   "PARSE: Patched '" + pathName + '\'');
+						   "PARSE: Patched '{}'", pathName );
 
 				final CVSResponseItem newItem = new
 					CVSResponseItem( CVSResponseItem.PATCHED );
@@ -2146,25 +2851,39 @@ class		CVSClient
 
 				currItem = newItem;
 				}
-			else if ( line.startsWith( "Checksum " ) )
+			else if ( line.startsWith( "Rcs-diff " ) )
 				{
-				final String sumStr = line.substring( 9 );
+				final String pathName = line.substring( 9 );
 				CVSTracer.traceIf( request.traceResponse,
-						   "PARSE: Checksum '" + sumStr + '\'');
+						   "PARSE: Rcs-diff '{}'", pathName );
 
 				final CVSResponseItem newItem = new
-					CVSResponseItem( CVSResponseItem.CHECKSUM );
+					CVSResponseItem( CVSResponseItem.RCS_DIFF );
 
-				newItem.setChecksum( sumStr );
+				newItem.setPathName( pathName );
 
-				isok = this.processResponseItem
-					( request, response, newItem );
+				newItem.setAddState(
+					request.useDirectory
+						? CVSResponseItem.GET_FULL_PATH
+						: CVSResponseItem.GET_ENTRIES_LINE );
+
+				currItem = newItem;
+				}
+			else if ( line.startsWith( "Checksum " ) )
+				{
+				final String sumStr = line.substring( 9 );
+				CVSTracer.traceIf( request.traceResponse,
+						   "PARSE: Checksum '{}'", sumStr );
+
+				// The checksum applies to the next file we receive,
+				// and is verified when that file is processed.
+				checksum = sumStr;
 				}
 			else if ( line.startsWith( "Module-expansion " ) )
 				{
 				final String pathName = line.substring( 17 );
 				CVSTracer.traceIf( request.traceResponse,
-						   "PARSE: Module-expansion '" + pathName + '\'');
+						   "PARSE: Module-expansion '{}'", pathName );
 
 				final CVSResponseItem newItem = new
 					CVSResponseItem( CVSResponseItem.MODULE_EXPANSION );
@@ -2183,7 +2902,7 @@ class		CVSClient
 				{
 				final String pathName = line.substring( 9 );
 				CVSTracer.traceIf( request.traceResponse,
-						   "PARSE: Notified '" + pathName + '\'');
+						   "PARSE: Notified '{}'", pathName );
 
 				final CVSResponseItem newItem = new
 					CVSResponseItem( CVSResponseItem.NOTIFIED );
@@ -2205,7 +2924,7 @@ class		CVSClient
 				{
 				final String pathName = line.substring( 8 );
 				CVSTracer.traceIf( request.traceResponse,
-						   "PARSE: Removed '" + pathName + '\'');
+						   "PARSE: Removed '{}'", pathName );
 
 				final CVSResponseItem newItem = new
 					CVSResponseItem( CVSResponseItem.REMOVED );
@@ -2227,7 +2946,7 @@ class		CVSClient
 				{
 				final String pathName = line.substring( 13 );
 				CVSTracer.traceIf( request.traceResponse,
-						   "PARSE: Remove-entry '" + pathName + '\'');
+						   "PARSE: Remove-entry '{}'", pathName );
 
 				final CVSResponseItem newItem = new
 					CVSResponseItem( CVSResponseItem.REMOVE_ENTRY );
@@ -2249,7 +2968,7 @@ class		CVSClient
 				{
 				final String pathName = line.substring( 11 );
 				CVSTracer.traceIf( request.traceResponse,
-						   "PARSE: Checked-in '" + pathName + '\'');
+						   "PARSE: Checked-in '{}'", pathName );
 
 				final CVSResponseItem newItem = new
 					CVSResponseItem( CVSResponseItem.CHECKED_IN );
@@ -2267,7 +2986,7 @@ class		CVSClient
 				{
 				final String pathName = line.substring( 10 );
 				CVSTracer.traceIf( request.traceResponse,
-						   "PARSE: New-entry '" + pathName + '\'');
+						   "PARSE: New-entry '{}'", pathName );
 
 				final CVSResponseItem newItem = new
 					CVSResponseItem( CVSResponseItem.NEW_ENTRY );
@@ -2285,7 +3004,7 @@ class		CVSClient
 				{
 				final String pathName = line.substring( 10 );
 				CVSTracer.traceIf( request.traceResponse,
-						   "PARSE: Copy-file '" + pathName + '\'');
+						   "PARSE: Copy-file '{}'", pathName );
 
 				final CVSResponseItem newItem = new
 					CVSResponseItem( CVSResponseItem.COPY_FILE );
@@ -2303,7 +3022,7 @@ class		CVSClient
 				{
 				final String pathName = line.substring( 11 );
 				CVSTracer.traceIf( request.traceResponse,
-						   "PARSE: Set-sticky '" + pathName + '\'');
+						   "PARSE: Set-sticky '{}'", pathName );
 
 				final CVSResponseItem newItem = new
 					CVSResponseItem( CVSResponseItem.SET_STICKY );
@@ -2321,7 +3040,7 @@ class		CVSClient
 				{
 				final String pathName = line.substring( 13 );
 				CVSTracer.traceIf( request.traceResponse,
-						   "PARSE: Clear-sticky '" + pathName + '\'');
+						   "PARSE: Clear-sticky '{}'", pathName );
 
 				final CVSResponseItem newItem = new
 					CVSResponseItem( CVSResponseItem.CLEAR_STICKY );
@@ -2343,7 +3062,7 @@ class		CVSClient
 				{
 				final String pathName = line.substring( 21 );
 				CVSTracer.traceIf( request.traceResponse,
-						   "PARSE: Set-static-directory '" + pathName + '\'');
+						   "PARSE: Set-static-directory '{}'", pathName );
 
 				final CVSResponseItem newItem = new
 					CVSResponseItem( CVSResponseItem.SET_STATIC_DIR );
@@ -2365,7 +3084,7 @@ class		CVSClient
 				{
 				final String pathName = line.substring( 23 );
 				CVSTracer.traceIf( request.traceResponse,
-						   "PARSE: Clear-static-directory '" + pathName + '\'');
+						   "PARSE: Clear-static-directory '{}'", pathName );
 
 				final CVSResponseItem newItem = new
 					CVSResponseItem( CVSResponseItem.CLEAR_STATIC_DIR );
@@ -2387,7 +3106,7 @@ class		CVSClient
 				{
 				final String pathName = line.substring( 17 );
 				CVSTracer.traceIf( request.traceResponse,
-						   "PARSE: Set-checkin-prog '" + pathName + '\'');
+						   "PARSE: Set-checkin-prog '{}'", pathName );
 
 				final CVSResponseItem newItem = new
 					CVSResponseItem( CVSResponseItem.SET_CHECKIN_PROG );
@@ -2402,7 +3121,7 @@ class		CVSClient
 				{
 				final String pathName = line.substring( 16 );
 				CVSTracer.traceIf( request.traceResponse,
-						   "PARSE: Set-update-prog '" + pathName + '\'');
+						   "PARSE: Set-update-prog '{}'", pathName );
 
 				final CVSResponseItem newItem = new
 					CVSResponseItem( CVSResponseItem.SET_UPDATE_PROG );
@@ -2414,6 +3133,16 @@ class		CVSClient
 				currItem = newItem;
 				}
 			// REVIEW should these two be passed to 'responseHandler'?
+			else if ( listener != null
+					&& ( line.startsWith( "M " ) || line.startsWith( "E " )
+						|| line.startsWith( "MT " )
+						|| line.equals( "M" ) || line.equals( "E" ) ) )
+				{
+				if ( ! this.listenLine( request, listener, line ) )
+					{
+					this.setCanceled( true );
+					}
+				}
 			else if ( line.startsWith( "E " ) )
 				{
 			//	response.appendStdErr( line.substring(2) + "\n" );
@@ -2475,67 +3204,111 @@ class		CVSClient
 
 		}
 
+	/**
+	 * Hands an 'M', 'E' or 'MT' line to the request's listener.
+	 *
+	 * @return False if the listener wants the request canceled.
+	 */
 	private boolean
-	retrieveFile(final CVSResponseItem item, final File file)
+	listenLine(
+			final CVSRequest request, final CVSResponseListener listener,
+			final String line )
 		{
-		boolean	ok = true;
-		final boolean	use_gzip = false;
+		if ( line.startsWith( "M " ) )
+			{
+			return listener.messageLine( request, line.substring( 2 ) );
+			}
+		else if ( line.startsWith( "E " ) )
+			{
+			return listener.errorLine( request, line.substring( 2 ) );
+			}
+		else if ( line.startsWith( "MT " ) )
+			{
+			final int index = line.indexOf( ' ', 3 );
 
-		FileOutputStream	out = null;
+			return index < 0
+				? listener.taggedLine( request, line.substring( 3 ), null )
+				: listener.taggedLine
+					( request, line.substring( 3, index ), line.substring( index + 1 ) );
+			}
+		else if ( line.equals( "M" ) )
+			{
+			// Some servers send empty lines without the space.
+			return listener.messageLine( request, "" );
+			}
 
-		int fileSize = 0;
-		int bytes = 0;
-		int length;
+		return listener.errorLine( request, "" );
+		}
 
-		String line = null;
+	/**
+	 * Reads the line that precedes the contents of a file sent by
+	 * the server, which gives the size of the contents, and notes
+	 * in the item whether or not the contents are gzip-ed.
+	 *
+	 * @param item The item that the contents belong to.
+	 * @return The size of the contents, or -1 on error.
+	 */
+	private int
+	readFileSize( final CVSResponseItem item )
+		{
+		int fileSize = -1;
 
-		line = this.readLine();
+		String line = this.readLine();
 
 		if ( line == null )
 			{
 			this.setReason
 				( "CVSClient.retrieveFile: ERROR size line is null!" );
 			CVSLog.logMsg( this.getReason() );
-			ok = false;
+			return -1;
 			}
 
-		if ( ok )
+		if (!line.isEmpty() && line.charAt(0) == 'z')
 			{
-			if (!line.isEmpty() && line.charAt(0) == 'z')
-				{
-				item.setGZIPed( true );
-				line = line.substring( 1 );
-				}
+			item.setGZIPed( true );
+			line = line.substring( 1 );
+			}
 
-			try {
-				fileSize = Integer.valueOf(line);
-				}
-			catch ( final NumberFormatException ex )
-				{
-				this.setReason
-					("CVSClient.retrieveFile: ERROR size line is invalid '"
-					 + line + '\'');
-				CVSLog.logMsg( this.getReason() );
-				ok = false;
-				}
+		try {
+			fileSize = Integer.valueOf(line);
+			}
+		catch ( final NumberFormatException ex )
+			{
+			this.setReason
+				("CVSClient.retrieveFile: ERROR size line is invalid '"
+				 + line + '\'');
+			CVSLog.logMsg( this.getReason() );
+			return -1;
 			}
 
 		if ( LIMIT_FILE_SIZE )
 			{
-			if ( ok )
+			if ( fileSize > MAX_FILE_SIZE )
 				{
-				if ( fileSize > MAX_FILE_SIZE )
-					{
-					this.setReason
-						("CVSClient.retrieveFile: ERROR size limit of '"
-						 + MAX_FILE_SIZE + "' exceeded by '"
-						 + fileSize + '\'');
-					CVSLog.logMsg( this.getReason() );
-					ok = false;
-					}
+				this.setReason
+					("CVSClient.retrieveFile: ERROR size limit of '"
+					 + MAX_FILE_SIZE + "' exceeded by '"
+					 + fileSize + '\'');
+				CVSLog.logMsg( this.getReason() );
+				return -1;
 				}
 			}
 
+		return fileSize;
+		}
+
+	private boolean
+	retrieveFile(final CVSResponseItem item, final File file)
+		{
+		FileOutputStream	out = null;
+
+		int bytes = 0;
+		int length;
+
+		final int fileSize = this.readFileSize( item );
+
+		boolean ok = fileSize >= 0;
+
 		if ( ok )
 			{
 			try {
@@ -2628,81 +3401,364 @@ class		CVSClient
 		return ok && out != null;
 		}
 
+	/**
+	 * Reads the contents of a file sent by the server directly into
+	 * the working file. The contents are un-gzip-ed and translated as
+	 * they are read, into a temporary file in the working file's
+	 * directory, which is then renamed over the working file. The
+	 * contents are always read completely, even when the working file
+	 * cannot be written, so that the response may continue to be parsed.
+	 *
+	 * @param item The item that the contents belong to.
+	 * @param target The working file.
+	 * @return True if the working file was written.
+	 */
 	private boolean
-	sendFileContents(final InputStream in)
+	deliverFile( final CVSResponseItem item, final File target )
 		{
-		int			bytes;
-		boolean		result = true;
-		final byte[]		buffer = new byte[ 16 * 1024 ];
+		final int fileSize = this.readFileSize( item );
 
-		for ( ; result ; )
+		if ( fileSize < 0 )
+			return false;
+
+		int translation = TRANSLATE_NONE;
+		final String entriesLine = item.getEntriesLine();
+		if ( entriesLine != null )
 			{
+			final CVSEntry entry = new CVSEntry();
 			try {
-				bytes = in.read( buffer, 0, buffer.length );
+				entry.parseEntryLine( entriesLine, true );
+				translation = CVSCUtilities.computeTranslation( entry );
 				}
-			catch ( final IOException ex )
+			catch ( final ParseException ex )
 				{
-				result = false;
-				this.setReason
-					( "sendFileRaw: ERROR reading input file: "
-						+ ex.getMessage() );
-				CVSLog.logMsg( this.getReason() );
-				break;
+				CVSLog.logMsg
+					( "CVSClient.deliverFile: ERROR parsing entries line '"
+						+ entriesLine + "', " + ex.getMessage() );
 				}
+			}
 
-			if ( bytes < 0 )
-				break;
+		final byte[] newLine = translation == TRANSLATE_ASCII
+			? System.getProperty( "line.separator" ).getBytes
+				( StandardCharsets.ISO_8859_1 )
+			: null;
 
-			try {
-				this.outstream.write( buffer, 0, bytes );
-				}
-			catch ( final IOException ex )
+		final File dir = target.getAbsoluteFile().getParentFile();
+		File tempFile = null;
+		OutputStream out = null;
+		boolean ok = true;
+
+		final CVSInputBuffer.Body body = this.instream.openBody( fileSize );
+
+		try {
+			for ( ; ; )
 				{
-				result = false;
-				this.setReason
-					( "sendFileRaw: ERROR writing file data: "
-						+ ex.getMessage() );
-				CVSLog.logMsg( this.getReason() );
-				break;
+				tempFile = new File
+					( dir, ".#" + target.getName() + '.' + this.generateTempName() );
+				if ( ! tempFile.exists() )
+					break;
 				}
 
-			if ( this.isCanceled() )
-				break;
+			out = new BufferedOutputStream
+				( new FileOutputStream( tempFile ), 32 * 1024 );
 			}
-
-		try { this.outstream.flush(); }
 		catch ( final IOException ex )
 			{
-			result = false;
 			this.setReason
-				( "sendFileRaw: ERROR flushing server connection: "
-					+ ex.getMessage() );
+				( "CVSClient.deliverFile: ERROR opening output file '"
+					+ tempFile + "'\n    " + ex.getMessage() );
 			CVSLog.logMsg( this.getReason() );
+			out = null;
+			ok = false;
 			}
 
-		try { in.close(); }
+		try {
+			if ( ok )
+				{
+				final InputStream in = item.isGZIPed()
+					? new GZIPInputStream( body, 8192 ) : body;
+
+				if ( newLine == null || ( newLine.length == 1 && newLine[0] == '\n' ) )
+					{
+					this.copyBody( in, out );
+					}
+				else
+					{
+					this.copyBodyAscii( in, out, newLine );
+					}
+
+				if ( this.isCanceled() )
+					ok = false;
+				}
+			}
 		catch ( final IOException ex )
 			{
-			result = false;
 			this.setReason
-				( "sendFileRaw: ERROR closing input file: "
-					+ ex.getMessage() );
+				( "CVSClient.deliverFile: ERROR writing '"
+					+ target.getPath() + "'\n    " + ex.getMessage() );
 			CVSLog.logMsg( this.getReason() );
+			ok = false;
 			}
 
-		return result;
-		}
+		if ( out != null )
+			{
+			try { out.close(); }
+			catch ( final IOException ex )
+				{
+				this.setReason
+					( "CVSClient.deliverFile: ERROR closing output file:\n   "
+						+ ex.getMessage() );
+				CVSLog.logMsg( this.getReason() );
+				ok = false;
+				}
+			}
 
-	private boolean
-	sendFileRaw(final CVSEntry entry, final File entryFile, final boolean useGzipFile)
+		// NOTE
+		// The server does not know we stopped reading, so whatever
+		// is left of the contents must be consumed before the next line.
+		//
+		try {
+			if ( ! body.drain() )
+				{
+				this.setReason
+					( "CVSClient.deliverFile: ERROR end of file reading '"
+						+ target.getPath() + '\'');
+				CVSLog.logMsg( this.getReason() );
+				ok = false;
+				}
+			}
+		catch ( final IOException ex )
+			{
+			this.setReason
+				( "CVSClient.deliverFile: ERROR reading file data:\n   "
+					+ ex.getMessage() );
+			CVSLog.logMsg( this.getReason() );
+			ok = false;
+			}
+
+		if ( ok )
+			{
+			try {
+				CVSCUtilities.replaceFile( tempFile, target );
+				}
+			catch ( final IOException ex )
+				{
+				this.setReason
+					( "CVSClient.deliverFile: ERROR renaming '"
+						+ tempFile.getPath() + "' to '"
+						+ target.getPath() + "'\n    " + ex.getMessage() );
+				CVSLog.logMsg( this.getReason() );
+				ok = false;
+				}
+			}
+
+		if ( ! ok && tempFile != null && tempFile.exists() )
+			{
+			tempFile.delete();
+			}
+
+		return ok;
+		}
+
+	private void
+	copyBody( final InputStream in, final OutputStream out )
+			throws IOException
+		{
+		final byte[] buffer = new byte[ 8192 ];
+
+		for ( ; ; )
+			{
+			final int bytes = in.read( buffer, 0, buffer.length );
+			if ( bytes < 0 )
+				break;
+
+			out.write( buffer, 0, bytes );
+
+			if ( this.isCanceled() )
+				break;
+			}
+		}
+
+	/**
+	 * Copies the contents of an ASCII file, replacing each newline
+	 * with the local line separator.
+	 */
+	private void
+	copyBodyAscii( final InputStream in, final OutputStream out, final byte[] newLine )
+			throws IOException
+		{
+		final byte[] buffer = new byte[ 8192 ];
+
+		for ( ; ; )
+			{
+			final int bytes = in.read( buffer, 0, buffer.length );
+			if ( bytes < 0 )
+				break;
+
+			int start = 0;
+			for ( int i = 0 ; i < bytes ; ++i )
+				{
+				if ( buffer[i] == '\n' )
+					{
+					out.write( buffer, start, i - start );
+					out.write( newLine );
+					start = i + 1;
+					}
+				}
+
+			out.write( buffer, start, bytes - start );
+
+			if ( this.isCanceled() )
+				break;
+			}
+		}
+
+	private boolean
+	sendFileContents(final InputStream in)
+		{
+		int			bytes;
+		boolean		result = true;
+		final byte[]		buffer = new byte[ 16 * 1024 ];
+
+		for ( ; result ; )
+			{
+			try {
+				bytes = in.read( buffer, 0, buffer.length );
+				}
+			catch ( final IOException ex )
+				{
+				result = false;
+				this.setReason
+					( "sendFileRaw: ERROR reading input file: "
+						+ ex.getMessage() );
+				CVSLog.logMsg( this.getReason() );
+				break;
+				}
+
+			if ( bytes < 0 )
+				break;
+
+			try {
+				if ( this.pipelining )
+					{
+					this.appendSendBuffer( buffer, 0, bytes );
+					}
+				else
+					{
+					this.outstream.write( buffer, 0, bytes );
+					}
+				}
+			catch ( final IOException ex )
+				{
+				result = false;
+				this.setReason
+					( "sendFileRaw: ERROR writing file data: "
+						+ ex.getMessage() );
+				CVSLog.logMsg( this.getReason() );
+				break;
+				}
+
+			if ( this.isCanceled() )
+				break;
+			}
+
+		if ( ! this.pipelining )
+			{
+			try { this.outstream.flush(); }
+			catch ( final IOException ex )
+				{
+				result = false;
+				this.setReason
+					( "sendFileRaw: ERROR flushing server connection: "
+						+ ex.getMessage() );
+				CVSLog.logMsg( this.getReason() );
+				}
+			}
+
+		try { in.close(); }
+		catch ( final IOException ex )
+			{
+			result = false;
+			this.setReason
+				( "sendFileRaw: ERROR closing input file: "
+					+ ex.getMessage() );
+			CVSLog.logMsg( this.getReason() );
+			}
+
+		return result;
+		}
+
+	/**
+	 * Returns the buffer that uploads are gzip-ed or translated into,
+	 * reset and ready for the next file.
+	 */
+	private CVSUploadBuffer
+	getUploadBuffer()
+		{
+		if ( this.uploadBuffer == null )
+			{
+			this.uploadBuffer = new CVSUploadBuffer
+				( this.uploadBufferLimit,
+					() -> new File( this.generateTempPath() ) );
+			}
+		else
+			{
+			this.uploadBuffer.reset();
+			this.uploadBuffer.setLimit( this.uploadBufferLimit );
+			}
+
+		return this.uploadBuffer;
+		}
+
+	/**
+	 * Sends the size line and the contents of an upload buffer,
+	 * then releases the buffer's contents.
+	 */
+	private boolean
+	sendUploadBuffer( final CVSUploadBuffer upload, final boolean usingGzip )
+		{
+		boolean result = true;
+
+		String sizeStr = Long.toString( upload.size() );
+
+		if ( usingGzip )
+			sizeStr = 'z' + sizeStr;
+
+		result = this.sendLine( sizeStr );
+		if ( result )
+			{
+			try {
+				result = this.sendFileContents( upload.getInputStream() );
+				}
+			catch ( final IOException ex )
+				{
+				result = false;
+				this.setReason
+					( "sendFile: failed re-opening temp file: "
+						+ ex.getMessage() );
+				CVSLog.logMsg( this.getReason() );
+				}
+			}
+		else
+			{
+			this.setReason
+				( "sendFile: ERROR writing file size: "
+					+ this.getReason() );
+			CVSLog.logMsg( this.getReason() );
+			}
+
+		upload.reset();
+
+		return result;
+		}
+
+	private boolean
+	sendFileRaw(final CVSEntry entry, final File entryFile, final boolean useGzipFile)
 		{
 		int			bytes;
-		final long sizeLong;
-		long		fileSize;
-		final long length;
+		final long	fileSize;
 		boolean		result = true;
-		boolean		usingGzip = false;
-		File		gzipFile = null;
+		final boolean	usingGzip;
 		BufferedInputStream	in = null;
 		final byte[]		buffer = new byte[ 16 * 1024 ];
 
@@ -2720,15 +3776,28 @@ class		CVSClient
 
 		usingGzip = useGzipFile && fileSize > MIN_GZIP_SIZE;
 
-		if ( result && usingGzip )
+		if ( result && ! usingGzip )
 			{
-			try {
-				gzipFile = new File( this.generateTempPath() );
+			result = this.sendLine( Long.toString( fileSize ) );
+			if ( result )
+				{
+				result = this.sendFileContents( in );
+				}
+			else
+				{
+				this.setReason
+					( "sendFileRaw: ERROR writing file size: "
+						+ this.getReason() );
+				CVSLog.logMsg( this.getReason() );
+				}
+			}
+		else if ( result )
+			{
+			final CVSUploadBuffer upload = this.getUploadBuffer();
 
+			try {
 				final OutputStream out =
-					new BufferedOutputStream
-						( new GZIPOutputStream
-							( new FileOutputStream( gzipFile ) ) );
+					new GZIPOutputStream( upload, buffer.length );
 
 				for ( ; ; )
 					{
@@ -2744,58 +3813,27 @@ class		CVSClient
 
 				in.close();
 				out.close();
-
-				in = new BufferedInputStream(
-						new FileInputStream( gzipFile ) );
-
-				fileSize = gzipFile.length();
 				}
 			catch ( final IOException ex )
 				{
 				ex.printStackTrace( System.err );
 				result = false;
 				}
-			}
-
-		final long endMillis = System.currentTimeMillis();
 
-		if ( false )
-			System.err.println
-				( "CVSClient.sendFileRaw: TIME = '"
-					+ (endMillis - beginMillis) + "' millis." );
-
-		if ( result )
-			{
-			sizeLong = fileSize;
-			String sizeStr = Long.toString(sizeLong);
+			final long endMillis = System.currentTimeMillis();
 
-			if ( usingGzip )
-				sizeStr = 'z' + sizeStr;
+			if ( false )
+				System.err.println
+					( "CVSClient.sendFileRaw: TIME = '"
+						+ (endMillis - beginMillis) + "' millis." );
 
-			result = this.sendLine( sizeStr );
 			if ( result )
 				{
-				result = this.sendFileContents( in );
+				result = this.sendUploadBuffer( upload, true );
 				}
 			else
 				{
-				this.setReason
-					( "sendFileRaw: ERROR writing file size: "
-						+ this.getReason() );
-				CVSLog.logMsg( this.getReason() );
-				}
-			}
-
-
-		if ( usingGzip && gzipFile != null && gzipFile.exists() )
-			{
-			try { gzipFile.delete(); }
-			catch ( final SecurityException ex )
-				{
-				// we will leave result, since upload has succeeded...
-				CVSLog.logMsg
-					( "sendFileRaw: WARNING deleting temp file: "
-						+ ex.getMessage() );
+				upload.reset();
 				}
 			}
 
@@ -2806,9 +3844,8 @@ class		CVSClient
 	sendFileAscii(final CVSEntry entry, final File entryFile, final boolean gzipFileMode)
 		{
 		String			inLine;
-		final File			tempFile;
 		BufferedReader	in = null;
-		BufferedOutputStream	out = null;
+		OutputStream	out = null;
 		boolean			usingGzip = false;
 		boolean			result = true;
 
@@ -2826,28 +3863,29 @@ class		CVSClient
 			result = false;
 			}
 
-		tempFile = new File( this.generateTempPath() );
+		if ( ! result )
+			return false;
+
+		final CVSUploadBuffer upload = this.getUploadBuffer();
 
 		try {
 			if ( gzipFileMode && entryFile.length() > MIN_GZIP_SIZE )
 				{
 				usingGzip = true;
 				out = new BufferedOutputStream
-						( new GZIPOutputStream
-							( new FileOutputStream( tempFile ) ) );
+						( new GZIPOutputStream( upload ) );
 				}
 			else
 				{
-				out = new BufferedOutputStream
-						( new FileOutputStream( tempFile ) );
+				out = new BufferedOutputStream( upload );
 				}
 			}
 		catch ( final IOException ex )
 			{
 			result = false;
 			this.setReason
-				( "sendFileAscii: can not open output file '"
-					+ tempFile.getPath() + "' " + ex.getMessage() );
+				( "sendFileAscii: can not open output buffer "
+					+ ex.getMessage() );
 			CVSLog.logMsg( this.getReason() );
 			}
 
@@ -2868,85 +3906,51 @@ class		CVSClient
 					{
 					result = false;
 					this.setReason
-						( "sendFileAscii: failed converting into temp file '"
-							+ tempFile.getPath() + "' " + ex.getMessage() );
+						( "sendFileAscii: failed converting file '"
+							+ entryFile.getPath() + "' " + ex.getMessage() );
 					CVSLog.logMsg( this.getReason() );
+					break;
 					}
 
 				if ( this.isCanceled() )
 					break;
 				}
 
-			try { in.close(); }
-			catch ( final IOException ex )
-				{
-				result = false;
-				this.setReason
-					( "sendFileAscii: ERROR closing input file: "
-						+ ex.getMessage() );
-				CVSLog.logMsg( this.getReason() );
-				}
 			try { out.close(); }
 			catch ( final IOException ex )
 				{
 				result = false;
 				this.setReason
-					( "sendFileAscii: ERROR closing input file: "
+					( "sendFileAscii: ERROR closing output buffer: "
 						+ ex.getMessage() );
 				CVSLog.logMsg( this.getReason() );
 				}
+			}
 
-			final long endMillis = System.currentTimeMillis();
-
-			if ( false )
-				System.err.println
-					( "CVSClient.sendFileAscii: TIME = '"
-						+ (endMillis - beginMillis) + "' millis.");
-
-			if ( result )
-				{
-				final Long sizeLong = tempFile.length();
-				String sizeStr = sizeLong.toString();
-
-				if ( usingGzip )
-					sizeStr = 'z' + sizeStr;
-
-				result = this.sendLine( sizeStr );
-				if ( result )
-					{
-					try {
-						final InputStream content =
-							new BufferedInputStream(
-								new FileInputStream( tempFile ) );
-
-						result = this.sendFileContents( content );
-						}
-					catch ( final FileNotFoundException ex )
-						{
-						result = false;
-						this.setReason
-							( "sendFileAscii: failed re-opening temp file '"
-								+ tempFile.getPath() + "' " + ex.getMessage() );
-						CVSLog.logMsg( this.getReason() );
-						}
-					}
-				else
-					{
-					this.setReason
-						( "sendFileRaw: ERROR writing file size: "
-							+ this.getReason() );
-					CVSLog.logMsg( this.getReason() );
-					}
+		try { in.close(); }
+		catch ( final IOException ex )
+			{
+			result = false;
+			this.setReason
+				( "sendFileAscii: ERROR closing input file: "
+					+ ex.getMessage() );
+			CVSLog.logMsg( this.getReason() );
+			}
 
-				try { tempFile.delete(); }
-				catch ( final SecurityException ex )
-					{
-					// we will leave result, since upload has succeeded...
-					CVSLog.logMsg
-						( "sendFileAscii: WARNING deleting temp file: "
-							+ ex.getMessage() );
-					}
-				}
+		final long endMillis = System.currentTimeMillis();
+
+		if ( false )
+			System.err.println
+				( "CVSClient.sendFileAscii: TIME = '"
+					+ (endMillis - beginMillis) + "' millis.");
+
+		if ( result )
+			{
+			result = this.sendUploadBuffer( upload, usingGzip );
+			}
+		else
+			{
+			upload.reset();
 			}
 
 		return result;
@@ -3050,11 +4054,19 @@ class		CVSClient
 		boolean result = true;
 
 		CVSTracer.traceIf( this.tracingTCPData,
-				   "CVSClient.SENDString: '" + string + '\'');
+				   "CVSClient.SENDString: '{}'", string );
 
 		try {
-			this.outstream.write( string.getBytes() );
-			this.outstream.flush();
+			if ( this.pipelining )
+				{
+				final byte[] bytes = string.getBytes();
+				this.appendSendBuffer( bytes, 0, bytes.length );
+				}
+			else
+				{
+				this.outstream.write( string.getBytes() );
+				this.outstream.flush();
+				}
 			}
 		catch ( final IOException ex )
 			{
@@ -3070,11 +4082,18 @@ class		CVSClient
 		boolean result = true;
 
 		CVSTracer.traceIf( this.tracingTCPData,
-				   "CVSClient.SENDLine: '" + line + '\'');
+				   "CVSClient.SENDLine: '{}'", line );
 
 		try {
-			this.outstream.write( (line + '\012').getBytes() );
-			this.outstream.flush();
+			if ( this.pipelining )
+				{
+				this.appendSendLine( line );
+				}
+			else
+				{
+				this.outstream.write( (line + '\012').getBytes() );
+				this.outstream.flush();
+				}
 			}
 		catch ( final IOException ex )
 			{
@@ -3085,42 +4104,215 @@ class		CVSClient
 		return result;
 		}
 
-	private String
-	readLine()
+	/**
+	 * Starts collecting requests in the send buffer instead
+	 * of writing and flushing them one at a time.
+	 */
+	private void
+	beginPipeline()
 		{
-		char ch;
-		StringBuffer line = new StringBuffer( 512 ); // REVIEW Better number? Avg?
+		if ( this.sendBuffer == null )
+			{
+			this.sendBuffer = new byte[ SEND_BUFFER_SIZE ];
+			}
+
+		this.sendCount = 0;
+		this.pipelining = true;
+		}
 
+	/**
+	 * Writes the collected requests to the server, without a flush.
+	 *
+	 * @return True if the requests were written.
+	 */
+	private boolean
+	drainPipeline()
+		{
 		try {
-			for ( ; ; )
+			this.writeSendBuffer();
+			return true;
+			}
+		catch ( final IOException ex )
+			{
+			this.setReason
+				( "ERROR writing requests to server: " + ex.getMessage() );
+			CVSLog.logMsg( this.getReason() );
+			return false;
+			}
+		}
+
+	/**
+	 * Writes the collected requests to the server, flushes them,
+	 * and returns to sending each request as it is made.
+	 *
+	 * @return True if the requests were written and flushed.
+	 */
+	private boolean
+	endPipeline()
+		{
+		this.pipelining = false;
+
+		boolean result = this.drainPipeline();
+
+		if ( result )
+			{
+			try { this.outstream.flush(); }
+			catch ( final IOException ex )
 				{
-				final int inByte = this.instream.read();
-				if ( inByte == -1 )
-					{
-					if ( line.length() == 0 )
-						line = null;
-					break;
-					}
+				result = false;
+				this.setReason
+					( "ERROR flushing requests to server: " + ex.getMessage() );
+				CVSLog.logMsg( this.getReason() );
+				}
+			}
 
-				ch = (char) inByte;
-				if ( ch == '\012' )
+		// Do not hold on to a buffer that a large upload has grown.
+		if ( this.sendBuffer.length > SEND_BUFFER_LIMIT )
+			{
+			this.sendBuffer = null;
+			}
+
+		return result;
+		}
+
+	private void
+	writeSendBuffer()
+		throws IOException
+		{
+		if ( this.sendCount > 0 )
+			{
+			final int count = this.sendCount;
+			this.sendCount = 0;
+			this.outstream.write( this.sendBuffer, 0, count );
+			}
+		}
+
+	private void
+	ensureSendCapacity( final int needed )
+		{
+		final int required = this.sendCount + needed;
+
+		if ( required > this.sendBuffer.length )
+			{
+			int size = this.sendBuffer.length * 2;
+			while ( size < required )
+				size *= 2;
+
+			this.sendBuffer =
+				Arrays.copyOf( this.sendBuffer, size );
+			}
+		}
+
+	private void
+	appendSendBuffer( final byte[] bytes, final int offset, final int length )
+		throws IOException
+		{
+		this.ensureSendCapacity( length );
+
+		System.arraycopy( bytes, offset, this.sendBuffer, this.sendCount, length );
+		this.sendCount += length;
+
+		if ( this.sendCount >= SEND_BUFFER_LIMIT )
+			{
+			this.writeSendBuffer();
+			}
+		}
+
+	private void
+	appendSendLine( final String line )
+		throws IOException
+		{
+		final int length = line.length();
+
+		boolean ascii = ASCII_DEFAULT_ENCODING;
+
+		if ( ascii )
+			{
+			this.ensureSendCapacity( length + 1 );
+
+			final byte[] buf = this.sendBuffer;
+			int count = this.sendCount;
+
+			for ( int i = 0 ; i < length ; ++i )
+				{
+				final char ch = line.charAt( i );
+				if ( ch >= 0x80 )
 					{
+					ascii = false;
 					break;
 					}
 
-				line.append( ch	);
+				buf[ count++ ] = (byte) ch;
+				}
+
+			if ( ascii )
+				{
+				buf[ count++ ] = '\012';
+				this.sendCount = count;
 				}
 			}
+
+		if ( ! ascii )
+			{
+			final byte[] bytes = ( line + '\012' ).getBytes();
+			this.ensureSendCapacity( bytes.length );
+			System.arraycopy( bytes, 0, this.sendBuffer, this.sendCount, bytes.length );
+			this.sendCount += bytes.length;
+			}
+
+		if ( this.sendCount >= SEND_BUFFER_LIMIT )
+			{
+			this.writeSendBuffer();
+			}
+		}
+
+	/**
+	 * Makes a phase of the request in progress the one being timed,
+	 * if the request is being measured.
+	 *
+	 * @return The phase to hand to exitPhase().
+	 */
+	private int
+	enterPhase( final int phase )
+		{
+		return this.metrics == null ? -1 : this.metrics.enterPhase( phase );
+		}
+
+	private void
+	exitPhase( final int previous )
+		{
+		if ( this.metrics != null )
+			{
+			this.metrics.exitPhase( previous );
+			}
+		}
+
+	private String
+	readLine()
+		{
+		String line;
+
+		try {
+			line = this.instream.readLine();
+			}
 		catch ( final IOException ex )
 			{
 			line = null;
 			}
 
-		CVSTracer.traceIf( this.tracingTCPData,
-				   "CVSClient.READLine: '"
-				   + (line==null ? "(null)" : line.toString()) + '\'');
+		if ( line != null && this.metrics != null )
+			{
+			this.metrics.countLine();
+			}
 
-		return line != null ? line.toString() : null;
+		if ( this.tracingTCPData )
+			{
+			CVSTracer.traceIf( true,
+					   "CVSClient.READLine: '"
+					   + (line==null ? "(null)" : line) + '\'');
+			}
+
+		return line;
 		}
 
 	public String
@@ -3136,7 +4328,7 @@ class		CVSClient
 			if ( line == null ) break;
 
 			CVSTracer.traceIf( this.tracingTCPData,
-					   "CVSClient.READLine: '" + line + '\'');
+					   "CVSClient.READLine: '{}'", line );
 
 			result.append( line );
 			result.append('\n');
@@ -3257,13 +4449,66 @@ class		CVSClient
 		throws TransportProtocolException
 		{
 		CVSTracer.traceIf( false,
-				   "CVSClient.verifyHost: host '" + host + "', Pk '" + pk + '\'');
+				   "CVSClient.verifyHost: host '{}', Pk '{}'", host, pk );
 
 		return true;
 		}
 
 	private void
 	establishSSHConnection( final CVSRequest request )
+		throws IOException
+		{
+		this.sshClient = null;
+		this.sshTransportKey = null;
+
+		if ( request.usePooledConnection && this.connectionPool != null )
+			{
+			final String key = CVSConnectionPool.getTransportKey( request );
+
+			this.sshClient = this.connectionPool.acquireTransport( key );
+
+			if ( this.sshClient != null )
+				{
+				CVSTracer.traceIf( request.traceRequest,
+					"CVSClient.establishSSHConnection: reusing transport '{}'", this.sshClient );
+
+				this.sshTransportKey = key;
+
+				try {
+					this.openSSHSession( request );
+					return;
+					}
+				catch ( final IOException ex )
+					{
+					// The transport has gone stale since its last
+					// use. Let go of it, and connect from scratch.
+					CVSTracer.traceIf( request.traceRequest,
+						"CVSClient.establishSSHConnection: pooled transport failed, "
+							+ ex.getMessage() );
+
+					this.sshSession = null;
+					this.releaseSSHTransport();
+					}
+				}
+			}
+
+		this.connectSSHTransport( request );
+
+		if ( request.usePooledConnection && this.connectionPool != null )
+			{
+			final String key = CVSConnectionPool.getTransportKey( request );
+
+			if ( this.connectionPool.registerTransport( key, this.sshClient ) )
+				{
+				this.sshTransportKey = key;
+				}
+			}
+
+		this.openSSHSession( request );
+		}
+
+	private void
+	connectSSHTransport( final CVSRequest request )
 		throws IOException
 		{
 		final SshConnectionProperties properties = new SshConnectionProperties();
@@ -3322,7 +4567,12 @@ class		CVSClient
 
 	//	CVSTracer.traceIf( request.traceRequest,
 	//		"CVSClient.establishSSHConnection: SVR VERSION '" + srvVersionStr + "'" );
+		}
 
+	private void
+	openSSHSession( final CVSRequest request )
+		throws IOException
+		{
 		this.sshSession = this.sshClient.openSessionChannel();
 
 		CVSTracer.traceIf( request.traceRequest,
@@ -3345,6 +4595,9 @@ class		CVSClient
 				"CVSClient.establishSSHConnection: executeCommand( '"
 				+ request.getServerCommand() + "' failed." );
 
+			this.sshSession.close();
+			this.sshSession = null;
+
 			throw new IOException
 				("failed to execute command '"
 				 + request.getServerCommand() + '\'');
@@ -3383,6 +4636,94 @@ class		CVSClient
 		return sock;
 		}
 
+	/**
+	 * Opens, authenticates, and negotiates the valid requests of a
+	 * new session, and hands the session over to the caller without
+	 * executing any command. This is used by CVSConnectionPool to
+	 * prepare spare sessions.
+	 *
+	 * @param request The request describing the server.
+	 * @return The new session, or null if it could not be established.
+	 */
+	CVSConnection
+	openPooledConnection( final CVSRequest request )
+		{
+		this.setReason( "" );
+		this.dirHash = new Hashtable();
+		this.tracingTCPData = request.traceTCPData;
+
+		if ( request.isPServer()
+				&& ( request.getUserName() == null
+					|| request.getPassword() == null ) )
+			{
+			return null;
+			}
+
+		if ( ! this.openServer( request ) )
+			{
+			return null;
+			}
+
+		if ( request.isPServer() && ! this.performLogin( request ) )
+			{
+			CVSLog.logMsg
+				( "CVSClient.openPooledConnection: authentication of '"
+					+ request.getUserName() + '@' + request.getHostName()
+					+ "' failed. " + this.getReason() );
+			this.closeServer();
+			return null;
+			}
+
+		if ( ! this.requestValidRequests( request ) )
+			{
+			this.closeServer();
+			return null;
+			}
+
+		if ( this.capabilityCache != null )
+			this.capabilityCache.rememberCapabilities( request );
+
+		final CVSConnection result =
+			new CVSConnection
+				( CVSConnectionPool.getConnectionKey( request ),
+					this.socket, this.process,
+					this.sshClient, this.sshSession, this.sshTransportKey,
+					this.instream, this.outstream, request );
+
+		this.socket = null;
+		this.process = null;
+		this.sshClient = null;
+		this.sshSession = null;
+		this.sshTransportKey = null;
+		this.instream = null;
+		this.outstream = null;
+		this.serverIsOpen = false;
+
+		return result;
+		}
+
+	/**
+	 * Makes a pooled session our open server connection.
+	 *
+	 * @param conn The session borrowed from the pool.
+	 * @param request The request that will use the session.
+	 */
+	private void
+	attachConnection( final CVSConnection conn, final CVSRequest request )
+		{
+		this.socket = conn.getSocket();
+		this.process = conn.getProcess();
+		this.sshClient = conn.getSshClient();
+		this.sshSession = conn.getSshSession();
+		this.sshTransportKey = conn.getSshTransportKey();
+		this.instream = conn.getInputStream();
+		this.outstream = conn.getOutputStream();
+
+		conn.establishCapabilities( request );
+
+		this.serverIsOpen = true;
+		}
+
 	private boolean
 	openServer( final CVSRequest request )
 		{
@@ -3460,31 +4801,31 @@ class		CVSClient
 			if ( this.sshSession != null )
 				{
 				this.instream =
-					new DataInputStream
+					new CVSInputBuffer
 						( this.sshSession.getInputStream() );
 
 				this.outstream =
-					new DataOutputStream
+					new CVSCountingOutputStream
 						( this.sshSession.getOutputStream() );
 				}
 			else if ( this.process != null )
 				{
 				this.instream =
-					new DataInputStream
+					new CVSInputBuffer
 						( this.process.getInputStream() );
 
 				this.outstream =
-					new DataOutputStream
+					new CVSCountingOutputStream
 						( this.process.getOutputStream() );
 				}
 			else if ( this.socket != null )
 				{
 				this.instream =
-					new DataInputStream
+					new CVSInputBuffer
 						( this.socket.getInputStream() );
 
 				this.outstream =
-					new DataOutputStream
+					new CVSCountingOutputStream
 						( this.socket.getOutputStream() );
 				}
 			else
@@ -3504,6 +4845,8 @@ class		CVSClient
 		catch ( final IOException ex )
 			{
 			this.serverIsOpen = false;
+			this.sshSession = null;
+			this.releaseSSHTransport();
 			final int meth = request.getConnectionMethod();
 
 			this.setReason
@@ -3615,6 +4958,9 @@ class		CVSClient
 		{
 		boolean result = true;
 
+		this.pipelining = false;
+		this.sendCount = 0;
+
 		if ( this.serverIsOpen )
 			{
 			try
@@ -3622,7 +4968,7 @@ class		CVSClient
 				if ( this.sshSession != null )
 					{
 					this.sshSession.close();
-					this.sshClient.disconnect();
+					this.releaseSSHTransport();
 					}
 				else
 					{
@@ -3657,6 +5003,26 @@ class		CVSClient
 
 		}
 
+	/**
+	 * Lets go of our ssh transport. A pooled transport is handed
+	 * back to the pool, any other transport is disconnected.
+	 */
+	private void
+	releaseSSHTransport()
+		{
+		if ( this.sshTransportKey != null )
+			{
+			this.connectionPool.releaseTransport( this.sshTransportKey );
+			this.sshTransportKey = null;
+			}
+		else if ( this.sshClient != null )
+			{
+			this.sshClient.disconnect();
+			}
+
+		this.sshClient = null;
+		}
+
 	// EH-null-ui  Etienne-Hugues Fortin <ehfortin@sympatico.ca>
 	private static
 	class	NullCVSUI
@@ -3670,4 +5036,26 @@ class		CVSClient
 		public void uiDisplayResponse( final CVSResponse response ) { }
 		}
 
+
+	/**
+	 * The result of an asynchronous request. Canceling it cancels
+	 * the request.
+	 */
+	private final class
+	RequestFuture
+		extends CompletableFuture<CVSResponse>
+		{
+		@Override
+		public boolean
+		cancel( final boolean mayInterruptIfRunning )
+			{
+			final boolean result = super.cancel( mayInterruptIfRunning );
+
+			if ( result )
+				CVSClient.this.abortRequest( this );
+
+			return result;
+			}
+		}
+
 	}
@@ -0,0 +1,276 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+package com.ice.cvsc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import com.sshtools.j2ssh.SshClient;
+import com.sshtools.j2ssh.session.SessionChannelClient;
+
+
+/**
+ * Holds an open, authenticated session with a cvs server that
+ * has not yet been used to execute a command. The session has
+ * already completed the 'valid-requests' exchange, so a CVSClient
+ * that attaches it may go directly to sending its request.
+ *
+ * A connection is owned by exactly one party at a time, either
+ * a CVSConnectionPool or a CVSClient, and is never shared.
+ *
+ * @version $Revision: 1.1 $
+ * @see CVSClient
+ * @see CVSConnectionPool
+ */
+
+final
+class		CVSConnection
+	{
+	public static final String		RCS_ID = "$Id: CVSConnection.java,v 1.1 $";
+	public static final String		RCS_REV = "$Revision: 1.1 $";
+
+	private final String				key;
+	private final Socket				socket;
+	private final Process				process;
+	private final SshClient				sshClient;
+	private final SessionChannelClient	sshSession;
+	private final String				sshTransportKey;
+	private final CVSInputBuffer		instream;
+	private final OutputStream			outstream;
+
+	private final String				validRequests;
+	private final boolean				useUnchanged;
+	private final boolean				useDirectory;
+
+	private final long					createdMillis;
+
+
+	CVSConnection(
+			final String key, final Socket socket, final Process process,
+			final SshClient sshClient, final SessionChannelClient sshSession,
+			final String sshTransportKey,
+			final CVSInputBuffer instream, final OutputStream outstream,
+			final CVSRequest request )
+		{
+		super();
+
+		this.key = key;
+		this.socket = socket;
+		this.process = process;
+		this.sshClient = sshClient;
+		this.sshSession = sshSession;
+		this.sshTransportKey = sshTransportKey;
+		this.instream = instream;
+		this.outstream = outstream;
+
+		this.validRequests = request.validRequests;
+		this.useUnchanged = request.useUnchanged;
+		this.useDirectory = request.useDirectory;
+
+		this.createdMillis = System.currentTimeMillis();
+		}
+
+	public String
+	getKey()
+		{
+		return this.key;
+		}
+
+	public Socket
+	getSocket()
+		{
+		return this.socket;
+		}
+
+	public Process
+	getProcess()
+		{
+		return this.process;
+		}
+
+	public SshClient
+	getSshClient()
+		{
+		return this.sshClient;
+		}
+
+	public SessionChannelClient
+	getSshSession()
+		{
+		return this.sshSession;
+		}
+
+	public String
+	getSshTransportKey()
+		{
+		return this.sshTransportKey;
+		}
+
+	public CVSInputBuffer
+	getInputStream()
+		{
+		return this.instream;
+		}
+
+	public OutputStream
+	getOutputStream()
+		{
+		return this.outstream;
+		}
+
+	public long
+	getCreatedMillis()
+		{
+		return this.createdMillis;
+		}
+
+	/**
+	 * Copies the server capabilities learned when this session
+	 * was opened into the request that is about to use it.
+	 *
+	 * @param request The request that will use this session.
+	 */
+	public void
+	establishCapabilities( final CVSRequest request )
+		{
+		request.validRequests = this.validRequests;
+		request.useUnchanged = this.useUnchanged;
+		request.useDirectory = this.useDirectory;
+		}
+
+	/**
+	 * Determines whether or not this session still appears to be
+	 * usable. Since the session has not executed a command, the
+	 * server should not have sent us anything. Any pending data,
+	 * or an end of file, indicates that the server has given up
+	 * on us.
+	 *
+	 * @return True if the session may be used.
+	 */
+	public boolean
+	isHealthy()
+		{
+		try {
+			if ( this.sshSession != null )
+				{
+				return ! this.sshSession.isClosed()
+					&& ! this.sshSession.isRemoteEOF()
+					&& this.instream.available() == 0;
+				}
+			else if ( this.process != null )
+				{
+				return this.process.isAlive()
+					&& this.instream.available() == 0;
+				}
+			else if ( this.socket != null )
+				{
+				if ( this.socket.isClosed()
+						|| ! this.socket.isConnected()
+						|| this.socket.isInputShutdown()
+						|| this.socket.isOutputShutdown() )
+					return false;
+
+				// NOTE
+				// A remote close is only visible by reading. We read
+				// with a very short timeout, where the timeout is the
+				// healthy outcome and anything else means trouble.
+				//
+				final int saveTimeout = this.socket.getSoTimeout();
+				this.socket.setSoTimeout( 1 );
+				try {
+					this.instream.read();
+					return false;
+					}
+				catch ( final SocketTimeoutException ex )
+					{
+					return true;
+					}
+				finally
+					{
+					this.socket.setSoTimeout( saveTimeout );
+					}
+				}
+			}
+		catch ( final IOException ex )
+			{
+			CVSTracer.traceIf( CVSConnectionPool.traceConnections,
+				"CVSConnection.isHealthy: '" + this.key
+					+ "' " + ex.getMessage() );
+			}
+
+		return false;
+		}
+
+	/**
+	 * Closes this session, and releases its ssh transport, if any,
+	 * back to the pool that owns it.
+	 *
+	 * @param pool The pool that lent us the ssh transport, or null.
+	 */
+	public void
+	close( final CVSConnectionPool pool )
+		{
+		try {
+			if ( this.sshSession != null )
+				{
+				this.sshSession.close();
+				if ( pool != null && this.sshTransportKey != null )
+					pool.releaseTransport( this.sshTransportKey );
+				else
+					this.sshClient.disconnect();
+				}
+			else
+				{
+				this.instream.close();
+				this.outstream.close();
+				}
+
+			if ( this.socket != null )
+				{
+				this.socket.close();
+				}
+			else if ( this.process != null )
+				{
+				this.process.destroy();
+				}
+			}
+		catch ( final IOException ex )
+			{
+			CVSLog.logMsg
+				( "CVSConnection.close: '" + this.key
+					+ "' " + ex.getMessage() );
+			}
+		}
+
+	@Override
+	public String
+	toString()
+		{
+		return "[CVSConnection " + this.key + ']';
+		}
+
+	}
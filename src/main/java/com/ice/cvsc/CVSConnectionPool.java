@@ -0,0 +1,661 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+package com.ice.cvsc;
+
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.sshtools.j2ssh.SshClient;
+
+
+/**
+ * Keeps authenticated cvs server sessions alive between requests,
+ * so that a request does not have to pay for the connection setup,
+ * the authentication, and the 'valid-requests' round trip.
+ *
+ * The cvs server protocol allows only one command per session, since
+ * the server keeps the state of a command's 'Directory' and 'Entry'
+ * requests until the session ends. Thus, this pool never hands out a
+ * session that has already executed a command. Instead, as soon as a
+ * request's own session is established, the pool opens and authenticates
+ * a spare session in the background, which the next request to the same
+ * server may borrow. So, while a request is in progress, the server has
+ * two sessions open for it, and the spare then waits on the server, as
+ * a server process, until it is borrowed or has been idle for the idle
+ * timeout. For this reason, the pool keeps no spares unless it is asked
+ * to with setMaxSpares(). For ssh servers, the pool additionally keeps
+ * the authenticated ssh transport, and each session is a new channel on
+ * that transport.
+ *
+ * Sessions are keyed by the connection method, user, host, port,
+ * and cvs root. Sessions are checked for health when they are borrowed,
+ * and sessions and transports that sit idle longer than the idle timeout
+ * are closed.
+ *
+ * @version $Revision: 1.1 $
+ * @see CVSClient
+ * @see CVSConnection
+ */
+
+public
+class		CVSConnectionPool
+	{
+	public static final String		RCS_ID = "$Id: CVSConnectionPool.java,v 1.1 $";
+	public static final String		RCS_REV = "$Revision: 1.1 $";
+
+	public static boolean			traceConnections = false;
+
+	private static final long		DEFAULT_IDLE_TIMEOUT = 60 * 1000;
+	private static final int		DEFAULT_MAX_SPARES = 0;
+
+	private static final CVSConnectionPool	defaultPool = new CVSConnectionPool();
+
+	private boolean					enabled;
+	private long					idleTimeout;
+	private int						maxSpares;
+
+	/**
+	 * Spare sessions, a Vector of CVSConnection per key.
+	 */
+	private final Hashtable<String, Vector<CVSConnection>>	spares;
+
+	/**
+	 * The number of spare sessions being opened, per key.
+	 */
+	private final Hashtable<String, Integer>		pending;
+
+	/**
+	 * Authenticated ssh transports, per transport key.
+	 */
+	private final Hashtable<String, Transport>	transports;
+
+	private ScheduledExecutorService	worker;
+
+
+	/**
+	 * Returns the pool shared by all CVSClients by default.
+	 */
+	public static CVSConnectionPool
+	getDefaultPool()
+		{
+		return CVSConnectionPool.defaultPool;
+		}
+
+	public
+	CVSConnectionPool()
+		{
+		super();
+
+		this.enabled = true;
+		this.idleTimeout = DEFAULT_IDLE_TIMEOUT;
+		this.maxSpares = DEFAULT_MAX_SPARES;
+
+		this.spares = new Hashtable<>();
+		this.pending = new Hashtable<>();
+		this.transports = new Hashtable<>();
+
+		this.worker = null;
+		}
+
+	public synchronized boolean
+	isEnabled()
+		{
+		return this.enabled;
+		}
+
+	/**
+	 * Enables or disables the pool. Disabling the pool closes
+	 * every session and transport that it currently holds.
+	 *
+	 * @param enabled True to keep sessions between requests.
+	 */
+	public void
+	setEnabled( final boolean enabled )
+		{
+		synchronized ( this )
+			{
+			this.enabled = enabled;
+			}
+
+		if ( ! enabled )
+			{
+			this.closeAll();
+			}
+		}
+
+	public synchronized long
+	getIdleTimeout()
+		{
+		return this.idleTimeout;
+		}
+
+	/**
+	 * Sets the number of milliseconds an unused session
+	 * or transport is kept before it is closed.
+	 */
+	public synchronized void
+	setIdleTimeout( final long millis )
+		{
+		this.idleTimeout = millis;
+		}
+
+	public synchronized int
+	getMaxSpares()
+		{
+		return this.maxSpares;
+		}
+
+	/**
+	 * Sets the number of spare sessions kept for each server.
+	 * Each spare session is a waiting server process, so keep
+	 * this number small. Zero, the default, disables the spare
+	 * sessions, but ssh transports are still shared. Spares beyond
+	 * the new number are closed.
+	 */
+	public void
+	setMaxSpares( final int maxSpares )
+		{
+		final Vector<CVSConnection> closing = new Vector<>();
+
+		synchronized ( this )
+			{
+			this.maxSpares = Math.max( 0, maxSpares );
+
+			for ( final Enumeration<String> e = this.spares.keys() ; e.hasMoreElements() ; )
+				{
+				final String key = e.nextElement();
+				final Vector<CVSConnection> v = this.spares.get( key );
+
+				while ( v.size() > this.maxSpares )
+					{
+					closing.addElement( v.remove( v.size() - 1 ) );
+					}
+
+				if ( v.isEmpty() )
+					this.spares.remove( key );
+				}
+			}
+
+		for ( final CVSConnection conn : closing )
+			{
+			conn.close( this );
+			}
+		}
+
+	/**
+	 * Returns the number of spare sessions, for all servers,
+	 * that are waiting to be borrowed.
+	 */
+	public synchronized int
+	getSpareCount()
+		{
+		int result = 0;
+
+		for ( final Vector<CVSConnection> v : this.spares.values() )
+			result += v.size();
+
+		return result;
+		}
+
+	/**
+	 * Returns the key used to pool the sessions for the server
+	 * described by the request.
+	 *
+	 * @param request The request describing the server.
+	 */
+	public static String
+	getConnectionKey( final CVSRequest request )
+		{
+		final String password = request.getPassword();
+
+		return CVSRequest.getConnMethodName( request.getConnectionMethod() )
+			+ ( request.isPServer() ? "+auth" : "" )
+			+ ':' + request.getUserName()
+			+ '@' + request.getHostName()
+			+ ':' + request.getPort()
+			+ ':' + request.getRootDirectory()
+			+ ':' + request.getServerCommand()
+			+ ':' + request.getRshProcess()
+			+ ':' + ( password == null ? 0 : password.hashCode() );
+		}
+
+	/**
+	 * Returns the key used to share the ssh transport for the
+	 * server described by the request.
+	 *
+	 * @param request The request describing the server.
+	 */
+	public static String
+	getTransportKey( final CVSRequest request )
+		{
+		final String password = request.getPassword();
+
+		return "ssh:" + request.getUserName()
+			+ '@' + request.getHostName()
+			+ ':' + request.getPort()
+			+ ':' + ( password == null ? 0 : password.hashCode() );
+		}
+
+	/**
+	 * Borrows a spare session for the given key. The session is
+	 * checked for health, and unhealthy sessions are closed and
+	 * skipped.
+	 *
+	 * @param key The connection key, see getConnectionKey().
+	 * @return The session, or null if there is no usable spare.
+	 */
+	CVSConnection
+	borrow( final String key )
+		{
+		for ( ; ; )
+			{
+			CVSConnection conn = null;
+
+			synchronized ( this )
+				{
+				if ( ! this.enabled )
+					return null;
+
+				final Vector<CVSConnection> v = this.spares.get( key );
+				if ( v != null && ! v.isEmpty() )
+					{
+					conn = v.remove( v.size() - 1 );
+					}
+				}
+
+			if ( conn == null )
+				return null;
+
+			if ( this.isExpired( conn.getCreatedMillis() ) )
+				{
+				CVSTracer.traceIf( traceConnections,
+					"CVSConnectionPool.borrow: expired " + conn );
+				conn.close( this );
+				}
+			else if ( ! conn.isHealthy() )
+				{
+				CVSTracer.traceIf( traceConnections,
+					"CVSConnectionPool.borrow: unhealthy " + conn );
+				conn.close( this );
+				}
+			else
+				{
+				CVSTracer.traceIf( traceConnections,
+					"CVSConnectionPool.borrow: " + conn );
+				return conn;
+				}
+			}
+		}
+
+	/**
+	 * Opens a spare session in the background for the server
+	 * described by the request, unless enough spares are already
+	 * available for it. Only the connection parameters of the
+	 * request are used, and they are copied before this returns.
+	 *
+	 * @param request The request describing the server.
+	 */
+	void
+	replenish( final CVSRequest request )
+		{
+		final String key = getConnectionKey( request );
+
+		synchronized ( this )
+			{
+			if ( ! this.enabled || this.maxSpares < 1 )
+				return;
+
+			final Vector<CVSConnection> v = this.spares.get( key );
+			final Integer p = this.pending.get( key );
+
+			final int count =
+				( v == null ? 0 : v.size() )
+					+ ( p == null ? 0 : p.intValue() );
+
+			if ( count >= this.maxSpares )
+				return;
+
+			this.pending.put( key, ( p == null ? 0 : p.intValue() ) + 1 );
+			}
+
+		final CVSRequest spec = copyConnectionSpec( request );
+
+		this.getWorker().execute
+			( () -> this.openSpare( key, spec ) );
+		}
+
+	private void
+	openSpare( final String key, final CVSRequest spec )
+		{
+		CVSConnection conn = null;
+
+		try {
+			final CVSClient client =
+				new CVSClient( spec.getHostName(), spec.getPort() );
+
+			client.setConnectionPool( this );
+
+			conn = client.openPooledConnection( spec );
+			}
+		catch ( final RuntimeException ex )
+			{
+			CVSLog.traceMsg
+				( ex, "CVSConnectionPool.openSpare: '" + key + '\'' );
+			}
+
+		synchronized ( this )
+			{
+			final Integer p = this.pending.get( key );
+			if ( p == null || p.intValue() <= 1 )
+				this.pending.remove( key );
+			else
+				this.pending.put( key, p.intValue() - 1 );
+
+			Vector<CVSConnection> v = this.spares.get( key );
+
+			if ( conn != null && this.enabled
+					&& ( v == null ? 0 : v.size() ) < this.maxSpares )
+				{
+				if ( v == null )
+					{
+					v = new Vector<>();
+					this.spares.put( key, v );
+					}
+
+				v.addElement( conn );
+				conn = null;
+				}
+			}
+
+		if ( conn != null )
+			{
+			conn.close( this );
+			}
+		}
+
+	/**
+	 * Returns the authenticated ssh transport for the given key,
+	 * if the pool holds one, and marks it in use. The caller must
+	 * call releaseTransport() when its session is closed.
+	 *
+	 * @param key The transport key, see getTransportKey().
+	 * @return The transport, or null if there is none.
+	 */
+	SshClient
+	acquireTransport( final String key )
+		{
+		Transport t;
+
+		synchronized ( this )
+			{
+			if ( ! this.enabled )
+				return null;
+
+			t = this.transports.get( key );
+			if ( t == null )
+				return null;
+
+			if ( t.client.isConnected() && t.client.isAuthenticated() )
+				{
+				t.users++;
+				return t.client;
+				}
+
+			if ( t.users > 0 )
+				return null;
+
+			this.transports.remove( key );
+			}
+
+		t.client.disconnect();
+		return null;
+		}
+
+	/**
+	 * Adds a newly authenticated ssh transport to the pool. The
+	 * transport is marked in use by the caller. If the pool already
+	 * has a transport for this key, the caller keeps ownership of
+	 * its transport.
+	 *
+	 * @param key The transport key, see getTransportKey().
+	 * @param client The authenticated transport.
+	 * @return True if the pool took the transport.
+	 */
+	synchronized boolean
+	registerTransport( final String key, final SshClient client )
+		{
+		if ( ! this.enabled || this.transports.containsKey( key ) )
+			return false;
+
+		final Transport t = new Transport( client );
+		t.users = 1;
+		this.transports.put( key, t );
+
+		return true;
+		}
+
+	/**
+	 * Marks the caller's use of an ssh transport complete.
+	 *
+	 * @param key The transport key, see getTransportKey().
+	 */
+	void
+	releaseTransport( final String key )
+		{
+		SshClient orphan = null;
+
+		synchronized ( this )
+			{
+			final Transport t = this.transports.get( key );
+			if ( t == null )
+				return;
+
+			t.users--;
+			t.lastUsedMillis = System.currentTimeMillis();
+
+			if ( ! this.enabled && t.users < 1 )
+				{
+				this.transports.remove( key );
+				orphan = t.client;
+				}
+			}
+
+		if ( orphan != null )
+			{
+			orphan.disconnect();
+			}
+		}
+
+	/**
+	 * Closes every spare session and unused ssh transport that has
+	 * been idle longer than the idle timeout. This is called
+	 * periodically while the pool holds anything.
+	 */
+	public void
+	evictIdle()
+		{
+		final Vector<CVSConnection> closing = new Vector<>();
+		final Vector<SshClient> disconnecting = new Vector<>();
+
+		synchronized ( this )
+			{
+			for ( final Enumeration<String> e = this.spares.keys() ; e.hasMoreElements() ; )
+				{
+				final String key = e.nextElement();
+				final Vector<CVSConnection> v = this.spares.get( key );
+
+				for ( int i = v.size() - 1 ; i >= 0 ; --i )
+					{
+					final CVSConnection conn = v.elementAt( i );
+					if ( this.isExpired( conn.getCreatedMillis() ) )
+						{
+						v.removeElementAt( i );
+						closing.addElement( conn );
+						}
+					}
+
+				if ( v.isEmpty() )
+					this.spares.remove( key );
+				}
+
+			for ( final Enumeration<String> e = this.transports.keys() ; e.hasMoreElements() ; )
+				{
+				final String key = e.nextElement();
+				final Transport t = this.transports.get( key );
+
+				if ( t.users < 1 && this.isExpired( t.lastUsedMillis ) )
+					{
+					this.transports.remove( key );
+					disconnecting.addElement( t.client );
+					}
+				}
+			}
+
+		for ( final CVSConnection conn : closing )
+			{
+			CVSTracer.traceIf( traceConnections,
+				"CVSConnectionPool.evictIdle: " + conn );
+			conn.close( this );
+			}
+
+		for ( final SshClient client : disconnecting )
+			{
+			client.disconnect();
+			}
+		}
+
+	/**
+	 * Closes every spare session and unused ssh transport.
+	 * Transports that are in use are closed when released.
+	 */
+	public void
+	closeAll()
+		{
+		final Vector<CVSConnection> closing = new Vector<>();
+		final Vector<SshClient> disconnecting = new Vector<>();
+
+		synchronized ( this )
+			{
+			for ( final Vector<CVSConnection> v : this.spares.values() )
+				{
+				closing.addAll( v );
+				}
+
+			this.spares.clear();
+
+			for ( final Enumeration<String> e = this.transports.keys() ; e.hasMoreElements() ; )
+				{
+				final String key = e.nextElement();
+				final Transport t = this.transports.get( key );
+
+				if ( t.users < 1 )
+					{
+					this.transports.remove( key );
+					disconnecting.addElement( t.client );
+					}
+				}
+			}
+
+		for ( final CVSConnection conn : closing )
+			{
+			conn.close( this );
+			}
+
+		for ( final SshClient client : disconnecting )
+			{
+			client.disconnect();
+			}
+		}
+
+	private synchronized boolean
+	isExpired( final long millis )
+		{
+		return System.currentTimeMillis() - millis > this.idleTimeout;
+		}
+
+	private synchronized ScheduledExecutorService
+	getWorker()
+		{
+		if ( this.worker == null )
+			{
+			final ThreadFactory factory = runner ->
+				{
+				final Thread t = new Thread( runner, "CVSConnectionPool" );
+				t.setDaemon( true );
+				return t;
+				};
+
+			this.worker =
+				Executors.newSingleThreadScheduledExecutor( factory );
+
+			final long period = Math.max( 1000, this.idleTimeout / 2 );
+
+			this.worker.scheduleWithFixedDelay
+				( this::evictIdle, period, period, TimeUnit.MILLISECONDS );
+			}
+
+		return this.worker;
+		}
+
+	private static CVSRequest
+	copyConnectionSpec( final CVSRequest request )
+		{
+		final CVSRequest spec = new CVSRequest();
+
+		spec.setHostName( request.getHostName() );
+		spec.setPort( request.getPort() );
+		spec.setConnectionMethod( request.getConnectionMethod() );
+		spec.setPServer( request.isPServer() );
+		spec.setUserName( request.getUserName() );
+		spec.setPassword( request.getPassword() );
+		spec.setRootDirectory( request.getRootDirectory() );
+		spec.setServerCommand( request.getServerCommand() );
+		spec.setRshProcess( request.getRshProcess() );
+		spec.usePooledConnection = true;
+
+		return spec;
+		}
+
+	private static final
+	class		Transport
+		{
+		private final SshClient	client;
+		private int				users;
+		private long			lastUsedMillis;
+
+		Transport( final SshClient client )
+			{
+			this.client = client;
+			this.users = 0;
+			this.lastUsedMillis = System.currentTimeMillis();
+			}
+		}
+
+	}
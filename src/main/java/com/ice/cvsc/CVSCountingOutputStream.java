@@ -0,0 +1,95 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * Counts the bytes written to the stream it wraps. CVSClient writes
+ * to the server through one of these, so that the bytes a request
+ * sends can be measured. When the request compresses its stream, a
+ * second one above the compressor counts the bytes before compression.
+ *
+ * This class is not thread safe.
+ *
+ * @version $Revision: 1.1 $
+ * @see CVSClient
+ * @see CVSRequestMetrics
+ */
+
+final
+class		CVSCountingOutputStream
+extends		FilterOutputStream
+	{
+	public static final String		RCS_ID = "$Id: CVSCountingOutputStream.java,v 1.1 $";
+	public static final String		RCS_REV = "$Revision: 1.1 $";
+
+	private long					count;
+
+
+	CVSCountingOutputStream( final OutputStream out )
+		{
+		super( out );
+
+		this.count = 0;
+		}
+
+	/**
+	 * Returns the number of bytes written since the stream was created.
+	 */
+	public long
+	getCount()
+		{
+		return this.count;
+		}
+
+	@Override
+	public void
+	write( final int b )
+		throws IOException
+		{
+		this.out.write( b );
+		++this.count;
+		}
+
+	/**
+	 * Unlike FilterOutputStream, we hand the whole array to the
+	 * stream we wrap, rather than writing it one byte at a time.
+	 */
+	@Override
+	public void
+	write( final byte[] bytes, final int offset, final int length )
+		throws IOException
+		{
+		this.out.write( bytes, offset, length );
+		this.count += length;
+		}
+
+	}
+
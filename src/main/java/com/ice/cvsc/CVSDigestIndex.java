@@ -0,0 +1,365 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Remembers the size, modification time and MD5 digest of the
+ * working files as they were last received from, or committed to,
+ * the server. This lets a file whose modification time has changed,
+ * because a build tool or an editor touched it, be recognized as
+ * unchanged when its contents still match, so that it is not sent
+ * to the server as 'Modified'.
+ *
+ * The index of each directory is kept in the file 'Digests', in the
+ * directory's 'CVS' administration directory. The file has one line
+ * for each working file, in the format 'name/size/mtime/digest'.
+ * Directories are loaded when they are first needed, and only the
+ * directories that have changed are written by save(), each to a
+ * temporary file that then replaces its 'Digests' file.
+ *
+ * @version $Revision: 1.1 $
+ * @see CVSProject#setUsesDigestIndex
+ */
+
+public
+class		CVSDigestIndex
+	{
+	public static final String		RCS_ID = "$Id: CVSDigestIndex.java,v 1.1 $";
+	public static final String		RCS_REV = "$Revision: 1.1 $";
+
+	public static final String		DIGESTS_FILE_NAME = "Digests";
+
+	private static final char[]		HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final Map<File, DirDigests>		dirTable;
+
+
+	public CVSDigestIndex()
+		{
+		this.dirTable = new HashMap<>();
+		}
+
+	/**
+	 * Determines if a working file still has the contents that were
+	 * last recorded for it. The file is only read when its size is
+	 * unchanged and its modification time is not the recorded one.
+	 * When the contents match, the new modification time is recorded,
+	 * so the file is not read again until it is touched again.
+	 *
+	 * The file is read without holding the index's lock, so that
+	 * the status scan can check many files at the same time.
+	 *
+	 * @param localFile The working file.
+	 * @return True if the file has its recorded contents.
+	 */
+	public boolean
+	isUnchanged( final File localFile )
+		{
+		final String name = localFile.getName();
+		final Digest rec;
+
+		synchronized ( this )
+			{
+			rec = this.getDirDigests( localFile ).table.get( name );
+			}
+
+		if ( rec == null || rec.size != localFile.length() )
+			return false;
+
+		final long mtime = localFile.lastModified();
+		if ( rec.mtime == mtime )
+			return true;
+
+		final String digest = computeDigest( localFile );
+		if ( digest == null || ! digest.equals( rec.digest ) )
+			return false;
+
+		synchronized ( this )
+			{
+			final DirDigests dir = this.getDirDigests( localFile );
+
+			// Unless the file was recorded again while we read it.
+			if ( dir.table.get( name ) == rec )
+				{
+				dir.table.put( name, new Digest( rec.size, mtime, rec.digest ) );
+				dir.isDirty = true;
+				}
+			}
+
+		return true;
+		}
+
+	/**
+	 * Records the current contents of a working file, which are
+	 * the contents the server has for the file's revision.
+	 *
+	 * @param localFile The working file.
+	 */
+	public void
+	record( final File localFile )
+		{
+		// Stat before reading, so that a change made while the file
+		// is read leaves a time that does not match, and is checked.
+		final long size = localFile.length();
+		final long mtime = localFile.lastModified();
+
+		final String digest = computeDigest( localFile );
+		if ( digest == null )
+			{
+			this.forget( localFile );
+			return;
+			}
+
+		synchronized ( this )
+			{
+			final DirDigests dir = this.getDirDigests( localFile );
+			dir.table.put( localFile.getName(),
+				new Digest( size, mtime, digest ) );
+			dir.isDirty = true;
+			}
+		}
+
+	/**
+	 * Forgets a working file, whose contents no longer
+	 * match what the server has.
+	 *
+	 * @param localFile The working file.
+	 */
+	public synchronized void
+	forget( final File localFile )
+		{
+		final DirDigests dir = this.getDirDigests( localFile );
+		if ( dir.table.remove( localFile.getName() ) != null )
+			{
+			dir.isDirty = true;
+			}
+		}
+
+	/**
+	 * Writes the index of every directory that has changed.
+	 *
+	 * @return True if all of the writes succeeded.
+	 */
+	public synchronized boolean
+	save()
+		{
+		boolean result = true;
+
+		for ( final Map.Entry<File, DirDigests> dirEntry : this.dirTable.entrySet() )
+			{
+			final DirDigests dir = dirEntry.getValue();
+			if ( dir.isDirty )
+				{
+				if ( writeDigestsFile( dirEntry.getKey(), dir ) )
+					dir.isDirty = false;
+				else
+					result = false;
+				}
+			}
+
+		return result;
+		}
+
+	private DirDigests
+	getDirDigests( final File localFile )
+		{
+		final File dirF = localFile.getAbsoluteFile().getParentFile();
+
+		DirDigests dir = this.dirTable.get( dirF );
+		if ( dir == null )
+			{
+			dir = readDigestsFile( dirF );
+			this.dirTable.put( dirF, dir );
+			}
+
+		return dir;
+		}
+
+	private static File
+	getDigestsFile( final File dirF )
+		{
+		return new File( new File( dirF, "CVS" ), DIGESTS_FILE_NAME );
+		}
+
+	private static DirDigests
+	readDigestsFile( final File dirF )
+		{
+		final DirDigests result = new DirDigests();
+		final File digestsFile = getDigestsFile( dirF );
+
+		if ( ! digestsFile.exists() )
+			return result;
+
+		try ( BufferedReader in =
+				new BufferedReader( new FileReader( digestsFile ) ) )
+			{
+			for ( String line ; (line = in.readLine()) != null ; )
+				{
+				final String[] fields = line.split( "/" );
+				if ( fields.length != 4 )
+					continue;
+
+				try {
+					result.table.put( fields[0],
+						new Digest( Long.parseLong( fields[1] ),
+							Long.parseLong( fields[2] ), fields[3] ) );
+					}
+				catch ( final NumberFormatException ex )
+					{
+					// Skip the line, so the file is simply rehashed.
+					}
+				}
+			}
+		catch ( final IOException ex )
+			{
+			CVSLog.logMsg
+				( "CVSDigestIndex.readDigestsFile: failed reading '"
+					+ digestsFile.getPath() + "' - " + ex.getMessage() );
+			result.table.clear();
+			}
+
+		return result;
+		}
+
+	private static boolean
+	writeDigestsFile( final File dirF, final DirDigests dir )
+		{
+		final File digestsFile = getDigestsFile( dirF );
+
+		// The directory may have been pruned or released.
+		if ( ! digestsFile.getParentFile().isDirectory() )
+			return true;
+
+		final File tempFile = new File
+			( digestsFile.getParentFile(), DIGESTS_FILE_NAME + ".tmp" );
+
+		try {
+			try ( BufferedWriter out =
+					new BufferedWriter( new FileWriter( tempFile ) ) )
+				{
+				for ( final Map.Entry<String, Digest> rec : dir.table.entrySet() )
+					{
+					final Digest digest = rec.getValue();
+					out.write( rec.getKey() + '/' + digest.size + '/'
+						+ digest.mtime + '/' + digest.digest );
+					out.newLine();
+					}
+				}
+
+			CVSCUtilities.replaceFile( tempFile, digestsFile );
+			}
+		catch ( final IOException ex )
+			{
+			CVSLog.logMsg
+				( "CVSDigestIndex.writeDigestsFile: failed writing '"
+					+ digestsFile.getPath() + "' - " + ex.getMessage() );
+			tempFile.delete();
+			return false;
+			}
+
+		return true;
+		}
+
+	/**
+	 * Computes the MD5 digest of a file's contents.
+	 *
+	 * @return The digest in hex, or null if the file could not be read.
+	 */
+	static String
+	computeDigest( final File localFile )
+		{
+		final MessageDigest md;
+
+		try {
+			md = MessageDigest.getInstance( "MD5" );
+			}
+		catch ( final NoSuchAlgorithmException ex )
+			{
+			throw new IllegalStateException( "MD5 is not available", ex );
+			}
+
+		try ( InputStream in = new FileInputStream( localFile ) )
+			{
+			final byte[] buf = new byte[ 32 * 1024 ];
+			for ( int n ; (n = in.read( buf )) > 0 ; )
+				{
+				md.update( buf, 0, n );
+				}
+			}
+		catch ( final IOException ex )
+			{
+			return null;
+			}
+
+		final byte[] digest = md.digest();
+		final char[] hex = new char[ digest.length * 2 ];
+		for ( int i = 0 ; i < digest.length ; ++i )
+			{
+			hex[ i * 2 ] = HEX_DIGITS[ ( digest[i] >> 4 ) & 0x0F ];
+			hex[ i * 2 + 1 ] = HEX_DIGITS[ digest[i] & 0x0F ];
+			}
+
+		return new String( hex );
+		}
+
+	private static final
+	class		DirDigests
+		{
+		private final Map<String, Digest>	table = new HashMap<>();
+		private boolean						isDirty;
+		}
+
+	private static final
+	class		Digest
+		{
+		private final long		size;
+		private final long		mtime;
+		private final String	digest;
+
+		Digest( final long size, final long mtime, final String digest )
+			{
+			this.size = size;
+			this.mtime = mtime;
+			this.digest = digest;
+			}
+		}
+
+	}
+
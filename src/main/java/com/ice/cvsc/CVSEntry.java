@@ -29,6 +29,7 @@ import java.text.ParseException;
 import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
 import java.util.Vector;
+import java.util.function.Supplier;
 
 /**
  * CVSEntry implements the concept of a CVS Entry. Traditionally,
@@ -55,14 +56,40 @@ class		CVSEntry
 	public static final String		RCS_REV = "$Revision: 2.11 $";
 
 	/**
-	 * True if this entry is valid.
+	 * The entry's state flags, packed into one int. Large projects
+	 * hold hundreds of thousands of entries, so each of them is
+	 * kept as small as we can manage.
 	 */
-	private boolean			valid;
+	private static final int		F_VALID = 0x01;
+	private static final int		F_DIRECTORY = 0x02;
+	private static final int		F_NO_USER_FILE = 0x04;
+	private static final int		F_NEW_USER_FILE = 0x08;
+	private static final int		F_TO_BE_REMOVED = 0x10;
+	private static final int		F_DIRTY = 0x20;
 
 	/**
-	 * True if this entry is a directory entry.
+	 * If this is set, then when the getServerEntryLine() is
+	 * called, we will ignore the file's modification status
+	 * and mark the entry as "/modified/". This was added to
+	 * support jcvsweb, but is currently unused.
 	 */
-	private boolean			isDir;
+	private static final int		F_FORCE_MODIFIED = 0x40;
+
+	/**
+	 * If this is set, then when the getServerEntryLine() is
+	 * called, we will ignore the "exists" flag and pretend
+	 * that the file does NOT exist. This was added to support
+	 * jcvsweb's need for updates of existing files for viewing
+	 * purposes.
+	 */
+	private static final int		F_FORCE_NO_EXISTENCE = 0x80;
+
+	/**
+	 * The value of timeMillis when the entry has no timestamp.
+	 */
+	private static final long		NO_TIME = Long.MIN_VALUE;
+
+	private int				flags;
 
 	/**
 	 * If this entry is a directory entry, then this is
@@ -70,6 +97,12 @@ class		CVSEntry
 	 */
 	private CVSEntryVector	entryList;
 
+	/**
+	 * If this is a directory entry whose entry list has not been
+	 * read yet, this reads it, the first time the list is needed.
+	 */
+	private volatile Supplier<CVSEntryVector>	entryListLoader;
+
 	/**
 	 * The full path of the repository as it comes from the
 	 * 'Repository' file in the 'CVS' administration directory.
@@ -83,123 +116,121 @@ class		CVSEntry
 	 */
 	private String			localDirectory;
 
-	private boolean			isNoUserFile;
-	private boolean			isNewUserFile;
-	private boolean			isToBeRemoved;
-	private boolean			isDirty;
+	private CVSMode			mode;
 
 	/**
-	 * If this is set, then when the getServerEntryLine() is
-	 * called, we will ignore the file's modification status
-	 * and mark the entry as "/modified/". This was added to
-	 * support jcvsweb, but is currently unused.
+	 * The entry's timestamp, or NO_TIME if it has none, or if
+	 * the timestamp could not be parsed.
 	 */
-	private boolean			forceModified;
+	private long			timeMillis;
 
 	/**
-	 * If this is set, then when the getServerEntryLine() is
-	 * called, we will ignore the "exists" flag and pretend
-	 * that the file does NOT exist. This was added to support
-	 * jcvsweb's need for updates of existing files for viewing
-	 * purposes.
+	 * The timestamp exactly as it was given. This is only kept
+	 * when it is not what formatting timeMillis would produce,
+	 * and is null otherwise.
 	 */
-	private boolean			forceNoExistence;
-
-	private CVSMode			mode;
-
-	private CVSTimestamp	tsCache;
-	private CVSTimestamp	cfCache;
+	private String			timestamp;
 
 	private String			name;
 	private String			version;
-	private String			timestamp;
 	private String			conflict;
 	private String			options;
 	private String			tag;
 	private String			date;
 
-	private final Vector			childListeners;
+	/**
+	 * The child event listeners, which are only created when the
+	 * first listener is added, since few entries ever have one.
+	 */
+	private Vector			childListeners;
 
 
 	public CVSEntry()
 		{
 		super();
 
-		this.valid = false;
-		this.isDir = false;
+		this.flags = 0;
 
 		this.repository = null;
 		this.localDirectory = null;
 		this.entryList = null;
-
-		this.isNoUserFile = false;
-		this.isNewUserFile = false;
-		this.isToBeRemoved = false;
-		this.isDirty = false;
-		this.forceModified = false;
-		this.forceNoExistence = false;
+		this.entryListLoader = null;
 
 		this.mode = null;
-		this.tsCache = null;
-		this.cfCache = null;
+		this.timeMillis = NO_TIME;
+		this.timestamp = null;
 
 		this.name = "";
 		this.version = "";
-		this.timestamp = "";
 		this.conflict = null;
 		this.options = null;
 		this.tag = null;
 		this.date = null;
 
-		this.childListeners = new Vector();
+		this.childListeners = null;
+		}
+
+	private boolean
+	hasFlag( final int flag )
+		{
+		return ( this.flags & flag ) != 0;
+		}
+
+	private void
+	setFlag( final int flag, final boolean state )
+		{
+		if ( state )
+			this.flags |= flag;
+		else
+			this.flags &= ~flag;
 		}
 
 	public boolean
 	isValid()
 		{
-		return this.valid;
+		return this.hasFlag( F_VALID );
 		}
 
 	public void
 	setValid( final boolean valid )
 		{
-		this.valid = valid;
+		this.setFlag( F_VALID, valid );
 		}
 
 	public boolean
 	isDirty()
 		{
-		return this.isDirty;
+		return this.hasFlag( F_DIRTY );
 		}
 
 	public void
 	setDirty( final boolean dirty )
 		{
-		this.isDirty = dirty;
+		this.setFlag( F_DIRTY, dirty );
 		}
 
 	public boolean
 	isForceModified()
 		{
-		return this.forceModified;
+		return this.hasFlag( F_FORCE_MODIFIED );
 		}
 
 	public void
 	setForceModified( final boolean forceModified )
 		{
-		this.forceModified = forceModified;
+		this.setFlag( F_FORCE_MODIFIED, forceModified );
 		}
 
 	public boolean
 	isForceNoExistence()
 		{
-		return this.forceNoExistence;
+		return this.hasFlag( F_FORCE_NO_EXISTENCE );
 		}
 
 	public void
 	setForceNoExistence( final boolean forceNoExistence )
 		{
-		this.forceNoExistence = forceNoExistence;
+		this.setFlag( F_FORCE_NO_EXISTENCE, forceNoExistence );
 		}
 
 	public String
@@ -223,8 +254,12 @@ class		CVSEntry
 	public void
 	setRepository( final String repository )
 		{
-		this.repository =
+		final String repos =
 			CVSCUtilities.stripFinalSlash( repository );
+
+		// Every entry in a directory has the same repository and
+		// local directory, so these are shared rather than copied.
+		this.repository = repos == null ? null : repos.intern();
 		}
 
 	// 'LocalDirectory' here is in the sense of the
@@ -238,8 +273,10 @@ class		CVSEntry
 	public void
 	setLocalDirectory( final String directory )
 		{
-		this.localDirectory =
+		final String localDir =
 			CVSCUtilities.ensureFinalSlash( directory );
+
+		this.localDirectory = localDir == null ? null : localDir.intern();
 		}
 
 	public String
@@ -302,15 +339,16 @@ class		CVSEntry
 	public boolean
 	isDirectory()
 		{
-		return this.isDir;
+		return this.hasFlag( F_DIRECTORY );
 		}
 
 	public void
 	appendEntry( final CVSEntry entry )
 		{
-		this.entryList.appendEntry( entry );
+		final CVSEntryVector list = this.getEntryList();
+		list.appendEntry( entry );
 		this.fireChildAddedEvent
-			( this.new ChildEvent( this.entryList.size() - 1, entry ) );
+			( this.new ChildEvent( list.size() - 1, entry ) );
 		}
 
 	public void
@@ -318,13 +356,14 @@ class		CVSEntry
 		{
 		boolean result = false;
 
-		final int index = this.entryList.indexOf( entry );
+		final CVSEntryVector list = this.getEntryList();
+		final int index = list.indexOf( entry );
 		if ( index != -1 )
 			{
 			result = true;
-			this.isDirty = true;
-			final CVSEntry child = this.entryList.entryAt( index );
-			this.entryList.removeElementAt( index );
+			this.setFlag( F_DIRTY, true );
+			final CVSEntry child = list.entryAt( index );
+			list.removeElementAt( index );
 			this.fireChildRemovedEvent
 				( this.new ChildEvent( index, child ) );
 			}
@@ -334,23 +373,14 @@ class		CVSEntry
 	public boolean
 	removeEntry( final String entryName )
 		{
-		boolean result = false;
+		final CVSEntry entry = this.getEntryList().locateEntry( entryName );
 
-		for ( int i = 0, sz = this.entryList.size() ; i < sz ; ++i )
-			{
-			final CVSEntry entry = this.entryList.entryAt(i);
-			if ( entryName.equals( entry.getName() ) )
-				{
-				result = true;
-				this.isDirty = true;
-				this.entryList.removeElementAt( i );
-				this.fireChildRemovedEvent
-					( this.new ChildEvent( i, entry ) );
-				break;
-				}
-			}
+		if ( entry == null )
+			return false;
 
-		return result;
+		this.removeEntry( entry );
+
+		return true;
 		}
 
 	public void
@@ -358,9 +388,10 @@ class		CVSEntry
 		{
 		if ( this.isDirectory() )
 			{
-			if ( this.entryList != null )
+			final CVSEntryVector list = this.getEntryList();
+			if ( list != null )
 				{
-				this.entryList.removeAllEntries();
+				list.removeAllEntries();
 				this.fireChildRemovedEvent
 					( this.new ChildEvent( -1, null ) );
 				}
@@ -370,15 +401,68 @@ class		CVSEntry
 	public CVSEntry
 	locateEntry( final String name )
 		{
-		return this.entryList.locateEntry( name );
+		return this.getEntryList().locateEntry( name );
 		}
 
+	/**
+	 * Returns the entry list of a directory entry, reading it
+	 * first if it has not been read yet.
+	 */
 	public CVSEntryVector
 	getEntryList()
 		{
+		if ( this.entryListLoader != null )
+			{
+			this.loadEntryList();
+			}
+
 		return this.entryList;
 		}
 
+	private synchronized void
+	loadEntryList()
+		{
+		final Supplier<CVSEntryVector> loader = this.entryListLoader;
+		if ( loader != null )
+			{
+			CVSEntryVector list = loader.get();
+			if ( list == null )
+				list = new CVSEntryVector();
+
+			this.entryList = list;
+			this.entryListLoader = null;
+			}
+		}
+
+	/**
+	 * Determines if this entry's entry list has been read. Only
+	 * a directory whose list has been read can have changes in it.
+	 */
+	public boolean
+	isEntryListLoaded()
+		{
+		return this.entryListLoader == null;
+		}
+
+	/**
+	 * Makes this entry a directory entry, whose entry list is read
+	 * by the loader the first time the list is needed. The loader
+	 * may return null, if the list could not be read, in which case
+	 * the directory is empty.
+	 *
+	 * @param loader Reads the directory's entry list.
+	 */
+	void
+	setDirectoryEntryLoader( final Supplier<CVSEntryVector> loader )
+		{
+		if ( loader != null )
+			{
+			this.setFlag( F_DIRECTORY, true );
+			this.entryList = null;
+			this.entryListLoader = loader;
+			}
+		}
+
 	/**
 	 * This method will make this entry a directory entry
 	 * and establish its entry list with the list passed
@@ -392,8 +476,9 @@ class		CVSEntry
 		{
 		if ( entryList != null )
 			{
-			this.isDir = true;
+			this.setFlag( F_DIRECTORY, true );
 			this.entryList = entryList;
+			this.entryListLoader = null;
 			}
 		}
 
@@ -406,36 +491,37 @@ class		CVSEntry
 	public void
 	setVersion( final String version )
 		{
-		this.isNoUserFile = false;
-		this.isNewUserFile = false;
-		this.isToBeRemoved = false;
+		this.setFlag( F_NO_USER_FILE, false );
+		this.setFlag( F_NEW_USER_FILE, false );
+		this.setFlag( F_TO_BE_REMOVED, false );
 
+		// Revision numbers repeat across a project, so they are shared.
 		if ( version == null
 		     || version.isEmpty())
 			{
-			this.isNoUserFile = true;
+			this.setFlag( F_NO_USER_FILE, true );
 			this.version = "";
 			}
 		else if (!version.isEmpty() && version.charAt(0) == '-')
 			{
-			this.isToBeRemoved = true;
-			this.version = version.substring( 1 );
+			this.setFlag( F_TO_BE_REMOVED, true );
+			this.version = version.substring( 1 ).intern();
 			}
 		else if (!version.isEmpty() && version.charAt(0) == '0')  // that's a zero
 			{
-			this.isNewUserFile = true;
-			this.version = version.substring( 1 );
+			this.setFlag( F_NEW_USER_FILE, true );
+			this.version = version.substring( 1 ).intern();
 			}
 		else
 			{
-			this.version = version;
+			this.version = version.intern();
 			}
 		}
 
 	public void
 	markForRemoval( final boolean markState )
 		{
-		this.isToBeRemoved = markState;
+		this.setFlag( F_TO_BE_REMOVED, markState );
 		}
 
 	private CVSTimestamp
@@ -466,25 +552,68 @@ class		CVSEntry
 		}
 
 	/**
-	 * The cached CVSTimestamp (a subclass of Date), or null.
+	 * Sets the timestamp to the one given, keeping the string only
+	 * if formatting the parsed time would not give it back again.
+	 *
+	 * @param stampStr The timestamp, or an empty string for none.
+	 */
+	private void
+	storeTimestamp( final String stampStr )
+		{
+		this.timeMillis = NO_TIME;
+		this.timestamp = null;
+
+		if ( stampStr.isEmpty() )
+			return;
+
+		final CVSTimestampFormat stamper =
+			CVSTimestampFormat.getInstance();
+
+		try {
+			final CVSTimestamp stamp = stamper.parse( stampStr );
+
+			this.timeMillis = stamp.getTime();
+
+			if ( stamper.format( stamp ).equals( stampStr ) )
+				return;
+			}
+		catch ( final ParseException ex )
+			{
+			// in normal operations, this is ok
+			}
+
+		this.timestamp = stampStr;
+		}
+
+	/**
+	 * The entry's timestamp as a CVSTimestamp (a subclass of Date),
+	 * or null if it has none, or it could not be parsed.
 	 */
 	public CVSTimestamp
 	getCVSTime()
 		{
-		return this.tsCache;
+		return this.timeMillis == NO_TIME
+			? null : new CVSTimestamp( this.timeMillis );
 		}
 
 	public String
 	getTimestamp()
 		{
-		return this.timestamp;
+		if ( this.timestamp != null )
+			return this.timestamp;
+
+		if ( this.timeMillis == NO_TIME )
+			return "";
+
+		return CVSTimestampFormat.getInstance().format
+			( new CVSTimestamp( this.timeMillis ) );
 		}
 
 	public String
 	completeTimestamp()
 		{
 		return
-			this.timestamp
+			this.getTimestamp()
 			+ ( this.conflict == null
 				? ""
 				: '+' + this.conflict
@@ -494,23 +623,15 @@ class		CVSEntry
 	public String
 	getTerseTimestamp()
 		{
-		if ( this.tsCache == null )
-			{
-			this.tsCache =
-				this.parseTimestamp( this.timestamp );
-			}
+		final CVSTimestamp stamp =
+			this.timeMillis == NO_TIME
+				? this.parseTimestamp( this.getTimestamp() )
+				: new CVSTimestamp( this.timeMillis );
 
-		if ( this.tsCache == null )
-			{
-			return this.timestamp; // punt!
-			}
-		else
-			{
-			final CVSTimestampFormat	stamper =
-				CVSTimestampFormat.getInstance();
+		final CVSTimestampFormat	stamper =
+			CVSTimestampFormat.getInstance();
 
-			return stamper.formatTerse( this.tsCache );
-			}
+		return stamper.formatTerse( stamp );
 		}
 
 	/**
@@ -537,14 +658,11 @@ class		CVSEntry
 		long mTime = entryFile.lastModified();
 		mTime = mTime / 1000 * 1000;
 
-		final CVSTimestamp stamp = new CVSTimestamp( mTime );
-
-		final CVSTimestampFormat	stamper =
-			CVSTimestampFormat.getInstance();
-
-		final String stampStr = stamper.format( stamp );
-
-		this.setTimestamp( stampStr );
+		// This is what setTimestamp( String ) would make of the
+		// formatted time, without the formatting and parsing.
+		this.conflict = null;
+		this.timeMillis = mTime;
+		this.timestamp = null;
 		}
 
 	public void
@@ -559,13 +677,11 @@ class		CVSEntry
 
 		final String tstamp;
 
-		this.cfCache = null;
 		this.conflict = null;
 
 		if (timeStamp.length() < 1 )
 			{
-			this.timestamp = "";
-			this.tsCache = null;
+			this.storeTimestamp( "" );
 			}
 		else if (!timeStamp.isEmpty() && timeStamp.charAt(0) == '+')
 			{
@@ -595,20 +711,16 @@ class		CVSEntry
 					{
 					// This file was "added" but not committed,
 					// timestamp is irrelevant
-					this.timestamp = "";
-					this.tsCache = null;
+					this.storeTimestamp( "" );
 					}
 				else if ( timeStamp.equals("Result of merge" ) )
 					{
 					// This file was "merged" timestamp must show modified
-					this.timestamp = "";
-					this.tsCache = null;
+					this.storeTimestamp( "" );
 					}
-				else if ( ! timeStamp.equals(this.timestamp ) )
+				else
 					{
-					// Only update these if it is different
-					this.tsCache = null; // signal need to parse!
-					this.timestamp = timeStamp;
+					this.storeTimestamp( timeStamp );
 					}
 				}
 			else
@@ -618,81 +730,37 @@ class		CVSEntry
 				// file, and should never come from the server.
 				this.conflict = timeStamp.substring(index + 1 );
 				tstamp = timeStamp.substring(0, index );
-				if ( ! tstamp.equals( this.timestamp ) )
+				//
+				// REVIEW
+				// UNDONE
+				// This next check really should be more "generic"
+				// in the sense of "if ( ! validTimestamp( tstamp ) )".
+				//
+				if ( tstamp.equals( "Result of merge" ) )
 					{
-					// Only update these if it is different
-					this.tsCache = null; // signal need to parse!
-					//
-					// REVIEW
-					// UNDONE
-					// This next check really should be more "generic"
-					// in the sense of "if ( ! validTimestamp( tstamp ) )".
-					//
-					if ( tstamp.equals( "Result of merge" ) )
+					// REVIEW should we always set to conflict?
+					// If timestamp is empty, use the conflict...
+					if ( this.timestamp == null
+					     && this.timeMillis == NO_TIME
+					     && !this.conflict.isEmpty())
 						{
-						// REVIEW should we always set to conflict?
-						// If timestamp is empty, use the conflict...
-						if (( this.timestamp == null ||
-						      this.timestamp.isEmpty())
-						    && !this.conflict.isEmpty())
-							{
-							this.timestamp = this.conflict;
-							}
-						}
-					else
-						{
-						this.timestamp = tstamp;
+						this.storeTimestamp( this.conflict );
 						}
 					}
-				}
-			}
-
-		final CVSTimestampFormat	stamper =
-			CVSTimestampFormat.getInstance();
-
-		// If tsCache is set to null, we need to update it...
-		if ( this.tsCache == null
-		     && !this.timestamp.isEmpty())
-			{
-			try {
-				this.tsCache = stamper.parse( this.timestamp );
-				}
-			catch ( final ParseException ex )
-				{
-				this.tsCache = null;
-				if ( false ) // in normal operations, this is ok
-					CVSTracer.traceWithStack(
-						"could not parse entries timestamp (cache): '"
-						+ this.timestamp + "' - " + ex.getMessage() );
-				}
-		   }
-
-		// If conflict is not null, we need to update cfCache...
-		if ( this.conflict != null
-		     && !this.conflict.isEmpty())
-			{
-			try {
-				this.cfCache = stamper.parse( this.conflict );
-				}
-			catch ( final ParseException ex )
-				{
-				this.cfCache = null;
-				if ( false ) // in normal operations, this is ok
-					CVSTracer.traceWithStack(
-						"could not parse entries conflict (cache): '"
-						+ this.conflict + "' - " + ex.getMessage() );
+				else
+					{
+					this.storeTimestamp( tstamp );
+					}
 				}
 			}
 if ( false )
 CVSTracer.traceIf( true,
 		   "CVSEntry.setTimestamp: '"
 		   + this.getName() + "' - '" + timeStamp
-		   + "'\n   timestamp '" + this.timestamp + "' tsCache '"
-		   + ( this.tsCache == null ? "(not set)" : "(set)" )
+		   + "'\n   timestamp '" + this.getTimestamp() + "' timeMillis '"
+		   + ( this.timeMillis == NO_TIME ? "(not set)" : "(set)" )
 		   + "'\n   conflict  '"
 		   + ( this.conflict == null ? "(null)" : this.conflict )
-		   + "' cfCache '"
-		   + ( this.cfCache == null ? "(not set)" : "(set)" )
 		   + '\'');
 		}
 
@@ -707,10 +775,7 @@ CVSTracer.traceIf( true,
 		long mTime = entryFile.lastModified();
 		mTime = mTime / 1000 * 1000;
 
-		this.cfCache = new CVSTimestamp( mTime );
-
-		final CVSTimestamp stamp =
-			new CVSTimestamp( this.cfCache.getTime() );
+		final CVSTimestamp stamp = new CVSTimestamp( mTime );
 
 		final CVSTimestampFormat	stamper =
 			CVSTimestampFormat.getInstance();
@@ -727,7 +792,7 @@ CVSTracer.traceIf( true,
 	public void
 	setOptions( final String options )
 		{
-		this.options = options;
+		this.options = options == null ? null : options.intern();
 		}
 
 	public boolean
@@ -745,7 +810,7 @@ CVSTracer.traceIf( true,
 	public void
 	setTag( final String tag )
 		{
-		this.tag = tag;
+		this.tag = tag == null ? null : tag.intern();
 		this.date = null;
 		}
 
@@ -786,13 +851,13 @@ CVSTracer.traceIf( true,
 	private boolean
 	isNoUserFile()
 		{
-		return this.isNoUserFile;
+		return this.hasFlag( F_NO_USER_FILE );
 		}
 
 	public void
 	setNoUserFile( final boolean isNo )
 		{
-		this.isNoUserFile = isNo;
+		this.setFlag( F_NO_USER_FILE, isNo );
 		}
 
 	public boolean
@@ -810,41 +875,42 @@ CVSTracer.traceIf( true,
 	public boolean
 	isNewUserFile()
 		{
-		return this.isNewUserFile;
+		return this.hasFlag( F_NEW_USER_FILE );
 		}
 
 	public void
 	setNewUserFile( final boolean isNew )
 		{
-		this.isNewUserFile = isNew;
+		this.setFlag( F_NEW_USER_FILE, isNew );
 		}
 
 	public boolean
 	isToBeRemoved()
 		{
-		return this.isToBeRemoved;
+		return this.hasFlag( F_TO_BE_REMOVED );
 		}
 
 	public void
 	setToBeRemoved( final boolean toBe )
 		{
-		this.isToBeRemoved = toBe;
+		this.setFlag( F_TO_BE_REMOVED, toBe );
 		}
 
 	public boolean
 	isLocalFileModified( final File localFile )
 		{
-		if ( this.forceModified )
+		if ( this.isForceModified() )
 			{
-System.err.println( "CVSENTRY: force MOD? " + this.forceModified );
+System.err.println( "CVSENTRY: force MOD? " + this.isForceModified() );
 			return true;
 			}
 
 		// REVIEW is this the best return value for this case?
-		if ( this.tsCache == null )
+		if ( this.timeMillis == NO_TIME )
 			return true;
 
-		return ! this.tsCache.equalsTime( localFile.lastModified() );
+		// Compare to the second, as CVSTimestamp.equalsTime() does.
+		return Math.abs( this.timeMillis - localFile.lastModified() ) >= 1000;
 		}
 
 
@@ -875,14 +941,14 @@ System.err.println( "CVSENTRY: force MOD? " + this.forceModified );
 		String optionsToke = null;
 		String tagToke = null;
 
-		this.valid = false;
+		this.setFlag( F_VALID, false );
 
 		String entryLine = parseLine;
 
 		// Strip the 'D' from 'Directory' entries
 		if ( entryLine.startsWith( "D/" ) )
 			{
-			this.isDir = true;
+			this.setFlag( F_DIRECTORY, true );
 			entryLine = entryLine.substring( 1 );
 			}
 
@@ -982,7 +1048,7 @@ System.err.println( "CVSENTRY: force MOD? " + this.forceModified );
 			tagToke = "";
 			}
 
-		this.valid = true;
+		this.setFlag( F_VALID, true );
 
 		if (fromServer && !conflictToke.isEmpty()
 		    && !(!conflictToke.isEmpty() && conflictToke.charAt(0) == '+'))
@@ -1066,7 +1132,7 @@ System.err.println( "CVSENTRY: force MOD? " + this.forceModified );
 			}
 		else
 			{
-			result.append( this.timestamp );
+			result.append( this.getTimestamp() );
 
 			if ( this.isInConflict() )
 				{
@@ -1117,7 +1183,7 @@ System.err.println( "CVSENTRY: force MOD? " + this.forceModified );
 				if ( this.isToBeRemoved() )
 					result.append('-');
 
-				if ( this.version != null && ! this.forceNoExistence )
+				if ( this.version != null && ! this.isForceNoExistence() )
 					result.append( this.version );
 				}
 			}
@@ -1128,14 +1194,14 @@ System.err.println( "CVSENTRY: force MOD? " + this.forceModified );
 			{
 			result.append("Initial ").append(this.getName());
 			}
-		else if ( exists && ! this.forceNoExistence )
+		else if ( exists && ! this.isForceNoExistence() )
 			{
 			if ( this.isInConflict() )
 				{
 				result.append('+');
 				}
 
-			if ( isModified || forceModified )
+			if ( isModified || this.isForceModified() )
 				result.append( "modified" );
 			else
 				result.append('=');
@@ -1148,13 +1214,13 @@ System.err.println( "CVSENTRY: force MOD? " + this.forceModified );
 
 		result.append('/');
 
-		if ( this.tag != null && ! this.forceNoExistence )
+		if ( this.tag != null && ! this.isForceNoExistence() )
 			result.append('T').append(this.tag);
-		else if ( this.date != null && ! this.forceNoExistence  )
+		else if ( this.date != null && ! this.isForceNoExistence()  )
 			result.append('D').append(this.date);
 
 		 CVSTracer.traceIf( false,
-				    "getServerEntryLine: '" + result + '\'');
+				    "getServerEntryLine: '{}'", result );
 
 		return result.toString();
 		}
@@ -1267,6 +1333,9 @@ System.err.println( "CVSENTRY: force MOD? " + this.forceModified );
 	private void
 	fireChildAddedEvent(final ChildEvent event)
 		{
+		if ( this.childListeners == null )
+			return;
+
 		// Process the listeners last to first, notifying
 		// those that are interested in this event
 		for ( int i = this.childListeners.size() - 1 ; i >= 0 ; --i )
@@ -1279,6 +1348,9 @@ System.err.println( "CVSENTRY: force MOD? " + this.forceModified );
 	private void
 	fireChildRemovedEvent(final ChildEvent event)
 		{
+		if ( this.childListeners == null )
+			return;
+
 		// Process the listeners last to first, notifying
 		// those that are interested in this event
 		for ( int i = this.childListeners.size() - 1 ; i >= 0 ; --i )
@@ -1291,13 +1363,17 @@ System.err.println( "CVSENTRY: force MOD? " + this.forceModified );
 	public void
 	addChildEventListener( final ChildEventListener l )
 		{
+		if ( this.childListeners == null )
+			this.childListeners = new Vector();
+
 		this.childListeners.addElement( l );
 		}
 
 	public void
 	removeChildEventListener( final ChildEventListener l )
 		{
-		this.childListeners.removeElement( l );
+		if ( this.childListeners != null )
+			this.childListeners.removeElement( l );
 		}
 
 	public String
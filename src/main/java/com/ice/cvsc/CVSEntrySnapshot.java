@@ -0,0 +1,490 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+package com.ice.cvsc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Keeps a binary snapshot of a project's entry tree, so that the
+ * project can be reopened without parsing the admin files of every
+ * directory again.
+ *
+ * The snapshot is kept in the file 'Snapshot', in the 'CVS' admin
+ * directory of the project's local root. For each directory, it holds
+ * the directory's repository and 'Entries' lines, along with the size
+ * and modification time of the directory's 'Entries', 'Entries.Log',
+ * 'Repository' and 'Root' files as they were when those lines were
+ * read or written. A directory is only taken from the snapshot when
+ * its admin files still have those sizes and times, so directories
+ * that were changed by other tools are simply read again.
+ *
+ * The project notes each directory whose admin files it reads or
+ * writes with stamp(), and save() writes the directories of the
+ * project's tree whose entry lists are as they are on disk, along
+ * with the directories not yet loaded that are still in the snapshot.
+ *
+ * @version $Revision: 1.1 $
+ * @see CVSProject#setUsesEntrySnapshot
+ */
+
+public
+class		CVSEntrySnapshot
+	{
+	public static final String		RCS_ID = "$Id: CVSEntrySnapshot.java,v 1.1 $";
+	public static final String		RCS_REV = "$Revision: 1.1 $";
+
+	public static final String		SNAPSHOT_FILE_NAME = "Snapshot";
+
+	private static final int		MAGIC = 0x6A435653;
+	private static final int		VERSION = 1;
+
+	private static final String[]	ADMIN_FILE_NAMES =
+		{ "Entries", "Entries.Log", "Repository", "Root" };
+
+	private final File									localRoot;
+	private final Map<String, Directory>				dirTable;
+	private volatile boolean							isDirty;
+
+	private final AtomicInteger		hitCount;
+	private final AtomicInteger		missCount;
+
+
+	/**
+	 * @param localRoot The local root directory of the project.
+	 */
+	public
+	CVSEntrySnapshot( final File localRoot )
+		{
+		this.localRoot = localRoot;
+		this.dirTable = new ConcurrentHashMap<>();
+		this.isDirty = false;
+		this.hitCount = new AtomicInteger();
+		this.missCount = new AtomicInteger();
+		}
+
+	public File
+	getSnapshotFile()
+		{
+		return new File( new File( this.localRoot, "CVS" ), SNAPSHOT_FILE_NAME );
+		}
+
+	/**
+	 * Returns the number of directories whose entry
+	 * lists have been taken from the snapshot.
+	 */
+	public int
+	getHitCount()
+		{
+		return this.hitCount.get();
+		}
+
+	/**
+	 * Returns the number of directories whose entry lists were
+	 * not in the snapshot, or had changed since it was taken.
+	 */
+	public int
+	getMissCount()
+		{
+		return this.missCount.get();
+		}
+
+	/**
+	 * Returns the repository of a directory, if the directory's
+	 * admin files have not changed since the snapshot was taken.
+	 *
+	 * @param localDirectory The directory's 'local directory'.
+	 * @return The repository, or null if it must be read.
+	 */
+	public String
+	getRepository( final String localDirectory )
+		{
+		final Directory dir = this.getValidDirectory( localDirectory );
+
+		return dir == null ? null : dir.repository;
+		}
+
+	/**
+	 * Returns the 'Entries' lines of a directory, if the directory's
+	 * admin files have not changed since the snapshot was taken. The
+	 * lines are handed over only once, since the project keeps the
+	 * entries from then on, and gives them back to save().
+	 *
+	 * @param localDirectory The directory's 'local directory'.
+	 * @return The lines, or null if the 'Entries' file must be read.
+	 */
+	public String[]
+	takeEntryLines( final String localDirectory )
+		{
+		final Directory dir = this.getValidDirectory( localDirectory );
+		final String[] lines = dir == null ? null : dir.takeLines();
+
+		if ( lines == null )
+			this.missCount.incrementAndGet();
+		else
+			this.hitCount.incrementAndGet();
+
+		return lines;
+		}
+
+	/**
+	 * Notes the current state of the admin files of a directory,
+	 * which the project has just read or written.
+	 *
+	 * @param localDirectory The directory's 'local directory'.
+	 */
+	public void
+	stamp( final String localDirectory )
+		{
+		this.dirTable.put( localDirectory,
+			new Directory( null, this.readStamps( localDirectory ), null ) );
+
+		this.isDirty = true;
+		}
+
+	private Directory
+	getValidDirectory( final String localDirectory )
+		{
+		final Directory dir = this.dirTable.get( localDirectory );
+
+		if ( dir == null || ! dir.isValid( this, localDirectory ) )
+			return null;
+
+		return dir;
+		}
+
+	/**
+	 * Reads the snapshot file, if there is one.
+	 *
+	 * @return True if the snapshot was read.
+	 */
+	public boolean
+	load()
+		{
+		final File snapshotFile = this.getSnapshotFile();
+
+		if ( ! snapshotFile.exists() )
+			return false;
+
+		try ( DataInputStream in =
+				new DataInputStream
+					( new BufferedInputStream
+						( new FileInputStream( snapshotFile ) ) ) )
+			{
+			if ( in.readInt() != MAGIC || in.readInt() != VERSION )
+				{
+				CVSLog.logMsg
+					( "CVSEntrySnapshot.load: ignoring '"
+						+ snapshotFile.getPath() + "', unknown format" );
+				return false;
+				}
+
+			for ( int d = 0, dirCount = in.readInt() ; d < dirCount ; ++d )
+				{
+				final String localDirectory = in.readUTF();
+				final String repository = in.readUTF();
+
+				final long[] stamps = new long[ ADMIN_FILE_NAMES.length * 2 ];
+				for ( int i = 0 ; i < stamps.length ; ++i )
+					{
+					stamps[i] = in.readLong();
+					}
+
+				final String[] lines = new String[ in.readInt() ];
+				for ( int i = 0 ; i < lines.length ; ++i )
+					{
+					lines[i] = in.readUTF();
+					}
+
+				this.dirTable.put( localDirectory,
+					new Directory( repository, stamps, lines ) );
+				}
+			}
+		catch ( final IOException ex )
+			{
+			CVSLog.logMsg
+				( "CVSEntrySnapshot.load: failed reading '"
+					+ snapshotFile.getPath() + "' - " + ex.getMessage() );
+			this.dirTable.clear();
+			return false;
+			}
+
+		this.isDirty = false;
+
+		return true;
+		}
+
+	/**
+	 * Writes the snapshot, if anything has been read or written since
+	 * it was loaded or last saved. The file is written in full to a
+	 * temporary file, which then replaces the snapshot.
+	 *
+	 * @param rootEntry The root entry of the project.
+	 * @return True if the snapshot is up to date.
+	 */
+	public boolean
+	save( final CVSEntry rootEntry )
+		{
+		if ( ! this.isDirty )
+			return true;
+
+		this.isDirty = false;
+
+		final List<Record> records = new ArrayList<>();
+		this.collectRecords( rootEntry, records );
+
+		final File snapshotFile = this.getSnapshotFile();
+		final File tempFile = new File
+			( snapshotFile.getParentFile(), SNAPSHOT_FILE_NAME + ".tmp" );
+
+		try {
+			try ( DataOutputStream out =
+					new DataOutputStream
+						( new BufferedOutputStream
+							( new FileOutputStream( tempFile ) ) ) )
+				{
+				out.writeInt( MAGIC );
+				out.writeInt( VERSION );
+				out.writeInt( records.size() );
+
+				for ( final Record rec : records )
+					{
+					out.writeUTF( rec.localDirectory );
+					out.writeUTF( rec.repository );
+
+					for ( final long stamp : rec.stamps )
+						{
+						out.writeLong( stamp );
+						}
+
+					out.writeInt( rec.lines.length );
+					for ( final String line : rec.lines )
+						{
+						out.writeUTF( line );
+						}
+					}
+				}
+
+			CVSCUtilities.replaceFile( tempFile, snapshotFile );
+			}
+		catch ( final IOException ex )
+			{
+			CVSLog.logMsg
+				( "CVSEntrySnapshot.save: failed writing '"
+					+ snapshotFile.getPath() + "' - " + ex.getMessage() );
+			tempFile.delete();
+			this.isDirty = true;
+			return false;
+			}
+
+		return true;
+		}
+
+	/**
+	 * Collects the records of a directory and its subdirectories.
+	 * A loaded directory is only recorded when it matches its admin
+	 * files, that is, when it is not dirty and its admin files have
+	 * been stamped. A directory that has not been loaded is recorded
+	 * from the snapshot, along with its own subdirectories.
+	 */
+	private void
+	collectRecords( final CVSEntry dirEntry, final List<Record> records )
+		{
+		final String localDirectory = dirEntry.getLocalDirectory();
+		final Directory dir = this.dirTable.get( localDirectory );
+
+		if ( ! dirEntry.isEntryListLoaded() )
+			{
+			this.collectUnloaded( localDirectory, records );
+			return;
+			}
+
+		final CVSEntryVector entries = dirEntry.getEntryList();
+
+		if ( dir != null && dir.state == Directory.VALID
+				&& ! dirEntry.isDirty() && ! entries.isDirty() )
+			{
+			final String[] lines = new String[ entries.size() ];
+			for ( int i = 0 ; i < lines.length ; ++i )
+				{
+				lines[i] = entries.entryAt( i ).getAdminEntryLine();
+				}
+
+			records.add( new Record
+				( localDirectory, dirEntry.getRepository(), dir.stamps, lines ) );
+			}
+
+		for ( int i = 0, sz = entries.size() ; i < sz ; ++i )
+			{
+			final CVSEntry entry = entries.entryAt( i );
+			if ( entry.isDirectory() )
+				{
+				this.collectRecords( entry, records );
+				}
+			}
+		}
+
+	private void
+	collectUnloaded( final String localDirectory, final List<Record> records )
+		{
+		final Directory dir = this.dirTable.get( localDirectory );
+		final String[] lines = dir == null ? null : dir.peekLines();
+
+		if ( lines == null || dir.state == Directory.STALE )
+			return;
+
+		records.add( new Record
+			( localDirectory, dir.repository, dir.stamps, lines ) );
+
+		for ( final String line : lines )
+			{
+			if ( line.startsWith( "D/" ) )
+				{
+				final int idx = line.indexOf( '/', 2 );
+				if ( idx > 2 )
+					{
+					this.collectUnloaded
+						( localDirectory + line.substring( 2, idx ) + '/', records );
+					}
+				}
+			}
+		}
+
+	private File
+	getAdminDirectory( final String localDirectory )
+		{
+		final File workingDirectory = localDirectory.length() > 2
+			? new File( this.localRoot,
+				CVSCUtilities.exportPath( localDirectory.substring( 2 ) ) )
+			: this.localRoot;
+
+		return new File( workingDirectory, "CVS" );
+		}
+
+	private long[]
+	readStamps( final String localDirectory )
+		{
+		final File adminDir = this.getAdminDirectory( localDirectory );
+		final long[] stamps = new long[ ADMIN_FILE_NAMES.length * 2 ];
+
+		for ( int i = 0 ; i < ADMIN_FILE_NAMES.length ; ++i )
+			{
+			final File adminFile = new File( adminDir, ADMIN_FILE_NAMES[i] );
+			stamps[ i * 2 ] = adminFile.lastModified();
+			stamps[ i * 2 + 1 ] = adminFile.length();
+			}
+
+		return stamps;
+		}
+
+	/**
+	 * A directory of the snapshot. The lines are null once they have
+	 * been handed to the project, and for the directories that the
+	 * project has stamped.
+	 */
+	private static final
+	class		Directory
+		{
+		private static final int		UNCHECKED = 0;
+		private static final int		VALID = 1;
+		private static final int		STALE = 2;
+
+		private final String		repository;
+		private final long[]		stamps;
+		private String[]			lines;
+		private volatile int		state;
+
+		Directory(
+				final String repository, final long[] stamps,
+				final String[] lines )
+			{
+			this.repository = repository;
+			this.stamps = stamps;
+			this.lines = lines;
+			this.state = repository == null ? VALID : UNCHECKED;
+			}
+
+		synchronized boolean
+		isValid( final CVSEntrySnapshot snapshot, final String localDirectory )
+			{
+			if ( this.state == UNCHECKED )
+				{
+				final long[] current = snapshot.readStamps( localDirectory );
+
+				this.state = Arrays.equals( current, this.stamps )
+					? VALID : STALE;
+				}
+
+			return this.repository != null && this.state == VALID;
+			}
+
+		synchronized String[]
+		takeLines()
+			{
+			final String[] result = this.lines;
+			this.lines = null;
+			return result;
+			}
+
+		synchronized String[]
+		peekLines()
+			{
+			return this.lines;
+			}
+		}
+
+	private static final
+	class		Record
+		{
+		private final String		localDirectory;
+		private final String		repository;
+		private final long[]		stamps;
+		private final String[]		lines;
+
+		Record(
+				final String localDirectory, final String repository,
+				final long[] stamps, final String[] lines )
+			{
+			this.localDirectory = localDirectory;
+			this.repository = repository;
+			this.stamps = stamps;
+			this.lines = lines;
+			}
+		}
+
+	}
@@ -24,6 +24,11 @@
 
 package com.ice.cvsc;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Vector;
 
 /**
@@ -31,6 +36,20 @@ import java.util.Vector;
  * handle CVSEntry ocjects. This subclass adds several convenience
  * methods for adding and retrieving CVSEntry objects quickly.
  *
+ * Larger vectors keep an index of their entries by name, so that
+ * locateEntry() does not scan the vector. Names are compared without
+ * regard to case where CVSCUtilities.caseSensitivePathNames() says
+ * the file system does. The index follows the entries added with
+ * appendEntry() or addElement() and removed with removeElementAt()
+ * or removeElement(). Any other change to the vector causes the
+ * index to be rebuilt on the next lookup. An entry must not be
+ * renamed while it is in a vector.
+ *
+ * The entry list of a directory can also track the entries added and
+ * removed since it last matched the directory's 'Entries' file, so
+ * that the changes can be appended to 'Entries.Log' instead of the
+ * file being rewritten. See startTrackingChanges().
+ *
  * @version $Revision: 2.3 $
  * @author Timothy Gerard Endres, <a href="mailto:time@ice.com">time@ice.com</a>.
  * @see CVSClient
@@ -45,6 +64,14 @@ CVSEntryVector extends Vector
 
 	private static final boolean			traceLocate = false;
 
+	/**
+	 * Vectors of this size or less are scanned, rather than indexed.
+	 */
+	private static final int				INDEX_THRESHOLD = 8;
+
+	private static final boolean			caseSensitive =
+		CVSCUtilities.caseSensitivePathNames();
+
 	/**
 	 * Indicates if this entry vector is 'dirty'. If this
 	 * is true, then an entry was removed from this vector.
@@ -56,6 +83,23 @@ CVSEntryVector extends Vector
 	 */
 	private boolean		isDirty;
 
+	/**
+	 * The entries by name key, see nameKey(). This is valid only
+	 * while indexModCount matches the vector's modCount. Where two
+	 * entries share a key, the index holds the first of them.
+	 */
+	private transient HashMap<String, CVSEntry>	nameIndex;
+	private transient int						indexModCount;
+	private transient boolean					indexHasDuplicates;
+
+	/**
+	 * The names of the entries added, and the admin lines of those
+	 * removed, since startTrackingChanges() was called. These are
+	 * null when the changes are not tracked, or are no longer known.
+	 */
+	private transient HashSet<String>					addedNames;
+	private transient LinkedHashMap<String, String>		removedLines;
+
 
 	public CVSEntryVector()
 		{
@@ -114,6 +158,148 @@ CVSEntryVector extends Vector
 		this.isDirty = true;
 		}
 
+	@Override
+	public synchronized void
+	addElement( final Object obj )
+		{
+		final boolean indexed = this.isIndexValid();
+
+		super.addElement( obj );
+
+		if ( this.addedNames != null )
+			{
+			this.addedNames.add( ((CVSEntry) obj).getName() );
+			}
+
+		if ( indexed )
+			{
+			this.indexEntry( (CVSEntry) obj );
+			this.indexModCount = this.modCount;
+			}
+		}
+
+	@Override
+	public synchronized void
+	removeElementAt( final int index )
+		{
+		final boolean indexed = this.isIndexValid();
+		final CVSEntry entry = (CVSEntry) this.elementAt( index );
+
+		super.removeElementAt( index );
+
+		if ( this.removedLines != null )
+			{
+			this.removedLines.put( entry.getName(), entry.getAdminEntryLine() );
+			}
+
+		if ( indexed )
+			{
+			this.unindexEntry( entry );
+			this.indexModCount = this.modCount;
+			}
+		}
+
+	@Override
+	public synchronized void
+	setElementAt( final Object obj, final int index )
+		{
+		super.setElementAt( obj, index );
+
+		// Vector does not count this as a modification.
+		this.nameIndex = null;
+		this.stopTrackingChanges();
+		}
+
+	@Override
+	public synchronized Object
+	set( final int index, final Object obj )
+		{
+		this.nameIndex = null;
+		this.stopTrackingChanges();
+
+		return super.set( index, obj );
+		}
+
+	@Override
+	public synchronized void
+	insertElementAt( final Object obj, final int index )
+		{
+		this.stopTrackingChanges();
+
+		super.insertElementAt( obj, index );
+		}
+
+	@Override
+	public synchronized void
+	removeAllElements()
+		{
+		this.stopTrackingChanges();
+
+		super.removeAllElements();
+		}
+
+	/**
+	 * Starts tracking the entries added and removed from now on. This
+	 * is called when the vector matches its directory's 'Entries' file,
+	 * which is when the file has just been read or written.
+	 */
+	synchronized void
+	startTrackingChanges()
+		{
+		this.addedNames = new HashSet<>();
+		this.removedLines = new LinkedHashMap<>();
+		}
+
+	private void
+	stopTrackingChanges()
+		{
+		this.addedNames = null;
+		this.removedLines = null;
+		}
+
+	/**
+	 * Returns the 'Entries.Log' lines that bring the directory's 'Entries'
+	 * file up to date with the vector: an 'A' line for each entry that
+	 * was added or is dirty, and an 'R' line for each entry that was
+	 * removed and is not in the vector again.
+	 *
+	 * @return The lines, or null if the changes are not known.
+	 */
+	synchronized Vector<String>
+	getEntriesLogLines()
+		{
+		if ( this.addedNames == null )
+			return null;
+
+		final Vector<String> result = new Vector<>();
+		final HashSet<String> names = new HashSet<>();
+
+		for ( int i = 0, sz = this.size() ; i < sz ; ++i )
+			{
+			final CVSEntry entry = this.entryAt( i );
+			if ( entry.isDirty() || this.addedNames.contains( entry.getName() ) )
+				{
+				result.addElement( "A " + entry.getAdminEntryLine() );
+				}
+
+			if ( ! this.removedLines.isEmpty() )
+				{
+				names.add( entry.getName() );
+				}
+			}
+
+		// The log matches names exactly, whatever the file system does.
+		for ( final Map.Entry<String, String> removed : this.removedLines.entrySet() )
+			{
+			if ( ! names.contains( removed.getKey() ) )
+				{
+				result.addElement( "R " + removed.getValue() );
+				}
+			}
+
+		return result;
+		}
+
 	private boolean
 	removeEntry( final CVSEntry entry )
 		{
@@ -131,19 +317,9 @@ CVSEntryVector extends Vector
 	private boolean
 	removeEntry( final String entryName )
 		{
-		for ( int i = 0 ; i < this.size() ; ++i )
-			{
-			final CVSEntry entry = this.entryAt(i);
+		final CVSEntry entry = this.locateEntry( entryName );
 
-			if ( entryName.equals( entry.getName() ) )
-				{
-				this.removeElementAt(i);
-				this.isDirty = true;
-				return true;
-				}
-			}
-
-		return false;
+		return entry != null && this.removeEntry( entry );
 		}
 
 	/**
@@ -193,35 +369,117 @@ CVSEntryVector extends Vector
 	 * @return The entry corresponding to name, or null if not found.
 	 */
 
-	public CVSEntry
+	public synchronized CVSEntry
 	locateEntry( final String name )
 		{
 		CVSTracer.traceIf( traceLocate,
-			"===== CVSEntryVector.locateEntry: "
-			+ "name '" + name + "' =====" );
+			"===== CVSEntryVector.locateEntry: name '{}' =====", name );
 
-		for ( int i = 0 ; i < this.size() ; ++i )
+		if ( this.elementCount > INDEX_THRESHOLD )
+			{
+			if ( ! this.isIndexValid() )
+				this.buildIndex();
+
+			CVSEntry entry = this.nameIndex.get( nameKey( name ) );
+
+			if ( entry != null && ! nameMatches( name, entry ) )
+				{
+				// The entry was renamed behind our back.
+				this.buildIndex();
+				entry = this.nameIndex.get( nameKey( name ) );
+				}
+
+			CVSTracer.traceIf( traceLocate,
+				"CVSEntryVector.locateEntry: '{}' {} in index.",
+				name, entry == null ? "NOT FOUND" : "FOUND" );
+
+			return entry;
+			}
+
+		for ( int i = 0 ; i < this.elementCount ; ++i )
 			{
 			final CVSEntry entry = (CVSEntry)this.elementAt(i);
 
 			CVSTracer.traceIf( traceLocate,
-					   "CVSEntryVector.locateEntry: ENTRY '"
-					   + entry.getFullName()
-					   + "' isDir '" + entry.isDirectory() + '\'');
+				() -> "CVSEntryVector.locateEntry: ENTRY '"
+					+ entry.getFullName()
+					+ "' isDir '" + entry.isDirectory() + '\'');
 
-			if ( name.equals( entry.getName() ) )
+			if ( nameMatches( name, entry ) )
 				{
 				CVSTracer.traceIf( traceLocate,
-					"CVSEntryVector.locateEntry: '"
-					+ entry.getFullName() + "' FOUND." );
+					() -> "CVSEntryVector.locateEntry: '"
+						+ entry.getFullName() + "' FOUND." );
 				return entry;
 				}
 			}
 
 		CVSTracer.traceIf( traceLocate,
-			"CVSEntryVector.locateEntry: '" + name + "' NOT FOUND." );
+			"CVSEntryVector.locateEntry: '{}' NOT FOUND.", name );
 
 		return null;
 		}
 
+	/**
+	 * Returns the key under which an entry name is indexed.
+	 */
+	private static String
+	nameKey( final String name )
+		{
+		return caseSensitive || name == null
+			? name : name.toLowerCase( Locale.ROOT );
+		}
+
+	private static boolean
+	nameMatches( final String name, final CVSEntry entry )
+		{
+		return caseSensitive
+			? name.equals( entry.getName() )
+			: name.equalsIgnoreCase( entry.getName() );
+		}
+
+	private boolean
+	isIndexValid()
+		{
+		return this.nameIndex != null
+			&& this.indexModCount == this.modCount;
+		}
+
+	private void
+	buildIndex()
+		{
+		this.nameIndex = new HashMap<>( this.elementCount * 2 );
+		this.indexHasDuplicates = false;
+
+		for ( int i = 0 ; i < this.elementCount ; ++i )
+			{
+			this.indexEntry( (CVSEntry) this.elementData[i] );
+			}
+
+		this.indexModCount = this.modCount;
+		}
+
+	private void
+	indexEntry( final CVSEntry entry )
+		{
+		if ( this.nameIndex.putIfAbsent( nameKey( entry.getName() ), entry ) != null )
+			{
+			this.indexHasDuplicates = true;
+			}
+		}
+
+	private void
+	unindexEntry( final CVSEntry entry )
+		{
+		if ( this.indexHasDuplicates )
+			{
+			// Another entry with the same key may now be the first.
+			this.nameIndex = null;
+			}
+		else
+			{
+			this.nameIndex.remove( nameKey( entry.getName() ), entry );
+			}
+		}
+
 	}
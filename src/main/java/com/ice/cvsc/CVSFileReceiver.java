@@ -0,0 +1,64 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+import java.io.File;
+
+
+/**
+ * The CVSFileReceiver interface is implemented by response handlers
+ * that are willing to have the contents of downloaded files written
+ * directly into the working copy. When the CVSRequest's response
+ * handler implements this interface, the CVSClient asks it for the
+ * working file of each 'Updated', 'Created', 'Merged' and
+ * 'Update-existing' item before the file's contents are read.
+ *
+ * The CVSClient writes the contents into a temporary file in the
+ * same directory as the working file, and renames it into place,
+ * so the working file is never left partially written. The item is
+ * then marked as delivered before it is handed to the response handler.
+ *
+ * @version $Revision: 1.1 $
+ * @see CVSClient
+ * @see CVSResponseItem#isDelivered
+ */
+
+public interface
+CVSFileReceiver
+	{
+	/**
+	 * Returns the working file for the item, with its directory
+	 * already created, or null if the item's contents should be
+	 * downloaded into a temporary file as usual.
+	 *
+	 * @param request The request being processed.
+	 * @param item The item whose contents are about to be read.
+	 * @return The working file, or null.
+	 */
+	File
+		getDeliveryFile( CVSRequest request, CVSResponseItem item );
+	}
+
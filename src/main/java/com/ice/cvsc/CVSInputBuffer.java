@@ -0,0 +1,374 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+package com.ice.cvsc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Buffers the input stream from the cvs server. The server's
+ * responses mix text lines with binary file contents, so this
+ * buffer serves both. Lines are scanned for directly in the read
+ * buffer, and file contents are read from the same buffer, so
+ * that no bytes are lost when switching between the two.
+ *
+ * Lines are decoded one byte per character, exactly as the
+ * protocol has always been read by CVSClient.
+ *
+ * This class is not thread safe. It belongs to the CVSClient
+ * that is reading the server's response.
+ *
+ * @version $Revision: 1.1 $
+ * @see CVSClient
+ */
+
+final
+class		CVSInputBuffer
+extends		InputStream
+	{
+	public static final String		RCS_ID = "$Id: CVSInputBuffer.java,v 1.1 $";
+	public static final String		RCS_REV = "$Revision: 1.1 $";
+
+	private static final int		BUFFER_SIZE = 64 * 1024;
+	private static final int		LINE_SIZE = 512;
+
+	private final InputStream		in;
+	private final byte[]			buffer;
+	private int						position;
+	private int						limit;
+
+	/**
+	 * The number of bytes read from the stream we buffer.
+	 */
+	private long					bytesRead;
+
+	/**
+	 * Holds the beginning of a line that spans a buffer refill.
+	 */
+	private byte[]					lineBuffer;
+	private int						lineLength;
+
+
+	CVSInputBuffer( final InputStream in )
+		{
+		super();
+
+		this.in = in;
+		this.buffer = new byte[ BUFFER_SIZE ];
+		this.position = 0;
+		this.limit = 0;
+		this.bytesRead = 0;
+		this.lineBuffer = null;
+		this.lineLength = 0;
+		}
+
+	/**
+	 * Reads the next line, not including the terminating newline.
+	 *
+	 * @return The line, or null at the end of the stream.
+	 */
+	public String
+	readLine()
+		throws IOException
+		{
+		for ( ; ; )
+			{
+			if ( this.position >= this.limit )
+				{
+				if ( this.fill() < 0 )
+					{
+					if ( this.lineLength == 0 )
+						return null;
+
+					return this.takeLine();
+					}
+				}
+
+			final byte[] buf = this.buffer;
+			final int start = this.position;
+			final int end = this.limit;
+
+			int index = start;
+			while ( index < end && buf[ index ] != '\012' )
+				++index;
+
+			if ( index < end )
+				{
+				this.position = index + 1;
+
+				if ( this.lineLength == 0 )
+					{
+					return new String
+						( buf, start, index - start, StandardCharsets.ISO_8859_1 );
+					}
+
+				this.appendLine( buf, start, index - start );
+				return this.takeLine();
+				}
+
+			this.appendLine( buf, start, end - start );
+			this.position = end;
+			}
+		}
+
+	@Override
+	public int
+	read()
+		throws IOException
+		{
+		if ( this.position >= this.limit )
+			{
+			if ( this.fill() < 0 )
+				return -1;
+			}
+
+		return this.buffer[ this.position++ ] & 0xFF;
+		}
+
+	@Override
+	public int
+	read( final byte[] bytes, final int offset, final int length )
+		throws IOException
+		{
+		if ( length == 0 )
+			return 0;
+
+		final int buffered = this.limit - this.position;
+
+		if ( buffered > 0 )
+			{
+			final int count = Math.min( buffered, length );
+			System.arraycopy( this.buffer, this.position, bytes, offset, count );
+			this.position += count;
+			return count;
+			}
+
+		// Large reads bypass our buffer, to avoid a copy.
+		if ( length >= this.buffer.length )
+			{
+			final int count = this.in.read( bytes, offset, length );
+
+			if ( count > 0 )
+				this.bytesRead += count;
+
+			return count;
+			}
+
+		if ( this.fill() < 0 )
+			return -1;
+
+		final int count = Math.min( this.limit - this.position, length );
+		System.arraycopy( this.buffer, this.position, bytes, offset, count );
+		this.position += count;
+		return count;
+		}
+
+	@Override
+	public int
+	available()
+		throws IOException
+		{
+		return ( this.limit - this.position ) + this.in.available();
+		}
+
+	@Override
+	public void
+	close()
+		throws IOException
+		{
+		this.in.close();
+		}
+
+	/**
+	 * Returns the number of bytes that have been read from the
+	 * stream we buffer, including those not yet consumed from
+	 * our buffer.
+	 */
+	public long
+	getBytesRead()
+		{
+		return this.bytesRead;
+		}
+
+	/**
+	 * Returns a stream that reads the next 'length' bytes of this
+	 * buffer, such as the contents of a file sent by the server,
+	 * and reports the end of the stream after them.
+	 *
+	 * @param length The number of bytes in the body.
+	 * @return The body stream.
+	 */
+	public Body
+	openBody( final long length )
+		{
+		return new Body( length );
+		}
+
+	private int
+	fill()
+		throws IOException
+		{
+		this.position = 0;
+		this.limit = 0;
+
+		final int count = this.in.read( this.buffer, 0, this.buffer.length );
+
+		if ( count > 0 )
+			{
+			this.limit = count;
+			this.bytesRead += count;
+			}
+
+		return count;
+		}
+
+	private void
+	appendLine( final byte[] bytes, final int offset, final int length )
+		{
+		if ( this.lineBuffer == null )
+			{
+			this.lineBuffer = new byte[ Math.max( LINE_SIZE, length ) ];
+			}
+		else if ( this.lineLength + length > this.lineBuffer.length )
+			{
+			final byte[] newBuffer =
+				new byte[ Math.max
+					( this.lineBuffer.length * 2, this.lineLength + length ) ];
+
+			System.arraycopy( this.lineBuffer, 0, newBuffer, 0, this.lineLength );
+			this.lineBuffer = newBuffer;
+			}
+
+		System.arraycopy( bytes, offset, this.lineBuffer, this.lineLength, length );
+		this.lineLength += length;
+		}
+
+	private String
+	takeLine()
+		{
+		final String result =
+			new String
+				( this.lineBuffer, 0, this.lineLength, StandardCharsets.ISO_8859_1 );
+
+		this.lineLength = 0;
+
+		return result;
+		}
+
+	/**
+	 * A view of a fixed number of bytes of the CVSInputBuffer.
+	 * Closing the body does not close the buffer.
+	 */
+	final
+	class		Body
+	extends		InputStream
+		{
+		private long		remaining;
+
+		private Body( final long length )
+			{
+			super();
+			this.remaining = length;
+			}
+
+		public long
+		getRemaining()
+			{
+			return this.remaining;
+			}
+
+		@Override
+		public int
+		read()
+			throws IOException
+			{
+			if ( this.remaining <= 0 )
+				return -1;
+
+			final int result = CVSInputBuffer.this.read();
+			if ( result >= 0 )
+				--this.remaining;
+
+			return result;
+			}
+
+		@Override
+		public int
+		read( final byte[] bytes, final int offset, final int length )
+			throws IOException
+			{
+			if ( this.remaining <= 0 )
+				return -1;
+
+			final int count =
+				CVSInputBuffer.this.read
+					( bytes, offset, (int) Math.min( length, this.remaining ) );
+
+			if ( count > 0 )
+				this.remaining -= count;
+
+			return count;
+			}
+
+		@Override
+		public int
+		available()
+			throws IOException
+			{
+			return (int) Math.min
+				( this.remaining, CVSInputBuffer.this.available() );
+			}
+
+		/**
+		 * Reads and discards whatever is left of the body, so that
+		 * the next read of the buffer starts after it.
+		 *
+		 * @return True if the whole body was read.
+		 */
+		public boolean
+		drain()
+			throws IOException
+			{
+			final byte[] scratch = new byte[ 8192 ];
+
+			while ( this.remaining > 0 )
+				{
+				if ( this.read( scratch, 0, scratch.length ) < 0 )
+					return false;
+				}
+
+			return true;
+			}
+
+		@Override
+		public void
+		close()
+			{
+			}
+		}
+
+	}
@@ -27,6 +27,7 @@ package com.ice.cvsc;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 
 public final class
 CVSLog {
@@ -42,6 +43,12 @@ CVSLog {
     private static boolean			echo;
     private static final boolean			autoFlush = true;
 
+	/**
+	 * The writer that writes our messages on its own thread,
+	 * or null if messages are written by the caller.
+	 */
+	private static volatile CVSAsyncWriter	asyncWriter;
+
 	private CVSLog() {
 	}
 
@@ -49,10 +56,52 @@ CVSLog {
 	public static void
 	setLogFilename( final String filename )
 		{
+		flush();
+
 		CVSLog.filename = filename;
 		checked = false;
 		}
 
+	/**
+	 * Determines whether messages are written by the thread that logs
+	 * them, or queued and written by a thread of their own. Queued
+	 * messages never make the caller wait on the log file, but may be
+	 * dropped if they are logged faster than they can be written.
+	 *
+	 * @param state True to write messages on their own thread.
+	 */
+	public static void
+	setAsynchronous( final boolean state )
+		{
+		if ( state )
+			{
+			asyncWriter = CVSAsyncWriter.getDefault();
+			}
+		else
+			{
+			flush();
+			asyncWriter = null;
+			}
+		}
+
+	public static boolean
+	isAsynchronous()
+		{
+		return asyncWriter != null;
+		}
+
+	/**
+	 * Waits until the messages that have been queued are written.
+	 */
+	public static void
+	flush()
+		{
+		final CVSAsyncWriter writer = asyncWriter;
+
+		if ( writer != null )
+			writer.flush();
+		}
+
     public static void
     checkLogOpen()
         {
@@ -126,6 +175,16 @@ CVSLog {
 		logMsg( msg );
 		logMsg( thrown.getMessage() );
 
+		final CVSAsyncWriter writer = asyncWriter;
+
+		if ( writer != null )
+			{
+			final StringWriter trace = new StringWriter();
+			thrown.printStackTrace( new PrintWriter( trace ) );
+			writer.write( CVSLog::writeTrace, trace.toString() );
+			return;
+			}
+
 		if ( ! open )
 			thrown.printStackTrace( System.err );
 		else
@@ -136,8 +195,31 @@ CVSLog {
 		}
 
 
+	private static void
+	writeTrace( final String trace )
+		{
+		if ( ! open )
+			System.err.print( trace );
+		else
+			stream.print( trace );
+
+		if ( autoFlush && open )
+			stream.flush();
+		}
+
 	public static void
 	logMsg( final String msg )
+		{
+		final CVSAsyncWriter writer = asyncWriter;
+
+		if ( writer != null )
+			writer.write( CVSLog::writeMsg, msg );
+		else
+			writeMsg( msg );
+		}
+
+	private static void
+	writeMsg( final String msg )
 		{
 		checkLogOpen();
 
@@ -156,6 +238,17 @@ CVSLog {
 
 	public static void
 	logMsgStderr( final String msg )
+		{
+		final CVSAsyncWriter writer = asyncWriter;
+
+		if ( writer != null )
+			writer.write( CVSLog::writeMsgStderr, msg );
+		else
+			writeMsgStderr( msg );
+		}
+
+	private static void
+	writeMsgStderr( final String msg )
 		{
 		checkLogOpen();
 
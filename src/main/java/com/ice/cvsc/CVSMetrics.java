@@ -0,0 +1,416 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+import java.lang.management.ManagementFactory;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+
+/**
+ * Rolls up the metrics of the requests of CVSClients, in total, per
+ * server and per command, so that slow servers, slow commands and
+ * slow phases can be spotted. The rollups can be read directly, or
+ * through JMX once the metrics have been registered.
+ *
+ * To collect the metrics of every client, make the default metrics
+ * the clients' default listener:
+ * <pre>
+ *    CVSMetrics metrics = CVSMetrics.getDefault();
+ *    metrics.register();
+ *    CVSClient.setDefaultMetricsListener( metrics );
+ * </pre>
+ *
+ * This class is thread safe.
+ *
+ * @version $Revision: 1.1 $
+ * @see CVSClient#setDefaultMetricsListener
+ * @see CVSRequestMetrics
+ */
+
+public
+class		CVSMetrics
+implements	CVSMetricsListener, CVSMetricsMXBean
+	{
+	public static final String		RCS_ID = "$Id: CVSMetrics.java,v 1.1 $";
+	public static final String		RCS_REV = "$Revision: 1.1 $";
+
+	public static final String		OBJECT_NAME = "com.ice.cvsc:type=CVSMetrics";
+
+	public static boolean			traceMetrics = false;
+
+	private static final CVSMetrics	defaultMetrics = new CVSMetrics();
+
+	private Rollup							totals;
+	private final Hashtable<String, Rollup>	servers;
+	private final Hashtable<String, Rollup>	commands;
+
+
+	/**
+	 * Returns the metrics shared by the application. They collect
+	 * nothing until they are made a metrics listener.
+	 */
+	public static CVSMetrics
+	getDefault()
+		{
+		return CVSMetrics.defaultMetrics;
+		}
+
+	public
+	CVSMetrics()
+		{
+		super();
+
+		this.totals = new Rollup();
+		this.servers = new Hashtable<>();
+		this.commands = new Hashtable<>();
+		}
+
+	@Override
+	public void
+	requestCompleted( final CVSRequestMetrics metrics )
+		{
+		CVSTracer.traceIf( CVSMetrics.traceMetrics,
+			"CVSMetrics: " + metrics );
+
+		final Rollup total;
+		final Rollup server;
+		final Rollup command;
+
+		synchronized ( this )
+			{
+			total = this.totals;
+			server = this.servers.computeIfAbsent
+				( metrics.getServerKey(), key -> new Rollup() );
+			command = this.commands.computeIfAbsent
+				( metrics.getCommand(), key -> new Rollup() );
+			}
+
+		total.add( metrics );
+		server.add( metrics );
+		command.add( metrics );
+		}
+
+	@Override
+	public Rollup
+	getTotals()
+		{
+		final Rollup total;
+
+		synchronized ( this )
+			{
+			total = this.totals;
+			}
+
+		return total.copy();
+		}
+
+	@Override
+	public Map<String, Rollup>
+	getServers()
+		{
+		return CVSMetrics.copyRollups( this.servers );
+		}
+
+	@Override
+	public Map<String, Rollup>
+	getCommands()
+		{
+		return CVSMetrics.copyRollups( this.commands );
+		}
+
+	@Override
+	public synchronized void
+	reset()
+		{
+		this.totals = new Rollup();
+		this.servers.clear();
+		this.commands.clear();
+		}
+
+	private static Map<String, Rollup>
+	copyRollups( final Hashtable<String, Rollup> rollups )
+		{
+		final Map<String, Rollup> result = new TreeMap<>();
+
+		synchronized ( rollups )
+			{
+			for ( final Map.Entry<String, Rollup> entry : rollups.entrySet() )
+				result.put( entry.getKey(), entry.getValue().copy() );
+			}
+
+		return result;
+		}
+
+	/**
+	 * Registers these metrics with the platform MBean server,
+	 * under OBJECT_NAME.
+	 *
+	 * @return True if the metrics are registered.
+	 */
+	public boolean
+	register()
+		{
+		try {
+			final MBeanServer server =
+				ManagementFactory.getPlatformMBeanServer();
+			final ObjectName name = new ObjectName( OBJECT_NAME );
+
+			if ( ! server.isRegistered( name ) )
+				server.registerMBean( this, name );
+
+			return true;
+			}
+		catch ( final JMException ex )
+			{
+			CVSLog.logMsg
+				( "CVSMetrics.register: ERROR registering '"
+					+ OBJECT_NAME + "': " + ex.getMessage() );
+			return false;
+			}
+		}
+
+	/**
+	 * Removes the metrics registered under OBJECT_NAME from
+	 * the platform MBean server.
+	 */
+	public void
+	unregister()
+		{
+		try {
+			final MBeanServer server =
+				ManagementFactory.getPlatformMBeanServer();
+			final ObjectName name = new ObjectName( OBJECT_NAME );
+
+			if ( server.isRegistered( name ) )
+				server.unregisterMBean( name );
+			}
+		catch ( final JMException ex )
+			{
+			CVSLog.logMsg
+				( "CVSMetrics.unregister: ERROR unregistering '"
+					+ OBJECT_NAME + "': " + ex.getMessage() );
+			}
+		}
+
+	/**
+	 * The totals of a set of requests. Times are in milliseconds,
+	 * and bytes are counted as CVSRequestMetrics counts them.
+	 */
+	public static final
+	class		Rollup
+		{
+		private long		requestCount;
+		private long		errorCount;
+		private long		totalNanos;
+		private long		maxNanos;
+		private final long[]	phaseNanos;
+		private final long[]	itemCounts;
+		private long		linesReceived;
+		private long		filesSent;
+		private long		filesReceived;
+		private long		bytesSent;
+		private long		bytesReceived;
+		private long		wireBytesSent;
+		private long		wireBytesReceived;
+
+		Rollup()
+			{
+			super();
+
+			this.phaseNanos = new long[ CVSRequestMetrics.PHASE_COUNT ];
+			this.itemCounts = new long[ CVSRequestMetrics.ITEM_TYPE_COUNT ];
+			}
+
+		synchronized void
+		add( final CVSRequestMetrics metrics )
+			{
+			++this.requestCount;
+
+			if ( metrics.getStatus() != CVSResponse.OK )
+				++this.errorCount;
+
+			this.totalNanos += metrics.getElapsedNanos();
+			this.maxNanos = Math.max( this.maxNanos, metrics.getElapsedNanos() );
+
+			for ( int i = 0 ; i < this.phaseNanos.length ; ++i )
+				this.phaseNanos[i] += metrics.getPhaseNanos( i );
+
+			for ( int i = 0 ; i < this.itemCounts.length ; ++i )
+				this.itemCounts[i] += metrics.getItemCount( i );
+
+			this.linesReceived += metrics.getLinesReceived();
+			this.filesSent += metrics.getFilesSent();
+			this.filesReceived += metrics.getFilesReceived();
+			this.bytesSent += metrics.getBytesSent();
+			this.bytesReceived += metrics.getBytesReceived();
+			this.wireBytesSent += metrics.getWireBytesSent();
+			this.wireBytesReceived += metrics.getWireBytesReceived();
+			}
+
+		synchronized Rollup
+		copy()
+			{
+			final Rollup result = new Rollup();
+
+			result.requestCount = this.requestCount;
+			result.errorCount = this.errorCount;
+			result.totalNanos = this.totalNanos;
+			result.maxNanos = this.maxNanos;
+			System.arraycopy
+				( this.phaseNanos, 0, result.phaseNanos, 0, this.phaseNanos.length );
+			System.arraycopy
+				( this.itemCounts, 0, result.itemCounts, 0, this.itemCounts.length );
+			result.linesReceived = this.linesReceived;
+			result.filesSent = this.filesSent;
+			result.filesReceived = this.filesReceived;
+			result.bytesSent = this.bytesSent;
+			result.bytesReceived = this.bytesReceived;
+			result.wireBytesSent = this.wireBytesSent;
+			result.wireBytesReceived = this.wireBytesReceived;
+
+			return result;
+			}
+
+		public synchronized long
+		getRequestCount()
+			{
+			return this.requestCount;
+			}
+
+		public synchronized long
+		getErrorCount()
+			{
+			return this.errorCount;
+			}
+
+		public synchronized long
+		getTotalTime()
+			{
+			return this.totalNanos / 1000000;
+			}
+
+		public synchronized long
+		getMaxTime()
+			{
+			return this.maxNanos / 1000000;
+			}
+
+		public synchronized long
+		getAverageTime()
+			{
+			return this.requestCount == 0
+				? 0 : this.totalNanos / this.requestCount / 1000000;
+			}
+
+		/**
+		 * Returns the time of each phase, keyed by phase name.
+		 */
+		public synchronized Map<String, Long>
+		getPhaseTimes()
+			{
+			final Map<String, Long> result = new TreeMap<>();
+
+			for ( int i = 0 ; i < this.phaseNanos.length ; ++i )
+				{
+				result.put
+					( CVSRequestMetrics.getPhaseName( i ),
+						this.phaseNanos[i] / 1000000 );
+				}
+
+			return result;
+			}
+
+		/**
+		 * Returns the number of response items of each type that was
+		 * received, keyed by the protocol name of the type.
+		 */
+		public synchronized Map<String, Long>
+		getItemCounts()
+			{
+			final Map<String, Long> result = new TreeMap<>();
+
+			for ( int i = 1 ; i < this.itemCounts.length ; ++i )
+				{
+				if ( this.itemCounts[i] > 0 )
+					result.put
+						( CVSRequestMetrics.getItemTypeName( i ),
+							this.itemCounts[i] );
+				}
+
+			return result;
+			}
+
+		public synchronized long
+		getLinesReceived()
+			{
+			return this.linesReceived;
+			}
+
+		public synchronized long
+		getFilesSent()
+			{
+			return this.filesSent;
+			}
+
+		public synchronized long
+		getFilesReceived()
+			{
+			return this.filesReceived;
+			}
+
+		public synchronized long
+		getBytesSent()
+			{
+			return this.bytesSent;
+			}
+
+		public synchronized long
+		getBytesReceived()
+			{
+			return this.bytesReceived;
+			}
+
+		public synchronized long
+		getWireBytesSent()
+			{
+			return this.wireBytesSent;
+			}
+
+		public synchronized long
+		getWireBytesReceived()
+			{
+			return this.wireBytesReceived;
+			}
+		}
+
+	}
+
@@ -0,0 +1,55 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+
+/**
+ * The CVSMetricsListener interface is told about each request a
+ * CVSClient completes, with the measurements of that request.
+ *
+ * The listener is called on the thread that processed the request,
+ * after the connection has been closed or returned to the pool, but
+ * before processCVSRequest() returns. A listener shared by several
+ * clients must therefore be thread safe, and should be quick.
+ *
+ * @version $Revision: 1.1 $
+ * @see CVSClient#setMetricsListener
+ * @see CVSRequestMetrics
+ * @see CVSMetrics
+ */
+
+public interface
+CVSMetricsListener
+	{
+	/**
+	 * Called once for each request, whether or not it succeeded.
+	 *
+	 * @param metrics The measurements of the request.
+	 */
+	void
+		requestCompleted( CVSRequestMetrics metrics );
+	}
+
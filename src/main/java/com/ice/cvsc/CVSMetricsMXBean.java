@@ -0,0 +1,68 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+import java.util.Map;
+
+
+/**
+ * The management interface of CVSMetrics, as it is seen through JMX.
+ * Times are in milliseconds. The maps are keyed by phase name,
+ * response item name, server key and command name.
+ *
+ * @version $Revision: 1.1 $
+ * @see CVSMetrics
+ */
+
+public interface
+CVSMetricsMXBean
+	{
+	/**
+	 * Returns the totals of all requests.
+	 */
+	CVSMetrics.Rollup
+		getTotals();
+
+	/**
+	 * Returns the totals of each server, keyed as described
+	 * by CVSRequestMetrics.getServerKey().
+	 */
+	Map<String, CVSMetrics.Rollup>
+		getServers();
+
+	/**
+	 * Returns the totals of each command, such as 'update'.
+	 */
+	Map<String, CVSMetrics.Rollup>
+		getCommands();
+
+	/**
+	 * Forgets everything that has been counted.
+	 */
+	void
+		reset();
+	}
+
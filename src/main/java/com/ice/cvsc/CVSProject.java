@@ -28,23 +28,37 @@ import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.io.Reader;
+import java.nio.file.Files;
 import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Hashtable;
-import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
 
 /**
@@ -89,7 +103,7 @@ import java.util.zip.GZIPInputStream;
 
 public class
 CVSProject
-		implements CVSResponseHandler
+		implements CVSResponseHandler, CVSFileReceiver
 	{
 	public static final String		RCS_ID = "$Id: CVSProject.java,v 2.26 2003/07/27 01:08:32 time Exp $";
 	public static final String		RCS_REV = "$Revision: 2.26 $";
@@ -106,12 +120,60 @@ CVSProject
 	public static boolean		deepDebug;
 	public static boolean		debugEntryIO;
 
+	/**
+	 * Directories with fewer entries than this always have their
+	 * 'Entries' file rewritten, rather than logging their changes.
+	 */
+	private static final int		MIN_LOGGED_ENTRIES = 64;
+
+	/**
+	 * The changes to a directory are logged when there are no more
+	 * than one for this many of its entries.
+	 */
+	private static final int		LOGGED_CHANGES_DIVISOR = 4;
+
+	private static ForkJoinPool		workingCopyPool;
+
 
 	private boolean			valid;
 	private boolean			isPServer;
 	private boolean			allowGzipFileMode;
+	private boolean			allowRcsDiff;
 	private int				gzipStreamLevel;
 
+	/**
+	 * The digests of the working files, or null if files are
+	 * considered modified whenever their timestamp changes.
+	 */
+	private CVSDigestIndex	digestIndex;
+
+	/**
+	 * The tracker of the files touched in the working directories,
+	 * or null if every file's timestamp is checked.
+	 */
+	private CVSChangeTracker	changeTracker;
+
+	/**
+	 * Held while the change tracker's baseline is established, so
+	 * that only one thread checks every file. The tracker's own
+	 * monitor is not held, so its events are still processed.
+	 */
+	private final Object		baselineLock = new Object();
+
+	/**
+	 * The snapshot of the entry tree, which is only kept when
+	 * useEntrySnapshot is set, and the project has been opened.
+	 */
+	private boolean				useEntrySnapshot;
+	private CVSEntrySnapshot	entrySnapshot;
+
+	/**
+	 * The number of connections over which an update of the whole
+	 * project is spread. One, the default, updates over a single
+	 * connection.
+	 */
+	private int				parallelConnections;
+
 	private int				connMethod;
 	private int				connPort;
 	private String			serverCommand;
@@ -135,6 +197,28 @@ CVSProject
 	private CVSEntry		rootEntry;
 	private Hashtable<String, CVSEntry>	pathTable;
 
+	/**
+	 * Indexes maintained alongside the pathTable. The first maps
+	 * case-folded local directories to their directory entries, the
+	 * second maps repositories (case-folded when path names are not
+	 * case sensitive) to them. Both are only changed together with
+	 * the pathTable, via putPathTableEntry() and removePathTableEntry().
+	 */
+	private Hashtable<String, CVSEntry>	pathIgnoringCaseTable;
+	private Hashtable<String, CVSEntry>	repositoryTable;
+
+	/**
+	 * The entries of files whose 'Rcs-diff' could not be applied
+	 * during the current request. These are fetched again in full.
+	 */
+	private CVSEntryVector	failedPatches;
+
+	/**
+	 * The clients of the parallel update or checkout in progress,
+	 * which are closed if it is canceled.
+	 */
+	private Vector<CVSClient>	partitionClients;
+
 
 	/**
 	 * Determines if a pathname, provided by the dirName
@@ -413,7 +497,13 @@ CVSProject
 		this.valid = false;
 		this.isPServer = false;
 		this.allowGzipFileMode = true;
+		this.allowRcsDiff = true;
+		this.digestIndex = null;
+		this.changeTracker = null;
+		this.useEntrySnapshot = false;
+		this.entrySnapshot = null;
 		this.gzipStreamLevel = 0;
+		this.parallelConnections = 1;
 
 		this.userName = "";
 
@@ -438,6 +528,10 @@ CVSProject
 
 		this.rootEntry = null;
 		this.pathTable = new Hashtable();
+		this.pathIgnoringCaseTable = new Hashtable<>();
+		this.repositoryTable = new Hashtable<>();
+		this.failedPatches = new CVSEntryVector();
+		this.partitionClients = new Vector<>();
 
 		this.tempPath = null;
 
@@ -500,6 +594,175 @@ CVSProject
 		this.allowGzipFileMode = allow;
 		}
 
+	public boolean
+	allowsRcsDiff()
+		{
+		return this.allowRcsDiff;
+		}
+
+	/**
+	 * Determines whether or not updates ask the server to send
+	 * RCS diffs of changed files, rather than the whole files.
+	 */
+	public void
+	setAllowsRcsDiff( final boolean allow )
+		{
+		this.allowRcsDiff = allow;
+		}
+
+	public boolean
+	usesDigestIndex()
+		{
+		return this.digestIndex != null;
+		}
+
+	/**
+	 * Determines whether or not the digests of the working files
+	 * are kept, in the 'CVS/Digests' files. When they are, a file
+	 * whose timestamp has changed, but whose contents have not, is
+	 * not considered modified, and is sent to the server as unchanged.
+	 */
+	public void
+	setUsesDigestIndex( final boolean use )
+		{
+		if ( ! use )
+			this.digestIndex = null;
+		else if ( this.digestIndex == null )
+			this.digestIndex = new CVSDigestIndex();
+		}
+
+	public boolean
+	tracksChanges()
+		{
+		return this.changeTracker != null;
+		}
+
+	/**
+	 * Determines whether or not the working directories are watched
+	 * for changes. When they are, only the files that were modified
+	 * when the files were last checked in full, or that have been
+	 * touched since, are checked by isLocalFileModified(), once the
+	 * tracker has been brought up to date with syncChangeTracker().
+	 * The local root directory must be set before changes can be
+	 * tracked, and the project should stop tracking them when it is
+	 * closed. Changes are not tracked with a watch service that polls
+	 * the directories, since it may not hear of a change for seconds.
+	 *
+	 * @param track If true, watch the working directories.
+	 * @return True if the changes are tracked as requested.
+	 */
+	public boolean
+	setTracksChanges( final boolean track )
+		{
+		if ( this.changeTracker != null )
+			{
+			this.changeTracker.stop();
+			this.changeTracker = null;
+			}
+
+		if ( ! track )
+			return true;
+
+		if ( this.localRootDirFile == null )
+			return false;
+
+		final CVSChangeTracker tracker =
+			new CVSChangeTracker( this.localRootDirFile );
+
+		if ( ! tracker.start() )
+			return false;
+
+		this.changeTracker = tracker;
+		return true;
+		}
+
+	public CVSChangeTracker
+	getChangeTracker()
+		{
+		return this.changeTracker;
+		}
+
+	/**
+	 * Brings the change tracker up to date with the changes made so
+	 * far, if changes are tracked. The tracker hears of changes on a
+	 * thread of its own, some time after they are made, so this must
+	 * be called before asking isLocalFileModified() about the files
+	 * that an action, such as a commit, depends on. If the tracker
+	 * cannot be brought up to date, it is invalidated, so that every
+	 * file is checked.
+	 */
+	public void
+	syncChangeTracker()
+		{
+		final CVSChangeTracker tracker = this.changeTracker;
+
+		if ( tracker != null && ! tracker.sync() )
+			{
+			tracker.invalidate();
+			}
+		}
+
+	public boolean
+	usesEntrySnapshot()
+		{
+		return this.useEntrySnapshot;
+		}
+
+	/**
+	 * Determines whether or not a snapshot of the entry tree is kept,
+	 * in the 'CVS/Snapshot' file of the local root. When it is, the
+	 * directories whose admin files have not changed since the snapshot
+	 * was saved are taken from it, rather than read and parsed, when the
+	 * project is opened. This must be set before the project is opened.
+	 */
+	public void
+	setUsesEntrySnapshot( final boolean use )
+		{
+		this.useEntrySnapshot = use;
+		if ( ! use )
+			this.entrySnapshot = null;
+		}
+
+	public CVSEntrySnapshot
+	getEntrySnapshot()
+		{
+		return this.entrySnapshot;
+		}
+
+	/**
+	 * Saves the snapshot of the entry tree, if one is kept and it has
+	 * changed. This is done whenever the admin files are written, and
+	 * should be done when the project is closed, so that the directories
+	 * that were only read are saved as well.
+	 *
+	 * @return True if the snapshot is up to date, or none is kept.
+	 */
+	public boolean
+	saveEntrySnapshot()
+		{
+		return this.entrySnapshot == null
+			|| this.rootEntry == null
+			|| this.entrySnapshot.save( this.rootEntry );
+		}
+
+	public int
+	getParallelConnections()
+		{
+		return this.parallelConnections;
+		}
+
+	/**
+	 * Sets the number of connections over which a checkout, or an
+	 * update of the whole project, is spread, with each connection
+	 * handling some of the project's top level directories. Values
+	 * less than two use the project's client alone.
+	 */
+	public void
+	setParallelConnections( final int connections )
+		{
+		this.parallelConnections = Math.max( 1, connections );
+		}
+
 	public int
 	getGzipStreamLevel()
 		{
@@ -938,15 +1201,131 @@ CVSProject
 	private CVSEntry
 	getPathIgnoringCase(final String subPath)
 		{
-		for (final Entry<String, CVSEntry> stringCVSEntryEntry : this.pathTable.entrySet())
+		return this.pathIgnoringCaseTable.get( foldPathKey( subPath ) );
+		}
+
+	private static String
+	foldPathKey( final String path )
+		{
+		return path.toLowerCase( Locale.ROOT );
+		}
+
+	private static String
+	repositoryKey( final String repository )
+		{
+		return CVSCUtilities.caseSensitivePathNames()
+			? repository : repository.toLowerCase( Locale.ROOT );
+		}
+
+	private static boolean
+	repositoryMatches( final String repository, final CVSEntry entry )
+		{
+		return CVSCUtilities.caseSensitivePathNames()
+			? repository.equals( entry.getRepository() )
+			: repository.equalsIgnoreCase( entry.getRepository() );
+		}
+
+	/**
+	 * Adds a directory entry to the pathTable, and to the indexes
+	 * that are maintained alongside it. When several directories
+	 * share an index key, the first one added is the one found.
+	 *
+	 * @param localDir The directory's 'local directory' name.
+	 * @param dirEntry The directory's entry.
+	 */
+	private void
+	putPathTableEntry( final String localDir, final CVSEntry dirEntry )
+		{
+		synchronized ( this.pathTable )
+			{
+			final CVSEntry oldEntry = this.pathTable.put( localDir, dirEntry );
+
+			if ( oldEntry != null && oldEntry != dirEntry )
+				{
+				this.unindexPathTableEntry( localDir, oldEntry );
+				}
+
+			this.indexPathTableEntry( localDir, dirEntry );
+			}
+		}
+
+	/**
+	 * Removes a directory entry, and all of the directories below
+	 * it, from the pathTable and its indexes.
+	 *
+	 * @param dirEntry The directory's entry.
+	 */
+	private void
+	removePathTableEntry( final CVSEntry dirEntry )
+		{
+		// The subdirectories of a directory that has not been
+		// read are not in the table.
+		final CVSEntryVector entries =
+			dirEntry.isEntryListLoaded() ? dirEntry.getEntryList() : null;
+		if ( entries != null )
+			{
+			for ( int i = 0, sz = entries.size() ; i < sz ; ++i )
+				{
+				final CVSEntry entry = entries.getEntryAt( i );
+				if ( entry.isDirectory() )
+					{
+					this.removePathTableEntry( entry );
+					}
+				}
+			}
+
+		synchronized ( this.pathTable )
 			{
-			if ( stringCVSEntryEntry.getKey().equalsIgnoreCase(subPath ) )
+			final String localDir = dirEntry.getLocalDirectory();
+			if ( localDir != null
+					&& this.pathTable.get( localDir ) == dirEntry )
 				{
-				return stringCVSEntryEntry.getValue();
+				this.pathTable.remove( localDir );
+				this.unindexPathTableEntry( localDir, dirEntry );
 				}
 			}
+		}
+
+	private void
+	indexPathTableEntry( final String localDir, final CVSEntry dirEntry )
+		{
+		this.pathIgnoringCaseTable.putIfAbsent
+			( foldPathKey( localDir ), dirEntry );
+
+		if ( dirEntry.getRepository() != null )
+			{
+			this.repositoryTable.putIfAbsent
+				( repositoryKey( dirEntry.getRepository() ), dirEntry );
+			}
+		}
+
+	private void
+	unindexPathTableEntry( final String localDir, final CVSEntry dirEntry )
+		{
+		final String pathKey = foldPathKey( localDir );
+		final String reposKey = dirEntry.getRepository() == null
+			? null : repositoryKey( dirEntry.getRepository() );
+
+		if ( this.pathIgnoringCaseTable.get( pathKey ) == dirEntry
+				|| ( reposKey != null
+					&& this.repositoryTable.get( reposKey ) == dirEntry ) )
+			{
+			// Another directory may share the key, so let it take
+			// over. This is rare, and only costs a pass on removal.
+			this.rebuildPathIndexes();
+			}
+		}
+
+	private void
+	rebuildPathIndexes()
+		{
+		this.pathIgnoringCaseTable.clear();
+		this.repositoryTable.clear();
 
-		return null;
+		for ( final Entry<String, CVSEntry> tblEntry : this.pathTable.entrySet() )
+			{
+			this.indexPathTableEntry( tblEntry.getKey(), tblEntry.getValue() );
+			}
 		}
 
 	/**
@@ -965,6 +1344,147 @@ CVSProject
 
 	private CVSEntry
 	getPathTableEntry( final String path )
+		{
+		final CVSEntry result = this.lookupPathTableEntry( path );
+
+		return result != null ? result : this.loadPathTableEntry( path );
+		}
+
+	/**
+	 * Looks for a path that is not in the pathTable in the directories
+	 * that have not been read yet. Each directory along the path is
+	 * read, which adds its subdirectories to the pathTable, until the
+	 * path is found, or a directory along it is not.
+	 *
+	 * @param path The 'local directory' to look for.
+	 * @return The directory's entry, or null if it does not exist.
+	 */
+	private CVSEntry
+	loadPathTableEntry( final String path )
+		{
+		if ( ! path.startsWith( "./" ) )
+			return null;
+
+		for ( int idx = path.indexOf( '/' ) ;
+				idx != -1 && idx < path.length() - 1 ;
+				idx = path.indexOf( '/', idx + 1 ) )
+			{
+			final CVSEntry dirEntry =
+				this.lookupPathTableEntry( path.substring( 0, idx + 1 ) );
+
+			if ( dirEntry == null )
+				return null;
+
+			if ( ! dirEntry.isEntryListLoaded() )
+				{
+				CVSTracer.traceIf( deepDebug,
+					"CVSProject.loadPathTableEntry: reading '{}' for '{}'",
+					dirEntry.getLocalDirectory(), path );
+
+				dirEntry.getEntryList();
+				}
+			}
+
+		return this.lookupPathTableEntry( path );
+		}
+
+	/**
+	 * Reads the entry list of every directory of the project that
+	 * has not been read yet. Call this before walking the whole
+	 * entry tree, so that the directories are read in parallel
+	 * instead of one at a time by the walk.
+	 */
+	public void
+	loadAllEntries()
+		{
+		if ( this.rootEntry != null )
+			{
+			this.loadEntryLists( this.rootEntry );
+			}
+		}
+
+	/**
+	 * Reads the entry list of every directory that has not been
+	 * read yet, below and including the directory given. Sibling
+	 * directories are read at the same time on the working copy pool.
+	 */
+	private void
+	loadEntryLists( final CVSEntry dirEntry )
+		{
+		final EntriesLoadTask task = new EntriesLoadTask( dirEntry );
+
+		if ( ForkJoinTask.inForkJoinPool() )
+			{
+			// Already on a pool's worker, so just join in.
+			task.invoke();
+			}
+		else
+			{
+			getWorkingCopyPool().invoke( task );
+			}
+		}
+
+	/**
+	 * Returns the pool that reads Entries files and scans working
+	 * directories, creating it the first time. This work blocks on
+	 * the file system, so it is kept off the common pool. The pool
+	 * has one worker per processor, and its workers are daemons so
+	 * that they never hold up the exit.
+	 */
+	private static synchronized ForkJoinPool
+	getWorkingCopyPool()
+		{
+		if ( workingCopyPool == null )
+			{
+			workingCopyPool =
+				new ForkJoinPool
+					( Runtime.getRuntime().availableProcessors(),
+						ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+						null, false );
+			}
+
+		return workingCopyPool;
+		}
+
+	/**
+	 * Reads the entry list of one directory, and then of all of its
+	 * subdirectories with tasks of their own. Reading a list also
+	 * registers its subdirectories in the pathTable, which is safe
+	 * to do from several tasks, since the pathTable is synchronized.
+	 */
+	private static final
+	class		EntriesLoadTask
+	extends		RecursiveAction
+		{
+		private final CVSEntry		dirEntry;
+
+		EntriesLoadTask( final CVSEntry dirEntry )
+			{
+			this.dirEntry = dirEntry;
+			}
+
+		@Override
+		protected void
+		compute()
+			{
+			final CVSEntryVector entries = this.dirEntry.getEntryList();
+			final Vector<EntriesLoadTask> subTasks = new Vector<>();
+
+			for ( int i = 0, sz = entries.size() ; i < sz ; ++i )
+				{
+				final CVSEntry entry = entries.entryAt( i );
+				if ( entry.isDirectory() )
+					{
+					subTasks.addElement( new EntriesLoadTask( entry ) );
+					}
+				}
+
+			ForkJoinTask.invokeAll( subTasks );
+			}
+		}
+
+	private CVSEntry
+	lookupPathTableEntry( final String path )
 		{
 		CVSEntry result = null;
 
@@ -992,16 +1512,28 @@ CVSProject
 		{
 		CVSEntry result = null;
 
-		final Iterator<String> it = this.pathTable.keySet().iterator();
-		for ( boolean match = false ; !match && it.hasNext() ; )
+		synchronized ( this.pathTable )
 			{
-			final String localDir = it.next();
-			final CVSEntry tblEntry = this.pathTable.get( localDir );
+			result = this.repositoryTable.get( repositoryKey( repository ) );
+
+			if ( result != null && ! repositoryMatches( repository, result ) )
+				{
+				// The entry's repository has changed since it was
+				// indexed, so the index can no longer be trusted.
+				this.rebuildPathIndexes();
+				result = this.repositoryTable.get( repositoryKey( repository ) );
+				}
+			}
 
-				match = CVSCUtilities.caseSensitivePathNames() ? repository.equals(tblEntry.getRepository()) : repository.equalsIgnoreCase(tblEntry.getRepository());
+		if ( result == null && this.rootEntry != null )
+			{
+			// The directory may be below one that has not been read.
+			this.loadEntryLists( this.rootEntry );
 
-			if ( match )
-				result = tblEntry;
+			synchronized ( this.pathTable )
+				{
+				result = this.repositoryTable.get( repositoryKey( repository ) );
+				}
 			}
 
 		if ( deepDebug )
@@ -1053,8 +1585,7 @@ CVSProject
 		// The root directory has to exist by this point.
 		String repository = this.rootEntry.getRepository();
 		CVSTracer.traceIf( deepDebug,
-				   "ensureRepositoryPath: rootEntry repository = '"
-				   + repository + '\'');
+				   "ensureRepositoryPath: rootEntry repository = '{}'", repository );
 
 		resultResp.setStatus( CVSResponse.OK );
 
@@ -1459,62 +1990,667 @@ CVSProject
 		request.setServerCommand( this.getServerCommand() );
 		request.setRshProcess( this.getRshProcess() );
 
-		request.setSetVariables( this.setVars );
+		request.setSetVariables( this.setVars );
+
+		this.establishStickys( request );
+
+		this.establishStatics( request );
+
+		if ( request.includeNotifies )
+			{
+			this.includeNotifies( request );
+			}
+
+		if ( ! request.queueResponse )
+			if ( request.responseHandler == null )
+				request.responseHandler = this;
+
+		if ( overTraceRequest )
+			request.traceRequest = overTraceRequest;
+		if ( overTraceResponse )
+			request.traceResponse = overTraceResponse;
+		if ( overTraceProcessing )
+			request.traceProcessing = overTraceProcessing;
+		if ( overTraceTCP )
+			request.traceTCPData = overTraceTCP;
+
+		request.allowGzipFileMode = this.allowGzipFileMode;
+		request.gzipStreamLevel = this.gzipStreamLevel;
+		request.usePooledConnection = ! request.verificationOnly;
+		request.useRcsDiff = this.allowRcsDiff && request.handleUpdated;
+		request.digestIndex = this.digestIndex;
+
+		if ( ! request.verifyRequest() )
+			{
+			CVSLog.logMsg
+				("CVSProject.performCVSRequest: BAD CVSRequest: '"
+				 + request.getVerifyFailReason() + '\'');
+			return false;
+			}
+		else
+			{
+			this.failedPatches.removeAllElements();
+
+			final Vector<CVSRequest> partitions =
+				this.partitionUpdate( request );
+
+			if ( partitions != null )
+				{
+				this.processPartitions( request, partitions, response );
+				}
+			else
+				{
+				this.client.processCVSRequest( request, response );
+				}
+
+			this.processCVSResponse( request, response );
+
+			if ( ! this.failedPatches.isEmpty() )
+				{
+				this.refetchFailedPatches( request, response );
+				}
+
+			if ( request.getCommand().equals( "update" )
+				&&	( request.getArguments().containsArgument( "-P" )
+					|| request.getArguments().containsArgument( "-r" )
+					|| request.getArguments().containsArgument( "-D" ) ) )
+				{
+				this.pruneEmptySubDirs( request.handleEntries );
+				}
+
+			if ( request.getUserInterface() != null && response != null )
+				request.getUserInterface().uiDisplayResponse( response );
+
+			if ( response != null && ! request.saveTempFiles )
+				response.deleteTempFiles();
+
+			return response.getStatus() == CVSResponse.OK;
+			}
+		}
+
+	/**
+	 * Performs the request on the executor of the project's client,
+	 * after any asynchronous requests that were submitted to that
+	 * client before it. Canceling the result cancels the request,
+	 * including all of the connections of a parallel update.
+	 *
+	 * @param request The request to perform.
+	 * @return The future response, which is complete once the
+	 *         project has processed it.
+	 */
+	public CompletableFuture<CVSResponse>
+	performCVSRequestAsync( final CVSRequest request )
+		{
+		return this.performCVSRequestAsync( request, new CVSResponse() );
+		}
+
+	public CompletableFuture<CVSResponse>
+	performCVSRequestAsync( final CVSRequest request, final CVSResponse response )
+		{
+		final CompletableFuture<CVSResponse> result =
+			this.client.submitRequest( () ->
+				{
+				this.performCVSRequest( request, response );
+				return response;
+				} );
+
+		result.whenComplete( (resp, ex) ->
+			{
+			if ( result.isCancelled() )
+				{
+				synchronized ( this.partitionClients )
+					{
+					for ( final CVSClient partClient : this.partitionClients )
+						partClient.abortConnection();
+					}
+				}
+			} );
+
+		return result;
+		}
+
+	/**
+	 * Performs a checkout into this project, which is a new project
+	 * that has only its root entry. When the project has parallel
+	 * connections, a checkout of a single module is spread over them,
+	 * a top level directory of the module at a time, as an update is.
+	 *
+	 * @param request The checkout request, which is ready to send.
+	 * @param response The response to fill in.
+	 * @return True if the checkout succeeded.
+	 */
+	public boolean
+	performCheckout( final CVSRequest request, final CVSResponse response )
+		{
+		this.failedPatches.removeAllElements();
+
+		final Vector<CVSRequest> partitions =
+			this.partitionCheckout( request );
+
+		if ( partitions != null )
+			{
+			this.processPartitions( request, partitions, response );
+			}
+		else
+			{
+			this.client.processCVSRequest( request, response );
+			}
+
+		this.processCVSResponse( request, response );
+
+		if ( request.getArguments().containsArgument( "-P" )
+				|| request.getArguments().containsArgument( "-r" )
+				|| request.getArguments().containsArgument( "-D" ) )
+			{
+			this.pruneEmptySubDirs( request.handleEntries );
+			}
+
+		return response.getStatus() == CVSResponse.OK;
+		}
+
+	/**
+	 * Splits an update of the whole project into one request for the
+	 * files of the root directory, which is sent with '-l', and one
+	 * request for each top level directory. The requests are copies
+	 * of the original request, and handle their responses as it would.
+	 * With '-d', the top level directories that the server has, but
+	 * the project does not, are found with listServerDirectories(),
+	 * and if the server can not list them the update is not split.
+	 *
+	 * @param request The update request.
+	 * @return The partitions, or null if the request is not split.
+	 */
+	private Vector<CVSRequest>
+	partitionUpdate( final CVSRequest request )
+		{
+		if ( this.parallelConnections < 2
+				|| this.rootEntry == null
+				|| ! request.getCommand().equals( "update" )
+				|| request.queueResponse
+				|| request.responseHandler != this
+				|| ! request.sendModule
+				|| request.sendEntryFiles
+				|| request.execInCurDir
+				|| request.redirectOutput )
+			return null;
+
+		final CVSArgumentVector args = request.getArguments();
+		if ( args != null && args.containsString( "-l" ) )
+			return null;
+
+		// Options that are run together, such as "-dP", are not
+		// picked apart. The update is simply not split.
+		for ( int i = 0, sz = args == null ? 0 : args.size() ; i < sz ; ++i )
+			{
+			final String arg = args.argumentAt( i );
+
+			if ( ! arg.startsWith( "-" ) )
+				continue;
+
+			if ( arg.length() != 2 )
+				return null;
+
+			if ( "rDjkIW".indexOf( arg.charAt( 1 ) ) >= 0 )
+				++i; // skip the option's value
+			}
+
+		final Vector<String> dirNames = new Vector<>();
+		final Hashtable<String, CVSEntryVector> dirEntries = new Hashtable<>();
+
+		final CVSEntryVector rootList = this.rootEntry.getEntryList();
+		for ( int i = 0, sz = rootList.size() ; i < sz ; ++i )
+			{
+			final CVSEntry entry = rootList.getEntryAt( i );
+			if ( entry.isDirectory() )
+				{
+				dirNames.addElement( entry.getName() );
+				dirEntries.put( entry.getName(), new CVSEntryVector() );
+				}
+			}
+
+		// NOTE
+		// The root partition is sent with '-l', so it will not create
+		// the top level directories that were added to the repository.
+		// With '-d', each of these gets a partition of its own, which
+		// means that we must ask the server what they are.
+		//
+		if ( args != null && args.containsString( "-d" ) )
+			{
+			final String path = this.getRepositoryPath( request );
+			final Vector<String> serverNames =
+				path == null ? null : this.listServerDirectories( request, path );
+
+			if ( serverNames == null )
+				return null;
+
+			for ( final String name : serverNames )
+				{
+				if ( dirEntries.get( name ) == null )
+					{
+					dirNames.addElement( name );
+					dirEntries.put( name, new CVSEntryVector() );
+					}
+				}
+			}
+
+		if ( dirNames.size() < 2 )
+			return null;
+
+		final CVSEntryVector rootEntries = new CVSEntryVector();
+		final CVSEntryVector entries = request.getEntries();
+
+		for ( int i = 0, sz = entries == null ? 0 : entries.size() ; i < sz ; ++i )
+			{
+			final CVSEntry entry = entries.getEntryAt( i );
+			final String path = entry.getLocalPathName();
+			final int index = path.indexOf( '/' );
+
+			final CVSEntryVector list =
+				index < 0 ? null : dirEntries.get( path.substring( 0, index ) );
+
+			if ( list != null )
+				list.appendEntry( entry );
+			else
+				rootEntries.appendEntry( entry );
+			}
+
+		final Vector<CVSRequest> result = new Vector<>();
+
+		final CVSRequest rootRequest = request.copyRequest();
+		rootRequest.setEntries( rootEntries );
+		rootRequest.setArguments( this.partitionArguments( args, "-l" ) );
+		rootRequest.sendArguments = true;
+		result.addElement( rootRequest );
+
+		for ( int i = 0, sz = dirNames.size() ; i < sz ; ++i )
+			{
+			final String name = dirNames.elementAt( i );
+			final CVSRequest dirRequest = request.copyRequest();
+			dirRequest.setEntries( dirEntries.get( name ) );
+			dirRequest.setArguments( this.partitionArguments( args, name ) );
+			dirRequest.sendArguments = true;
+			dirRequest.sendModule = false;
+			result.addElement( dirRequest );
+			}
+
+		CVSTracer.traceIf( request.traceProcessing,
+			"CVSProject.partitionUpdate: " + result.size()
+				+ " partitions over " + this.parallelConnections
+				+ " connections" );
+
+		return result;
+		}
+
+	/**
+	 * Splits a checkout of one module into one request for the files
+	 * at the top of the module, which is sent with '-l', and one
+	 * request for each of the module's top level directories, which
+	 * are listed by the server. Only the options that apply the same
+	 * way to each directory are allowed.
+	 *
+	 * @param request The checkout request.
+	 * @return The partitions, or null if the request is not split.
+	 */
+	private Vector<CVSRequest>
+	partitionCheckout( final CVSRequest request )
+		{
+		if ( this.parallelConnections < 2
+				|| ! ( request.getCommand().equals( "co" )
+						|| request.getCommand().equals( "checkout" ) )
+				|| request.queueResponse
+				|| request.responseHandler != this
+				|| request.redirectOutput )
+			return null;
+
+		final CVSArgumentVector args = request.getArguments();
+		final CVSArgumentVector options = new CVSArgumentVector();
+		String module = null;
+
+		for ( int i = 0, sz = args == null ? 0 : args.size() ; i < sz ; ++i )
+			{
+			final String arg = args.argumentAt( i );
+
+			if ( arg.equals( "-P" ) || arg.equals( "-A" )
+					|| arg.equals( "-f" ) || arg.equals( "-R" ) )
+				{
+				options.appendArgument( arg );
+				}
+			else if ( ( arg.equals( "-r" ) || arg.equals( "-D" )
+							|| arg.equals( "-k" ) ) && i + 1 < sz )
+				{
+				options.appendArgument( arg );
+				options.appendArgument( args.argumentAt( ++i ) );
+				}
+			else if ( arg.startsWith( "-" ) || module != null )
+				{
+				// Some other option, or more than one module.
+				return null;
+				}
+			else
+				{
+				module = arg;
+				}
+			}
+
+		if ( module == null || module.equals( "." ) )
+			return null;
+
+		final Vector<String> dirNames =
+			this.listServerDirectories( request, module );
+
+		if ( dirNames == null || dirNames.size() < 2 )
+			return null;
+
+		final Vector<CVSRequest> result = new Vector<>();
+
+		final CVSRequest rootRequest = request.copyRequest();
+		final CVSArgumentVector rootArgs = new CVSArgumentVector();
+		rootArgs.appendArgument( "-l" );
+		rootArgs.appendArguments( options );
+		rootArgs.appendArgument( module );
+		rootRequest.setArguments( rootArgs );
+		result.addElement( rootRequest );
+
+		for ( int i = 0, sz = dirNames.size() ; i < sz ; ++i )
+			{
+			final CVSRequest dirRequest = request.copyRequest();
+			dirRequest.setArguments
+				( this.partitionArguments
+					( options, module + '/' + dirNames.elementAt( i ) ) );
+			result.addElement( dirRequest );
+			}
+
+		CVSTracer.traceIf( request.traceProcessing,
+			"CVSProject.partitionCheckout: " + result.size()
+				+ " partitions over " + this.parallelConnections
+				+ " connections" );
+
+		return result;
+		}
+
+	/**
+	 * Returns the path of the request's root repository relative to
+	 * the repository's root directory, as the server's 'rlist' wants
+	 * it, or null if it is not under the root directory.
+	 */
+	private String
+	getRepositoryPath( final CVSRequest request )
+		{
+		final String rootDir = request.getRootDirectory();
+		String path = request.getRootRepository();
+
+		if ( path == null || rootDir == null )
+			return null;
+
+		if ( path.endsWith( "/" ) )
+			path = path.substring( 0, path.length() - 1 );
+
+		if ( path.equals( rootDir ) )
+			return ".";
+		else if ( path.startsWith( rootDir + '/' ) )
+			return path.substring( rootDir.length() + 1 );
+		else if ( path.startsWith( "/" ) )
+			return null;
+
+		return path;
+		}
+
+	/**
+	 * Lists the subdirectories of a repository directory, with an
+	 * 'rlist' request over a connection of its own. The request was
+	 * added in cvs 1.12, so older servers can not answer it.
+	 *
+	 * @param request The request whose connection is copied.
+	 * @param path The directory, relative to the repository's root.
+	 * @return The names of the subdirectories, or null if the server
+	 *         could not list them.
+	 */
+	private Vector<String>
+	listServerDirectories( final CVSRequest request, final String path )
+		{
+		final CVSRequest listRequest = request.copyRequest();
+
+		final CVSArgumentVector args = new CVSArgumentVector();
+		args.appendArgument( "-e" );
+		args.appendArgument( path );
+
+		listRequest.setCommand( "rlist" );
+		listRequest.setArguments( args );
+		listRequest.setEntries( new CVSEntryVector() );
+
+		listRequest.notifies = null;
+		listRequest.includeNotifies = false;
+		listRequest.execInCurDir = false;
+		listRequest.sendArguments = true;
+		listRequest.sendEntries = false;
+		listRequest.sendModifieds = false;
+		listRequest.sendEmptyMods = false;
+		listRequest.sendEntryFiles = false;
+		listRequest.sendModule = false;
+		listRequest.sendRootDirectory = false;
+		listRequest.handleUpdated = false;
+		listRequest.handleMerged = false;
+		listRequest.handleCopyFile = false;
+		listRequest.handleEntries = false;
+		listRequest.handleFlags = false;
+		listRequest.useRcsDiff = false;
+		listRequest.queueResponse = true;
+		listRequest.responseHandler = null;
+		listRequest.responseListener = null;
+
+		final CVSClient listClient = this.createPartitionClient();
+		this.partitionClients.addElement( listClient );
+
+		final CVSResponse listResponse = new CVSResponse();
+		listClient.processCVSRequest( listRequest, listResponse );
+
+		this.partitionClients.removeElement( listClient );
+
+		if ( listResponse.getStatus() != CVSResponse.OK )
+			{
+			CVSTracer.traceIf( request.traceProcessing,
+				"CVSProject.listServerDirectories: could not list '"
+					+ path + "', " + listResponse.getStderr() );
+			return null;
+			}
+
+		// NOTE
+		// 'rlist -e' lists in the format of the Entries file, with
+		// directories as "D/name////".
+		//
+		final Vector<String> result = new Vector<>();
+		final StringTokenizer toker =
+			new StringTokenizer( listResponse.getStdout(), "\n" );
+
+		for ( ; toker.hasMoreTokens() ; )
+			{
+			final String line = toker.nextToken();
+			final int index = line.indexOf( '/', 2 );
+
+			if ( line.startsWith( "D/" ) && index > 2 )
+				result.addElement( line.substring( 2, index ) );
+			}
+
+		return result;
+		}
+
+	private CVSArgumentVector
+	partitionArguments( final CVSArgumentVector args, final String argument )
+		{
+		final CVSArgumentVector result = new CVSArgumentVector();
+
+		if ( args != null )
+			result.appendArguments( args );
+
+		result.appendArgument( argument );
+
+		return result;
+		}
+
+	/**
+	 * Processes the partitions of an update, or of a checkout,
+	 * concurrently, each over its own connection, and merges their
+	 * results into the response. The response items are handled one at a time, as they arrive,
+	 * into this project's entry tree, while the contents of the files
+	 * are received concurrently.
+	 */
+	private void
+	processPartitions(
+			final CVSRequest request, final Vector<CVSRequest> partitions,
+			final CVSResponse response )
+		{
+		final int count = partitions.size();
+		final CVSResponse[] results = new CVSResponse[ count ];
+		final AtomicInteger next = new AtomicInteger();
+		final PartitionHandler handler = new PartitionHandler();
+
+		final Runnable worker = () ->
+			{
+			final CVSClient partClient = this.createPartitionClient();
+			this.partitionClients.addElement( partClient );
+
+			for ( int i = next.getAndIncrement() ; i < count
+					; i = next.getAndIncrement() )
+				{
+				if ( this.client.isCanceled() )
+					break;
+
+				final CVSRequest partRequest = partitions.elementAt( i );
+				partRequest.responseHandler = handler;
+
+				final CVSResponse partResponse = new CVSResponse();
+				partClient.processCVSRequest( partRequest, partResponse );
+				results[i] = partResponse;
+				}
+
+			this.partitionClients.removeElement( partClient );
+			};
+
+		final int threadCount = Math.min( this.parallelConnections, count );
+		final Thread[] threads = new Thread[ threadCount ];
+
+		for ( int i = 0 ; i < threadCount ; ++i )
+			{
+			threads[i] = new Thread
+				( worker, "CVSProject." + request.getCommand() + '-' + i );
+			threads[i].start();
+			}
+
+		// NOTE
+		// The partitions write into our entry tree, so we must
+		// not return until all of them are finished.
+		//
+		boolean interrupted = false;
+		for ( int i = 0 ; i < threadCount ; )
+			{
+			try {
+				threads[i].join();
+				++i;
+				}
+			catch ( final InterruptedException ex )
+				{
+				interrupted = true;
+				}
+			}
+
+		if ( interrupted )
+			Thread.currentThread().interrupt();
+
+		for ( int i = 0 ; i < count ; ++i )
+			{
+			final CVSResponse result = results[i];
+			if ( result == null )
+				{
+				// This partition was canceled before it started.
+				response.setStatus( CVSResponse.ERROR );
+				continue;
+				}
+
+			response.appendStdout( result.getStdout() );
+			response.appendStderr( result.getStderr() );
+
+			final CVSRespItemVector items = result.getItemList();
+			for ( int j = 0, sz = items.size() ; j < sz ; ++j )
+				response.addResponseItem( items.itemAt( j ) );
+
+			if ( result.getStatus() != CVSResponse.OK
+					&& response.getStatus() == CVSResponse.OK )
+				{
+				response.setErrorStatus
+					( result.getErrorCode(), result.getErrorText() );
+				}
+			}
+		}
+
+	/**
+	 * Returns a client that connects like this project's client,
+	 * for one of the connections of a parallel update.
+	 */
+	private CVSClient
+	createPartitionClient()
+		{
+		final CVSClient result =
+			new CVSClient( this.client.getHostName(), this.client.getPort() );
+
+		result.setTempDirectory( this.client.getTempDirectory() );
+		result.setMultipleInterfaceSupport
+			( this.client.getMultipleInterfaceSupport() );
+		result.setConnectionPool( this.client.getConnectionPool() );
+		result.setUploadBufferLimit( this.client.getUploadBufferLimit() );
+		result.setCapabilityCache( this.client.getCapabilityCache() );
+		result.setCancelSource( this.client );
 
-		this.establishStickys( request );
+		return result;
+		}
 
-		this.establishStatics( request );
+	/**
+	 * Fetches again, in full, the files whose 'Rcs-diff' responses
+	 * could not be applied. Like the cvs command line client, we
+	 * remove the working files, which the server only patches when
+	 * they are unmodified, so that the server sends them as new.
+	 */
+	private void
+	refetchFailedPatches( final CVSRequest request, final CVSResponse response )
+		{
+		final CVSEntryVector entries = this.failedPatches;
+		this.failedPatches = new CVSEntryVector();
 
-		if ( request.includeNotifies )
+		for ( int i = 0 ; i < entries.size() ; ++i )
 			{
-			this.includeNotifies( request );
+			final File localFile = this.getEntryFile( entries.entryAt( i ) );
+			if ( localFile.exists() && ! localFile.delete() )
+				{
+				response.appendStderr
+					( "ERROR could not remove '" + localFile.getPath()
+						+ "' to refetch it.\n" );
+				}
 			}
 
-		if ( ! request.queueResponse )
-			if ( request.responseHandler == null )
-				request.responseHandler = this;
-
-		if ( overTraceRequest )
-			request.traceRequest = overTraceRequest;
-		if ( overTraceResponse )
-			request.traceResponse = overTraceResponse;
-		if ( overTraceProcessing )
-			request.traceProcessing = overTraceProcessing;
-		if ( overTraceTCP )
-			request.traceTCPData = overTraceTCP;
-
-		request.allowGzipFileMode = this.allowGzipFileMode;
-		request.gzipStreamLevel = this.gzipStreamLevel;
+		request.getUserInterface().uiDisplayProgressMsg
+			( "Refetching " + entries.size() + " files..." );
 
-		if ( ! request.verifyRequest() )
-			{
-			CVSLog.logMsg
-				("CVSProject.performCVSRequest: BAD CVSRequest: '"
-				 + request.getVerifyFailReason() + '\'');
-			return false;
-			}
-		else
-			{
-			this.client.processCVSRequest( request, response );
+		request.useRcsDiff = false;
+		request.execInCurDir = false;
+		request.sendModule = false;
+		request.sendEntryFiles = true;
+		request.setEntries( entries );
 
-			this.processCVSResponse( request, response );
+		final CVSResponse refetch = new CVSResponse();
 
-			if ( request.getCommand().equals( "update" )
-				&&	( request.getArguments().containsArgument( "-P" )
-					|| request.getArguments().containsArgument( "-r" )
-					|| request.getArguments().containsArgument( "-D" ) ) )
-				{
-				this.pruneEmptySubDirs( request.handleEntries );
-				}
+		this.client.processCVSRequest( request, refetch );
 
-			if ( request.getUserInterface() != null && response != null )
-				request.getUserInterface().uiDisplayResponse( response );
+		this.processCVSResponse( request, refetch );
 
-			if ( response != null && ! request.saveTempFiles )
-				response.deleteTempFiles();
+		response.appendStdout( refetch.getStdout() );
+		response.appendStderr( refetch.getStderr() );
 
-			return response.getStatus() == CVSResponse.OK;
+		if ( refetch.getStatus() != CVSResponse.OK )
+			{
+			response.setStatus( CVSResponse.ERROR );
 			}
+
+		if ( ! request.saveTempFiles )
+			refetch.deleteTempFiles();
 		}
 
 	private CVSEntry
@@ -1657,7 +2793,7 @@ CVSProject
 		final boolean result;
 
 		CVSTracer.traceIf( request.traceProcessing,
-				   "CVSProject.handleResponseItem:\n   " + item);
+				   () -> "CVSProject.handleResponseItem:\n   " + item);
 
 		result = this.processResponseItem( request, response, item );
 
@@ -1694,8 +2830,7 @@ CVSProject
 			item = items.itemAt( idx );
 
 			CVSTracer.traceIf( request.traceProcessing,
-					   "CVSResponse: item[" + idx + "] type '"
-					   + item.getType() + '\'');
+					   "CVSResponse: item[{}] type '{}'", idx, item.getType() );
 
 			result =
 				this.processResponseItem
@@ -1746,16 +2881,14 @@ CVSProject
 		}
 
 
-	private boolean
-	processResponseItem(
-			final CVSRequest request, final CVSResponse response, final CVSResponseItem item )
+	/**
+	 * Adjusts the item's path name to the local directory naming
+	 * that the project uses. Applying this more than once to the
+	 * same item does not change the result.
+	 */
+	private void
+	normalizeItemPath( final CVSResponseItem item )
 		{
-		final int			idx;
-		boolean		ok;
-		CVSEntry	entry = null;
-		boolean		result = true;
-		File		localFile = null;
-
 		//
 		// HACK
 		// NOTE
@@ -1784,7 +2917,7 @@ CVSProject
 					( 0, item.getPathName().length() - 2 ) );
 
 			CVSTracer.traceIf( deepDebug,
-					   "\nPROCESSResponseItem: STRIPPED FINAL './' CASE\n"
+					   () -> "\nPROCESSResponseItem: STRIPPED FINAL './' CASE\n"
 					   + "   item.pathName = '" + item.getPathName() + '\'');
 			}
 
@@ -1827,13 +2960,69 @@ CVSProject
 				//
 				item.setPathName( "./" + item.getPathName() );
 				CVSTracer.traceIf( deepDebug,
-						   "\nPROCESSResponseItem: NO PATH TABLE ENTRY, PREFIX w/ './'\n"
+						   () -> "\nPROCESSResponseItem: NO PATH TABLE ENTRY, PREFIX w/ './'\n"
 						   + "   ITEM PATH set to '" + item.getPathName() + '\'');
 				}
 			}
+		}
+
+	/**
+	 * Implements CVSFileReceiver. Files from 'Updated', 'Created',
+	 * 'Merged' and 'Update-existing' responses are delivered into the
+	 * working file, whose directory is created here, when we are
+	 * going to handle the update.
+	 */
+	@Override
+	public File
+	getDeliveryFile( final CVSRequest request, final CVSResponseItem item )
+		{
+		if ( ! request.handleUpdated || request.saveTempFiles )
+			return null;
+
+		switch ( item.getType() )
+			{
+			case CVSResponseItem.CREATED:
+			case CVSResponseItem.MERGED:
+			case CVSResponseItem.UPDATED:
+			case CVSResponseItem.UPDATE_EXISTING:
+				break;
+
+			default:
+				return null;
+			}
+
+		this.normalizeItemPath( item );
+
+		final CVSEntry entry = this.createItemEntry( item );
+		if ( entry == null )
+			return null;
+
+		if ( ! this.ensureEntryHierarchy
+				( item.getPathName(), item.getRepositoryPath() ) )
+			return null;
+
+		final File localFile = this.getEntryFile( entry );
+
+		if ( ! this.ensureLocalTree( localFile, request.handleEntries ) )
+			return null;
+
+		return localFile;
+		}
+
+	private boolean
+	processResponseItem(
+			final CVSRequest request, final CVSResponse response, final CVSResponseItem item )
+		{
+		final int			idx;
+		boolean		ok;
+		CVSEntry	entry = null;
+		boolean		result = true;
+		File		localFile = null;
+
+		this.normalizeItemPath( item );
 
 		CVSTracer.traceIf( deepDebug,
-				   "PROCESSResponseItem:\n"
+				   () -> "PROCESSResponseItem:\n"
 				   + "   item.getType        '" + item.getType() + "'\n"
 				   + "   item.getPathName    '" + item.getPathName() + "'\n"
 				   + "   item.repositoryName '" + item.getRepositoryName() + "'\n"
@@ -1845,7 +3034,7 @@ CVSProject
 			case CVSResponseItem.CHECKED_IN:
 				// Checked-in implies the file is up-to-date
 				CVSTracer.traceIf( request.traceProcessing,
-					"CHECKED_IN: pathName '" + item.getPathName()
+					() -> "CHECKED_IN: pathName '" + item.getPathName()
 					+ "'\n   repository " + item.getRepositoryName()
 					+ "'\n   entryLine " + item.getEntriesLine() );
 
@@ -1854,13 +3043,14 @@ CVSProject
 					entry = this.createItemEntry( item );
 					if ( entry != null )
 						{
+						final CVSEntry checkedIn = entry;
 						CVSTracer.traceIf( request.traceProcessing,
-								   "CHECKED_IN: entry '"
-								   + entry.getFullName() + '\'');
+							() -> "CHECKED_IN: entry '" + checkedIn.getFullName() + '\'');
 
 						localFile = this.getEntryFile( entry );
 
 						entry.setTimestamp( localFile );
+						this.recordDigest( localFile );
 
 						this.updateEntriesItem( entry );
 						}
@@ -1869,7 +3059,7 @@ CVSProject
 
 			case CVSResponseItem.NOTIFIED:
 				CVSTracer.traceIf( request.traceProcessing,
-						   "NOTIFIED: pathName '" + item.getPathName()
+						   () -> "NOTIFIED: pathName '" + item.getPathName()
 						   + "'\n          repository '"
 						   + item.getRepositoryName() + '\'');
 
@@ -1877,12 +3067,13 @@ CVSProject
 				break;
 
 			case CVSResponseItem.CHECKSUM:
-					// UNDONE
+				// CVSClient hands the checksum to the file item
+				// that follows, where it is verified.
 				break;
 
 			case CVSResponseItem.COPY_FILE:
 				CVSTracer.traceIf( request.traceProcessing,
-						   "COPY-FILE: pathName '" + item.getPathName()
+						   () -> "COPY-FILE: pathName '" + item.getPathName()
 						   + "'\n           newName '"
 						   + item.getNewName() + '\'');
 
@@ -1904,28 +3095,28 @@ CVSProject
 
 			case CVSResponseItem.CLEAR_STICKY:
 				CVSTracer.traceIf( request.traceProcessing,
-					"Clear-sticky: pathName '"
+					() -> "Clear-sticky: pathName '"
 					+ item.getPathName() + "'\n" );
 				this.setSticky( item, false, request.handleEntries );
 				break;
 
 			case CVSResponseItem.SET_STICKY:
 				CVSTracer.traceIf( request.traceProcessing,
-					"Set-sticky: pathName '"
+					() -> "Set-sticky: pathName '"
 					+ item.getPathName() + "'\n" );
 				this.setSticky( item, true, request.handleEntries );
 				break;
 
 			case CVSResponseItem.CLEAR_STATIC_DIR:
 				CVSTracer.traceIf( request.traceProcessing,
-					"Clear-static-directory: pathName '"
+					() -> "Clear-static-directory: pathName '"
 					+ item.getPathName() + "'\n" );
 				this.setStaticDirectory( item, false, request.handleEntries );
 				break;
 
 			case CVSResponseItem.SET_STATIC_DIR:
 				CVSTracer.traceIf( request.traceProcessing,
-					"Set-static-directory: pathName '"
+					() -> "Set-static-directory: pathName '"
 					+ item.getPathName() + "'\n" );
 				this.setStaticDirectory( item, true, request.handleEntries );
 				break;
@@ -1937,7 +3128,7 @@ CVSProject
 			case CVSResponseItem.NEW_ENTRY:
 				// New-entry implies the file is still NOT up-to-date
 				CVSTracer.traceIf( request.traceProcessing,
-						   "NEW_ENTRY: name '" + item.getPathName()
+						   () -> "NEW_ENTRY: name '" + item.getPathName()
 						   + "' entryLine '" + item.getEntriesLine() + '\'');
 
 				if ( request.handleEntries )
@@ -1952,7 +3143,7 @@ CVSProject
 
 			case CVSResponseItem.REMOVED:
 				CVSTracer.traceIf( request.traceProcessing,
-					"REMOVED: " + item.getPathName() );
+					() -> "REMOVED: " + item.getPathName() );
 
 				if ( request.handleEntries )
 					{
@@ -1962,7 +3153,7 @@ CVSProject
 
 			case CVSResponseItem.REMOVE_ENTRY:
 				CVSTracer.traceIf( request.traceProcessing,
-					"REMOVE_ENTRY: " + item.getPathName() );
+					() -> "REMOVE_ENTRY: " + item.getPathName() );
 
 				if ( request.handleEntries )
 					{
@@ -2002,6 +3193,65 @@ CVSProject
 					 "    '" + item.getEntriesLine() + '\'');
 				break;
 
+			case CVSResponseItem.RCS_DIFF:
+				if ( request.handleUpdated )
+					{
+					entry = this.createItemEntry( item );
+					if ( entry == null )
+						{
+						CVSLog.logMsg
+							("CVSResponse: ERROR creating item entry '"
+							 + item + '\'');
+						result = false;
+						break;
+						}
+
+					ok = this.ensureEntryHierarchy
+							( item.getPathName(), item.getRepositoryPath() );
+
+					localFile = this.getEntryFile( entry );
+
+					if ( ok )
+						{
+						request.getUserInterface().uiDisplayProgressMsg
+							( "Patching local file '" + localFile.getPath() + "'." );
+
+						ok = this.patchLocalFile( item, entry, localFile, response );
+						}
+
+					if ( ok )
+						{
+						entry.setTimestamp( localFile );
+						this.recordDigest( localFile );
+
+						if ( request.handleEntries )
+							{
+							this.updateEntriesItem( entry );
+							}
+						}
+					else
+						{
+						final CVSEntry oldEntry =
+							this.locateEntry( entry.getFullName() );
+
+						if ( oldEntry != null )
+							{
+							response.appendStderr
+								( "Could not apply the patch to '"
+									+ localFile.getPath() + "'; will refetch.\n" );
+							this.failedPatches.appendEntry( oldEntry );
+							}
+						else
+							{
+							response.appendStderr
+								( "ERROR failed patching local file '"
+									+ localFile.getPath() + "'.\n" );
+							result = false;
+							}
+						}
+					}
+				break;
+
 			case CVSResponseItem.CREATED:
 			case CVSResponseItem.MERGED:
 			case CVSResponseItem.UPDATED:
@@ -2057,14 +3307,17 @@ CVSProject
 							if ( isInConflict )
 								{
 								entry.setConflict( localFile );
+								this.forgetDigest( localFile );
 								}
 							else if ( item.getType() == CVSResponseItem.MERGED )
 								{
 								entry.setTimestamp( "Result of merge" );
+								this.forgetDigest( localFile );
 								}
 							else
 								{
 								entry.setTimestamp( localFile );
+								this.recordDigest( localFile );
 								}
 
 							if ( request.handleEntries )
@@ -2301,7 +3554,7 @@ CVSProject
 			if ( name != null && time != null && host != null && wdir != null )
 				{
 				final CVSEntry entry =
-					this.pathTable.get( wdir );
+					this.getPathTableEntry( wdir );
 
 				if ( entry != null )
 					{
@@ -2474,7 +3727,7 @@ CVSProject
 		// We need to set the Entry List to mark this as a directory.
 		rootEntry.setDirectoryEntryList( new CVSEntryVector() );
 
-		this.pathTable.put( rootEntry.getLocalDirectory(), rootEntry );
+		this.putPathTableEntry( rootEntry.getLocalDirectory(), rootEntry );
 
 		if ( deepDebug )
 		CVSTracer.traceIf( true,
@@ -2493,16 +3746,14 @@ CVSProject
 
 		if ( deepDebug )
 		CVSTracer.traceIf( true,
-				   "CVSProject.openProject: OPEN PROJECT '"
-				   + localRootFile.getPath() + '\'');
+				   "CVSProject.openProject: OPEN PROJECT '{}'", localRootFile.getPath() );
 
 		final File adminDirFile =
 			new File( localRootFile.getPath(), "CVS" );
 
 		if ( deepDebug )
 		CVSTracer.traceIf( true,
-				   "CVSProject.openProject: adminDirFile '"
-				   + adminDirFile.getPath() + '\'');
+				   "CVSProject.openProject: adminDirFile '{}'", adminDirFile.getPath() );
 
 		if ( ! adminDirFile.exists() )
 			throw new IOException
@@ -2518,8 +3769,7 @@ CVSProject
 
 		if ( deepDebug )
 		CVSTracer.traceIf( true,
-				   "CVSProject.openProject: adminRootFile '"
-				   + adminRootFile.getPath() + '\'');
+				   "CVSProject.openProject: adminRootFile '{}'", adminRootFile.getPath() );
 
 		if ( ! adminRootFile.exists() )
 			throw new IOException
@@ -2533,8 +3783,7 @@ CVSProject
 
 		if ( deepDebug )
 		CVSTracer.traceIf( true,
-				   "CVSProject.openProject: adminRepositoryFile '"
-				   + adminRepositoryFile.getPath() + '\'');
+				   "CVSProject.openProject: adminRepositoryFile '{}'", adminRepositoryFile.getPath() );
 
 		if ( ! adminRepositoryFile.exists() )
 			throw new IOException
@@ -2746,6 +3995,13 @@ CVSProject
 				( "ERROR reading 'Entries' file " );
 			}
 
+		// The entries are new, so the tracker must start over,
+		// with a full check of the files.
+		if ( this.changeTracker != null )
+			{
+			this.setTracksChanges( true );
+			}
+
 		if ( deepDebug )
 			{
 			final StringBuffer buf = new StringBuffer();
@@ -2834,8 +4090,7 @@ CVSProject
 
 		if ( deepDebug )
 		CVSTracer.traceIf( true,
-				   "CVSProject.removeEntriesItem: pathName '"
-				   + item.getPathName() + '\'');
+				   "CVSProject.removeEntriesItem: pathName '{}'", item.getPathName() );
 
 		final String localDirectory =
 			this.normalizeLocalDirectory
@@ -3044,8 +4299,6 @@ CVSProject
 	private boolean
 	readEntries()
 		{
-		final boolean ok = true;
-
 		if ( debugEntryIO )
 		CVSTracer.traceIf( true,
 				   "CVSProject.readEntries:\n"
@@ -3062,36 +4315,42 @@ CVSProject
 				   "CVSProject.readEntries:\n"
 				   + "   WkgDirPath '" + workingDirectory.getPath() + '\'');
 
-		final CVSEntryVector entries =
-			this.readEntriesFile( this.rootEntry, workingDirectory );
+		if ( this.useEntrySnapshot )
+			{
+			this.entrySnapshot = new CVSEntrySnapshot( workingDirectory );
+			this.entrySnapshot.load();
+			}
 
-		if ( entries != null )
-			this.rootEntry.setDirectoryEntryList( entries );
-		else
+		final String localDirectory = this.getLocalDirectory( workingDirectory );
+
+		final String repositoryStr =
+			this.readDirectoryRepository( localDirectory, workingDirectory );
+
+		if ( repositoryStr == null )
 			return false;
 
+		this.rootEntry.setRepository( repositoryStr );
+		this.putPathTableEntry( localDirectory, this.rootEntry );
+
+		final CVSEntryVector entries =
+			this.loadEntriesFile( this.rootEntry, workingDirectory );
+
+		this.rootEntry.setDirectoryEntryList( entries );
+
+		// The root's admin files were just read, so they
+		// need not be written unless something changes.
+		this.rootEntry.setDirty( false );
+
 		return true;
 		}
 
 	/**
-	 * @param dirEntry The entry of the directory being loaded.
-	 * @param workingDirectory The local file system directory of dirEntry.
+	 * Computes the 'local directory' that the entry of a working
+	 * directory will exchange with the server during the protocol.
 	 */
-
-	private CVSEntryVector
-	readEntriesFile(final CVSEntry dirEntry, final File workingDirectory)
+	private String
+	getLocalDirectory( final File workingDirectory )
 		{
-		int			linenum = 0;
-		String		line = null;
-		boolean		ok = true;
-		boolean		isDir = false;
-		BufferedReader in = null;
-
-		final CVSEntryVector entries = new CVSEntryVector();
-
-		// Compute the 'local directory' that this Entry will exchange
-		// with the server during the protocol...
-
 		String localDirectory =
 			CVSCUtilities.importPath
 				( workingDirectory.getPath().substring
@@ -3100,17 +4359,39 @@ CVSProject
 		if (!localDirectory.isEmpty() && localDirectory.charAt(0) == '/')
 			localDirectory = localDirectory.substring(1);
 
-		localDirectory =
-			CVSCUtilities.ensureFinalSlash( "./" + localDirectory );
+		return CVSCUtilities.ensureFinalSlash( "./" + localDirectory );
+		}
 
-		if ( debugEntryIO )
-		CVSTracer.traceIf( true,
-			"CVSProject.readEntriesFile: ENTER\n"
-			+ "   wkgDir    '" + workingDirectory.getPath() + "'\n"
-			+ "   localDir  '" + localDirectory + "'\n"
-			+ "   dirEntry\n" + dirEntry.dumpString( "   " ) );
+	/**
+	 * Returns the full repository path of a working directory, from
+	 * the entry snapshot when the directory's admin files are unchanged,
+	 * or else from the directory's admin files.
+	 *
+	 * @param localDirectory The directory's 'local directory'.
+	 * @param workingDirectory The local file system directory.
+	 * @return The repository, or null if it could not be read.
+	 */
+	private String
+	readDirectoryRepository(
+			final String localDirectory, final File workingDirectory )
+		{
+		final String repositoryStr = this.entrySnapshot == null
+			? null : this.entrySnapshot.getRepository( localDirectory );
 
+		return repositoryStr != null
+			? repositoryStr : this.readDirectoryRepository( workingDirectory );
+		}
 
+	/**
+	 * Reads the 'Root' and 'Repository' admin files of a working
+	 * directory, and returns the directory's full repository path.
+	 *
+	 * @param workingDirectory The local file system directory.
+	 * @return The repository, or null if it could not be read.
+	 */
+	private String
+	readDirectoryRepository( final File workingDirectory )
+		{
 		// ===============  ROOT  ======================
 		final String adminRootPath =
 			rootPathToAdminPath
@@ -3122,7 +4403,7 @@ CVSProject
 
 		if ( debugEntryIO )
 		CVSTracer.traceIf( true,
-			"CVSProject.readEntriesFile: adminRootFile '"
+			"CVSProject.readDirectoryRepository: adminRootFile '"
 			+ adminRootFile.getPath() + "'\n" );
 
 		String rootDirectoryStr =
@@ -3211,7 +4492,7 @@ CVSProject
 
 		if ( debugEntryIO )
 		CVSTracer.traceIf( true,
-			"CVSProject.readEntriesFile: adminRepositoryFile '"
+			"CVSProject.readDirectoryRepository: adminRepositoryFile '"
 			+ adminRepositoryFile.getPath() + "'\n" );
 
 		String repositoryStr = this.readRepository( adminRepositoryFile );
@@ -3238,17 +4519,109 @@ CVSProject
 				repositoryStr = repositoryStr.equals(".") ? rootDirectoryStr : rootDirectoryStr + '/' + repositoryStr;
 			}
 
-		// ============  TABLE ENTRY  ===================
-		dirEntry.setRepository( repositoryStr );
-		this.pathTable.put( localDirectory, dirEntry );
+		return repositoryStr;
+		}
+
+	/**
+	 * Adds the entry of a subdirectory to the pathTable, with the
+	 * repository from its admin files. The subdirectory's own entries
+	 * are only read when its entry list is first needed, so that
+	 * opening a project only reads the directories that are used.
+	 *
+	 * @param entry The entry of the subdirectory.
+	 * @param workingDirectory The local file system directory of entry.
+	 * @param localDirectory The subdirectory's 'local directory'.
+	 * @param parentRepository The repository of the parent directory.
+	 */
+	private void
+	registerDirectoryEntry(
+			final CVSEntry entry, final File workingDirectory,
+			final String localDirectory, final String parentRepository )
+		{
+		String repositoryStr =
+			this.readDirectoryRepository( localDirectory, workingDirectory );
+
+		entry.setLocalDirectory( localDirectory );
+
+		if ( repositoryStr == null )
+			{
+			CVSLog.logMsg
+				("ERROR failed reading Entries file from '"
+				 + workingDirectory.getPath() + '\'');
+
+			repositoryStr = parentRepository + '/' + entry.getName();
+			entry.setDirectoryEntryList( new CVSEntryVector() );
+			}
+		else
+			{
+			entry.setDirectoryEntryLoader
+				( () -> this.loadEntriesFile( entry, workingDirectory ) );
+			}
+
+		entry.setRepository( repositoryStr );
+		this.putPathTableEntry( localDirectory, entry );
 
 		if ( debugEntryIO )
 		CVSTracer.traceIf( true,
 				   "READENTRIES: ADDED PATH TABLE ENTRY\n"
-				   + "   dirEntry:       " + dirEntry.getFullName() + '\n'
+				   + "   dirEntry:       " + entry.getFullName() + '\n'
 				   + "   localDirectory: " + localDirectory + '\n'
 				   + "   repository:     " + repositoryStr );
+		}
+
+	/**
+	 * Loads the entry list of a directory whose entry has been added
+	 * to the pathTable, from the entry snapshot when the directory's
+	 * admin files have not changed since it was saved, or else from
+	 * the directory's 'Entries' file.
+	 *
+	 * @param dirEntry The entry of the directory being loaded.
+	 * @param workingDirectory The local file system directory of dirEntry.
+	 */
+	private CVSEntryVector
+	loadEntriesFile( final CVSEntry dirEntry, final File workingDirectory )
+		{
+		final String[] lines = this.entrySnapshot == null ? null
+			: this.entrySnapshot.takeEntryLines
+				( this.getLocalDirectory( workingDirectory ) );
 
+		if ( lines == null )
+			return this.readEntriesFile( dirEntry, workingDirectory );
+
+		if ( debugEntryIO )
+		CVSTracer.traceIf( true,
+			"CVSProject.loadEntriesFile: FROM SNAPSHOT\n"
+			+ "   wkgDir    '" + workingDirectory.getPath() + "'\n"
+			+ "   lines     " + lines.length );
+
+		return this.parseEntriesLines
+			( dirEntry, workingDirectory, Arrays.asList( lines ) );
+		}
+
+	/**
+	 * Reads the 'Entries' file of a directory whose entry has been
+	 * added to the pathTable. Subdirectories are added to the pathTable
+	 * as they are found, but their entries are not read.
+	 *
+	 * @param dirEntry The entry of the directory being loaded.
+	 * @param workingDirectory The local file system directory of dirEntry.
+	 */
+
+	private CVSEntryVector
+	readEntriesFile(final CVSEntry dirEntry, final File workingDirectory)
+		{
+		final String localDirectory = this.getLocalDirectory( workingDirectory );
+
+		if ( debugEntryIO )
+		CVSTracer.traceIf( true,
+			"CVSProject.readEntriesFile: ENTER\n"
+			+ "   wkgDir    '" + workingDirectory.getPath() + "'\n"
+			+ "   localDir  '" + localDirectory + "'\n"
+			+ "   dirEntry\n" + dirEntry.dumpString( "   " ) );
+
+		final String adminRootPath =
+			rootPathToAdminPath
+				( CVSCUtilities.importPath( workingDirectory.getPath() ) );
 
 		// ==============  ENTRIES  ===================
 
@@ -3275,26 +4648,57 @@ CVSProject
 			"CVSProject.readEntriesFile: entriesFile '"
 			+ entriesFile.getPath() + "'\n" );
 
-		try {
-			in = new BufferedReader
-						( new FileReader( entriesFile ) );
-			}
-		catch ( final IOException ex )
+		// The stamp is taken before reading, so that a change made
+		// while the file is read makes the snapshot's copy stale.
+		if ( this.entrySnapshot != null )
 			{
-			in = null;
-			ok = false;
+			this.entrySnapshot.stamp( localDirectory );
 			}
 
-		for ( linenum = 1 ; ok ; ++linenum )
+		final Vector<String> lines = new Vector<>();
+
+		try ( BufferedReader in =
+				new BufferedReader( new FileReader( entriesFile ) ) )
 			{
-			try { line = in.readLine();	}
-			catch ( final IOException ex )
+			for ( String line ; (line = in.readLine()) != null ; )
 				{
-				line = null;
-				break;
+				lines.addElement( line );
 				}
+			}
+		catch ( final IOException ex )
+			{
+			// Parse whatever was read, as we always have.
+			}
+
+		return this.parseEntriesLines( dirEntry, workingDirectory, lines );
+		}
+
+	/**
+	 * Parses the lines of a directory's 'Entries' file into its entry
+	 * list. Subdirectories are added to the pathTable as they are found,
+	 * but their entries are not read. The list is not dirty, since it
+	 * is just as it is on disk.
+	 *
+	 * @param dirEntry The entry of the directory being loaded.
+	 * @param workingDirectory The local file system directory of dirEntry.
+	 * @param lines The lines of the 'Entries' file.
+	 */
+	private CVSEntryVector
+	parseEntriesLines(
+			final CVSEntry dirEntry, final File workingDirectory,
+			final List<String> lines )
+		{
+		boolean		ok = true;
+		boolean		isDir = false;
 
-			if ( line == null ) break;
+		final CVSEntryVector entries = new CVSEntryVector( lines.size() );
+
+		final String localDirectory = this.getLocalDirectory( workingDirectory );
+		final String repositoryStr = dirEntry.getRepository();
+
+		for ( int linenum = 1 ; ok && linenum <= lines.size() ; ++linenum )
+			{
+			String line = lines.get( linenum - 1 );
 
 			// UNDONE
 			// We need to properly handle "D/" entries (i.e. look up subfolders
@@ -3327,7 +4731,7 @@ CVSProject
 					{
 					if ( debugEntryIO )
 					CVSTracer.traceIf( true,
-							   "CVSProject.readEntriesFile: PARSED ENTRY\n"
+							   "CVSProject.parseEntriesLines: PARSED ENTRY\n"
 							   + "   entry:          " + entry.getName() + '\n'
 							   + "   repository:     " + repositoryStr + '\n'
 							   + "   localDirectory: " + localDirectory );
@@ -3342,46 +4746,17 @@ CVSProject
 						final String newLocal =
 								localDirectory + entry.getName() + '/';
 
-						final String newRepos =
-								repositoryStr + '/' + entry.getName();
-
-						entry.setRepository( newRepos );
-						entry.setLocalDirectory( newLocal );
-
-						final String newWkgPath =
-							workingDirectory.getPath()
-								+ File.separator + entry.getName()
-								+ File.separator;
-
-						final String adminPath = newLocal + "CVS";
-
 						final File newWorking =
 							new File( workingDirectory, entry.getName() );
-							//	this.localRootDirectory + "/"
-							//	+ localDirectory + entry.getName()
-							//	);
 
 						if ( debugEntryIO )
 						CVSTracer.traceIf ( true,
-								    "readEntriesFile: IS DIRECTORY:\n"
-								    + "   entriesFile   '" + entriesFile.getPath() + "'\n"
+								    "parseEntriesLines: IS DIRECTORY:\n"
 								    + "   NewWorkingDir '" + newWorking.getPath() + "'\n"
-								    + "   newRepos      '" + newRepos + "'\n"
 								    + "   newLocal      '" + newLocal + '\'');
 
-						CVSEntryVector newEntries =
-							readEntriesFile( entry, newWorking );
-
-						if ( newEntries == null )
-							{
-							CVSLog.logMsg
-								("ERROR failed reading Entries file from '"
-								 + newWorking.getPath() + '\'');
-
-							newEntries = new CVSEntryVector();
-							}
-
-						entry.setDirectoryEntryList( newEntries );
+						this.registerDirectoryEntry
+							( entry, newWorking, newLocal, repositoryStr );
 						}
 					}
 
@@ -3389,11 +4764,8 @@ CVSProject
 				}
 			}
 
-		if ( in != null )
-			{
-			try { in.close(); }
-				catch ( final IOException ex ) {}
-			}
+		entries.setDirty( false );
+		entries.startTrackingChanges();
 
 		return entries;
 		}
@@ -3415,6 +4787,16 @@ CVSProject
 			this.writeAdminAndDescend
 				( localPath, this.rootEntry );
 
+		if ( result && this.digestIndex != null )
+			{
+			result = this.digestIndex.save();
+			}
+
+		if ( result )
+			{
+			result = this.saveEntrySnapshot();
+			}
+
 		if ( ! result )
 			{
 			// UNDONE - can we report better here?
@@ -3504,7 +4886,7 @@ CVSProject
 				}
 
 			// ==============    ENTRIES   ==================
-			result = this.writeAdminEntriesFile( entriesFile, entries );
+			result = this.writeAdminEntries( adminFile, entriesFile, entries );
 
 			if ( result )
 				{
@@ -3533,6 +4915,11 @@ CVSProject
 							( reposFile, dirEntry.getRepository() );
 					}
 				}
+
+			if ( result && this.entrySnapshot != null )
+				{
+				this.entrySnapshot.stamp( localDir );
+				}
 			}
 
 		if ( ! result )
@@ -3546,36 +4933,40 @@ CVSProject
 
 		for ( i = 0 ; result && i < entries.size() ; ++i )
 			{
-			CVSTracer.traceIf( debugEntryIO,
-				"CVSProject.writeAdminAndDescend: LOOP i = " + i );
-
 			final CVSEntry entry = entries.entryAt(i);
 
-			CVSTracer.traceIf( debugEntryIO,
-					   "CVSProject.writeAdminAndDescend: "
-					   + "LOOP[" + i + "] repository '" + repository
-					   + "' entry '" + entry.getName() + '\'');
+			if ( debugEntryIO )
+				{
+				CVSTracer.traceIf( true,
+					"CVSProject.writeAdminAndDescend: LOOP i = " + i );
+
+				CVSTracer.traceIf( true,
+						   "CVSProject.writeAdminAndDescend: "
+						   + "LOOP[" + i + "] repository '" + repository
+						   + "' entry '" + entry.getName() + '\'');
+				}
 
-			if ( entry.isDirectory() )
+			// A directory that has not been read has not changed.
+			if ( entry.isDirectory() && entry.isEntryListLoaded() )
 				{
 				// REVIEW I know this is gonna fail on subtrees!!!
 				//
 				CVSTracer.traceIf( debugEntryIO,
-						   "CVSProject.writeAdminAndDescend: "
-						   + "DESCEND into '" + entry.getFullName() + '\'');
+					() -> "CVSProject.writeAdminAndDescend: "
+						+ "DESCEND into '" + entry.getFullName() + '\'');
 
 				result = this.writeAdminAndDescend( localRoot, entry );
 
 				CVSTracer.traceIf( debugEntryIO,
 						   "CVSProject.writeAdminAndDescend: "
-						   + "RETURNED from '" + entry.getFullName()
-						   + "' with '" + result + '\'');
+						   + "RETURNED from '{}' with '{}'", entry.getFullName(), result );
 				}
 			}
 
 		if ( result )
 			{
 			entries.setDirty( false );
+			entries.startTrackingChanges();
 			dirEntry.setDirty( false );
 			}
 
@@ -3584,6 +4975,69 @@ CVSProject
 		return result;
 		}
 
+	/**
+	 * Writes the changes to a directory's entries. When the changes are
+	 * known, and are few next to the size of the directory, they are
+	 * appended to 'Entries.Log', so that the cost of the write follows
+	 * the changes. The log is integrated into 'Entries' once it is half
+	 * the size of 'Entries'. Otherwise, 'Entries' is rewritten in full,
+	 * after integrating any log, so that a log can never be replayed
+	 * over newer entries.
+	 *
+	 * @param adminDir The directory's 'CVS' admin directory.
+	 * @param entriesFile The directory's 'Entries' file.
+	 * @param entries The directory's entries.
+	 * @return True if the entries were written.
+	 */
+	private boolean
+	writeAdminEntries(
+			final File adminDir, final File entriesFile,
+			final CVSEntryVector entries )
+		{
+		final File logFile = new File( adminDir, "Entries.Log" );
+
+		final Vector<String> logLines =
+			entriesFile.exists() ? entries.getEntriesLogLines() : null;
+
+		try {
+			if ( logLines != null
+					&& entries.size() >= MIN_LOGGED_ENTRIES
+					&& logLines.size() * LOGGED_CHANGES_DIVISOR <= entries.size() )
+				{
+				if ( ! logLines.isEmpty() )
+					{
+					CVSCUtilities.appendLines( logFile, logLines );
+					}
+
+				if ( logFile.length() * 2 > entriesFile.length() )
+					{
+					CVSCUtilities.integrateEntriesLog( adminDir );
+					}
+
+				return true;
+				}
+
+			CVSCUtilities.integrateEntriesLog( adminDir );
+			}
+		catch ( final IOException ex )
+			{
+			CVSLog.logMsg
+				( "CVSProject.writeAdminEntries: "
+					+ "ERROR writing entries log '"
+					+ logFile.getPath() + "' - "
+					+ ex.getMessage() );
+
+			return false;
+			}
+
+		return this.writeAdminEntriesFile( entriesFile, entries );
+		}
+
+	/**
+	 * Rewrites a directory's 'Entries' file in full. The entries are
+	 * written to 'Entries.Backup', which then replaces 'Entries', so
+	 * that a crash never leaves a partly written 'Entries' file.
+	 */
 	private boolean
 	writeAdminEntriesFile(final File entriesFile, final CVSEntryVector entries)
 		{
@@ -3592,9 +5046,12 @@ CVSProject
 		CVSEntry	entry = null;
 		BufferedWriter	out = null;
 
+		final File backupFile =
+			new File( entriesFile.getParentFile(), "Entries.Backup" );
+
 		try {
 			out = new BufferedWriter(
-					new FileWriter( entriesFile ) );
+					new FileWriter( backupFile ) );
 			}
 		catch ( final Exception ex )
 			{
@@ -3641,6 +5098,28 @@ CVSProject
 			result = false;
 			}
 
+		if ( result )
+			{
+			try {
+				CVSCUtilities.replaceFile( backupFile, entriesFile );
+				}
+			catch ( final IOException ex )
+				{
+				CVSLog.logMsg
+					( "CVSProject.writeAdminEntriesFile: "
+						+ "ERROR replacing entries file '"
+						+ entriesFile.getPath() + "' - "
+						+ ex.getMessage() );
+
+				result = false;
+				}
+			}
+
+		if ( ! result )
+			{
+			backupFile.delete();
+			}
+
 		return result;
 		}
 
@@ -3732,7 +5211,89 @@ CVSProject
 	isLocalFileModified( final CVSEntry entry )
 		{
 		final File entryFile = this.getEntryFile( entry );
-		return entry.isLocalFileModified( entryFile );
+
+		final CVSChangeTracker tracker = this.changeTracker;
+		if ( tracker != null && entry.getCVSTime() != null
+				&& ! entry.isForceModified() )
+			{
+			if ( ! tracker.isValid() )
+				this.establishChangeBaseline( tracker );
+
+			if ( tracker.isValid() && ! tracker.isTouched( entryFile ) )
+				return false;
+			}
+
+		return this.checkLocalFileModified( entry, entryFile );
+		}
+
+	private boolean
+	checkLocalFileModified( final CVSEntry entry, final File entryFile )
+		{
+		if ( ! entry.isLocalFileModified( entryFile ) )
+			return false;
+
+		return this.digestIndex == null
+			|| entry.isForceModified() || entry.isInConflict()
+			|| ! this.digestIndex.isUnchanged( entryFile );
+		}
+
+	/**
+	 * Checks every file of the project, to give the change tracker
+	 * the files that are modified now. The tracker takes it from
+	 * there with the files that are touched afterwards.
+	 */
+	private void
+	establishChangeBaseline( final CVSChangeTracker tracker )
+		{
+		synchronized ( this.baselineLock )
+			{
+			if ( tracker.isValid() )
+				return;
+
+			final int generation = tracker.beginBaseline();
+
+			this.loadAllEntries();
+			final CVSEntryVector entries = new CVSEntryVector();
+			this.getRootEntry().addAllSubTreeEntries( entries );
+
+			final Vector<File> modified = new Vector<>();
+			for ( int i = 0, sz = entries.size() ; i < sz ; ++i )
+				{
+				final CVSEntry entry = entries.entryAt( i );
+				final File entryFile = this.getEntryFile( entry );
+
+				if ( this.checkLocalFileModified( entry, entryFile ) )
+					modified.addElement( entryFile );
+				}
+
+			tracker.endBaseline( generation, modified );
+
+			CVSTracer.traceIf( deepDebug,
+				"CVSProject.establishChangeBaseline: {} of {} files modified",
+				modified.size(), entries.size() );
+			}
+		}
+
+	/**
+	 * Records the digest of a working file that now has the
+	 * server's contents, if we are keeping digests.
+	 */
+	private void
+	recordDigest( final File localFile )
+		{
+		if ( this.digestIndex != null )
+			this.digestIndex.record( localFile );
+		}
+
+	/**
+	 * Forgets the digest of a working file whose contents
+	 * differ from the server's, if we are keeping digests.
+	 */
+	private void
+	forgetDigest( final File localFile )
+		{
+		if ( this.digestIndex != null )
+			this.digestIndex.forget( localFile );
 		}
 
 	/**
@@ -3773,68 +5334,131 @@ CVSProject
 			return true;
 			}
 
-		this.checkReleaseAndDescend
-			( this.getRootEntry(), ignore, mods, adds, rems, unks );
+		final CVSWorkingStatus status = this.scanWorkingStatus( ignore );
 
-		return !mods.isEmpty() || !adds.isEmpty()
-		       || !rems.isEmpty() || !unks.isEmpty();
+		mods.addAll( status.getModified() );
+		// A lost file is lost to the user too.
+		mods.addAll( status.getLost() );
+		adds.addAll( status.getAdded() );
+		rems.addAll( status.getRemoved() );
+		unks.addAll( status.getUnknown() );
+
+		return status.hasChanges();
 		}
 
-	private void
-	checkReleaseAndDescend(
-			final CVSEntry parent, final CVSIgnore ignore,
-			final Vector mods, final Vector adds, final Vector rems, final Vector unks )
+	/**
+	 * Determines the status of every entry of the project's
+	 * working copy, and finds the files that have no entry.
+	 * The directories are scanned in parallel, and each one
+	 * is listed only once.
+	 *
+	 * @param ignore The specs of the unknown files to leave out.
+	 * @return The status of the working copy.
+	 */
+
+	public CVSWorkingStatus
+	scanWorkingStatus( final CVSIgnore ignore )
 		{
-		final CVSEntryVector entries = parent.getEntryList();
+		this.syncChangeTracker();
 
-		final File dirF = this.getLocalEntryFile( parent );
-		final String[] list = dirF.list();
-		final Vector fileV =
-			new Vector( list == null ? 0 : list.length );
+		return getWorkingCopyPool().invoke
+			( new StatusScanTask( this.getRootEntry(), ignore ) );
+		}
+
+	/**
+	 * Scans one directory, while its subdirectories are scanned
+	 * by tasks of their own. The results of the subdirectories
+	 * are joined in entry order, so that the lists come out in
+	 * the same order as a walk on a single thread.
+	 */
+	private final
+	class		StatusScanTask
+	extends		RecursiveTask<CVSWorkingStatus>
+		{
+		private final CVSEntry		parent;
+		private final CVSIgnore		ignore;
 
-		if ( list != null )
+		StatusScanTask( final CVSEntry parent, final CVSIgnore ignore )
 			{
-			for ( final String element : list )
-				fileV.addElement( element );
+			this.parent = parent;
+			this.ignore = ignore;
 			}
 
-		for ( int i = 0 ; i < entries.size() ; ++i )
+		@Override
+		protected CVSWorkingStatus
+		compute()
 			{
-			final CVSEntry entry = entries.entryAt(i);
+			final CVSEntryVector entries = this.parent.getEntryList();
+			final int count = entries.size();
 
-			// Anything we have an entry for is not unknown
-			fileV.removeElement( entry.getName() );
+			final StatusScanTask[] subTasks = new StatusScanTask[ count ];
+			for ( int i = 0 ; i < count ; ++i )
+				{
+				final CVSEntry entry = entries.entryAt( i );
+				if ( entry.isDirectory() )
+					{
+					subTasks[i] = new StatusScanTask( entry, this.ignore );
+					subTasks[i].fork();
+					}
+				}
 
-			if ( entry.isDirectory() )
+			final File dirF = CVSProject.this.getLocalEntryFile( this.parent );
+			final String[] list = dirF.list();
+			final HashSet<String> listed = new HashSet<>();
+			if ( list != null )
 				{
-				this.checkReleaseAndDescend
-					( entry, ignore,
-						mods, adds, rems, unks );
+				Collections.addAll( listed, list );
 				}
-			else
+
+			final CVSWorkingStatus result = new CVSWorkingStatus();
+			final HashSet<String> known = new HashSet<>( count * 2 );
+
+			for ( int i = 0 ; i < count ; ++i )
 				{
-				if ( entry.isNewUserFile() )
-					adds.addElement( entry.getFullName() );
+				final CVSEntry entry = entries.entryAt( i );
+
+				// Anything we have an entry for is not unknown
+				known.add( entry.getName() );
+
+				if ( subTasks[i] != null )
+					{
+					result.append( subTasks[i].join() );
+					}
+				else if ( entry.isNewUserFile() )
+					{
+					result.getAdded().addElement( entry.getFullName() );
+					}
 				else if ( entry.isToBeRemoved() )
-					rems.addElement( entry.getFullName() );
-				else if ( entry.isInConflict() )
-					mods.addElement( entry.getFullName() );
-				else if ( this.isLocalFileModified( entry ) )
-					mods.addElement( entry.getFullName() );
-				else if ( this.isLocalFileModified( entry ) )
-					mods.addElement( entry.getFullName() );
+					{
+					result.getRemoved().addElement( entry.getFullName() );
+					}
+				else if ( ! listed.contains( entry.getName() ) )
+					{
+					result.getLost().addElement( entry.getFullName() );
+					}
+				else if ( entry.isInConflict()
+						|| CVSProject.this.isLocalFileModified( entry ) )
+					{
+					result.getModified().addElement( entry.getFullName() );
+					}
 				}
-			}
 
-		for ( int i = 0, sz = fileV.size() ; i < sz ; ++i )
-			{
-			final String fileName = (String) fileV.elementAt( i );
-			if ( ! ignore.isFileToBeIgnored( fileName ) )
+			if ( list != null )
 				{
-				// parent is a dir entry, which always has a '/'
-				// on the end of its fullname.
-				unks.addElement( parent.getFullName() + fileName );
+				for ( final String fileName : list )
+					{
+					if ( ! known.contains( fileName )
+							&& ! this.ignore.isFileToBeIgnored( fileName ) )
+						{
+						// parent is a dir entry, which always has a '/'
+						// on the end of its fullname.
+						result.getUnknown().addElement
+							( this.parent.getFullName() + fileName );
+						}
+					}
 				}
+
+			return result;
 			}
 		}
 
@@ -3865,6 +5489,7 @@ CVSProject
 					{
 					this.descendAndDelete( dirF );
 					parent.removeEntry( entry );
+					this.removePathTableEntry( entry );
 					}
 				else if ( list.length == 1 && list[0].equals( "CVS" ) )
 					{
@@ -3873,6 +5498,7 @@ CVSProject
 						{
 						this.descendAndDelete( dirF );
 						parent.removeEntry( entry );
+						this.removePathTableEntry( entry );
 						}
 					}
 				else
@@ -4049,7 +5675,7 @@ CVSProject
 		result = ! checkEntry.isLocalFileModified( file );
 
 		 CVSTracer.traceIf( false,
-				    "CVSProject.checkOverWrite: RESULT '" + result + '\'');
+				    "CVSProject.checkOverWrite: RESULT '{}'", result );
 
 		return result;
 		}
@@ -4089,8 +5715,7 @@ CVSProject
 				{
 				if ( false )
 				CVSTracer.traceIf( false,
-						   "CVSProject.locateEntry: PARENT '"
-						   + parentEntry.getFullName() + '\'');
+						   "CVSProject.locateEntry: PARENT '{}'", parentEntry.getFullName() );
 
 				entry = parentEntry.locateEntry( name );
 				}
@@ -4376,8 +6001,15 @@ CVSProject
 			workingDirF = new File
 				( workingDirF, CVSCUtilities.exportPath( newEntry.getFullPathName() ) );
 
-			final CVSEntryVector entries =
-				this.readEntriesFile( newEntry, workingDirF );
+			final String existingRepository =
+				this.readDirectoryRepository( workingDirF );
+
+			CVSEntryVector entries = null;
+			if ( existingRepository != null )
+				{
+				newEntry.setRepository( existingRepository );
+				entries = this.readEntriesFile( newEntry, workingDirF );
+				}
 
 			if ( deepDebug )
 			CVSTracer.traceIf( true,
@@ -4398,7 +6030,7 @@ CVSProject
 					   + "   CUR ENTRY:" + curEntry.dumpString( "   " ) + '\n'
 					   + "   NEW ENTRY:" + newEntry.dumpString( "   " ) );
 
-			this.pathTable.put( newEntry.getLocalDirectory(), newEntry );
+			this.putPathTableEntry( newEntry.getLocalDirectory(), newEntry );
 
 			curEntry.appendEntry( newEntry );
 			curEntry = newEntry;
@@ -4469,8 +6101,7 @@ CVSProject
 
 				if ( deepDebug )
 				CVSTracer.traceIf( true,
-						   "CVSClient.ensureProperWorkingDirectory: ADMINDIR '"
-						   + adminDir.getPath() + '\'');
+						   "CVSClient.ensureProperWorkingDirectory: ADMINDIR '{}'", adminDir.getPath() );
 
 				if ( ! adminDir.exists() )
 					adminDir.mkdir();
@@ -4575,7 +6206,7 @@ CVSProject
 		final boolean result = localFile.renameTo( toFile );
 
 		CVSTracer.traceIf( false,
-				   "CVSProject.moveLocalFile: rename returns '" + result + '\'');
+				   "CVSProject.moveLocalFile: rename returns '{}'", result );
 
 		if ( ! result )
 			throw new CVSFileException
@@ -4588,6 +6219,10 @@ CVSProject
 		{
 		boolean result = true;
 
+		// The CVSClient has already written the working file.
+		if ( item.isDelivered() )
+			return true;
+
 		final int trans = CVSCUtilities.computeTranslation( entry );
 
 		result = this.copyFile
@@ -4596,6 +6231,96 @@ CVSProject
 		return result;
 		}
 
+	/**
+	 * Applies the RCS diff in the item's file to the local file,
+	 * verifies the result against the checksum the server sent, if
+	 * any, and replaces the local file with the result.
+	 *
+	 * @return True if the local file was patched.
+	 */
+	private boolean
+	patchLocalFile(
+			final CVSResponseItem item, final CVSEntry entry,
+			final File localFile, final CVSResponse response )
+		{
+		if ( ! localFile.exists() )
+			{
+			CVSLog.logMsg
+				( "CVSProject.patchLocalFile: no base file '"
+					+ localFile.getPath() + '\'');
+			return false;
+			}
+
+		final byte[] lineSep =
+			CVSCUtilities.computeTranslation( entry ) == CVSClient.TRANSLATE_ASCII
+				? System.getProperty( "line.separator" ).getBytes()
+				: new byte[] { '\n' };
+
+		final byte[] patched;
+		try {
+			final byte[] base =
+				CVSRcsDiff.importNewLines
+					( Files.readAllBytes( localFile.toPath() ), lineSep );
+
+			byte[] diff = Files.readAllBytes( item.getFile().toPath() );
+			if ( item.isGZIPed() )
+				{
+				final ByteArrayOutputStream out = new ByteArrayOutputStream();
+				try ( final InputStream in = new GZIPInputStream
+							( new ByteArrayInputStream( diff ) ) )
+					{
+					final byte[] buffer = new byte[ 8192 ];
+					for ( int bytes ; ( bytes = in.read( buffer ) ) >= 0 ; )
+						out.write( buffer, 0, bytes );
+					}
+				diff = out.toByteArray();
+				}
+
+			patched = CVSRcsDiff.apply( base, diff );
+			}
+		catch ( final IOException | ParseException ex )
+			{
+			CVSLog.logMsg
+				( "CVSProject.patchLocalFile: ERROR patching '"
+					+ localFile.getPath() + "', " + ex.getMessage() );
+			return false;
+			}
+
+		final String checksum = item.getChecksum();
+		if ( checksum != null
+				&& ! checksum.equalsIgnoreCase( CVSRcsDiff.checksum( patched ) ) )
+			{
+			CVSLog.logMsg
+				( "CVSProject.patchLocalFile: checksum mismatch for '"
+					+ localFile.getPath() + '\'');
+			return false;
+			}
+
+		final File tempFile = new File
+			( localFile.getParentFile(), ".#" + localFile.getName() + ".patch" );
+
+		try {
+			Files.write
+				( tempFile.toPath(),
+					CVSRcsDiff.exportNewLines( patched, lineSep ) );
+
+			CVSCUtilities.replaceFile( tempFile, localFile );
+			}
+		catch ( final IOException ex )
+			{
+			tempFile.delete();
+			response.appendStderr
+				( "ERROR writing patched file '" + localFile.getPath()
+					+ "', " + ex.getMessage() + "\n" );
+			CVSLog.logMsg
+				( "CVSProject.patchLocalFile: ERROR writing '"
+					+ localFile.getPath() + "', " + ex.getMessage() );
+			return false;
+			}
+
+		return true;
+		}
+
 	private boolean
 	copyFile(final File from, final File to, final int translation, final boolean isGZIPed)
 		{
@@ -5001,4 +6726,37 @@ CVSProject
 
 		}
 
+
+	/**
+	 * Handles the responses of the partitions of a parallel update
+	 * on behalf of the project, one response item at a time.
+	 */
+	private final class
+	PartitionHandler
+		implements CVSResponseHandler, CVSFileReceiver
+		{
+		@Override
+		public boolean
+		handleResponseItem(
+				final CVSRequest request, final CVSResponse response,
+				final CVSResponseItem item )
+			{
+			synchronized ( CVSProject.this )
+				{
+				return CVSProject.this.handleResponseItem
+					( request, response, item );
+				}
+			}
+
+		@Override
+		public File
+		getDeliveryFile( final CVSRequest request, final CVSResponseItem item )
+			{
+			synchronized ( CVSProject.this )
+				{
+				return CVSProject.this.getDeliveryFile( request, item );
+				}
+			}
+		}
+
 	}
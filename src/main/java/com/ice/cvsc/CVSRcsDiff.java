@@ -0,0 +1,330 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+
+
+/**
+ * Applies the RCS format diffs that the server sends in 'Rcs-diff'
+ * responses. An RCS diff is a sequence of commands, each of which
+ * refers to lines of the original file, in increasing order:
+ *
+ * <pre>
+ *    aL N   add the N lines that follow, after line L
+ *    dL N   delete N lines, starting with line L
+ * </pre>
+ *
+ * All contents handled here are in the server's form, with lines
+ * ended by a newline. The importNewLines() and exportNewLines()
+ * methods translate to and from the local line separator.
+ *
+ * @version $Revision: 1.1 $
+ * @see CVSClient
+ * @see CVSProject
+ */
+
+final
+class		CVSRcsDiff
+	{
+	public static final String		RCS_ID = "$Id: CVSRcsDiff.java,v 1.1 $";
+	public static final String		RCS_REV = "$Revision: 1.1 $";
+
+	private static final char[]		HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+
+	private CVSRcsDiff()
+		{
+		}
+
+	/**
+	 * Applies an RCS diff to the contents of a file.
+	 *
+	 * @param base The contents the diff was made against.
+	 * @param diff The diff.
+	 * @return The patched contents.
+	 * @throws ParseException If the diff is invalid, or does not
+	 *         fit the base contents.
+	 */
+	public static byte[]
+	apply( final byte[] base, final byte[] diff )
+		throws ParseException
+		{
+		final int[] baseLines = lineStarts( base );
+		final int baseCount = baseLines.length - 1;
+
+		final ByteArrayOutputStream out =
+			new ByteArrayOutputStream( base.length + diff.length );
+
+		// The number of lines of base that have been copied or deleted.
+		int done = 0;
+
+		int pos = 0;
+		while ( pos < diff.length )
+			{
+			final int eol = lineEnd( diff, pos );
+			final int cmdStart = pos;
+			pos = eol < diff.length ? eol + 1 : eol;
+
+			if ( eol == cmdStart )
+				continue;
+
+			final byte cmd = diff[ cmdStart ];
+			if ( cmd != 'a' && cmd != 'd' )
+				throw new ParseException
+					( "invalid rcs diff command '"
+						+ new String( diff, cmdStart, eol - cmdStart ) + '\'', cmdStart );
+
+			final int space = indexOf( diff, (byte) ' ', cmdStart + 1, eol );
+			if ( space < 0 )
+				throw new ParseException
+					( "invalid rcs diff command '"
+						+ new String( diff, cmdStart, eol - cmdStart ) + '\'', cmdStart );
+
+			final int line = parseInt( diff, cmdStart + 1, space );
+			final int count = parseInt( diff, space + 1, eol );
+
+			if ( cmd == 'a' )
+				{
+				if ( line < done || line > baseCount )
+					throw new ParseException
+						( "rcs diff adds after line " + line
+							+ " of " + baseCount, cmdStart );
+
+				copyLines( base, baseLines, done, line, out );
+				done = line;
+
+				for ( int i = 0 ; i < count ; ++i )
+					{
+					if ( pos >= diff.length )
+						throw new ParseException
+							( "rcs diff ends inside added text", pos );
+
+					final int end = lineEnd( diff, pos );
+					final int next = end < diff.length ? end + 1 : end;
+					out.write( diff, pos, next - pos );
+					pos = next;
+					}
+				}
+			else
+				{
+				if ( line - 1 < done || line - 1 + count > baseCount )
+					throw new ParseException
+						( "rcs diff deletes lines " + line + " to "
+							+ ( line + count - 1 ) + " of " + baseCount, cmdStart );
+
+				copyLines( base, baseLines, done, line - 1, out );
+				done = line - 1 + count;
+				}
+			}
+
+		copyLines( base, baseLines, done, baseCount, out );
+
+		return out.toByteArray();
+		}
+
+	/**
+	 * Returns the MD5 digest of the contents, as the server writes it
+	 * in a 'Checksum' response.
+	 */
+	public static String
+	checksum( final byte[] contents )
+		{
+		final byte[] digest;
+
+		try {
+			digest = MessageDigest.getInstance( "MD5" ).digest( contents );
+			}
+		catch ( final NoSuchAlgorithmException ex )
+			{
+			throw new IllegalStateException( "MD5 is not available", ex );
+			}
+
+		final char[] hex = new char[ digest.length * 2 ];
+		for ( int i = 0 ; i < digest.length ; ++i )
+			{
+			hex[ i * 2 ] = HEX_DIGITS[ ( digest[i] >> 4 ) & 0x0F ];
+			hex[ i * 2 + 1 ] = HEX_DIGITS[ digest[i] & 0x0F ];
+			}
+
+		return new String( hex );
+		}
+
+	/**
+	 * Replaces each local line separator with a newline.
+	 */
+	public static byte[]
+	importNewLines( final byte[] contents, final byte[] lineSep )
+		{
+		if ( lineSep.length == 1 && lineSep[0] == '\n' )
+			return contents;
+
+		final ByteArrayOutputStream out =
+			new ByteArrayOutputStream( contents.length );
+
+		int start = 0;
+		for ( int i = 0 ; i < contents.length ; )
+			{
+			if ( regionMatches( contents, i, lineSep ) )
+				{
+				out.write( contents, start, i - start );
+				out.write( '\n' );
+				i += lineSep.length;
+				start = i;
+				}
+			else
+				{
+				++i;
+				}
+			}
+
+		out.write( contents, start, contents.length - start );
+
+		return out.toByteArray();
+		}
+
+	/**
+	 * Replaces each newline with the local line separator.
+	 */
+	public static byte[]
+	exportNewLines( final byte[] contents, final byte[] lineSep )
+		{
+		if ( lineSep.length == 1 && lineSep[0] == '\n' )
+			return contents;
+
+		final ByteArrayOutputStream out =
+			new ByteArrayOutputStream( contents.length + contents.length / 16 );
+
+		int start = 0;
+		for ( int i = 0 ; i < contents.length ; ++i )
+			{
+			if ( contents[i] == '\n' )
+				{
+				out.write( contents, start, i - start );
+				out.write( lineSep, 0, lineSep.length );
+				start = i + 1;
+				}
+			}
+
+		out.write( contents, start, contents.length - start );
+
+		return out.toByteArray();
+		}
+
+	/**
+	 * Returns the offset of the start of each line, followed by the
+	 * length of the contents. A final line without a newline counts.
+	 */
+	private static int[]
+	lineStarts( final byte[] contents )
+		{
+		int count = 0;
+		for ( int i = 0 ; i < contents.length ; ++i )
+			if ( contents[i] == '\n' )
+				++count;
+
+		if ( contents.length > 0 && contents[ contents.length - 1 ] != '\n' )
+			++count;
+
+		final int[] result = new int[ count + 1 ];
+
+		int line = 0;
+		result[ 0 ] = 0;
+		for ( int i = 0 ; i < contents.length ; ++i )
+			if ( contents[i] == '\n' && line + 1 < count )
+				result[ ++line ] = i + 1;
+
+		result[ count ] = contents.length;
+
+		return result;
+		}
+
+	private static void
+	copyLines(
+			final byte[] base, final int[] lines,
+			final int from, final int to, final ByteArrayOutputStream out )
+		{
+		if ( to > from )
+			out.write( base, lines[ from ], lines[ to ] - lines[ from ] );
+		}
+
+	private static int
+	lineEnd( final byte[] bytes, final int from )
+		{
+		final int index = indexOf( bytes, (byte) '\n', from, bytes.length );
+		return index < 0 ? bytes.length : index;
+		}
+
+	private static int
+	indexOf( final byte[] bytes, final byte b, final int from, final int to )
+		{
+		for ( int i = from ; i < to ; ++i )
+			if ( bytes[i] == b )
+				return i;
+
+		return -1;
+		}
+
+	private static boolean
+	regionMatches( final byte[] bytes, final int offset, final byte[] match )
+		{
+		if ( offset + match.length > bytes.length )
+			return false;
+
+		for ( int i = 0 ; i < match.length ; ++i )
+			if ( bytes[ offset + i ] != match[i] )
+				return false;
+
+		return true;
+		}
+
+	private static int
+	parseInt( final byte[] bytes, final int from, final int to )
+		throws ParseException
+		{
+		if ( from >= to )
+			throw new ParseException( "missing number in rcs diff", from );
+
+		int result = 0;
+		for ( int i = from ; i < to ; ++i )
+			{
+			final int digit = bytes[i] - '0';
+			if ( digit < 0 || digit > 9 )
+				throw new ParseException
+					( "invalid number in rcs diff '"
+						+ new String( bytes, from, to - from ) + '\'', i );
+
+			result = result * 10 + digit;
+			}
+
+		return result;
+		}
+
+	}
+
@@ -49,7 +49,8 @@ import java.util.Vector;
  */
 
 public class
-CVSRequest {
+CVSRequest
+		implements Cloneable {
 	public static final String	RCS_ID = "$Id: CVSRequest.java,v 2.9 2003/07/27 01:08:32 time Exp $";
 	public static final String	RCS_REV = "$Revision: 2.9 $";
 
@@ -257,6 +258,13 @@ CVSRequest {
 	 */
 	public CVSResponseHandler	responseHandler;
 
+	/**
+	 * The response listener. If this field is set, the server's
+	 * output is handed to the listener as it is read, rather than
+	 * being accumulated in the CVSResponse.
+	 */
+	public CVSResponseListener	responseListener;
+
 	/**
 	 * Force every file to go up as 'Modified'.
 	 */
@@ -277,6 +285,41 @@ CVSRequest {
 	 */
 	public boolean				gzipFileMode;
 
+	/**
+	 * If true, the CVSClient may use an authenticated session from
+	 * its CVSConnectionPool, and the pool will prepare a spare session
+	 * for the next request to the same server.
+	 */
+	public boolean				usePooledConnection;
+
+	/**
+	 * If true, the requests that precede the command are collected
+	 * and sent to the server with a single flush, rather than flushing
+	 * each request line as it is sent.
+	 */
+	public boolean				pipelineRequests;
+
+	/**
+	 * If true, and the response handler is a CVSFileReceiver, the
+	 * contents of downloaded files are written directly into the
+	 * working file, rather than into a temporary file that is copied
+	 * into place when the response item is processed.
+	 */
+	public boolean				deliverFilesDirectly;
+
+	/**
+	 * If true, the response handler can apply 'Rcs-diff' responses,
+	 * so we advertise them, and ask the server for diffs rather than
+	 * whole files on 'update', when the server supports it.
+	 */
+	public boolean				useRcsDiff;
+
+	/**
+	 * If not null, the digests of the working files, which are
+	 * used to send files that were only touched as unchanged.
+	 */
+	public CVSDigestIndex		digestIndex;
+
 	/**
 	 * The 'Notification' vector. If this vector is not null
 	 * then it contains a vector if notification strings of the
@@ -385,6 +428,11 @@ CVSRequest {
 		this.gzipStreamLevel = 0;
 		this.gzipFileMode = false;
 		this.allowGzipFileMode = true;
+		this.usePooledConnection = false;
+		this.pipelineRequests = true;
+		this.deliverFilesDirectly = true;
+		this.useRcsDiff = false;
+		this.digestIndex = null;
 
 		this.guaranteeMsg = false;
 		this.redirectOutput = false;
@@ -401,6 +449,7 @@ CVSRequest {
 
 		this.queueResponse = true;
 		this.responseHandler = null;
+		this.responseListener = null;
 
 			/**
 			 * Reflects the current 'Sticky' setting in this request.
@@ -434,6 +483,34 @@ CVSRequest {
 		this.stickys = null;
 		}
 
+	/**
+	 * Returns a copy of this request, such as those used to spread
+	 * a request over several connections. The copy shares the entries,
+	 * arguments and tables of this request until they are set in the
+	 * copy. The copy is never redirected, since the redirection
+	 * belongs to this request.
+	 *
+	 * @return The copy of this request.
+	 */
+	public CVSRequest
+	copyRequest()
+		{
+		final CVSRequest result;
+
+		try {
+			result = (CVSRequest) super.clone();
+			}
+		catch ( final CloneNotSupportedException ex )
+			{
+			throw new InternalError( ex.getMessage() );
+			}
+
+		result.redirectOutput = false;
+		result.redirectWriter = null;
+
+		return result;
+		}
+
 	@Override
 	protected void
 	finalize()
@@ -733,6 +810,29 @@ CVSRequest {
 		this.responseHandler = responseHandler;
 		}
 
+	/**
+	 * Returns the request's response listener.
+	 *
+	 * @return The request's response listener, or null.
+	 */
+	public CVSResponseListener
+	getResponseListener()
+		{
+		return this.responseListener;
+		}
+
+	/**
+	 * Sets the request's response listener.
+	 *
+	 * @param responseListener The listener, or null to accumulate
+	 *        the server's output in the CVSResponse.
+	 */
+	public void
+	setResponseListener( final CVSResponseListener responseListener )
+		{
+		this.responseListener = responseListener;
+		}
+
 	/**
 	 * Returns the request's entry list as a vector.
 	 *
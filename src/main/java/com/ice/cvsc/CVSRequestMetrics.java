@@ -0,0 +1,527 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+import java.io.OutputStream;
+
+
+/**
+ * The measurements of one request processed by a CVSClient. The
+ * client fills in a CVSRequestMetrics while it processes a request,
+ * and hands it to its CVSMetricsListener once the request completes.
+ *
+ * The time of a request is divided among its phases. Each phase is
+ * charged only for its own time, so that the time spent uploading
+ * files is not also counted as time spent sending entries, and the
+ * time spent writing received files is not also counted as time
+ * spent parsing the response. Time that belongs to no phase, such
+ * as sending arguments, is only counted in the elapsed time.
+ *
+ * Bytes are counted both on the wire, and before compression. When
+ * the request does not use 'Gzip-stream', the two are the same.
+ * Bytes are only counted for the connection this request used, so a
+ * pooled connection's login is not counted with the request, and
+ * neither is its connect or auth time.
+ *
+ * @version $Revision: 1.1 $
+ * @see CVSClient#setMetricsListener
+ * @see CVSMetricsListener
+ * @see CVSMetrics
+ */
+
+public final
+class		CVSRequestMetrics
+	{
+	public static final String		RCS_ID = "$Id: CVSRequestMetrics.java,v 1.1 $";
+	public static final String		RCS_REV = "$Revision: 1.1 $";
+
+	public static final int			PHASE_CONNECT = 0;
+	public static final int			PHASE_AUTH = 1;
+	public static final int			PHASE_VALID_REQUESTS = 2;
+	public static final int			PHASE_SEND_ENTRIES = 3;
+	public static final int			PHASE_UPLOAD = 4;
+	public static final int			PHASE_RESPONSE_PARSE = 5;
+	public static final int			PHASE_FILE_WRITE = 6;
+
+	public static final int			PHASE_COUNT = 7;
+
+	/**
+	 * Item counts are indexed by the CVSResponseItem type, which
+	 * runs from CHECKED_IN to RCS_DIFF.
+	 */
+	public static final int			ITEM_TYPE_COUNT = CVSResponseItem.RCS_DIFF + 1;
+
+	private static final String[]	phaseNames =
+		{
+		"connect", "auth", "valid-requests", "send-entries",
+		"upload", "response-parse", "file-write"
+		};
+
+	private static final String[]	itemTypeNames =
+		{
+		null,
+		"Checked-in", "Checksum", "Clear-static-directory",
+		"Clear-sticky", "Copy-file", "Created", "Merged",
+		"Module-expansion", "New-entry", "Notified", "Patched",
+		"Removed", "Remove-entry", "Updated", "Update-existing",
+		"Valid-requests", "Set-checkin-prog", "Set-static-directory",
+		"Set-sticky", "Set-update-prog", "Rcs-diff"
+		};
+
+	private final String			serverKey;
+	private final String			command;
+	private final long				startTime;
+	private final long				startNanos;
+
+	private long					elapsedNanos;
+	private int						status;
+	private boolean					pooled;
+	private boolean					compressed;
+
+	private final long[]			phaseNanos;
+	private int						currentPhase;
+	private long					phaseMark;
+
+	private final long[]			itemCounts;
+	private long					linesReceived;
+	private int						filesSent;
+	private int						filesReceived;
+
+	private CVSInputBuffer			wireInput;
+	private CVSCountingOutputStream	wireOutput;
+	private long					wireInputBase;
+	private long					wireOutputBase;
+	private long					wireBytesReceived;
+	private long					wireBytesSent;
+
+	/**
+	 * The streams above the decompressor and the compressor, with
+	 * the bytes that went uncompressed before we switched to them.
+	 */
+	private CVSInputBuffer			dataInput;
+	private CVSCountingOutputStream	dataOutput;
+	private long					plainBytesReceived;
+	private long					plainBytesSent;
+	private long					bytesReceived;
+	private long					bytesSent;
+
+
+	/**
+	 * Returns the name of a phase, such as 'upload'.
+	 *
+	 * @param phase The phase, such as PHASE_UPLOAD.
+	 */
+	public static String
+	getPhaseName( final int phase )
+		{
+		return CVSRequestMetrics.phaseNames[ phase ];
+		}
+
+	/**
+	 * Returns the protocol name of a response item type,
+	 * such as 'Updated'.
+	 *
+	 * @param type The item type, such as CVSResponseItem.UPDATED.
+	 */
+	public static String
+	getItemTypeName( final int type )
+		{
+		return type > 0 && type < ITEM_TYPE_COUNT
+			? CVSRequestMetrics.itemTypeNames[ type ]
+			: "Unknown-" + type;
+		}
+
+	/**
+	 * Returns the key under which the metrics of the server
+	 * described by the request are rolled up.
+	 *
+	 * @param request The request describing the server.
+	 */
+	public static String
+	getServerKey( final CVSRequest request )
+		{
+		return CVSRequest.getConnMethodName( request.getConnectionMethod() )
+			+ ':' + request.getUserName()
+			+ '@' + request.getHostName()
+			+ ':' + request.getPort()
+			+ ':' + request.getRootDirectory();
+		}
+
+	CVSRequestMetrics( final String serverKey, final String command )
+		{
+		super();
+
+		this.serverKey = serverKey;
+		this.command = command;
+		this.startTime = System.currentTimeMillis();
+		this.startNanos = System.nanoTime();
+
+		this.elapsedNanos = 0;
+		this.status = CVSResponse.OK;
+		this.pooled = false;
+		this.compressed = false;
+
+		this.phaseNanos = new long[ PHASE_COUNT ];
+		this.currentPhase = -1;
+		this.phaseMark = this.startNanos;
+
+		this.itemCounts = new long[ ITEM_TYPE_COUNT ];
+		this.linesReceived = 0;
+		this.filesSent = 0;
+		this.filesReceived = 0;
+		}
+
+	/**
+	 * Returns the key of the server, see getServerKey( CVSRequest ).
+	 */
+	public String
+	getServerKey()
+		{
+		return this.serverKey;
+		}
+
+	public String
+	getCommand()
+		{
+		return this.command;
+		}
+
+	/**
+	 * Returns the time at which the request began, in
+	 * milliseconds since the epoch.
+	 */
+	public long
+	getStartTime()
+		{
+		return this.startTime;
+		}
+
+	public long
+	getElapsedNanos()
+		{
+		return this.elapsedNanos;
+		}
+
+	/**
+	 * Returns the status of the response, CVSResponse.OK or
+	 * CVSResponse.ERROR.
+	 */
+	public int
+	getStatus()
+		{
+		return this.status;
+		}
+
+	/**
+	 * Returns true if the request used a connection from the pool.
+	 */
+	public boolean
+	isPooled()
+		{
+		return this.pooled;
+		}
+
+	/**
+	 * Returns true if the request used 'Gzip-stream'.
+	 */
+	public boolean
+	isCompressed()
+		{
+		return this.compressed;
+		}
+
+	/**
+	 * Returns the time charged to a phase.
+	 *
+	 * @param phase The phase, such as PHASE_UPLOAD.
+	 */
+	public long
+	getPhaseNanos( final int phase )
+		{
+		return this.phaseNanos[ phase ];
+		}
+
+	/**
+	 * Returns the number of items of one type in the response.
+	 *
+	 * @param type The item type, such as CVSResponseItem.UPDATED.
+	 */
+	public long
+	getItemCount( final int type )
+		{
+		return type >= 0 && type < ITEM_TYPE_COUNT
+			? this.itemCounts[ type ] : 0;
+		}
+
+	public long
+	getLinesReceived()
+		{
+		return this.linesReceived;
+		}
+
+	/**
+	 * Returns the number of files uploaded to the server.
+	 */
+	public int
+	getFilesSent()
+		{
+		return this.filesSent;
+		}
+
+	/**
+	 * Returns the number of files downloaded from the server.
+	 */
+	public int
+	getFilesReceived()
+		{
+		return this.filesReceived;
+		}
+
+	/**
+	 * Returns the bytes sent on the wire, after compression.
+	 */
+	public long
+	getWireBytesSent()
+		{
+		return this.wireBytesSent;
+		}
+
+	/**
+	 * Returns the bytes received on the wire, before decompression.
+	 */
+	public long
+	getWireBytesReceived()
+		{
+		return this.wireBytesReceived;
+		}
+
+	/**
+	 * Returns the bytes sent, before compression.
+	 */
+	public long
+	getBytesSent()
+		{
+		return this.bytesSent;
+		}
+
+	/**
+	 * Returns the bytes received, after decompression.
+	 */
+	public long
+	getBytesReceived()
+		{
+		return this.bytesReceived;
+		}
+
+	/**
+	 * Charges the time since the last phase change to the current
+	 * phase, and makes the given phase current.
+	 *
+	 * @param phase The phase being entered.
+	 * @return The phase that was current, to hand to exitPhase().
+	 */
+	int
+	enterPhase( final int phase )
+		{
+		final int result = this.currentPhase;
+
+		this.chargePhase();
+		this.currentPhase = phase;
+
+		return result;
+		}
+
+	/**
+	 * Charges the time since the last phase change to the current
+	 * phase, and returns to the phase that was current before it.
+	 *
+	 * @param previous The value returned by enterPhase().
+	 */
+	void
+	exitPhase( final int previous )
+		{
+		this.chargePhase();
+		this.currentPhase = previous;
+		}
+
+	private void
+	chargePhase()
+		{
+		final long now = System.nanoTime();
+
+		if ( this.currentPhase >= 0 )
+			this.phaseNanos[ this.currentPhase ] += now - this.phaseMark;
+
+		this.phaseMark = now;
+		}
+
+	void
+	countLine()
+		{
+		++this.linesReceived;
+		}
+
+	void
+	countItem( final int type )
+		{
+		if ( type >= 0 && type < ITEM_TYPE_COUNT )
+			++this.itemCounts[ type ];
+		}
+
+	void
+	countFileSent()
+		{
+		++this.filesSent;
+		}
+
+	void
+	countFileReceived()
+		{
+		++this.filesReceived;
+		}
+
+	/**
+	 * Notes the streams of the connection the request will use.
+	 * Only what is read and written after this point is counted.
+	 *
+	 * @param input The client's buffer of the server's input.
+	 * @param output The client's stream to the server.
+	 * @param pooled True if the connection came from the pool.
+	 */
+	void
+	beginConnection(
+			final CVSInputBuffer input, final OutputStream output,
+			final boolean pooled )
+		{
+		this.pooled = pooled;
+		this.wireInput = input;
+		this.wireInputBase = input == null ? 0 : input.getBytesRead();
+
+		if ( output instanceof CVSCountingOutputStream )
+			{
+			this.wireOutput = (CVSCountingOutputStream) output;
+			this.wireOutputBase = this.wireOutput.getCount();
+			}
+		}
+
+	/**
+	 * Notes the streams above the decompressor and compressor,
+	 * once the request has switched to 'Gzip-stream'.
+	 *
+	 * @param input The buffer above the decompressor.
+	 * @param output The stream above the compressor.
+	 */
+	void
+	beginCompression(
+			final CVSInputBuffer input, final CVSCountingOutputStream output )
+		{
+		this.updateWireCounts();
+
+		this.compressed = true;
+		this.plainBytesReceived = this.wireBytesReceived;
+		this.plainBytesSent = this.wireBytesSent;
+		this.dataInput = input;
+		this.dataOutput = output;
+		}
+
+	/**
+	 * Completes the measurements, once the request is done.
+	 *
+	 * @param status The status of the response.
+	 */
+	void
+	finish( final int status )
+		{
+		this.chargePhase();
+		this.currentPhase = -1;
+
+		this.elapsedNanos = System.nanoTime() - this.startNanos;
+		this.status = status;
+
+		this.updateWireCounts();
+
+		if ( this.compressed )
+			{
+			this.bytesReceived =
+				this.plainBytesReceived + this.dataInput.getBytesRead();
+			this.bytesSent =
+				this.plainBytesSent + this.dataOutput.getCount();
+			}
+		else
+			{
+			this.bytesReceived = this.wireBytesReceived;
+			this.bytesSent = this.wireBytesSent;
+			}
+
+		// We let go of the streams, since the listener may
+		// hold on to us long after the connection is closed.
+		this.wireInput = null;
+		this.wireOutput = null;
+		this.dataInput = null;
+		this.dataOutput = null;
+		}
+
+	private void
+	updateWireCounts()
+		{
+		if ( this.wireInput != null )
+			this.wireBytesReceived =
+				this.wireInput.getBytesRead() - this.wireInputBase;
+
+		if ( this.wireOutput != null )
+			this.wireBytesSent =
+				this.wireOutput.getCount() - this.wireOutputBase;
+		}
+
+	@Override
+	public String
+	toString()
+		{
+		final StringBuilder buf = new StringBuilder( 256 );
+
+		buf.append( this.command ).append( " on " ).append( this.serverKey )
+			.append( ": " ).append( this.elapsedNanos / 1000000 ).append( "ms" )
+			.append( this.status == CVSResponse.OK ? " ok" : " error" );
+
+		for ( int i = 0 ; i < PHASE_COUNT ; ++i )
+			{
+			buf.append( ' ' ).append( CVSRequestMetrics.phaseNames[i] )
+				.append( '=' ).append( this.phaseNanos[i] / 1000000 );
+			}
+
+		buf.append( " sent=" ).append( this.bytesSent )
+			.append( '/' ).append( this.wireBytesSent )
+			.append( " received=" ).append( this.bytesReceived )
+			.append( '/' ).append( this.wireBytesReceived )
+			.append( " lines=" ).append( this.linesReceived )
+			.append( " files=" ).append( this.filesSent )
+			.append( '/' ).append( this.filesReceived );
+
+		return buf.toString();
+		}
+
+	}
+
@@ -63,6 +63,7 @@ CVSResponseItem {
 	public static final int		SET_STATIC_DIR		= 18;
 	public static final int		SET_STICKY			= 19;
 	public static final int		SET_UPDATE_PROG		= 20;
+	public static final int		RCS_DIFF			= 21;
 
 	// These are temporaries use in the
 	public static final int		GET_FULL_PATH		= 1;
@@ -79,6 +80,7 @@ CVSResponseItem {
 	private final int				type;
 	private int				addState;
 	private boolean			isGZIPed;
+	private boolean			isDelivered;
 
 	private File			file;
 	private String			text;
@@ -86,6 +88,7 @@ CVSResponseItem {
 	private String			reposName;
 	private String			modeLine;
 	private String			entriesLine;
+	private String			checksum;
 
 	private String			newName;
 	private String			tagSpec;
@@ -99,6 +102,7 @@ CVSResponseItem {
 		this.type = type;
 		this.valid = false;
 		this.isGZIPed = false;
+		this.isDelivered = false;
 
 		this.file = null;
 		this.text = null;
@@ -106,6 +110,7 @@ CVSResponseItem {
 		this.reposName = null;
 		this.modeLine = null;
 		this.entriesLine = null;
+		this.checksum = null;
 
 		this.newName = null;
 		this.tagSpec = null;
@@ -142,6 +147,25 @@ CVSResponseItem {
 		this.isGZIPed = isGZIPed;
 		}
 
+	/**
+	 * Determines whether or not this item's file contents have
+	 * already been written into the working file by the CVSClient.
+	 *
+	 * @return True if the contents have been delivered.
+	 * @see CVSFileReceiver
+	 */
+	public boolean
+	isDelivered()
+		{
+		return this.isDelivered;
+		}
+
+	public void
+	setDelivered( final boolean isDelivered )
+		{
+		this.isDelivered = isDelivered;
+		}
+
 	public boolean
 	isValid()
 		{
@@ -284,15 +308,21 @@ CVSResponseItem {
 		this.tagSpec = tagspec;
 		}
 
+	/**
+	 * Returns the checksum of a CHECKSUM item, or the checksum the
+	 * server sent for the contents of a file item, or null.
+	 */
 	public String
 	getChecksum()
 		{
-			return this.type != CHECKSUM ? null : this.text;
+		return this.checksum;
 		}
 
 	public void
 	setChecksum( final String sumStr )
 		{
+		this.checksum = sumStr;
+
 		if ( this.type == CHECKSUM )
 			{
 			this.text = sumStr;
@@ -0,0 +1,110 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+
+/**
+ * The CVSResponseListener interface lets a caller consume the
+ * server's response while it is being read, rather than after
+ * the request completes. This is intended for commands such as
+ * 'log' and 'annotate', whose output can be very large.
+ *
+ * When a CVSRequest has a response listener, the 'M', 'E' and
+ * 'MT' lines are handed to the listener, and are <strong>not</strong>
+ * accumulated in the CVSResponse's stdout and stderr. Response
+ * items are also shown to the listener as they are parsed, before
+ * they are queued or handed to the response handler as usual.
+ *
+ * The listener is called on the thread that is reading from the
+ * server. The server is not read while a listener method runs, so a
+ * slow listener simply slows down the server. A listener method that
+ * returns false cancels the request.
+ *
+ * @version $Revision: 1.1 $
+ * @see CVSRequest#setResponseListener
+ * @see CVSClient
+ */
+
+public interface
+CVSResponseListener
+	{
+	/**
+	 * Called for each 'M' line, which is the command's output.
+	 *
+	 * @param request The request being processed.
+	 * @param line The text of the line, without the 'M '.
+	 * @return False to cancel the request.
+	 */
+	default boolean
+		messageLine( final CVSRequest request, final String line )
+			{
+			return true;
+			}
+
+	/**
+	 * Called for each 'E' line, which is the command's error output.
+	 *
+	 * @param request The request being processed.
+	 * @param line The text of the line, without the 'E '.
+	 * @return False to cancel the request.
+	 */
+	default boolean
+		errorLine( final CVSRequest request, final String line )
+			{
+			return true;
+			}
+
+	/**
+	 * Called for each 'MT' line, which is tagged command output.
+	 * The tag begins with '+' or '-' when it opens or closes a group.
+	 *
+	 * @param request The request being processed.
+	 * @param tag The tag, such as 'text', 'fname' or 'newline'.
+	 * @param data The text following the tag, or null if none.
+	 * @return False to cancel the request.
+	 */
+	default boolean
+		taggedLine( final CVSRequest request, final String tag, final String data )
+			{
+			return true;
+			}
+
+	/**
+	 * Called for each response item, as soon as it has been parsed.
+	 *
+	 * @param request The request being processed.
+	 * @param response The response being built.
+	 * @param item The response item.
+	 * @return False to cancel the request.
+	 */
+	default boolean
+		responseItem(
+			final CVSRequest request, final CVSResponse response, final CVSResponseItem item )
+			{
+			return true;
+			}
+	}
+
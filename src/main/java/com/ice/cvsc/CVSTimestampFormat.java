@@ -57,9 +57,20 @@ CVSTimestampFormat	extends Format
 
 	private static final String		DEFAULT_GMT_TZID = "GMT";
 
+	private static final String		ENTRY_PATTERN = "EEE MMM dd HH:mm:ss yyyy";
+
 	private static TimeZone		tz;
 	private static String		timezoneID;
 
+	/**
+	 * Every entry's timestamp passes through here, and creating a
+	 * SimpleDateFormat costs far more than using one, so each thread
+	 * keeps its own for the entry timestamp pattern.
+	 */
+	private static final ThreadLocal<SimpleDateFormat>	entryFormat =
+		ThreadLocal.withInitial
+			( () -> new SimpleDateFormat( ENTRY_PATTERN, Locale.US ) );
+
 
 	static
 		{
@@ -94,18 +105,22 @@ CVSTimestampFormat	extends Format
 				( stamp, tz );
 		}
 
+	private static SimpleDateFormat
+	getEntryFormat( final TimeZone tz )
+		{
+		final SimpleDateFormat dateFormat = entryFormat.get();
+
+		if ( dateFormat.getTimeZone() != tz )
+			dateFormat.setTimeZone( tz );
+
+		return dateFormat;
+		}
+
 	private String
 	formatTimeZone(final Date stamp, final TimeZone tz)
 		throws IllegalArgumentException
 		{
-		final Locale loc = Locale.US;
-		final SimpleDateFormat dateFormat;
-
-		dateFormat =
-			new SimpleDateFormat
-				( "EEE MMM dd HH:mm:ss yyyy", loc );
-
-		dateFormat.setTimeZone( tz );
+		final SimpleDateFormat dateFormat = getEntryFormat( tz );
 
 			return dateFormat.format(stamp );
 		}
@@ -178,14 +193,7 @@ CVSTimestampFormat	extends Format
 	parseTimestamp(final String source, final ParsePosition pos)
 		throws ParseException
 		{
-		final Locale loc = Locale.US;
-		final SimpleDateFormat dateFormat;
-
-		dateFormat =
-			new SimpleDateFormat
-				( "EEE MMM dd HH:mm:ss yyyy", loc );
-
-		dateFormat.setTimeZone( tz );
+		final SimpleDateFormat dateFormat = getEntryFormat( tz );
 
 		final Date result = dateFormat.parse( source, pos );
 
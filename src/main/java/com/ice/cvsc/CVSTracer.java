@@ -26,6 +26,8 @@ package com.ice.cvsc;
 
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.function.Supplier;
 
 /**
  * The CVSTracer class implements the a tracing mechanism for
@@ -34,6 +36,18 @@ import java.io.PrintWriter;
  * <strong>strictly</strong> class based interface. There are
  * no instance methods.
  *
+ * The traceIf() methods that take a Supplier, or a format with '{}'
+ * placeholders and its arguments, build the line only when the flag
+ * is set. Use them where the line is costly to build, or where the
+ * trace is in a loop, so that tracing costs nothing when it is off:
+ * <pre>
+ *    CVSTracer.traceIf( request.traceResponse, "PARSE: Update '{}'", pathName );
+ *    CVSTracer.traceIf( traceLocate, () -> "ENTRY " + entry.dumpString() );
+ * </pre>
+ *
+ * When the tracer is asynchronous, lines are written by a thread of
+ * their own, so that tracing does not hold up the protocol.
+ *
  * @version $Revision: 2.4 $
  * @author Timothy Gerard Endres, <a href="mailto:time@ice.com">time@ice.com</a>.
  * @see CVSClient
@@ -55,6 +69,12 @@ CVSTracer {
 	private static boolean			echoAccum;
 	private static StringBuffer		outBuffer;
 
+	/**
+	 * The writer that writes our lines on its own thread,
+	 * or null if lines are written by the caller.
+	 */
+	private static volatile CVSAsyncWriter	asyncWriter;
+
 	private CVSTracer() {
 	}
 
@@ -95,6 +115,47 @@ CVSTracer {
 		return outBuffer;
 		}
 
+	/**
+	 * Determines whether trace lines are written by the thread that
+	 * traces them, or queued and written by a thread of their own.
+	 * Lines accumulated in a buffer are always appended at once.
+	 * Lines that go to the CVSLog are queued if the log is
+	 * asynchronous, see CVSLog.setAsynchronous().
+	 *
+	 * @param state True to write lines on their own thread.
+	 */
+	public static void
+	setAsynchronous( final boolean state )
+		{
+		if ( state )
+			{
+			asyncWriter = CVSAsyncWriter.getDefault();
+			}
+		else
+			{
+			flush();
+			asyncWriter = null;
+			}
+		}
+
+	public static boolean
+	isAsynchronous()
+		{
+		return asyncWriter != null;
+		}
+
+	/**
+	 * Waits until the lines that have been queued are written.
+	 */
+	public static void
+	flush()
+		{
+		final CVSAsyncWriter writer = asyncWriter;
+
+		if ( writer != null )
+			writer.flush();
+		}
+
 	private static void
 	println(final String line)
 		{
@@ -110,13 +171,45 @@ CVSTracer {
 				return;
 			}
 
-		if ( out != null )
+		final PrintWriter writer = out;
+
+		if ( writer == null )
 			{
-			out.println( line );
+			CVSLog.logMsg( line );
+			}
+		else if ( asyncWriter != null )
+			{
+			asyncWriter.write( writer::println, line );
 			}
 		else
 			{
-			CVSLog.logMsg( line );
+			writer.println( line );
+			}
+		}
+
+	private static void
+	printStackTrace( final Throwable thrown )
+		{
+		final PrintWriter writer = out;
+		final CVSAsyncWriter async = asyncWriter;
+
+		if ( async != null )
+			{
+			final StringWriter trace = new StringWriter();
+			thrown.printStackTrace( new PrintWriter( trace ) );
+
+			if ( writer == null )
+				async.write( System.err::print, trace.toString() );
+			else
+				async.write( writer::print, trace.toString() );
+			}
+		else if ( writer == null )
+			{
+			thrown.printStackTrace( System.err );
+			}
+		else
+			{
+			thrown.printStackTrace( writer );
 			}
 		}
 
@@ -132,6 +225,21 @@ CVSTracer {
 			}
 		}
 
+	/**
+	 * Traces the supplied line, if tracing is on. The line is
+	 * only built when it is traced.
+	 *
+	 * @param line Builds the line.
+	 */
+	public static void
+	trace( final Supplier<String> line )
+		{
+		if ( on )
+			{
+			println( line.get() );
+			}
+		}
+
 	public static void
 	traceIf( final boolean flag, final String line )
 		{
@@ -144,6 +252,102 @@ CVSTracer {
 			}
 		}
 
+	/**
+	 * Traces the supplied line, if the flag is set. The line is
+	 * only built when it is traced.
+	 *
+	 * @param flag True to trace the line.
+	 * @param line Builds the line.
+	 */
+	public static void
+	traceIf( final boolean flag, final Supplier<String> line )
+		{
+		if ( ! flag )
+			return;
+
+		if ( ifOverOn )
+			{
+			println( line.get() );
+			}
+		}
+
+	/**
+	 * Traces a line, if the flag is set. The line is the format, with
+	 * its '{}' replaced by the argument, and is only built when it is
+	 * traced.
+	 *
+	 * @param flag True to trace the line.
+	 * @param format The line, with a '{}' placeholder.
+	 * @param arg The argument that replaces the placeholder.
+	 */
+	public static void
+	traceIf( final boolean flag, final String format, final Object arg )
+		{
+		if ( ! flag || format == null )
+			return;
+
+		if ( ifOverOn )
+			{
+			println( format( format, arg ) );
+			}
+		}
+
+	public static void
+	traceIf(
+			final boolean flag, final String format,
+			final Object arg1, final Object arg2 )
+		{
+		if ( ! flag || format == null )
+			return;
+
+		if ( ifOverOn )
+			{
+			println( format( format, arg1, arg2 ) );
+			}
+		}
+
+	public static void
+	traceIf( final boolean flag, final String format, final Object... args )
+		{
+		if ( ! flag || format == null )
+			return;
+
+		if ( ifOverOn )
+			{
+			println( format( format, args ) );
+			}
+		}
+
+	/**
+	 * Replaces each '{}' in the format with the next argument.
+	 * Placeholders beyond the arguments are left as they are.
+	 *
+	 * @param format The line, with '{}' placeholders.
+	 * @param args The arguments.
+	 * @return The line.
+	 */
+	static String
+	format( final String format, final Object... args )
+		{
+		final StringBuilder result =
+			new StringBuilder( format.length() + 16 * args.length );
+
+		int start = 0;
+		for ( final Object arg : args )
+			{
+			final int index = format.indexOf( "{}", start );
+			if ( index < 0 )
+				break;
+
+			result.append( format, start, index ).append( arg );
+			start = index + 2;
+			}
+
+		result.append( format, start, format.length() );
+
+		return result.toString();
+		}
+
 	public static void
 	traceException( final String line, final Throwable ex )
 		{
@@ -155,10 +359,7 @@ CVSTracer {
 			println( line );
 			}
 
-		if ( out == null )
-			ex.printStackTrace( System.err );
-		else
-			ex.printStackTrace( out );
+		printStackTrace( ex );
 		}
 
 	public static void
@@ -174,15 +375,14 @@ CVSTracer {
 			println( line );
 			}
 
-		if ( out == null )
-			thrower.printStackTrace( System.err );
-		else
-			thrower.printStackTrace( out );
+		printStackTrace( thrower );
 		}
 
 	private static void
 	checkClose()
 		{
+		flush();
+
 		if ( out != null )
 			{
 			if ( ! outIsSystem )
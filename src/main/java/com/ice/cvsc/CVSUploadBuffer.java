@@ -0,0 +1,270 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.Supplier;
+
+
+/**
+ * Collects the contents of a file that is about to be uploaded,
+ * after it has been gzip-ed or translated, so that its size is
+ * known before the contents are sent. Contents are kept in memory
+ * up to a limit, and spill into a temporary file beyond it.
+ *
+ * The buffer is meant to be reused for every file a CVSClient
+ * uploads. Call reset() once the contents have been sent.
+ *
+ * This class is not thread safe.
+ *
+ * @version $Revision: 1.1 $
+ * @see CVSClient
+ */
+
+final
+class		CVSUploadBuffer
+extends		OutputStream
+	{
+	public static final String		RCS_ID = "$Id: CVSUploadBuffer.java,v 1.1 $";
+	public static final String		RCS_REV = "$Revision: 1.1 $";
+
+	private static final int		INITIAL_SIZE = 8 * 1024;
+
+	private final Supplier<File>	spillFiles;
+	private int						limit;
+
+	private byte[]					buffer;
+	private int						count;
+
+	private File					spillFile;
+	private OutputStream			spillStream;
+	private long					spillCount;
+
+
+	/**
+	 * @param limit The most bytes that are kept in memory.
+	 * @param spillFiles Supplies the pathname of a new temporary file.
+	 */
+	CVSUploadBuffer( final int limit, final Supplier<File> spillFiles )
+		{
+		super();
+
+		this.limit = limit;
+		this.spillFiles = spillFiles;
+		this.buffer = null;
+		this.count = 0;
+		this.spillFile = null;
+		this.spillStream = null;
+		this.spillCount = 0;
+		}
+
+	public int
+	getLimit()
+		{
+		return this.limit;
+		}
+
+	public void
+	setLimit( final int limit )
+		{
+		this.limit = limit;
+		}
+
+	/**
+	 * Returns true if the contents have spilled into a temporary file.
+	 */
+	public boolean
+	isSpilled()
+		{
+		return this.spillFile != null;
+		}
+
+	/**
+	 * Returns the number of bytes written since the last reset().
+	 */
+	public long
+	size()
+		{
+		return this.spillFile != null ? this.spillCount : this.count;
+		}
+
+	@Override
+	public void
+	write( final int b )
+		throws IOException
+		{
+		if ( this.spillStream != null )
+			{
+			this.spillStream.write( b );
+			++this.spillCount;
+			return;
+			}
+
+		if ( ! this.ensureCapacity( 1 ) )
+			{
+			this.spill();
+			this.write( b );
+			return;
+			}
+
+		this.buffer[ this.count++ ] = (byte) b;
+		}
+
+	@Override
+	public void
+	write( final byte[] bytes, final int offset, final int length )
+		throws IOException
+		{
+		if ( this.spillStream != null )
+			{
+			this.spillStream.write( bytes, offset, length );
+			this.spillCount += length;
+			return;
+			}
+
+		if ( ! this.ensureCapacity( length ) )
+			{
+			this.spill();
+			this.write( bytes, offset, length );
+			return;
+			}
+
+		System.arraycopy( bytes, offset, this.buffer, this.count, length );
+		this.count += length;
+		}
+
+	/**
+	 * Completes the contents. Closing does not discard them, so that
+	 * the buffer may be handed to filter streams that close it.
+	 */
+	@Override
+	public void
+	close()
+		throws IOException
+		{
+		if ( this.spillStream != null )
+			{
+			final OutputStream out = this.spillStream;
+			this.spillStream = null;
+			out.close();
+			}
+		}
+
+	/**
+	 * Returns a stream that reads the contents. The buffer must
+	 * have been closed first.
+	 */
+	public InputStream
+	getInputStream()
+		throws IOException
+		{
+		if ( this.spillFile != null )
+			{
+			return new BufferedInputStream
+				( new FileInputStream( this.spillFile ), 16 * 1024 );
+			}
+
+		return new ByteArrayInputStream( this.buffer, 0, this.count );
+		}
+
+	/**
+	 * Discards the contents, and deletes the temporary file if the
+	 * contents spilled into one. The memory is kept for reuse.
+	 */
+	public void
+	reset()
+		{
+		try { this.close(); }
+		catch ( final IOException ex )
+			{
+			CVSLog.logMsg
+				( "CVSUploadBuffer.reset: ERROR closing temp file: "
+					+ ex.getMessage() );
+			}
+
+		if ( this.spillFile != null )
+			{
+			if ( this.spillFile.exists() && ! this.spillFile.delete() )
+				{
+				CVSLog.logMsg
+					( "CVSUploadBuffer.reset: WARNING could not delete '"
+						+ this.spillFile.getPath() + '\'');
+				}
+			this.spillFile = null;
+			}
+
+		this.count = 0;
+		this.spillCount = 0;
+		}
+
+	private boolean
+	ensureCapacity( final int length )
+		{
+		final long needed = (long) this.count + length;
+
+		if ( needed > this.limit )
+			return false;
+
+		if ( this.buffer == null || needed > this.buffer.length )
+			{
+			int size = this.buffer == null ? INITIAL_SIZE : this.buffer.length;
+			while ( size < needed )
+				size *= 2;
+
+			final byte[] newBuffer = new byte[ Math.min( size, this.limit ) ];
+			if ( this.buffer != null )
+				System.arraycopy( this.buffer, 0, newBuffer, 0, this.count );
+			this.buffer = newBuffer;
+			}
+
+		return true;
+		}
+
+	private void
+	spill()
+		throws IOException
+		{
+		this.spillFile = this.spillFiles.get();
+		this.spillStream = new BufferedOutputStream
+			( new FileOutputStream( this.spillFile ), 16 * 1024 );
+
+		if ( this.count > 0 )
+			this.spillStream.write( this.buffer, 0, this.count );
+
+		this.spillCount = this.count;
+		this.count = 0;
+		}
+
+	}
+
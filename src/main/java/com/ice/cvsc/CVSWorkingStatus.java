@@ -0,0 +1,152 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+import java.util.Vector;
+
+
+/**
+ * The status of a project's working copy, as determined by
+ * CVSProject.scanWorkingStatus(). Each list holds the full names
+ * of the entries, or for unknown files the full names they would
+ * have, in the order of a depth first walk of the entry tree.
+ *
+ * Lost files are files that have an entry, and are neither being
+ * added nor removed, but are missing from the working directory.
+ *
+ * @version $Revision: 1.1 $
+ * @see CVSProject#scanWorkingStatus
+ */
+
+public final
+class		CVSWorkingStatus
+	{
+	public static final String		RCS_ID = "$Id: CVSWorkingStatus.java,v 1.1 $";
+	public static final String		RCS_REV = "$Revision: 1.1 $";
+
+	private final Vector<String>	modified;
+	private final Vector<String>	added;
+	private final Vector<String>	removed;
+	private final Vector<String>	unknown;
+	private final Vector<String>	lost;
+
+
+	CVSWorkingStatus()
+		{
+		this.modified = new Vector<>();
+		this.added = new Vector<>();
+		this.removed = new Vector<>();
+		this.unknown = new Vector<>();
+		this.lost = new Vector<>();
+		}
+
+	/**
+	 * Returns the files that are modified, or in conflict.
+	 */
+	public Vector<String>
+	getModified()
+		{
+		return this.modified;
+		}
+
+	/**
+	 * Returns the files that are scheduled to be added.
+	 */
+	public Vector<String>
+	getAdded()
+		{
+		return this.added;
+		}
+
+	/**
+	 * Returns the files that are scheduled to be removed.
+	 */
+	public Vector<String>
+	getRemoved()
+		{
+		return this.removed;
+		}
+
+	/**
+	 * Returns the files and directories that have no entry,
+	 * and are not ignored.
+	 */
+	public Vector<String>
+	getUnknown()
+		{
+		return this.unknown;
+		}
+
+	/**
+	 * Returns the files that have an entry, but are missing.
+	 */
+	public Vector<String>
+	getLost()
+		{
+		return this.lost;
+		}
+
+	/**
+	 * Determines if the working copy has anything the user
+	 * might not want to lose.
+	 *
+	 * @return True if any of the lists is not empty.
+	 */
+	public boolean
+	hasChanges()
+		{
+		return ! this.modified.isEmpty() || ! this.added.isEmpty()
+			|| ! this.removed.isEmpty() || ! this.unknown.isEmpty()
+			|| ! this.lost.isEmpty();
+		}
+
+	/**
+	 * Appends the lists of another status to ours. This is
+	 * used to gather the status of subdirectories, in order.
+	 */
+	void
+	append( final CVSWorkingStatus status )
+		{
+		this.modified.addAll( status.modified );
+		this.added.addAll( status.added );
+		this.removed.addAll( status.removed );
+		this.unknown.addAll( status.unknown );
+		this.lost.addAll( status.lost );
+		}
+
+	@Override
+	public String
+	toString()
+		{
+		return "CVSWorkingStatus[modified=" + this.modified.size()
+			+ ", added=" + this.added.size()
+			+ ", removed=" + this.removed.size()
+			+ ", unknown=" + this.unknown.size()
+			+ ", lost=" + this.lost.size() + ']';
+		}
+
+	}
+
@@ -196,6 +196,23 @@ CVSUtilities {
 		return cvsPort;
 		}
 
+	/**
+	 * Returns the number of connections to use when updating a
+	 * project from the server, which may be set for each server
+	 * with the 'parallelConnections.hostname' property.
+	 */
+	public static int
+	computeParallelConnections( final String hostname )
+		{
+		final UserPrefs prefs = Config.getPreferences();
+
+		final int defConns =
+			prefs.getInteger( ConfigConstants.GLOBAL_PARALLEL_CONNECTIONS, 1 );
+
+		return prefs.getInteger
+			( "parallelConnections." + hostname, defConns );
+		}
+
 	public static String[]
 	getUserSetVariables( final String hostname )
 		{
@@ -259,6 +259,9 @@ implements	ActionListener, CVSUserInterface
 		project.setGzipStreamLevel
 			( prefs.getInteger( ConfigConstants.GLOBAL_GZIP_STREAM_LEVEL, 0 ) );
 
+		project.setParallelConnections
+			( CVSUtilities.computeParallelConnections( hostname ) );
+
 		if ( isPServer )
 			{
 			final String scrambled =
@@ -372,17 +375,13 @@ implements	ActionListener, CVSUserInterface
 		public void
 		run()
 			{
-			this.client.processCVSRequest( this.request, this.response );
-			if ( ! this.listingMods )
+			if ( this.listingMods )
 				{
-				this.project.processCVSResponse( this.request, response );
-				if ( this.request.getArguments().containsArgument( "-P" )
-						|| this.request.getArguments().containsArgument( "-r" )
-						|| this.request.getArguments().containsArgument( "-D" ) )
-					{
-					this.project.pruneEmptySubDirs
-						( this.request.handleEntries );
-					}
+				this.client.processCVSRequest( this.request, this.response );
+				}
+			else
+				{
+				this.project.performCheckout( this.request, this.response );
 				}
 			}
 		}
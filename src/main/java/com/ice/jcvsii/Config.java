@@ -26,12 +26,14 @@ import static com.ice.jcvsii.ConfigConstants.DEFAULT_MAILCAP_FILENAME;
 import static com.ice.jcvsii.ConfigConstants.DEFAULT_MIMETYPES_FILENAME;
 import static com.ice.jcvsii.ConfigConstants.EXEC_DEF_CMD_IDX;
 import static com.ice.jcvsii.ConfigConstants.EXEC_DEF_ENV_IDX;
+import static com.ice.jcvsii.ConfigConstants.GLOBAL_COLLECT_METRICS;
 import static com.ice.jcvsii.ConfigConstants.GLOBAL_CVS_TRACE_ALL;
 import static com.ice.jcvsii.ConfigConstants.GLOBAL_EXT_VERB_TABLE;
 import static com.ice.jcvsii.ConfigConstants.GLOBAL_MAILCAP_FILE;
 import static com.ice.jcvsii.ConfigConstants.GLOBAL_MIMETYPES_FILE;
 import static com.ice.jcvsii.ConfigConstants.GLOBAL_PROJECT_DEBUG_ENTRYIO;
 import static com.ice.jcvsii.ConfigConstants.GLOBAL_PROJECT_DEEP_DEBUG;
+import static com.ice.jcvsii.ConfigConstants.GLOBAL_SPARE_CONNECTIONS;
 import static com.ice.jcvsii.ConfigConstants.GLOBAL_TEMP_DIR;
 import static com.ice.jcvsii.ConfigConstants.PLAF_LOOK_AND_FEEL_CLASSNAME;
 import static com.ice.jcvsii.ConfigConstants.PROJECT_MODIFIED_FORMAT;
@@ -56,6 +58,9 @@ import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 
 import com.ice.cvsc.CVSCUtilities;
+import com.ice.cvsc.CVSClient;
+import com.ice.cvsc.CVSConnectionPool;
+import com.ice.cvsc.CVSMetrics;
 import com.ice.cvsc.CVSProject;
 import com.ice.pref.PrefsTuple;
 import com.ice.pref.PrefsTupleTable;
@@ -464,11 +469,16 @@ implements	PropertyChangeListener
 		CVSProject.overTraceResponse = traceAll;
 		CVSProject.overTraceProcessing = traceAll;
 
+		this.establishMetrics();
+		this.establishSpareConnections();
+
 		// Subscribe to property changes.
 		final String[] subs =
 			{
 			GLOBAL_TEMP_DIR,
 			GLOBAL_CVS_TRACE_ALL,
+			GLOBAL_COLLECT_METRICS,
+			GLOBAL_SPARE_CONNECTIONS,
 			GLOBAL_PROJECT_DEEP_DEBUG,
 			GLOBAL_PROJECT_DEBUG_ENTRYIO,
 			PROJECT_MODIFIED_FORMAT,
@@ -481,6 +491,38 @@ implements	PropertyChangeListener
 			}
 		}
 
+	/**
+	 * Collects the metrics of every cvs request, and publishes them
+	 * through JMX, if the preferences ask for it.
+	 */
+	private void
+	establishMetrics()
+		{
+		final CVSMetrics metrics = CVSMetrics.getDefault();
+
+		if ( this.userPrefs.getBoolean( GLOBAL_COLLECT_METRICS, false ) )
+			{
+			metrics.register();
+			CVSClient.setDefaultMetricsListener( metrics );
+			}
+		else
+			{
+			CVSClient.setDefaultMetricsListener( null );
+			metrics.unregister();
+			}
+		}
+
+	/**
+	 * Sets the number of spare server sessions that the shared
+	 * connection pool keeps, from the preferences.
+	 */
+	private void
+	establishSpareConnections()
+		{
+		CVSConnectionPool.getDefaultPool().setMaxSpares
+			( this.userPrefs.getInteger( GLOBAL_SPARE_CONNECTIONS, 0 ) );
+		}
+
 	@Override
 	public void
 	propertyChange( final PropertyChangeEvent evt )
@@ -498,6 +540,12 @@ implements	PropertyChangeListener
 				CVSProject.overTraceResponse = newSetting;
 				CVSProject.overTraceProcessing = newSetting;
 				break;
+			case GLOBAL_COLLECT_METRICS:
+				this.establishMetrics();
+				break;
+			case GLOBAL_SPARE_CONNECTIONS:
+				this.establishSpareConnections();
+				break;
 			case GLOBAL_PROJECT_DEEP_DEBUG:
 
 				CVSProject.deepDebug = this.userPrefs.getBoolean
@@ -47,6 +47,12 @@ interface	ConfigConstants
 	String		GLOBAL_SVRCMD_TABLE = "global.serverTable";
 	String		GLOBAL_ALLOWS_FILE_GZIP = "global.allowGzipFileMode";
 	String		GLOBAL_GZIP_STREAM_LEVEL = "global.gzipStreamLevel";
+	String		GLOBAL_PARALLEL_CONNECTIONS = "global.parallelConnections";
+	String		GLOBAL_SPARE_CONNECTIONS = "global.spareConnections";
+	String		GLOBAL_COLLECT_METRICS = "global.collectMetrics";
+	String		GLOBAL_USE_DIGEST_INDEX = "global.useDigestIndex";
+	String		GLOBAL_TRACK_CHANGES = "global.trackChanges";
+	String		GLOBAL_USE_ENTRY_SNAPSHOT = "global.useEntrySnapshot";
 	String		GLOBAL_CVS_TRACE_ALL = "global.traceAll";
 	String		GLOBAL_PROJECT_DEEP_DEBUG = "global.project.deepDebug";
 	String		GLOBAL_PROJECT_DEBUG_ENTRYIO = "global.project.debugEntryIO";
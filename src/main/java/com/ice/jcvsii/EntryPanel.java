@@ -39,6 +39,7 @@ import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.function.Predicate;
 
 import javax.swing.JMenuItem;
 import javax.swing.JPanel;
@@ -313,15 +314,27 @@ implements	ActionListener, FocusListener,
 
 	public void
 	selectModified()
+		{
+		this.selectModified( null );
+		}
+
+	/**
+	 * Selects the entries whose local files are modified.
+	 *
+	 * @param isModified Determines if an entry's local file is
+	 *        modified, or null to check its timestamp.
+	 */
+	public void
+	selectModified( final Predicate<CVSEntry> isModified )
 		{
 		// Can not use the depth enumeration method for expansion,
 		// as it only traverses *open* nodes!
-		this.selectModified( this.entriesModel.getEntryRootNode() );
+		this.selectModified( this.entriesModel.getEntryRootNode(), isModified );
 		}
 
 	@SuppressWarnings("RedundantCast")
 	private void
-	selectModified(final EntryNode root)
+	selectModified(final EntryNode root, final Predicate<CVSEntry> isModified)
 		{
 		// NOTE This call to getChildCount() is REQUIRED
 		//      in order to get the child nodes loaded so
@@ -334,7 +347,10 @@ implements	ActionListener, FocusListener,
 			if ( entryNode.isLeaf() )
 				{
 				final CVSEntry entry = entryNode.getEntry();
-				if ( entry.isLocalFileModified( entryNode.getLocalFile() )
+				final boolean modified = isModified == null
+					? entry.isLocalFileModified( entryNode.getLocalFile() )
+					: isModified.test( entry );
+				if ( modified
 						|| entry.isNewUserFile()
 						|| entry.isToBeRemoved()
 						|| entry.isInConflict() )
@@ -346,7 +362,7 @@ implements	ActionListener, FocusListener,
 				}
 			else
 				{
-				this.selectModified( entryNode );
+				this.selectModified( entryNode, isModified );
 				}
 			}
 		}
@@ -230,6 +230,9 @@ implements	ActionListener, CVSUserInterface
 		ProjectFrameMgr.removeProject
 			( this, this.project.getLocalRootPath() );
 
+		this.project.setTracksChanges( false );
+		this.project.saveEntrySnapshot();
+
 		this.savePreferences();
 
 		if ( this.output != null )
@@ -1491,7 +1494,8 @@ CVSTracer.traceIf( true,
 	private void
 	selectModifiedEntries()
 		{
-		this.entryPanel.selectModified();
+		this.project.syncChangeTracker();
+		this.entryPanel.selectModified( this.project::isLocalFileModified );
 		}
 
 	private void
@@ -1591,15 +1595,20 @@ CVSTracer.traceIf( true,
 				    || selector == CVSRequest.ES_SELUNC) {
 					entries = this.getSelectedEntries(true);
 					if (entries.isEmpty()) {
+						this.project.loadAllEntries();
 						this.project.getRootEntry().addAllSubTreeEntries
 								(entries = new CVSEntryVector());
 					}
 				} else {
+					this.project.loadAllEntries();
 					this.project.getRootEntry().addAllSubTreeEntries
 							(entries = new CVSEntryVector());
 				}
 
 				if (entries != null) {
+					// The selection must see every change made so far.
+					this.project.syncChangeTracker();
+
 					for (i = 0; i < entries.size(); ++i) {
 						entry = entries.entryAt(i);
 						entryFile = this.project.getEntryFile(entry);
@@ -2383,6 +2392,12 @@ CVSTracer.traceIf( true,
 		project.setGzipStreamLevel
 			( prefs.getInteger( ConfigConstants.GLOBAL_GZIP_STREAM_LEVEL, 0 ) );
 
+		project.setUsesDigestIndex
+			( prefs.getBoolean( ConfigConstants.GLOBAL_USE_DIGEST_INDEX, false ) );
+
+		project.setUsesEntrySnapshot
+			( prefs.getBoolean( ConfigConstants.GLOBAL_USE_ENTRY_SNAPSHOT, false ) );
+
 		try {
 			project.openProject( rootDirFile );
 
@@ -2402,6 +2417,15 @@ CVSTracer.traceIf( true,
 			project.setConnectionPort( cvsPort );
 			project.getClient().setPort( cvsPort );
 
+			project.setParallelConnections
+				( CVSUtilities.computeParallelConnections
+					( project.getClient().getHostName() ) );
+
+			if ( prefs.getBoolean( ConfigConstants.GLOBAL_TRACK_CHANGES, false ) )
+				{
+				project.setTracksChanges( true );
+				}
+
 			if ( project.getConnectionMethod()
 						== CVSRequest.METHOD_RSH )
 				{
@@ -2539,10 +2563,6 @@ CVSTracer.traceIf( true,
 	private void
 	processUnknownFiles(final String cvsCommandSpec)
 		{
-		final Vector unks = new Vector();
-		final Vector mods = new Vector();
-		final Vector adds = new Vector();
-		final Vector rems = new Vector();
 		final CVSIgnore ignore = new CVSIgnore();
 		final Config cfg = Config.getInstance();
 		final UserPrefs prefs = Config.getPreferences();
@@ -2551,7 +2571,8 @@ CVSTracer.traceIf( true,
 			prefs.getProperty( ConfigConstants.GLOBAL_USER_IGNORES, null );
 
 		// this finds all the unknown files
-		this.project.checkReleaseStatus( ignore, mods, adds, rems, unks );
+		final Vector<String> unks =
+			this.project.scanWorkingStatus( ignore ).getUnknown();
 
 		if (!unks.isEmpty())
 			{
@@ -2655,10 +2676,6 @@ CVSTracer.traceIf( true,
 	private void
 	processUnknownDirs()
 		{
-		final Vector unks = new Vector();
-		final Vector mods = new Vector();
-		final Vector adds = new Vector();
-		final Vector rems = new Vector();
 		final CVSIgnore ignore = new CVSIgnore();
 		final Config cfg = Config.getInstance();
 		final UserPrefs prefs = Config.getPreferences();
@@ -2668,7 +2685,8 @@ CVSTracer.traceIf( true,
 			prefs.getProperty( ConfigConstants.GLOBAL_USER_IGNORES, null );
 
 		// this finds all the unknown files
-		this.project.checkReleaseStatus( ignore, mods, adds, rems, unks );
+		final Vector<String> unks =
+			this.project.scanWorkingStatus( ignore ).getUnknown();
 
 		if (!unks.isEmpty())
 			{
@@ -0,0 +1,329 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+import java.io.File;
+import java.io.IOException;
+
+
+/**
+ * Drives the client library against a FakeCVSServer, setting up
+ * the projects and requests the same way that jCVS does for its
+ * checkout, update, commit and log commands.
+ *
+ * Socket clients connect to the server's loopback port as a
+ * pserver, with connection pooling turned off so that spare
+ * sessions do not disturb the server's statistics, unless a pool
+ * is set with setConnectionPool(). Pipe clients borrow every
+ * session from the server's pipe pool.
+ *
+ * @version $Revision: 1.1 $
+ * @see FakeCVSServer
+ */
+
+public
+class		FakeCVSProjects
+	{
+	public static final String		RCS_ID = "$Id: FakeCVSProjects.java,v 1.1 $";
+	public static final String		RCS_REV = "$Revision: 1.1 $";
+
+	public static final String		CHECKOUT_COMMAND = ":co:N:ANP:deou:";
+	public static final String		UPDATE_COMMAND = "update:A:EAUPM:deou:-d";
+	public static final String		COMMIT_COMMAND = "ci:A:EAUMG:deou:";
+	public static final String		LOG_COMMAND = "log:a:EAF:d:";
+
+	private static final String		USER_NAME = "fake";
+
+	private final FakeCVSServer			server;
+	private final CVSConnectionPool		pipePool;
+	private CVSConnectionPool			socketPool;
+	private int							gzipStreamLevel;
+	private boolean						allowGzipFileMode;
+	private boolean						useDigestIndex;
+	private boolean						useEntrySnapshot;
+	private int							parallelConnections;
+	private String						tempDirectory;
+
+
+	/**
+	 * @param server The server to use.
+	 * @param usePipes True to connect by in-memory pipes, else the
+	 *        server must have been started on its loopback port.
+	 */
+	public
+	FakeCVSProjects( final FakeCVSServer server, final boolean usePipes )
+		{
+		super();
+
+		this.server = server;
+		this.pipePool = usePipes ? server.createPipePool() : null;
+		this.socketPool = null;
+		this.gzipStreamLevel = 0;
+		this.allowGzipFileMode = false;
+		this.useDigestIndex = false;
+		this.useEntrySnapshot = false;
+		this.parallelConnections = 1;
+		this.tempDirectory = System.getProperty( "java.io.tmpdir" );
+		}
+
+	public FakeCVSServer
+	getServer()
+		{
+		return this.server;
+		}
+
+	public boolean
+	isUsingPipes()
+		{
+		return this.pipePool != null;
+		}
+
+	/**
+	 * Sets the pool of the socket clients, null for none.
+	 */
+	public void
+	setConnectionPool( final CVSConnectionPool pool )
+		{
+		this.socketPool = pool;
+		}
+
+	public void
+	setGzipStreamLevel( final int level )
+		{
+		this.gzipStreamLevel = level;
+		}
+
+	public void
+	setAllowsGzipFileMode( final boolean allow )
+		{
+		this.allowGzipFileMode = allow;
+		}
+
+	public void
+	setUsesDigestIndex( final boolean use )
+		{
+		this.useDigestIndex = use;
+		}
+
+	public void
+	setUsesEntrySnapshot( final boolean use )
+		{
+		this.useEntrySnapshot = use;
+		}
+
+	/**
+	 * Sets the number of connections over which the projects
+	 * check out and update, see CVSProject.setParallelConnections().
+	 */
+	public void
+	setParallelConnections( final int connections )
+		{
+		this.parallelConnections = connections;
+		}
+
+	public void
+	setTempDirectory( final String dirName )
+		{
+		this.tempDirectory = dirName;
+		}
+
+	public CVSClient
+	createClient()
+		{
+		final CVSClient client =
+			new CVSClient( "127.0.0.1", this.getPort() );
+
+		client.setTempDirectory( this.tempDirectory );
+		client.setConnectionPool
+			( this.pipePool != null ? this.pipePool : this.socketPool );
+
+		return client;
+		}
+
+	private int
+	getPort()
+		{
+		return this.pipePool != null ? CVSClient.DEFAULT_CVS_PORT : this.server.getPort();
+		}
+
+	private void
+	establishConnection( final CVSProject project )
+		{
+		project.setUserName( USER_NAME );
+		project.setPServer( true );
+		project.setPassword( CVSScramble.scramblePassword( USER_NAME, 'A' ) );
+		project.setConnectionPort( this.getPort() );
+		project.setConnectionMethod( CVSRequest.METHOD_INETD );
+		project.setTempDirectory( this.tempDirectory );
+		project.setGzipStreamLevel( this.gzipStreamLevel );
+		project.setAllowsGzipFileMode( this.allowGzipFileMode );
+		project.setUsesDigestIndex( this.useDigestIndex );
+		project.setParallelConnections( this.parallelConnections );
+		}
+
+	/**
+	 * Checks out a module, as the jCVS checkout panel does.
+	 *
+	 * @param localDirectory The directory to check the module out into.
+	 * @param module The module to check out.
+	 * @param response The response to fill in.
+	 * @return The opened project, or null if the checkout failed.
+	 */
+	public CVSProject
+	checkout(
+			final File localDirectory, final String module,
+			final CVSResponse response )
+		{
+		final CVSClient client = this.createClient();
+		final CVSProject project = new CVSProject( client );
+		final String rootDirectory = this.server.getRoot();
+
+		this.establishConnection( project );
+
+		if ( ! localDirectory.exists() )
+			localDirectory.mkdirs();
+
+		project.setProjectDef
+			( new CVSProjectDef
+				( CVSRequest.METHOD_INETD, true, false,
+					client.getHostName(), USER_NAME, rootDirectory, module ) );
+
+		project.setRepository( module );
+		project.setRootDirectory( rootDirectory );
+		project.setLocalRootDirectory( localDirectory.getPath() );
+		project.establishRootEntry( rootDirectory );
+
+		final CVSRequest request = new CVSRequest();
+		request.parseControlString( CHECKOUT_COMMAND );
+
+		request.setPServer( true );
+		request.setUserName( project.getUserName() );
+		request.setPassword( project.getPassword() );
+		request.setConnectionMethod( project.getConnectionMethod() );
+		request.setPort( this.getPort() );
+		request.setHostName( client.getHostName() );
+
+		request.setRepository( module );
+		request.setRootDirectory( rootDirectory );
+		request.setRootRepository( rootDirectory );
+		request.setLocalDirectory( localDirectory.getPath() );
+
+		request.responseHandler = project;
+		request.usePooledConnection = client.getConnectionPool() != null;
+		request.allowGzipFileMode = project.allowsGzipFileMode();
+		request.setGzipStreamLevel( project.getGzipStreamLevel() );
+
+		request.setEntries( new CVSEntryVector() );
+		final CVSArgumentVector args = new CVSArgumentVector();
+		args.appendArgument( module );
+		request.appendArguments( args );
+
+		request.setUserInterface( new CVSNullUI() );
+
+		if ( ! project.performCheckout( request, response ) )
+			return null;
+
+		return this.openProject( new File( localDirectory, module ) );
+		}
+
+	/**
+	 * Opens a checked out project.
+	 *
+	 * @param localRoot The project's local root directory.
+	 * @return The project, or null if it could not be opened.
+	 */
+	public CVSProject
+	openProject( final File localRoot )
+		{
+		final CVSProject project = new CVSProject( this.createClient() );
+
+		project.setUsesEntrySnapshot( this.useEntrySnapshot );
+
+		try {
+			project.openProject( localRoot );
+			}
+		catch ( final IOException ex )
+			{
+			CVSLog.logMsg
+				( "FakeCVSProjects.openProject: " + ex.getMessage() );
+			return null;
+			}
+
+		this.establishConnection( project );
+
+		return project;
+		}
+
+	/**
+	 * Creates a request for the whole project from a control string,
+	 * with every entry of the project.
+	 */
+	public CVSRequest
+	createRequest( final CVSProject project, final String command )
+		{
+		final CVSRequest request = new CVSRequest();
+
+		request.setArguments( new CVSArgumentVector() );
+		request.setGlobalArguments( new CVSArgumentVector() );
+		request.parseControlString( command );
+
+		final CVSEntryVector entries = new CVSEntryVector();
+		project.getRootEntry().addAllSubTreeEntries( entries );
+		request.setEntries( entries );
+
+		request.setUserInterface( new CVSNullUI() );
+
+		return request;
+		}
+
+	public boolean
+	update( final CVSProject project, final CVSResponse response )
+		{
+		return project.performCVSRequest
+			( this.createRequest( project, UPDATE_COMMAND ), response );
+		}
+
+	public boolean
+	commit(
+			final CVSProject project, final String message,
+			final CVSResponse response )
+		{
+		final CVSRequest request = this.createRequest( project, COMMIT_COMMAND );
+
+		request.getArguments().appendArgument( "-m" );
+		request.getArguments().appendArgument( message );
+
+		return project.performCVSRequest( request, response );
+		}
+
+	public boolean
+	log( final CVSProject project, final CVSResponse response )
+		{
+		return project.performCVSRequest
+			( this.createRequest( project, LOG_COMMAND ), response );
+		}
+
+	}
@@ -0,0 +1,1753 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+
+/**
+ * An in-process cvs server, which serves a SyntheticRepository
+ * over the client/server protocol. It lets the client library be
+ * exercised, and measured, without a real cvs server or network.
+ *
+ * The server speaks just enough of the protocol for the requests
+ * that jCVS sends for checkout, update, commit, log and status,
+ * including 'Gzip-stream' and 'gzip-file-contents', and for the
+ * 'rlist' that lists the directories of a parallel checkout. An
+ * update with '-u' sends 'Rcs-diff' patches, with their 'Checksum',
+ * to clients that accept them, and 'MT' tagged output goes to
+ * clients that accept that. Password
+ * authentication accepts any user and password.
+ *
+ * There are two transports. The server will listen on a loopback
+ * socket, see start(), in which case clients connect to it as a
+ * pserver, or inetd, server. Or, the server hands out sessions
+ * connected by in-memory pipes, see createPipePool(), in which case
+ * clients borrow their sessions from the returned pool. The pipe
+ * sessions skip authentication and the 'valid-requests' exchange,
+ * just as a pooled connection does.
+ *
+ * The server counts connections, commands, round trips and the
+ * bytes that cross the wire, before any stream compression is
+ * removed.
+ *
+ * @version $Revision: 1.1 $
+ * @see SyntheticRepository
+ */
+
+public
+class		FakeCVSServer
+	{
+	public static final String		RCS_ID = "$Id: FakeCVSServer.java,v 1.1 $";
+	public static final String		RCS_REV = "$Revision: 1.1 $";
+
+	public static boolean			traceSessions = false;
+
+	public static final String		VALID_REQUESTS =
+		"Root Valid-responses valid-requests Directory Max-dotdot"
+		+ " Static-directory Sticky Entry Kopt Checkin-time Modified"
+		+ " UseUnchanged Unchanged Notify Questionable Case Argument"
+		+ " Argumentx Global_option Gzip-stream gzip-file-contents Set"
+		+ " expand-modules ci co update update-patches log status rlist noop";
+
+	private static final String		MODE_LINE = "u=rw,g=r,o=r";
+
+	private final SyntheticRepository	repository;
+	private String						root;
+	private long						latency;
+	private boolean						listing;
+	private boolean						badChecksums;
+
+	private ServerSocket				serverSocket;
+	private Thread						acceptThread;
+	private final AtomicInteger			sessionSerial;
+
+	private final AtomicLong			connections;
+	private final AtomicLong			commands;
+	private final AtomicLong			patches;
+	private final AtomicLong			roundTrips;
+	private final AtomicLong			bytesReceived;
+	private final AtomicLong			bytesSent;
+
+
+	public
+	FakeCVSServer( final SyntheticRepository repository )
+		{
+		super();
+
+		this.repository = repository;
+		this.root = "/cvs";
+		this.latency = 0;
+		this.listing = true;
+		this.badChecksums = false;
+
+		this.serverSocket = null;
+		this.acceptThread = null;
+		this.sessionSerial = new AtomicInteger();
+
+		this.connections = new AtomicLong();
+		this.commands = new AtomicLong();
+		this.patches = new AtomicLong();
+		this.roundTrips = new AtomicLong();
+		this.bytesReceived = new AtomicLong();
+		this.bytesSent = new AtomicLong();
+		}
+
+	public SyntheticRepository
+	getRepository()
+		{
+		return this.repository;
+		}
+
+	public String
+	getRoot()
+		{
+		return this.root;
+		}
+
+	/**
+	 * Sets the cvs root directory that the server claims to serve.
+	 */
+	public void
+	setRoot( final String root )
+		{
+		this.root = root;
+		}
+
+	public long
+	getLatency()
+		{
+		return this.latency;
+		}
+
+	/**
+	 * Sets the number of milliseconds the server waits before each
+	 * reply, to simulate the round trip time of a real network.
+	 */
+	public void
+	setLatency( final long millis )
+		{
+		this.latency = millis;
+		}
+
+	public boolean
+	isListingAllowed()
+		{
+		return this.listing;
+		}
+
+	/**
+	 * Sets whether the server answers 'rlist'. When it does not,
+	 * it treats 'rlist' as an unknown request, as a server before
+	 * cvs 1.12 does.
+	 */
+	public void
+	setListingAllowed( final boolean listing )
+		{
+		this.listing = listing;
+		}
+
+	public boolean
+	isSendingBadChecksums()
+		{
+		return this.badChecksums;
+		}
+
+	/**
+	 * Sets whether the 'Checksum' sent with each 'Rcs-diff' is
+	 * wrong, as if the working file had changed under the client,
+	 * so that the client must fetch the file again in full.
+	 */
+	public void
+	setSendingBadChecksums( final boolean bad )
+		{
+		this.badChecksums = bad;
+		}
+
+	public long
+	getConnectionCount()
+		{
+		return this.connections.get();
+		}
+
+	public long
+	getCommandCount()
+		{
+		return this.commands.get();
+		}
+
+	/**
+	 * Returns the number of 'Rcs-diff' responses sent.
+	 */
+	public long
+	getPatchCount()
+		{
+		return this.patches.get();
+		}
+
+	/**
+	 * Returns the number of times the server replied to the
+	 * client, which is the number of times the client had to
+	 * wait for the server.
+	 */
+	public long
+	getRoundTrips()
+		{
+		return this.roundTrips.get();
+		}
+
+	public long
+	getBytesReceived()
+		{
+		return this.bytesReceived.get();
+		}
+
+	public long
+	getBytesSent()
+		{
+		return this.bytesSent.get();
+		}
+
+	public void
+	resetStatistics()
+		{
+		this.connections.set( 0 );
+		this.commands.set( 0 );
+		this.patches.set( 0 );
+		this.roundTrips.set( 0 );
+		this.bytesReceived.set( 0 );
+		this.bytesSent.set( 0 );
+		}
+
+	/**
+	 * Starts listening on an ephemeral loopback port.
+	 *
+	 * @return The port number.
+	 */
+	public synchronized int
+	start()
+		throws IOException
+		{
+		if ( this.serverSocket != null )
+			return this.serverSocket.getLocalPort();
+
+		final ServerSocket ss =
+			new ServerSocket( 0, 50, InetAddress.getLoopbackAddress() );
+
+		this.serverSocket = ss;
+
+		this.acceptThread =
+			new Thread( () -> this.acceptSessions( ss ), "FakeCVSServer-accept" );
+
+		this.acceptThread.setDaemon( true );
+		this.acceptThread.start();
+
+		return ss.getLocalPort();
+		}
+
+	public synchronized int
+	getPort()
+		{
+		return this.serverSocket == null ? -1 : this.serverSocket.getLocalPort();
+		}
+
+	public synchronized void
+	stop()
+		{
+		if ( this.serverSocket != null )
+			{
+			try { this.serverSocket.close(); }
+			catch ( final IOException ex ) { }
+
+			this.serverSocket = null;
+			this.acceptThread = null;
+			}
+		}
+
+	private void
+	acceptSessions( final ServerSocket ss )
+		{
+		for ( ; ; )
+			{
+			final Socket sock;
+			try {
+				sock = ss.accept();
+				}
+			catch ( final IOException ex )
+				{
+				// The server socket was closed by stop().
+				return;
+				}
+
+			this.startSession( () ->
+				{
+				try {
+					this.serve( sock.getInputStream(), sock.getOutputStream() );
+					}
+				catch ( final IOException ex )
+					{
+					CVSLog.logMsg
+						( "FakeCVSServer: session failed, " + ex.getMessage() );
+					}
+				finally
+					{
+					try { sock.close(); }
+					catch ( final IOException ex ) { }
+					}
+				} );
+			}
+		}
+
+	private void
+	startSession( final Runnable session )
+		{
+		final Thread t =
+			new Thread
+				( session, "FakeCVSServer-session-"
+					+ this.sessionSerial.incrementAndGet() );
+
+		t.setDaemon( true );
+		t.start();
+		}
+
+	/**
+	 * Returns a connection pool whose sessions are connected to
+	 * this server by in-memory pipes. Every borrow() starts a new
+	 * session. Requests must set 'usePooledConnection' and use a
+	 * CVSClient whose connection pool is the returned pool.
+	 */
+	public CVSConnectionPool
+	createPipePool()
+		{
+		return new PipePool();
+		}
+
+	/**
+	 * Serves one session, a single command, on the given streams.
+	 * The streams are not closed.
+	 */
+	public void
+	serve( final InputStream in, final OutputStream out )
+		throws IOException
+		{
+		this.connections.incrementAndGet();
+
+		final Session session =
+			new Session
+				( new CountingInputStream( in, this.bytesReceived ),
+					new CountingOutputStream( out, this.bytesSent ) );
+
+		session.run();
+		}
+
+	private void
+	pause()
+		{
+		if ( this.latency > 0 )
+			{
+			try { Thread.sleep( this.latency ); }
+			catch ( final InterruptedException ex )
+				{ Thread.currentThread().interrupt(); }
+			}
+		}
+
+	private static String
+	join( final String dir, final String name )
+		{
+		return dir.isEmpty() ? name : dir + '/' + name;
+		}
+
+	/**
+	 * The state of one session. The protocol's requests build up
+	 * this state, which the command then acts upon.
+	 */
+	private final
+	class		Session
+		{
+		private final OutputStream			rawOut;
+		private InputStream					in;
+		private OutputStream				out;
+		private DeflaterOutputStream		deflater;
+
+		private final Hashtable<String, Dir>	dirsByLocal;
+		private final Hashtable<String, Dir>	dirsByRepo;
+		private Dir								currentDir;
+		private final Vector<String>			arguments;
+
+		private final ByteArrayOutputStream		reply;
+		private String							validResponses;
+		private boolean							gzipFiles;
+		private boolean							sendPatches;
+		private boolean							failed;
+
+
+		private Session( final InputStream in, final OutputStream out )
+			{
+			this.rawOut = out;
+			this.in = new BufferedInputStream( in );
+			this.out = out;
+			this.deflater = null;
+
+			this.dirsByLocal = new Hashtable<>();
+			this.dirsByRepo = new Hashtable<>();
+			this.currentDir = null;
+			this.arguments = new Vector<>();
+
+			this.reply = new ByteArrayOutputStream( 8192 );
+			this.validResponses = "";
+			this.gzipFiles = false;
+			this.sendPatches = false;
+			this.failed = false;
+			}
+
+		private void
+		run()
+			throws IOException
+			{
+			String line = this.readLine();
+
+			if ( line != null && line.startsWith( "BEGIN " ) )
+				{
+				final boolean verify = line.startsWith( "BEGIN VERIFICATION" );
+
+				for ( ; line != null && ! line.startsWith( "END " ) ; )
+					line = this.readLine();
+
+				this.text( "I LOVE YOU\n" );
+				this.flush();
+
+				if ( verify )
+					return;
+
+				line = this.readLine();
+				}
+
+			for ( ; line != null ; line = this.readLine() )
+				{
+				CVSTracer.traceIf( traceSessions, "FakeCVSServer: > " + line );
+
+				if ( ! this.request( line ) )
+					break;
+				}
+
+			if ( this.deflater != null )
+				this.deflater.finish();
+
+			this.out.flush();
+			}
+
+		/**
+		 * Handles one request line.
+		 *
+		 * @return False when the session is done.
+		 */
+		private boolean
+		request( final String line )
+			throws IOException
+			{
+			final int space = line.indexOf( ' ' );
+			final String name = space < 0 ? line : line.substring( 0, space );
+			final String arg = space < 0 ? "" : line.substring( space + 1 );
+
+			switch ( name )
+				{
+				case "Root":
+					if ( ! arg.equals( FakeCVSServer.this.root ) )
+						{
+						this.text( "error  Bad root " + arg + '\n' );
+						this.flush();
+						return false;
+						}
+					break;
+
+				case "valid-requests":
+					this.text( "Valid-requests " + VALID_REQUESTS + "\nok\n" );
+					this.flush();
+					break;
+
+				case "Gzip-stream":
+					this.in = new BufferedInputStream
+						( new InflaterInputStream( this.in ) );
+					this.deflater = new DeflaterOutputStream( this.rawOut, true );
+					this.out = this.deflater;
+					break;
+
+				case "Directory":
+					this.directory( arg, this.readLine() );
+					break;
+
+				case "Entry":
+					this.entry( arg );
+					break;
+
+				case "Modified":
+					this.modified( arg );
+					break;
+
+				case "Unchanged":
+					this.entryOf( arg ).unchanged = true;
+					break;
+
+				case "Notify":
+					this.readLine();
+					break;
+
+				case "Argument":
+					this.arguments.addElement( arg );
+					break;
+
+				case "Argumentx":
+					if ( ! this.arguments.isEmpty() )
+						{
+						final int last = this.arguments.size() - 1;
+						this.arguments.setElementAt
+							( this.arguments.elementAt( last ) + '\n' + arg, last );
+						}
+					break;
+
+				case "Valid-responses":
+					this.validResponses = ' ' + arg + ' ';
+					break;
+
+				case "UseUnchanged":
+				case "Max-dotdot":
+				case "Static-directory":
+				case "Sticky":
+				case "Kopt":
+				case "Checkin-time":
+				case "Questionable":
+				case "Case":
+				case "Global_option":
+				case "Set":
+					break;
+
+				case "gzip-file-contents":
+					this.gzipFiles = true;
+					break;
+
+				case "noop":
+					this.command( name );
+					this.text( "ok\n" );
+					this.flush();
+					return false;
+
+				case "expand-modules":
+					this.command( name );
+					for ( final String mod : this.getOperands() )
+						this.text( "Module-expansion " + mod + '\n' );
+					this.text( "ok\n" );
+					this.flush();
+					return false;
+
+				case "co":
+				case "checkout":
+				case "update":
+				case "ci":
+				case "commit":
+				case "log":
+				case "status":
+					this.command( name );
+					this.perform( name );
+					this.text( this.failed ? "error  \n" : "ok\n" );
+					this.flush();
+					return false;
+
+				case "rlist":
+					if ( ! FakeCVSServer.this.listing )
+						{
+						this.text( "error  unrecognized request `" + name + "'\n" );
+						this.flush();
+						return false;
+						}
+					this.command( name );
+					this.rlist();
+					this.text( this.failed ? "error  \n" : "ok\n" );
+					this.flush();
+					return false;
+
+				default:
+					this.text( "error  unrecognized request `" + name + "'\n" );
+					this.flush();
+					return false;
+				}
+
+			return true;
+			}
+
+		/**
+		 * Returns true if the client listed the response
+		 * in its 'Valid-responses'.
+		 */
+		private boolean
+		accepts( final String response )
+			{
+			return this.validResponses.contains( ' ' + response + ' ' );
+			}
+
+		private void
+		command( final String name )
+			{
+			FakeCVSServer.this.commands.incrementAndGet();
+
+			CVSTracer.traceIf( traceSessions,
+				"FakeCVSServer: " + name + " args=" + this.arguments
+					+ " dirs=" + this.dirsByLocal.size() );
+			}
+
+		private void
+		perform( final String name )
+			throws IOException
+			{
+			switch ( name )
+				{
+				case "co":
+				case "checkout":
+					this.checkout();
+					break;
+				case "update":
+					this.update();
+					break;
+				case "ci":
+				case "commit":
+					this.commit();
+					break;
+				case "log":
+					this.log();
+					break;
+				case "status":
+					this.status();
+					break;
+				}
+			}
+
+		//
+		// R E Q U E S T S
+		//
+
+		private void
+		directory( final String local, final String repositoryLine )
+			{
+			String repo = repositoryLine == null ? "" : repositoryLine;
+			final String root = FakeCVSServer.this.root;
+
+			if ( repo.equals( root ) )
+				repo = "";
+			else if ( repo.startsWith( root + '/' ) )
+				repo = repo.substring( root.length() + 1 );
+
+			if ( repo.endsWith( "/" ) )
+				repo = repo.substring( 0, repo.length() - 1 );
+
+			Dir dir = this.dirsByLocal.get( local );
+			if ( dir == null || ! dir.repo.equals( repo ) )
+				{
+				dir = new Dir( local, repo );
+				this.dirsByLocal.put( local, dir );
+				this.dirsByRepo.put( repo, dir );
+				}
+
+			this.currentDir = dir;
+			}
+
+		private void
+		entry( final String line )
+			{
+			if ( this.currentDir == null )
+				return;
+
+			// "/name/revision/timestamp/options/tag"
+			final String[] fields = line.split( "/", -1 );
+			if ( fields.length < 3 )
+				return;
+
+			final Ent ent = new Ent( fields[2] );
+			if ( fields.length > 4 )
+				ent.options = fields[4];
+
+			this.currentDir.entries.put( fields[1], ent );
+			}
+
+		private Ent
+		entryOf( final String name )
+			{
+			if ( this.currentDir == null )
+				this.directory( ".", FakeCVSServer.this.root );
+
+			Ent ent = this.currentDir.entries.get( name );
+			if ( ent == null )
+				{
+				ent = new Ent( null );
+				this.currentDir.entries.put( name, ent );
+				}
+
+			return ent;
+			}
+
+		private void
+		modified( final String name )
+			throws IOException
+			{
+			this.readLine();	// the mode line
+
+			final String sizeStr = this.readLine();
+			final boolean zipped = sizeStr.startsWith( "z" );
+			final int size =
+				Integer.parseInt( zipped ? sizeStr.substring( 1 ) : sizeStr );
+
+			final byte[] data = new byte[ size ];
+			int off = 0;
+			while ( off < size )
+				{
+				final int count = this.in.read( data, off, size - off );
+				if ( count < 0 )
+					throw new IOException( "end of stream in Modified " + name );
+				off += count;
+				}
+
+			this.entryOf( name ).modified = zipped ? gunzip( data ) : data;
+			}
+
+		//
+		// C O M M A N D S
+		//
+
+		/**
+		 * Returns the arguments that are not options, nor
+		 * the values of options.
+		 */
+		private Vector<String>
+		getOperands()
+			{
+			final Vector<String> result = new Vector<>();
+
+			for ( int i = 0 ; i < this.arguments.size() ; ++i )
+				{
+				final String arg = this.arguments.elementAt( i );
+
+				if ( arg.equals( "--" ) )
+					continue;
+
+				if ( arg.startsWith( "-" ) )
+					{
+					// These options take their value as the next argument.
+					if ( arg.length() == 2 && "mrDjkFW".indexOf( arg.charAt(1) ) >= 0 )
+						++i;
+					continue;
+					}
+
+				result.addElement( arg );
+				}
+
+			return result;
+			}
+
+		private boolean
+		hasOption( final String option )
+			{
+			for ( final String arg : this.arguments )
+				{
+				if ( arg.equals( option ) )
+					return true;
+				}
+
+			return false;
+			}
+
+		private String
+		getOptionValue( final String option )
+			{
+			final int index = this.arguments.indexOf( option );
+			if ( index < 0 || index + 1 >= this.arguments.size() )
+				return null;
+
+			return this.arguments.elementAt( index + 1 );
+			}
+
+		private Dir
+		getDotDir()
+			{
+			Dir dot = this.dirsByLocal.get( "." );
+			if ( dot == null )
+				{
+				dot = new Dir( ".", "" );
+				this.dirsByLocal.put( ".", dot );
+				this.dirsByRepo.put( "", dot );
+				}
+
+			return dot;
+			}
+
+		/**
+		 * Resolves an operand, which is a local path relative to
+		 * the '.' directory, to its local and repository paths.
+		 *
+		 * @return { local, repository }
+		 */
+		private String[]
+		resolve( final String operand )
+			{
+			final Dir dot = this.getDotDir();
+
+			String path = operand;
+			while ( path.startsWith( "./" ) )
+				path = path.substring( 2 );
+			while ( path.endsWith( "/" ) )
+				path = path.substring( 0, path.length() - 1 );
+
+			if ( path.isEmpty() || path.equals( "." ) )
+				return new String[] { dot.local, dot.repo };
+
+			Dir dir = this.dirsByLocal.get( "./" + path );
+			if ( dir == null )
+				dir = this.dirsByLocal.get( path );
+			if ( dir != null )
+				return new String[] { dir.local, dir.repo };
+
+			final int slash = path.lastIndexOf( '/' );
+			if ( slash > 0 )
+				{
+				final String parent = path.substring( 0, slash );
+				final String name = path.substring( slash + 1 );
+
+				dir = this.dirsByLocal.get( "./" + parent );
+				if ( dir == null )
+					dir = this.dirsByLocal.get( parent );
+				if ( dir != null )
+					return new String[]
+						{ dir.local + '/' + name, join( dir.repo, name ) };
+				}
+
+			return new String[]
+				{ dot.local + '/' + path, join( dot.repo, path ) };
+			}
+
+		private void
+		checkout()
+			throws IOException
+			{
+			final SyntheticRepository repos = FakeCVSServer.this.repository;
+			final boolean recurse = ! this.hasOption( "-l" );
+
+			for ( final String module : this.getOperands() )
+				{
+				if ( ! repos.isDirectory( module ) )
+					{
+					this.text( "E cvs checkout: cannot find module `"
+								+ module + "' - ignored\n" );
+					this.failed = true;
+					continue;
+					}
+
+				this.sendDirectory( module, module, recurse );
+				}
+			}
+
+		private void
+		sendDirectory( final String local, final String repo, final boolean recurse )
+			throws IOException
+			{
+			final SyntheticRepository repos = FakeCVSServer.this.repository;
+
+			for ( final String name : repos.getFileNames( repo ) )
+				this.sendUpdated( local, join( repo, name ), name );
+
+			if ( recurse )
+				{
+				for ( final String sub : repos.getSubdirectories( repo ) )
+					this.sendDirectory( local + '/' + sub, join( repo, sub ), true );
+				}
+			}
+
+		private void
+		update()
+			throws IOException
+			{
+			final SyntheticRepository repos = FakeCVSServer.this.repository;
+			final boolean recurse = ! this.hasOption( "-l" );
+			final boolean create = this.hasOption( "-d" );
+
+			this.sendPatches = this.hasOption( "-u" ) && this.accepts( "Rcs-diff" );
+
+			final Vector<String> operands = this.getOperands();
+			if ( operands.isEmpty() )
+				operands.addElement( "." );
+
+			for ( final String operand : operands )
+				{
+				final String[] target = this.resolve( operand );
+
+				if ( repos.isDirectory( target[1] ) )
+					{
+					this.updateDirectory( target[0], target[1], recurse, create );
+					}
+				else
+					{
+					final int slash = target[0].lastIndexOf( '/' );
+					final String local = slash < 0 ? "." : target[0].substring( 0, slash );
+					final int rslash = target[1].lastIndexOf( '/' );
+					final String name = target[1].substring( rslash + 1 );
+
+					this.updateFile
+						( local, target[1], name,
+							this.findEntry( target[1].substring( 0, Math.max( 0, rslash ) ), name ) );
+					}
+				}
+			}
+
+		private Ent
+		findEntry( final String repoDir, final String name )
+			{
+			final Dir dir = this.dirsByRepo.get( repoDir );
+			return dir == null ? null : dir.entries.get( name );
+			}
+
+		private void
+		updateDirectory(
+				final String local, final String repo,
+				final boolean recurse, final boolean create )
+			throws IOException
+			{
+			final SyntheticRepository repos = FakeCVSServer.this.repository;
+			final Dir dir = this.dirsByRepo.get( repo );
+			final Vector<String> names = repos.getFileNames( repo );
+
+			for ( final String name : names )
+				{
+				this.updateFile
+					( local, join( repo, name ), name,
+						dir == null ? null : dir.entries.get( name ) );
+				}
+
+			if ( dir != null )
+				{
+				for ( final Enumeration<String> en = dir.entries.keys() ; en.hasMoreElements() ; )
+					{
+					final String name = en.nextElement();
+					final Ent ent = dir.entries.get( name );
+
+					if ( ent.revision == null || names.contains( name ) || ent.isAdded() )
+						continue;
+
+					this.text( ( ent.isRemoved() ? "Remove-entry " : "Removed " )
+								+ local + "/\n"
+								+ FakeCVSServer.this.root + '/' + join( repo, name ) + '\n' );
+					}
+				}
+
+			if ( recurse )
+				{
+				for ( final String sub : repos.getSubdirectories( repo ) )
+					{
+					final String subRepo = join( repo, sub );
+
+					if ( create || this.dirsByRepo.containsKey( subRepo ) )
+						this.updateDirectory( local + '/' + sub, subRepo, true, create );
+					}
+				}
+			}
+
+		private void
+		updateFile(
+				final String local, final String path,
+				final String name, final Ent ent )
+			throws IOException
+			{
+			final String head = FakeCVSServer.this.repository.getRevision( path );
+
+			if ( ent == null || ent.revision == null )
+				{
+				if ( head != null )
+					{
+					this.updateMessage( 'U', local, name );
+					this.sendUpdated( local, path, name );
+					}
+				}
+			else if ( head == null || ent.isAdded() || ent.isRemoved() )
+				{
+				// Handled by the directory, or by a commit.
+				}
+			else if ( ent.modified != null )
+				{
+				this.text( ( head.equals( ent.revision ) ? "M M " : "M C " )
+								+ local + '/' + name + '\n' );
+				}
+			else if ( this.sendPatches && ent.unchanged
+						&& ! head.equals( ent.revision )
+						&& ! FakeCVSServer.this.repository.isBinary( path ) )
+				{
+				this.updateMessage( 'P', local, name );
+				this.sendRcsDiff( local, path, name, ent.revision );
+				}
+			else if ( ! ent.unchanged || ! head.equals( ent.revision ) )
+				{
+				this.updateMessage( 'U', local, name );
+				this.sendUpdated( local, path, name );
+				}
+			}
+
+		/**
+		 * Reports an updated file, as 'MT' tagged output if the
+		 * client accepts it, as cvs 1.12 does.
+		 */
+		private void
+		updateMessage( final char code, final String local, final String name )
+			{
+			String path = local + '/' + name;
+			while ( path.startsWith( "./" ) )
+				path = path.substring( 2 );
+
+			if ( this.accepts( "MT" ) )
+				{
+				this.text( "MT +updated\n"
+							+ "MT text " + code + " \n"
+							+ "MT fname " + path + '\n'
+							+ "MT newline\n"
+							+ "MT -updated\n" );
+				}
+			else
+				{
+				this.text( "M " + code + ' ' + path + '\n' );
+				}
+			}
+
+		/**
+		 * Sends the changes from the client's revision of a file to
+		 * the head revision, as a 'Checksum' of the head revision's
+		 * contents followed by an 'Rcs-diff'.
+		 */
+		private void
+		sendRcsDiff(
+				final String local, final String path,
+				final String name, final String baseRevision )
+			throws IOException
+			{
+			final SyntheticRepository repos = FakeCVSServer.this.repository;
+			final byte[] base = repos.getContents( path, baseRevision );
+			final byte[] contents = repos.getContents( path );
+			final String rev = repos.getRevision( path );
+
+			if ( base == null || contents == null || rev == null )
+				{
+				this.sendUpdated( local, path, name );
+				return;
+				}
+
+			FakeCVSServer.this.patches.incrementAndGet();
+
+			byte[] data = rcsDiff( base, contents );
+			if ( this.gzipFiles )
+				data = gzip( data );
+
+			final String checksum =
+				CVSRcsDiff.checksum
+					( FakeCVSServer.this.badChecksums ? base : contents );
+
+			this.text( "Checksum " + checksum + '\n'
+						+ "Rcs-diff " + local + "/\n"
+						+ FakeCVSServer.this.root + '/' + path + '\n'
+						+ '/' + name + '/' + rev + "///\n"
+						+ MODE_LINE + '\n'
+						+ ( this.gzipFiles ? "z" : "" ) + data.length + '\n' );
+
+			this.reply.write( data );
+			}
+
+		private void
+		sendUpdated( final String local, final String path, final String name )
+			throws IOException
+			{
+			final SyntheticRepository repos = FakeCVSServer.this.repository;
+			byte[] data = repos.getContents( path );
+			final String rev = repos.getRevision( path );
+
+			if ( data == null || rev == null )
+				return;
+
+			if ( this.gzipFiles )
+				data = gzip( data );
+
+			this.text( "Updated " + local + "/\n"
+						+ FakeCVSServer.this.root + '/' + path + '\n'
+						+ '/' + name + '/' + rev + "//"
+						+ ( repos.isBinary( path ) ? "-kb" : "" ) + "/\n"
+						+ MODE_LINE + '\n'
+						+ ( this.gzipFiles ? "z" : "" ) + data.length + '\n' );
+
+			this.reply.write( data );
+			}
+
+		/**
+		 * Returns the sent directories that are in the scope of the
+		 * command's operands.
+		 */
+		/**
+		 * Lists the directories that are the operands, in the
+		 * format of the Entries file, as 'rlist -e' does.
+		 */
+		private void
+		rlist()
+			{
+			final SyntheticRepository repos = FakeCVSServer.this.repository;
+
+			final Vector<String> operands = this.getOperands();
+			if ( operands.isEmpty() )
+				operands.addElement( "." );
+
+			for ( final String operand : operands )
+				{
+				if ( operand.equals( "." ) )
+					{
+					this.text( "M D/" + repos.getModule() + "////\n" );
+					continue;
+					}
+
+				if ( ! repos.isDirectory( operand ) )
+					{
+					this.text( "E cvs [rlist aborted]: no such directory `"
+								+ operand + "'\n" );
+					this.failed = true;
+					return;
+					}
+
+				for ( final String name : repos.getFileNames( operand ) )
+					{
+					final String path = join( operand, name );
+					this.text( "M /" + name + '/' + repos.getRevision( path )
+								+ "/Wed Jan  1 00:00:00 2003//"
+								+ ( repos.isBinary( path ) ? "-kb" : "" ) + "/\n" );
+					}
+
+				for ( final String sub : repos.getSubdirectories( operand ) )
+					this.text( "M D/" + sub + "////\n" );
+				}
+			}
+
+		private Vector<Dir>
+		getScopeDirs()
+			{
+			final Vector<String> operands = this.getOperands();
+			final Vector<String> scopes = new Vector<>();
+
+			if ( operands.isEmpty() )
+				scopes.addElement( this.getDotDir().repo );
+			else
+				for ( final String operand : operands )
+					scopes.addElement( this.resolve( operand )[1] );
+
+			final boolean recurse = ! this.hasOption( "-l" );
+			final Vector<Dir> result = new Vector<>();
+
+			for ( final Dir dir : this.dirsByLocal.values() )
+				{
+				for ( final String scope : scopes )
+					{
+					if ( dir.repo.equals( scope )
+							|| ( recurse && ( scope.isEmpty()
+									|| dir.repo.startsWith( scope + '/' ) ) )
+							|| dir.repo.equals( parentOf( scope ) ) )
+						{
+						if ( ! result.contains( dir ) )
+							result.addElement( dir );
+						break;
+						}
+					}
+				}
+
+			return result;
+			}
+
+		private boolean
+		isInScope( final String path )
+			{
+			final Vector<String> operands = this.getOperands();
+			if ( operands.isEmpty() )
+				return true;
+
+			for ( final String operand : operands )
+				{
+				final String scope = this.resolve( operand )[1];
+				if ( scope.isEmpty() || path.equals( scope )
+						|| path.startsWith( scope + '/' ) )
+					return true;
+				}
+
+			return false;
+			}
+
+		private void
+		commit()
+			throws IOException
+			{
+			final SyntheticRepository repos = FakeCVSServer.this.repository;
+			final String root = FakeCVSServer.this.root;
+			String message = this.getOptionValue( "-m" );
+			if ( message == null )
+				message = "";
+
+			final Vector<Dir> dirs = this.getScopeDirs();
+
+			// Every file must be up to date before any is committed.
+			for ( final Dir dir : dirs )
+				{
+				for ( final Enumeration<String> en = dir.entries.keys() ; en.hasMoreElements() ; )
+					{
+					final String name = en.nextElement();
+					final Ent ent = dir.entries.get( name );
+					final String path = join( dir.repo, name );
+
+					if ( ! ent.isCommitted() || ! this.isInScope( path ) )
+						continue;
+
+					final String head = repos.getRevision( path );
+					final boolean stale =
+						ent.isAdded()
+							? head != null
+							: ! ent.getBaseRevision().equals( head );
+
+					if ( stale )
+						{
+						this.text( "E cvs commit: Up-to-date check failed for `"
+									+ dir.local + '/' + name + "'\n" );
+						this.failed = true;
+						}
+					}
+				}
+
+			if ( this.failed )
+				{
+				this.text( "E cvs [commit aborted]: correct above errors first!\n" );
+				return;
+				}
+
+			for ( final Dir dir : dirs )
+				{
+				for ( final Enumeration<String> en = dir.entries.keys() ; en.hasMoreElements() ; )
+					{
+					final String name = en.nextElement();
+					final Ent ent = dir.entries.get( name );
+					final String path = join( dir.repo, name );
+
+					if ( ! ent.isCommitted() || ! this.isInScope( path ) )
+						continue;
+
+					if ( ent.isRemoved() )
+						{
+						repos.remove( path, message );
+						this.text( "M Removing " + dir.local + '/' + name + ";\n"
+									+ "Remove-entry " + dir.local + "/\n"
+									+ root + '/' + path + '\n' );
+						continue;
+						}
+
+					final String rev = repos.commit( path, ent.modified, message );
+
+					this.text( "M Checking in " + dir.local + '/' + name + ";\n"
+								+ "M " + root + '/' + path + ",v  <--  " + name + '\n'
+								+ "M new revision: " + rev + "; previous revision: "
+								+ ( ent.isAdded() ? "none" : ent.revision ) + '\n'
+								+ "M done\n"
+								+ "Checked-in " + dir.local + "/\n"
+								+ root + '/' + path + '\n'
+								+ '/' + name + '/' + rev + "//"
+								+ ( ent.options == null ? "" : ent.options ) + "/\n" );
+					}
+				}
+			}
+
+		private Vector<String[]>
+		getScopeFiles()
+			{
+			final SyntheticRepository repos = FakeCVSServer.this.repository;
+			final Vector<String[]> result = new Vector<>();
+			final boolean recurse = ! this.hasOption( "-l" );
+
+			final Vector<String> operands = this.getOperands();
+			if ( operands.isEmpty() )
+				operands.addElement( "." );
+
+			for ( final String operand : operands )
+				{
+				final String[] target = this.resolve( operand );
+
+				if ( repos.isDirectory( target[1] ) )
+					this.addScopeFiles( target[0], target[1], recurse, result );
+				else if ( repos.getRevision( target[1] ) != null )
+					result.addElement( target );
+				}
+
+			return result;
+			}
+
+		private void
+		addScopeFiles(
+				final String local, final String repo,
+				final boolean recurse, final Vector<String[]> result )
+			{
+			final SyntheticRepository repos = FakeCVSServer.this.repository;
+
+			for ( final String name : repos.getFileNames( repo ) )
+				result.addElement
+					( new String[] { local + '/' + name, join( repo, name ) } );
+
+			if ( recurse )
+				{
+				for ( final String sub : repos.getSubdirectories( repo ) )
+					this.addScopeFiles
+						( local + '/' + sub, join( repo, sub ), true, result );
+				}
+			}
+
+		private void
+		log()
+			throws IOException
+			{
+			final SyntheticRepository repos = FakeCVSServer.this.repository;
+
+			for ( final String[] file : this.getScopeFiles() )
+				{
+				final String head = repos.getRevision( file[1] );
+				final Vector<String> messages = repos.getLogMessages( file[1] );
+				final int headNum =
+					Integer.parseInt( head.substring( head.indexOf( '.' ) + 1 ) );
+
+				this.text( "M \n"
+							+ "M RCS file: " + FakeCVSServer.this.root + '/' + file[1] + ",v\n"
+							+ "M Working file: " + file[0] + '\n'
+							+ "M head: " + head + '\n'
+							+ "M branch:\n"
+							+ "M locks: strict\n"
+							+ "M access list:\n"
+							+ "M symbolic names:\n"
+							+ "M keyword substitution: "
+							+ ( repos.isBinary( file[1] ) ? "b" : "kv" ) + '\n'
+							+ "M total revisions: " + messages.size()
+							+ ";\tselected revisions: " + messages.size() + '\n'
+							+ "M description:\n" );
+
+				for ( int i = 0 ; i < messages.size() ; ++i )
+					{
+					this.text( "M ----------------------------\n"
+								+ "M revision 1." + ( headNum - i ) + '\n'
+								+ "M date: 2003/01/01 00:00:00;  author: fake;  state: Exp;\n"
+								+ "M " + messages.elementAt( i ).replace( "\n", "\nM " ) + '\n' );
+					}
+
+				this.text( "M =============================================="
+							+ "===============================\n" );
+				}
+			}
+
+		private void
+		status()
+			throws IOException
+			{
+			final SyntheticRepository repos = FakeCVSServer.this.repository;
+
+			for ( final String[] file : this.getScopeFiles() )
+				{
+				final int slash = file[1].lastIndexOf( '/' );
+				final String name = file[1].substring( slash + 1 );
+				final Ent ent = this.findEntry( file[1].substring( 0, Math.max( 0, slash ) ), name );
+				final String head = repos.getRevision( file[1] );
+
+				final String state;
+				if ( ent == null || ent.revision == null )
+					state = "Needs Checkout";
+				else if ( ent.modified != null )
+					state = head.equals( ent.revision ) ? "Locally Modified" : "Needs Merge";
+				else
+					state = head.equals( ent.revision ) ? "Up-to-date" : "Needs Patch";
+
+				this.text( "M ===================================================================\n"
+							+ "M File: " + name + "\tStatus: " + state + "\n"
+							+ "M \n"
+							+ "M    Working revision:\t"
+							+ ( ent == null || ent.revision == null ? "No entry for " + name : ent.revision ) + '\n'
+							+ "M    Repository revision:\t" + head + '\t'
+							+ FakeCVSServer.this.root + '/' + file[1] + ",v\n"
+							+ "M \n" );
+				}
+			}
+
+		//
+		// I / O
+		//
+
+		private String
+		readLine()
+			throws IOException
+			{
+			final StringBuilder buf = new StringBuilder( 128 );
+
+			for ( ; ; )
+				{
+				final int ch = this.in.read();
+
+				if ( ch < 0 )
+					return buf.length() == 0 ? null : buf.toString();
+
+				if ( ch == '\n' )
+					return buf.toString();
+
+				buf.append( (char) ch );
+				}
+			}
+
+		private void
+		text( final String str )
+			{
+			final byte[] bytes = str.getBytes( StandardCharsets.ISO_8859_1 );
+			this.reply.write( bytes, 0, bytes.length );
+			}
+
+		/**
+		 * Sends the reply that has been collected so far.
+		 */
+		private void
+		flush()
+			throws IOException
+			{
+			FakeCVSServer.this.pause();
+
+			this.reply.writeTo( this.out );
+			this.reply.reset();
+			this.out.flush();
+
+			FakeCVSServer.this.roundTrips.incrementAndGet();
+			}
+		}
+
+	/**
+	 * Makes an RCS format diff from one contents to another, which
+	 * replaces the lines between their common first and last lines.
+	 */
+	private static byte[]
+	rcsDiff( final byte[] base, final byte[] contents )
+		{
+		final Vector<String> from = splitLines( base );
+		final Vector<String> to = splitLines( contents );
+
+		int head = 0;
+		while ( head < from.size() && head < to.size()
+				&& from.elementAt( head ).equals( to.elementAt( head ) ) )
+			++head;
+
+		int tail = 0;
+		while ( tail < from.size() - head && tail < to.size() - head
+				&& from.elementAt( from.size() - 1 - tail ).equals
+					( to.elementAt( to.size() - 1 - tail ) ) )
+			++tail;
+
+		final int deleted = from.size() - head - tail;
+		final int added = to.size() - head - tail;
+
+		final StringBuilder buf = new StringBuilder();
+
+		if ( deleted > 0 )
+			buf.append( 'd' ).append( head + 1 ).append( ' ' )
+				.append( deleted ).append( '\n' );
+
+		if ( added > 0 )
+			{
+			buf.append( 'a' ).append( head + deleted ).append( ' ' )
+				.append( added ).append( '\n' );
+
+			for ( int i = head ; i < head + added ; ++i )
+				buf.append( to.elementAt( i ) );
+			}
+
+		return buf.toString().getBytes( StandardCharsets.ISO_8859_1 );
+		}
+
+	/**
+	 * Splits contents into lines, each with its newline.
+	 */
+	private static Vector<String>
+	splitLines( final byte[] contents )
+		{
+		final String text = new String( contents, StandardCharsets.ISO_8859_1 );
+		final Vector<String> result = new Vector<>();
+
+		for ( int i = 0 ; i < text.length() ; )
+			{
+			final int eol = text.indexOf( '\n', i );
+			final int next = eol < 0 ? text.length() : eol + 1;
+			result.addElement( text.substring( i, next ) );
+			i = next;
+			}
+
+		return result;
+		}
+
+	private static String
+	parentOf( final String path )
+		{
+		final int slash = path.lastIndexOf( '/' );
+		return slash < 0 ? "" : path.substring( 0, slash );
+		}
+
+	private static byte[]
+	gunzip( final byte[] data )
+		throws IOException
+		{
+		final ByteArrayOutputStream result = new ByteArrayOutputStream( data.length * 4 );
+
+		try ( GZIPInputStream in =
+				new GZIPInputStream( new ByteArrayInputStream( data ) ) )
+			{
+			final byte[] buf = new byte[ 8192 ];
+			for ( int count ; ( count = in.read( buf ) ) > 0 ; )
+				result.write( buf, 0, count );
+			}
+
+		return result.toByteArray();
+		}
+
+	private static byte[]
+	gzip( final byte[] data )
+		throws IOException
+		{
+		final ByteArrayOutputStream result = new ByteArrayOutputStream( data.length / 2 + 64 );
+
+		try ( GZIPOutputStream out = new GZIPOutputStream( result ) )
+			{
+			out.write( data );
+			}
+
+		return result.toByteArray();
+		}
+
+	/**
+	 * A directory that the client sent with 'Directory'.
+	 */
+	private static final
+	class		Dir
+		{
+		private final String				local;
+		private final String				repo;
+		private final Hashtable<String, Ent>	entries;
+
+		private Dir( final String local, final String repo )
+			{
+			this.local = local;
+			this.repo = repo;
+			this.entries = new Hashtable<>();
+			}
+		}
+
+	/**
+	 * A file that the client sent with 'Entry', 'Modified'
+	 * or 'Unchanged'.
+	 */
+	private static final
+	class		Ent
+		{
+		private final String		revision;
+		private String				options;
+		private boolean				unchanged;
+		private byte[]				modified;
+
+		private Ent( final String revision )
+			{
+			this.revision = revision;
+			this.options = null;
+			this.unchanged = false;
+			this.modified = null;
+			}
+
+		private boolean
+		isAdded()
+			{
+			return "0".equals( this.revision );
+			}
+
+		private boolean
+		isRemoved()
+			{
+			return this.revision != null && this.revision.startsWith( "-" );
+			}
+
+		private boolean
+		isCommitted()
+			{
+			return this.revision != null
+				&& ( this.modified != null || this.isRemoved() );
+			}
+
+		private String
+		getBaseRevision()
+			{
+			return this.isRemoved() ? this.revision.substring( 1 ) : this.revision;
+			}
+		}
+
+	/**
+	 * A pool that connects every borrowed session to a new
+	 * session of the server by a pair of in-memory pipes.
+	 */
+	private final
+	class		PipePool
+	extends		CVSConnectionPool
+		{
+		private final CVSRequest		capabilities;
+
+		private PipePool()
+			{
+			super();
+
+			this.capabilities = new CVSRequest();
+			this.capabilities.validRequests = VALID_REQUESTS;
+			this.capabilities.useUnchanged = true;
+			this.capabilities.useDirectory = true;
+			}
+
+		@Override
+		CVSConnection
+		borrow( final String key )
+			{
+			final MemoryPipe toServer = new MemoryPipe();
+			final MemoryPipe toClient = new MemoryPipe();
+
+			FakeCVSServer.this.startSession( () ->
+				{
+				final OutputStream out = toClient.getOutputStream();
+				try {
+					FakeCVSServer.this.serve( toServer.getInputStream(), out );
+					}
+				catch ( final IOException ex )
+					{
+					CVSLog.logMsg
+						( "FakeCVSServer: pipe session failed, " + ex.getMessage() );
+					}
+				finally
+					{
+					try { out.close(); }
+					catch ( final IOException ex ) { }
+					}
+				} );
+
+			return new CVSConnection
+				( key, null, null, null, null, null,
+					new CVSInputBuffer( toClient.getInputStream() ),
+					toServer.getOutputStream(), this.capabilities );
+			}
+
+		@Override
+		void
+		replenish( final CVSRequest request )
+			{
+			}
+		}
+
+	private static final
+	class		CountingInputStream
+	extends		FilterInputStream
+		{
+		private final AtomicLong		counter;
+
+		private CountingInputStream( final InputStream in, final AtomicLong counter )
+			{
+			super( in );
+			this.counter = counter;
+			}
+
+		@Override
+		public int
+		read()
+			throws IOException
+			{
+			final int result = super.read();
+			if ( result >= 0 )
+				this.counter.incrementAndGet();
+			return result;
+			}
+
+		@Override
+		public int
+		read( final byte[] bytes, final int offset, final int length )
+			throws IOException
+			{
+			final int result = super.read( bytes, offset, length );
+			if ( result > 0 )
+				this.counter.addAndGet( result );
+			return result;
+			}
+		}
+
+	private static final
+	class		CountingOutputStream
+	extends		FilterOutputStream
+		{
+		private final AtomicLong		counter;
+
+		private CountingOutputStream( final OutputStream out, final AtomicLong counter )
+			{
+			super( out );
+			this.counter = counter;
+			}
+
+		@Override
+		public void
+		write( final int b )
+			throws IOException
+			{
+			// Counted first, since the client may have the byte,
+			// and be checking the count, as soon as it is written.
+			this.counter.incrementAndGet();
+			this.out.write( b );
+			}
+
+		@Override
+		public void
+		write( final byte[] bytes, final int offset, final int length )
+			throws IOException
+			{
+			this.counter.addAndGet( length );
+			this.out.write( bytes, offset, length );
+			}
+		}
+
+	}
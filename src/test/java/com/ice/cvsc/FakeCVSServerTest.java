@@ -0,0 +1,1367 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+
+/**
+ * Runs checkout, update, commit and log against a FakeCVSServer,
+ * over both the socket and the pipe transports, with and without
+ * stream or file compression, and checks the working copies against the
+ * repository. Further scenarios check parallel connections, patches,
+ * pooled sessions, asynchronous requests and response listeners.
+ *
+ * Run with 'java com.ice.cvsc.FakeCVSServerTest [workDir]'. The
+ * exit status is non-zero if any check failed.
+ */
+
+final class		FakeCVSServerTest
+	{
+	private final File		workDir;
+	private final CVSMetrics	metrics;
+	private int				failures;
+
+
+	private FakeCVSServerTest( final File workDir )
+		{
+		this.workDir = workDir;
+		this.metrics = new CVSMetrics();
+		this.failures = 0;
+		}
+
+	public static void
+	main( final String... argv )
+		throws IOException
+		{
+		final File workDir =
+			argv.length > 0
+				? new File( argv[0] )
+				: Files.createTempDirectory( "fakecvs" ).toFile();
+
+		final FakeCVSServerTest test = new FakeCVSServerTest( workDir );
+
+		CVSClient.setDefaultMetricsListener( test.metrics );
+
+		test.runScenario( false, 0 );
+		test.runScenario( false, 6 );
+		test.runScenario( false, -6 );
+		test.runScenario( true, 0 );
+		test.runScenario( true, 6 );
+
+		test.checkParallel( false );
+		test.checkParallel( true );
+		test.checkPatches();
+		test.checkPooling();
+		test.checkAsync();
+		test.checkListener();
+
+		test.checkEntriesLog();
+		test.checkEntryFootprint();
+		test.checkMBean();
+
+		System.err.println
+			( test.failures == 0 ? "All checks passed." : test.failures + " checks FAILED." );
+
+		System.exit( test.failures == 0 ? 0 : 1 );
+		}
+
+	private void
+	check( final String what, final boolean ok )
+		{
+		System.err.println( ( ok ? "OK      " : "FAILED  " ) + what );
+		if ( ! ok )
+			++this.failures;
+		}
+
+	private void
+	runScenario( final boolean usePipes, final int gzipLevel )
+		throws IOException
+		{
+		final String name =
+			( usePipes ? "pipe" : "socket" )
+				+ ( gzipLevel < 0 ? "-gzipfile" + -gzipLevel : "-gzip" + gzipLevel );
+
+		System.err.println( "Scenario " + name + ':' );
+
+		final SyntheticRepository repos =
+			new SyntheticRepository( "mod", 3, 2, 6, 4, 2048, 7L );
+
+		final FakeCVSServer server = new FakeCVSServer( repos );
+		if ( ! usePipes )
+			server.start();
+
+		final FakeCVSProjects client = new FakeCVSProjects( server, usePipes );
+		client.setGzipStreamLevel( Math.max( 0, gzipLevel ) );
+		client.setAllowsGzipFileMode( gzipLevel < 0 );
+
+		final File dir = new File( this.workDir, name );
+		deleteTree( dir );
+		dir.mkdirs();
+
+		try {
+			this.runCommands( server, client, usePipes, repos, dir );
+			}
+		finally
+			{
+			server.stop();
+			}
+		}
+
+	private void
+	runCommands(
+			final FakeCVSServer server, final FakeCVSProjects client,
+			final boolean usePipes, final SyntheticRepository repos, final File dir )
+		throws IOException
+		{
+		CVSResponse response = new CVSResponse();
+		final CVSProject project =
+			client.checkout( new File( dir, "one" ), "mod", response );
+
+		this.check( "checkout " + response.getStderr().trim(), project != null );
+		if ( project == null )
+			return;
+
+		final File root = new File( dir, "one/mod" );
+		this.check( "checkout matches repository", this.matches( repos, root ) );
+
+		this.checkLazyOpen( client, root );
+		this.checkParallelLoad( client, root, project );
+		this.checkEntrySnapshot( client, root, project );
+
+		server.resetStatistics();
+		response = new CVSResponse();
+		this.check( "no-op update", client.update( project, response )
+						&& response.getStatus() == CVSResponse.OK );
+		this.check( "no-op update sends no files",
+						server.getBytesSent() < 4096 );
+
+		final int revised = repos.reviseFiles( 0.25, 3L );
+		server.resetStatistics();
+		this.metrics.reset();
+		response = new CVSResponse();
+		this.check( "update of " + revised + " revised files",
+						client.update( project, response )
+						&& response.getStatus() == CVSResponse.OK );
+		this.check( "update matches repository", this.matches( repos, root ) );
+		this.checkMetrics( server, usePipes, revised );
+
+		final String path = "mod/t001/f0002.txt";
+		final byte[] edit =
+			"edited\n".getBytes( StandardCharsets.ISO_8859_1 );
+		final String before = repos.getRevision( path );
+
+		final CVSProject other =
+			client.checkout( new File( dir, "two" ), "mod", new CVSResponse() );
+
+		this.edit( new File( root, "t001/f0002.txt" ), edit );
+		response = new CVSResponse();
+		this.check( "commit", client.commit( project, "An edit.", response )
+						&& response.getStatus() == CVSResponse.OK );
+		this.check( "commit created a revision",
+						! before.equals( repos.getRevision( path ) )
+						&& Arrays.equals( edit, repos.getContents( path ) ) );
+
+		final CVSEntry dirEntry = project.getDirEntryForLocalDir( "./t001/" );
+		final CVSEntry entry =
+			dirEntry == null ? null : dirEntry.locateEntry( "f0002.txt" );
+		this.check( "commit updated the entry",
+						entry != null
+						&& entry.getVersion().equals( repos.getRevision( path ) ) );
+
+		this.edit( new File( dir, "two/mod/t001/f0002.txt" ), edit );
+		response = new CVSResponse();
+		client.commit( other, "A stale edit.", response );
+		this.check( "stale commit is refused",
+						response.getStatus() != CVSResponse.OK
+						&& response.getStderr().contains( "Up-to-date check failed" ) );
+
+		response = new CVSResponse();
+		this.check( "log", client.log( project, response )
+						&& response.getStatus() == CVSResponse.OK );
+		this.check( "log reports every file",
+						count( response.getStdout(), "RCS file: " ) == repos.getFileCount() );
+		this.check( "log reports the commit",
+						response.getStdout().contains( "An edit." ) );
+
+		this.checkStatus( other, new File( dir, "two/mod" ) );
+
+		this.checkDigestIndex( client, repos, dir );
+
+		this.checkChangeTracker( project );
+		}
+
+	/**
+	 * Checks that a project that tracks changes sees an edit, after
+	 * its baseline, and that it checks in full again when the tracker
+	 * loses track. An edit must be seen at once after a sync.
+	 */
+	private void
+	checkChangeTracker( final CVSProject project )
+		throws IOException
+		{
+		this.check( "tracker starts", project.setTracksChanges( true ) );
+		final CVSChangeTracker tracker = project.getChangeTracker();
+		if ( tracker == null )
+			return;
+
+		final CVSEntryVector files = new CVSEntryVector();
+		project.getRootEntry().addAllSubTreeEntries( files );
+		final CVSEntry edited = files.getEntryAt( files.size() - 1 );
+		final CVSEntry untouched = files.getEntryAt( 0 );
+
+		this.check( "tracker baseline",
+						! project.isLocalFileModified( edited )
+						&& tracker.isValid() && tracker.getTouchedCount() == 0 );
+
+		final File editedFile = project.getEntryFile( edited );
+		this.edit( editedFile, "tracked\n".getBytes( StandardCharsets.ISO_8859_1 ) );
+
+		final long deadline = System.currentTimeMillis() + 15000;
+		while ( ! tracker.isTouched( editedFile )
+				&& System.currentTimeMillis() < deadline )
+			{
+			try { Thread.sleep( 50 ); }
+			catch ( final InterruptedException ex ) { break; }
+			}
+
+		this.check( "tracker sees the edit",
+						project.isLocalFileModified( edited )
+						&& ! project.isLocalFileModified( untouched ) );
+
+		tracker.invalidate();
+		this.check( "tracker checks in full again",
+						project.isLocalFileModified( edited )
+						&& tracker.isValid() && tracker.isTouched( editedFile )
+						&& tracker.getTouchedCount() == 1 );
+
+		// A commit asks right after the edit, without waiting.
+		final CVSEntry synced = files.getEntryAt( 1 );
+		final File syncedFile = project.getEntryFile( synced );
+		this.edit( syncedFile, "synced\n".getBytes( StandardCharsets.ISO_8859_1 ) );
+		project.syncChangeTracker();
+		this.check( "tracker sees an edit at once after a sync",
+						tracker.isValid() && tracker.isTouched( syncedFile )
+						&& project.isLocalFileModified( synced ) );
+
+		project.setTracksChanges( false );
+		this.check( "tracker stops", project.getChangeTracker() == null );
+		}
+
+	/**
+	 * Checks that a commit from a copy that keeps digests sends
+	 * only the edited file, and not the one that was only touched.
+	 */
+	private void
+	checkDigestIndex(
+			final FakeCVSProjects client, final SyntheticRepository repos,
+			final File dir )
+		throws IOException
+		{
+		client.setUsesDigestIndex( true );
+		final CVSProject project =
+			client.checkout( new File( dir, "three" ), "mod", new CVSResponse() );
+		client.setUsesDigestIndex( false );
+
+		this.check( "digest checkout", project != null );
+		if ( project == null )
+			return;
+
+		final File root = new File( dir, "three/mod" );
+		this.check( "digest checkout writes the digests",
+			new File( root, "t001/CVS/" + CVSDigestIndex.DIGESTS_FILE_NAME ).exists() );
+
+		final File touched = new File( root, "t001/f0002.txt" );
+		touched.setLastModified( touched.lastModified() - 2 * 60 * 60 * 1000 );
+
+		final String path = "mod/t002/f0001.txt";
+		final String before = repos.getRevision( path );
+		this.edit( new File( root, "t002/f0001.txt" ),
+			"edited again\n".getBytes( StandardCharsets.ISO_8859_1 ) );
+
+		final CVSEntry entry =
+			project.getDirEntryForLocalDir( "./t001/" ).locateEntry( "f0002.txt" );
+		this.check( "touched file is not modified",
+			entry.isLocalFileModified( touched )
+				&& ! project.isLocalFileModified( entry ) );
+
+		this.metrics.reset();
+		final CVSResponse response = new CVSResponse();
+		this.check( "digest commit", client.commit( project, "Another edit.", response )
+						&& response.getStatus() == CVSResponse.OK );
+
+		final CVSMetrics.Rollup commit = this.metrics.getCommands().get( "ci" );
+		this.check( "digest commit sends only the edited file",
+						commit != null && commit.getFilesSent() == 1
+						&& ! before.equals( repos.getRevision( path ) ) );
+		this.check( "digest commit refreshes the touched timestamp",
+						! entry.isLocalFileModified( touched ) );
+		}
+
+	/**
+	 * Checks the working status of the copy with the refused
+	 * commit, after losing a file and adding unknown ones.
+	 */
+	private void
+	checkStatus( final CVSProject project, final File root )
+		throws IOException
+		{
+		final File t001 = new File( root, "t001" );
+		String lostName = null;
+		for ( final String name : t001.list() )
+			{
+			if ( name.endsWith( ".txt" ) && ! name.equals( "f0002.txt" ) )
+				{
+				lostName = name;
+				break;
+				}
+			}
+
+		this.check( "status found a file to lose", lostName != null );
+		if ( lostName == null )
+			return;
+
+		Files.delete( new File( t001, lostName ).toPath() );
+		Files.write( new File( t001, "junk.txt" ).toPath(), new byte[0] );
+		Files.write( new File( t001, "junk.o" ).toPath(), new byte[0] );
+		new File( root, "newdir" ).mkdir();
+
+		final CVSWorkingStatus status =
+			project.scanWorkingStatus( new CVSIgnore() );
+
+		this.check( "status finds the modified file",
+						status.getModified().equals
+							( Arrays.asList( "./t001/f0002.txt" ) ) );
+		this.check( "status finds the lost file",
+						status.getLost().equals
+							( Arrays.asList( "./t001/" + lostName ) ) );
+		this.check( "status finds the unknown files",
+						status.getUnknown().size() == 2
+						&& status.getUnknown().contains( "./t001/junk.txt" )
+						&& status.getUnknown().contains( "./newdir" ) );
+		this.check( "status finds nothing added or removed",
+						status.getAdded().isEmpty() && status.getRemoved().isEmpty() );
+		}
+
+	/**
+	 * Checks that opening a project only reads the top directory,
+	 * and that the other directories are read as they are used.
+	 */
+	private void
+	checkLazyOpen( final FakeCVSProjects client, final File root )
+		{
+		final CVSProject project = client.openProject( root );
+		this.check( "lazy open", project != null );
+		if ( project == null )
+			return;
+
+		final CVSEntry t000 = project.getDirEntryForLocalDir( "./t000/" );
+		final CVSEntry t001 = project.getDirEntryForLocalDir( "./t001/" );
+		this.check( "lazy open reads only the top directory",
+						project.getRootEntry().isEntryListLoaded()
+						&& t000 != null && ! t000.isEntryListLoaded()
+						&& t001 != null && ! t001.isEntryListLoaded() );
+
+		final CVSEntry s000 = project.getDirEntryForLocalDir( "./t001/s000/" );
+		this.check( "lazy lookup reads the directories on the path",
+						s000 != null && t001.isEntryListLoaded()
+						&& ! s000.isEntryListLoaded() && ! t000.isEntryListLoaded()
+						&& s000.getRepository().endsWith( "/mod/t001/s000" ) );
+
+		final CVSWorkingStatus status =
+			project.scanWorkingStatus( new CVSIgnore() );
+		this.check( "lazy status reads every directory",
+						! status.hasChanges()
+						&& t000.isEntryListLoaded() && s000.isEntryListLoaded() );
+		}
+
+	/**
+	 * Checks that loading every directory of a freshly opened project
+	 * at once gives the same entry tree as the checkout built.
+	 */
+	private void
+	checkParallelLoad(
+			final FakeCVSProjects client, final File root,
+			final CVSProject checkedOut )
+		{
+		final CVSProject project = client.openProject( root );
+		this.check( "parallel load open", project != null );
+		if ( project == null )
+			return;
+
+		project.loadAllEntries();
+
+		final CVSEntryVector expected = new CVSEntryVector();
+		checkedOut.getRootEntry().addAllSubTreeEntries( expected );
+		final CVSEntryVector loaded = new CVSEntryVector();
+		project.getRootEntry().addAllSubTreeEntries( loaded );
+
+		boolean same = expected.size() == loaded.size();
+		for ( int i = 0 ; same && i < loaded.size() ; ++i )
+			{
+			same = expected.entryAt( i ).getFullName().equals
+						( loaded.entryAt( i ).getFullName() );
+			}
+		this.check( "parallel load reads every entry", same );
+
+		final CVSEntry s001 = project.getDirEntryForLocalDir( "./t001/s001/" );
+		this.check( "parallel load fills in the path table",
+						s001 != null && s001.isEntryListLoaded()
+						&& s001.getRepository().endsWith( "/mod/t001/s001" ) );
+		}
+
+	/**
+	 * Checks that a reopened project takes its unchanged directories
+	 * from the entry snapshot, and reads the ones that have changed.
+	 */
+	private void
+	checkEntrySnapshot(
+			final FakeCVSProjects client, final File root,
+			final CVSProject checkedOut )
+		{
+		client.setUsesEntrySnapshot( true );
+		try {
+			final CVSProject first = client.openProject( root );
+			this.check( "snapshot open", first != null );
+			if ( first == null )
+				return;
+
+			first.loadAllEntries();
+			this.check( "snapshot saves",
+							first.saveEntrySnapshot()
+							&& first.getEntrySnapshot().getSnapshotFile().exists() );
+
+			final CVSEntryVector expected = new CVSEntryVector();
+			checkedOut.getRootEntry().addAllSubTreeEntries( expected );
+
+			final int dirCount = countDirectories( checkedOut.getRootEntry() );
+
+			final CVSProject second = client.openProject( root );
+			second.loadAllEntries();
+			final CVSEntrySnapshot snapshot = second.getEntrySnapshot();
+			this.check( "snapshot reopen reads no Entries files",
+							snapshot.getHitCount() == dirCount
+							&& snapshot.getMissCount() == 0
+							&& this.sameEntries( expected, second ) );
+
+			// Another tool rewrites one directory's Entries file.
+			final File entriesF = new File( root, "t001/CVS/Entries" );
+			entriesF.setLastModified( entriesF.lastModified() - 10000 );
+
+			final CVSProject third = client.openProject( root );
+			third.loadAllEntries();
+			final CVSEntrySnapshot stale = third.getEntrySnapshot();
+			this.check( "snapshot reads only the changed directory",
+							stale.getHitCount() == dirCount - 1
+							&& stale.getMissCount() == 1
+							&& this.sameEntries( expected, third ) );
+			this.check( "snapshot saves the changed directory",
+							third.saveEntrySnapshot() );
+			}
+		finally
+			{
+			client.setUsesEntrySnapshot( false );
+			}
+		}
+
+	private static int
+	countDirectories( final CVSEntry dirEntry )
+		{
+		int result = 1;
+
+		final CVSEntryVector entries = dirEntry.getEntryList();
+		for ( int i = 0 ; i < entries.size() ; ++i )
+			{
+			if ( entries.entryAt( i ).isDirectory() )
+				result += countDirectories( entries.entryAt( i ) );
+			}
+
+		return result;
+		}
+
+	private boolean
+	sameEntries( final CVSEntryVector expected, final CVSProject project )
+		{
+		final CVSEntryVector loaded = new CVSEntryVector();
+		project.getRootEntry().addAllSubTreeEntries( loaded );
+
+		boolean same = expected.size() == loaded.size();
+		for ( int i = 0 ; same && i < loaded.size() ; ++i )
+			{
+			same = expected.entryAt( i ).getAdminEntryLine().equals
+						( loaded.entryAt( i ).getAdminEntryLine() )
+					&& expected.entryAt( i ).getRepository().equals
+						( loaded.entryAt( i ).getRepository() );
+			}
+
+		return same;
+		}
+
+	/**
+	 * Checks the metrics of the update of the revised files against
+	 * what the server saw. The pipe transport's pool logs in a spare
+	 * session while the update runs, so the server sees more bytes
+	 * than the update sent and received there.
+	 */
+	private void
+	checkMetrics(
+			final FakeCVSServer server, final boolean usePipes, final int revised )
+		{
+		final CVSMetrics.Rollup update =
+			this.metrics.getCommands().get( "update" );
+
+		this.check( "metrics count one update",
+						update != null && update.getRequestCount() == 1
+						&& update.getErrorCount() == 0 );
+		if ( update == null )
+			return;
+
+		final Long updated = update.getItemCounts().get( "Updated" );
+		final Long patched = update.getItemCounts().get( "Rcs-diff" );
+		final long patchCount = patched == null ? 0 : patched;
+
+		this.check( "metrics count the files received",
+						update.getFilesReceived() == revised
+						&& ( updated == null ? 0 : updated ) + patchCount == revised );
+		this.check( "metrics count the patches received",
+						patchCount > 0 && patchCount == server.getPatchCount() );
+
+		this.check( "metrics time the response",
+						update.getPhaseTimes().size() == CVSRequestMetrics.PHASE_COUNT
+						&& update.getTotalTime() >= update.getPhaseTimes().get( "response-parse" ) );
+
+		this.check( "metrics count the uncompressed bytes",
+						update.getBytesReceived() >= update.getWireBytesReceived()
+						&& update.getLinesReceived() > revised );
+
+		if ( usePipes )
+			{
+			this.check( "metrics count no more bytes than the server",
+							update.getWireBytesSent() <= server.getBytesReceived()
+							&& update.getWireBytesReceived() <= server.getBytesSent() );
+			}
+		else
+			{
+			this.check( "metrics count the server's bytes",
+							update.getWireBytesSent() == server.getBytesReceived()
+							&& update.getWireBytesReceived() == server.getBytesSent() );
+			}
+		}
+
+	/**
+	 * Checks that a checkout and an update spread over parallel
+	 * connections give the same working copy, and the same Entries,
+	 * as a single connection does, including the top level directory
+	 * that an update with '-d' must create. When the server can not
+	 * list its directories, a single connection is used.
+	 */
+	private void
+	checkParallel( final boolean usePipes )
+		throws IOException
+		{
+		final String name = usePipes ? "parallel-pipe" : "parallel-socket";
+
+		System.err.println( "Scenario " + name + ':' );
+
+		final SyntheticRepository repos =
+			new SyntheticRepository( "par", 4, 2, 5, 4, 1024, 13L );
+
+		final FakeCVSServer server = new FakeCVSServer( repos );
+		if ( ! usePipes )
+			server.start();
+
+		final FakeCVSProjects client = new FakeCVSProjects( server, usePipes );
+		client.setParallelConnections( 3 );
+
+		final File dir = new File( this.workDir, name );
+		deleteTree( dir );
+		dir.mkdirs();
+
+		try {
+			this.runParallel( server, client, repos, dir );
+			}
+		finally
+			{
+			server.stop();
+			}
+		}
+
+	private void
+	runParallel(
+			final FakeCVSServer server, final FakeCVSProjects client,
+			final SyntheticRepository repos, final File dir )
+		throws IOException
+		{
+		final String module = repos.getModule();
+
+		CVSResponse response = new CVSResponse();
+		final CVSProject project = client.checkout( dir, module, response );
+
+		this.check( "parallel checkout " + response.getStderr().trim(), project != null );
+		if ( project == null )
+			return;
+
+		// The listing, the top of the module, and each top level directory.
+		this.check( "parallel checkout uses a partition per directory",
+						server.getCommandCount() == 2 + 4 );
+
+		final File root = new File( dir, module );
+		this.check( "parallel checkout matches repository", this.matches( repos, root ) );
+		this.check( "parallel checkout writes every Entries file",
+						this.matchesEntries( repos, client.openProject( root ) ) );
+
+		final int revised = repos.reviseFiles( 0.3, 17L );
+		final String added = repos.addTopDirectory();
+		server.resetStatistics();
+		response = new CVSResponse();
+		this.check( "parallel update of " + revised + " revised files and " + added,
+						client.update( project, response )
+						&& response.getStatus() == CVSResponse.OK );
+		this.check( "parallel update uses a partition per directory",
+						server.getCommandCount() == 2 + 5 );
+		this.check( "parallel update creates the new directory",
+						new File( root, added.substring( module.length() + 1 ) ).isDirectory() );
+		this.check( "parallel update matches repository", this.matches( repos, root ) );
+		this.check( "parallel update merges the entries",
+						this.matchesEntries( repos, project ) );
+		this.check( "parallel update writes every Entries file",
+						this.matchesEntries( repos, client.openProject( root ) ) );
+
+		server.setListingAllowed( false );
+		repos.reviseFiles( 0.3, 19L );
+		final String unlisted = repos.addTopDirectory();
+		server.resetStatistics();
+		response = new CVSResponse();
+		this.check( "unlisted update",
+						client.update( project, response )
+						&& response.getStatus() == CVSResponse.OK );
+		this.check( "unlisted update uses one connection",
+						server.getCommandCount() == 1 );
+		this.check( "unlisted update creates the new directory",
+						new File( root, unlisted.substring( module.length() + 1 ) ).isDirectory() );
+		this.check( "unlisted update matches repository", this.matches( repos, root ) );
+		this.check( "unlisted update writes every Entries file",
+						this.matchesEntries( repos, client.openProject( root ) ) );
+
+		server.resetStatistics();
+		final CVSProject flat =
+			client.checkout( new File( dir, "flat" ), module, new CVSResponse() );
+		this.check( "unlisted checkout uses one connection",
+						flat != null && server.getCommandCount() == 1 );
+		this.check( "unlisted checkout matches repository",
+						this.matches( repos, new File( dir, "flat/" + module ) ) );
+		}
+
+	/**
+	 * Checks that an update applies the 'Rcs-diff' patches of small
+	 * edits, and that it fetches the files in full again when the
+	 * patched files do not match the server's checksums.
+	 */
+	private void
+	checkPatches()
+		throws IOException
+		{
+		System.err.println( "Scenario patches:" );
+
+		final SyntheticRepository repos =
+			new SyntheticRepository( "pat", 2, 1, 6, 3, 2048, 23L );
+		final FakeCVSServer server = new FakeCVSServer( repos );
+		final FakeCVSProjects client = new FakeCVSProjects( server, true );
+
+		final File dir = new File( this.workDir, "patches" );
+		deleteTree( dir );
+		dir.mkdirs();
+
+		final CVSProject project =
+			client.checkout( dir, "pat", new CVSResponse() );
+		this.check( "patch checkout", project != null );
+		if ( project == null )
+			return;
+
+		final File root = new File( dir, "pat" );
+
+		long size = 0;
+		final Vector<String> edited = this.editLines( repos, "pat/t000" );
+		for ( final String path : edited )
+			size += repos.getContents( path ).length;
+
+		server.resetStatistics();
+		CVSResponse response = new CVSResponse();
+		this.check( "patch update of " + edited.size() + " edited files",
+						client.update( project, response )
+						&& response.getStatus() == CVSResponse.OK );
+		this.check( "patch update sends a patch for each file",
+						server.getPatchCount() == edited.size()
+						&& server.getCommandCount() == 1 );
+		this.check( "patches are smaller than the files",
+						server.getBytesSent() < size );
+		this.check( "patch update matches repository", this.matches( repos, root ) );
+		this.check( "patch update writes the entries",
+						this.matchesEntries( repos, project )
+						&& this.matchesEntries( repos, client.openProject( root ) ) );
+
+		server.setSendingBadChecksums( true );
+		final Vector<String> refetched = this.editLines( repos, "pat/t001/s000" );
+
+		server.resetStatistics();
+		response = new CVSResponse();
+		this.check( "bad checksum update of " + refetched.size() + " edited files",
+						client.update( project, response )
+						&& response.getStatus() == CVSResponse.OK );
+		this.check( "bad checksums refetch the files in full",
+						server.getPatchCount() == refetched.size()
+						&& server.getCommandCount() == 2 );
+		this.check( "refetch matches repository", this.matches( repos, root ) );
+		this.check( "refetch writes the entries",
+						this.matchesEntries( repos, project )
+						&& this.matchesEntries( repos, client.openProject( root ) ) );
+		}
+
+	/**
+	 * Commits an edit of one line of each text file of a directory.
+	 *
+	 * @return The paths of the edited files.
+	 */
+	private Vector<String>
+	editLines( final SyntheticRepository repos, final String dir )
+		{
+		final Vector<String> result = new Vector<>();
+
+		for ( final String name : repos.getFileNames( dir ) )
+			{
+			final String path = dir + '/' + name;
+			if ( repos.isBinary( path ) )
+				continue;
+
+			final String text =
+				new String( repos.getContents( path ), StandardCharsets.ISO_8859_1 );
+			final int eol = text.indexOf( '\n', text.indexOf( '\n' ) + 1 );
+			final String edit =
+				text.substring( 0, eol ) + " // edited" + text.substring( eol );
+
+			repos.commit
+				( path, edit.getBytes( StandardCharsets.ISO_8859_1 ), "A line edit." );
+
+			result.addElement( path );
+			}
+
+		return result;
+		}
+
+	/**
+	 * Checks that a pool with a spare session serves the next
+	 * request with it, and that a pool keeps no spares by default.
+	 */
+	private void
+	checkPooling()
+		throws IOException
+		{
+		System.err.println( "Scenario pooling:" );
+
+		final SyntheticRepository repos =
+			new SyntheticRepository( "pool", 2, 1, 4, 4, 1024, 29L );
+		final FakeCVSServer server = new FakeCVSServer( repos );
+		server.start();
+
+		final CVSConnectionPool pool = new CVSConnectionPool();
+		final FakeCVSProjects client = new FakeCVSProjects( server, false );
+		client.setConnectionPool( pool );
+
+		final File dir = new File( this.workDir, "pooling" );
+		deleteTree( dir );
+		dir.mkdirs();
+
+		try {
+			final CVSProject project =
+				client.checkout( dir, "pool", new CVSResponse() );
+			this.check( "pool checkout", project != null );
+			if ( project == null )
+				return;
+
+			final File root = new File( dir, "pool" );
+			final boolean[] pooled = new boolean[1];
+			project.getClient().setMetricsListener
+				( metrics -> pooled[0] = metrics.isPooled() );
+
+			this.check( "pool keeps no spares by default",
+							pool.getMaxSpares() == 0 && pool.getSpareCount() == 0 );
+
+			pool.setMaxSpares( 1 );
+			CVSResponse response = new CVSResponse();
+			this.check( "pool update",
+							client.update( project, response )
+							&& response.getStatus() == CVSResponse.OK
+							&& ! pooled[0] );
+			this.check( "pool opens a spare session", awaitSpare( pool ) );
+
+			repos.reviseFiles( 0.5, 31L );
+			server.resetStatistics();
+			response = new CVSResponse();
+			this.check( "pool update reuses the spare session",
+							client.update( project, response )
+							&& response.getStatus() == CVSResponse.OK
+							&& pooled[0] && server.getCommandCount() == 1 );
+			this.check( "pool update matches repository", this.matches( repos, root ) );
+			this.check( "pool replaces the spare session", awaitSpare( pool ) );
+
+			pool.closeAll();
+			this.check( "pool closes its spares", pool.getSpareCount() == 0 );
+
+			response = new CVSResponse();
+			this.check( "pool update after closing opens a session",
+							client.update( project, response )
+							&& response.getStatus() == CVSResponse.OK
+							&& ! pooled[0] );
+			}
+		finally
+			{
+			pool.closeAll();
+			server.stop();
+			}
+		}
+
+	private static boolean
+	awaitSpare( final CVSConnectionPool pool )
+		{
+		for ( int i = 0 ; i < 100 && pool.getSpareCount() == 0 ; ++i )
+			{
+			try { Thread.sleep( 50 ); }
+			catch ( final InterruptedException ex )
+				{
+				Thread.currentThread().interrupt();
+				return false;
+				}
+			}
+
+		return pool.getSpareCount() > 0;
+		}
+
+	/**
+	 * Checks that an asynchronous update completes, and that
+	 * canceling a parallel update that is waiting on a slow server
+	 * lets the next request run at once, after which an update
+	 * brings the working copy up to date.
+	 */
+	private void
+	checkAsync()
+		throws IOException
+		{
+		System.err.println( "Scenario async:" );
+
+		final SyntheticRepository repos =
+			new SyntheticRepository( "asy", 3, 1, 4, 4, 1024, 37L );
+		final FakeCVSServer server = new FakeCVSServer( repos );
+		server.start();
+
+		final FakeCVSProjects client = new FakeCVSProjects( server, false );
+		client.setParallelConnections( 3 );
+
+		final File dir = new File( this.workDir, "async" );
+		deleteTree( dir );
+		dir.mkdirs();
+
+		try {
+			final CVSProject project =
+				client.checkout( dir, "asy", new CVSResponse() );
+			this.check( "async checkout", project != null );
+			if ( project == null )
+				return;
+
+			final File root = new File( dir, "asy" );
+
+			repos.reviseFiles( 0.3, 41L );
+			CVSResponse response = await
+				( project.performCVSRequestAsync
+					( client.createRequest( project, FakeCVSProjects.UPDATE_COMMAND ) ) );
+			this.check( "async update",
+							response != null && response.getStatus() == CVSResponse.OK );
+			this.check( "async update matches repository", this.matches( repos, root ) );
+
+			repos.reviseFiles( 0.5, 43L );
+			server.setLatency( 5000 );
+			final long start = System.currentTimeMillis();
+
+			final CompletableFuture<CVSResponse> canceled =
+				project.performCVSRequestAsync
+					( client.createRequest( project, FakeCVSProjects.UPDATE_COMMAND ) );
+
+			try { Thread.sleep( 300 ); }
+			catch ( final InterruptedException ex )
+				{ Thread.currentThread().interrupt(); }
+
+			canceled.cancel( true );
+			server.setLatency( 0 );
+
+			response = await
+				( project.performCVSRequestAsync
+					( client.createRequest( project, FakeCVSProjects.UPDATE_COMMAND ) ) );
+			final long elapsed = System.currentTimeMillis() - start;
+
+			this.check( "async update is canceled", canceled.isCancelled() );
+			this.check( "next request runs at once after a cancel, "
+							+ elapsed + " ms",
+							response != null && response.getStatus() == CVSResponse.OK
+							&& elapsed < 4000 );
+			this.check( "update after a cancel matches repository",
+							this.matches( repos, root )
+							&& this.matchesEntries( repos, client.openProject( root ) ) );
+			}
+		finally
+			{
+			server.stop();
+			}
+		}
+
+	private static CVSResponse
+	await( final CompletableFuture<CVSResponse> future )
+		{
+		try {
+			return future.get( 30, TimeUnit.SECONDS );
+			}
+		catch ( final InterruptedException ex )
+			{
+			Thread.currentThread().interrupt();
+			return null;
+			}
+		catch ( final ExecutionException | TimeoutException ex )
+			{
+			System.err.println( "        " + ex );
+			return null;
+			}
+		}
+
+	/**
+	 * Checks that a response listener sees the items and the tagged
+	 * output of an update, which the response then does not keep,
+	 * and that a listener can stop a log part way through.
+	 */
+	private void
+	checkListener()
+		throws IOException
+		{
+		System.err.println( "Scenario listener:" );
+
+		final SyntheticRepository repos =
+			new SyntheticRepository( "lis", 2, 1, 6, 4, 1024, 47L );
+		final FakeCVSServer server = new FakeCVSServer( repos );
+		server.start();
+
+		final FakeCVSProjects client = new FakeCVSProjects( server, false );
+
+		final File dir = new File( this.workDir, "listener" );
+		deleteTree( dir );
+		dir.mkdirs();
+
+		try {
+			final CVSProject project =
+				client.checkout( dir, "lis", new CVSResponse() );
+			this.check( "listener checkout", project != null );
+			if ( project == null )
+				return;
+
+			final File root = new File( dir, "lis" );
+			final int revised = repos.reviseFiles( 0.3, 53L );
+			final int[] counts = new int[3];
+
+			CVSRequest request =
+				client.createRequest( project, FakeCVSProjects.UPDATE_COMMAND );
+			request.setResponseListener( new CVSResponseListener()
+				{
+				@Override
+				public boolean
+				taggedLine( final CVSRequest req, final String tag, final String data )
+					{
+					if ( tag.equals( "fname" ) )
+						++counts[0];
+					return true;
+					}
+
+				@Override
+				public boolean
+				responseItem(
+						final CVSRequest req, final CVSResponse resp,
+						final CVSResponseItem item )
+					{
+					if ( item.getType() == CVSResponseItem.UPDATED
+							|| item.getType() == CVSResponseItem.RCS_DIFF )
+						++counts[1];
+					return true;
+					}
+				} );
+
+			CVSResponse response = new CVSResponse();
+			this.check( "listener update of " + revised + " revised files",
+							project.performCVSRequest( request, response )
+							&& response.getStatus() == CVSResponse.OK );
+			this.check( "listener sees each file",
+							counts[0] == revised && counts[1] == revised );
+			this.check( "listener output is not kept",
+							response.getStdout().trim().isEmpty() );
+			this.check( "listener update matches repository", this.matches( repos, root ) );
+
+			request = client.createRequest( project, FakeCVSProjects.LOG_COMMAND );
+			request.setResponseListener( new CVSResponseListener()
+				{
+				@Override
+				public boolean
+				messageLine( final CVSRequest req, final String line )
+					{
+					return ++counts[2] < 10;
+					}
+				} );
+
+			response = new CVSResponse();
+			project.performCVSRequest( request, response );
+			this.check( "listener stops a log",
+							response.getStatus() != CVSResponse.OK && counts[2] == 10 );
+
+			response = new CVSResponse();
+			this.check( "log after a stopped log",
+							client.log( project, response )
+							&& count( response.getStdout(), "RCS file: " ) == repos.getFileCount() );
+			}
+		finally
+			{
+			server.stop();
+			}
+		}
+
+	/**
+	 * Checks that a project has an entry for every directory of the
+	 * repository, and that each directory's entries are exactly its
+	 * files, at their head revisions, and its subdirectories.
+	 */
+	private boolean
+	matchesEntries( final SyntheticRepository repos, final CVSProject project )
+		{
+		if ( project == null )
+			return false;
+
+		project.loadAllEntries();
+
+		final String prefix = repos.getModule();
+
+		for ( final String dir : repos.getAllDirectories() )
+			{
+			final String local = '.' + dir.substring( prefix.length() ) + '/';
+			final CVSEntry dirEntry = project.getDirEntryForLocalDir( local );
+			final Vector<String> names = repos.getFileNames( dir );
+			final Vector<String> subs = repos.getSubdirectories( dir );
+
+			boolean ok = dirEntry != null
+				&& dirEntry.getEntryList().size() == names.size() + subs.size();
+
+			for ( int i = 0 ; ok && i < names.size() ; ++i )
+				{
+				final CVSEntry entry = dirEntry.locateEntry( names.elementAt( i ) );
+				ok = entry != null && entry.getVersion().equals
+						( repos.getRevision( dir + '/' + names.elementAt( i ) ) );
+				}
+
+			for ( int i = 0 ; ok && i < subs.size() ; ++i )
+				{
+				final CVSEntry entry = dirEntry.locateEntry( subs.elementAt( i ) );
+				ok = entry != null && entry.isDirectory();
+				}
+
+			if ( ! ok )
+				{
+				System.err.println( "        entries mismatch: " + local );
+				return false;
+				}
+			}
+
+		return true;
+		}
+
+	/**
+	 * Checks that an update of a few files of a large directory appends
+	 * their entries to 'Entries.Log', that the log is integrated when
+	 * the project is opened again, and that a log line cut short by a
+	 * crash is ignored.
+	 */
+	private void
+	checkEntriesLog()
+		throws IOException
+		{
+		System.err.println( "Scenario entries-log:" );
+
+		final SyntheticRepository repos =
+			new SyntheticRepository( "big", 0, 0, 200, 0, 256, 11L );
+		final FakeCVSServer server = new FakeCVSServer( repos );
+		final FakeCVSProjects client = new FakeCVSProjects( server, true );
+
+		final File dir = new File( this.workDir, "entries-log" );
+		deleteTree( dir );
+		dir.mkdirs();
+
+		final CVSProject project =
+			client.checkout( dir, "big", new CVSResponse() );
+		this.check( "log checkout", project != null );
+		if ( project == null )
+			return;
+
+		final File root = new File( dir, "big" );
+		final File entriesF = new File( root, "CVS/Entries" );
+		final File logF = new File( root, "CVS/Entries.Log" );
+		final long entriesLength = entriesF.length();
+		this.check( "log checkout writes Entries in full",
+						entriesLength > 0 && ! logF.exists() );
+
+		final int revised = repos.reviseFiles( 0.05, 5L );
+		final CVSResponse response = new CVSResponse();
+		this.check( "log update of " + revised + " revised files",
+						revised > 0 && client.update( project, response )
+						&& response.getStatus() == CVSResponse.OK );
+		this.check( "log update appends to Entries.Log",
+						entriesF.length() == entriesLength
+						&& logF.exists()
+						&& Files.readAllLines( logF.toPath() ).size() == revised );
+
+		final CVSProject reopened = client.openProject( root );
+		this.check( "log is integrated on open",
+						reopened != null && ! logF.exists()
+						&& this.matchesRevisions( repos, reopened ) );
+
+		// A crash while appending leaves a line without a newline.
+		try ( FileWriter out = new FileWriter( logF ) )
+			{
+			out.write( "A /f0000.txt/9.9/" );
+			}
+		final CVSProject crashed = client.openProject( root );
+		this.check( "log ignores a line cut short",
+						crashed != null && ! logF.exists()
+						&& this.matchesRevisions( repos, crashed ) );
+		}
+
+	private boolean
+	matchesRevisions( final SyntheticRepository repos, final CVSProject project )
+		{
+		final String dir = repos.getModule();
+		final Vector<String> names = repos.getFileNames( dir );
+		final CVSEntryVector entries = project.getRootEntry().getEntryList();
+
+		boolean result = entries.size() == names.size();
+		for ( final String name : names )
+			{
+			final CVSEntry entry = entries.locateEntry( name );
+			result &= entry != null
+				&& entry.getVersion().equals( repos.getRevision( dir + '/' + name ) );
+			}
+
+		return result;
+		}
+
+	/**
+	 * Measures the heap taken by each entry of a large working copy,
+	 * written directly, with 100,000 files in 50 directories.
+	 */
+	private void
+	checkEntryFootprint()
+		throws IOException
+		{
+		System.err.println( "Scenario footprint:" );
+
+		final int dirCount = 50;
+		final int filesPerDir = 2000;
+
+		final File root = new File( this.workDir, "footprint/big" );
+		deleteTree( root.getParentFile() );
+
+		final CVSTimestampFormat stamper = CVSTimestampFormat.getInstance();
+		final long baseTime = 1096000000000L;
+
+		final StringBuilder top = new StringBuilder();
+		for ( int d = 0 ; d < dirCount ; ++d )
+			{
+			final String dirName = String.format( "d%03d", d );
+			top.append( "D/" ).append( dirName ).append( "////\n" );
+
+			final StringBuilder lines = new StringBuilder();
+			for ( int f = 0 ; f < filesPerDir ; ++f )
+				{
+				lines.append( '/' ).append( String.format( "f%05d.java", f ) )
+					.append( "/1." ).append( 1 + f % 7 ).append( '/' )
+					.append( stamper.format
+						( new CVSTimestamp( baseTime + f * 1000L ) ) )
+					.append( f % 10 == 0 ? "/-kb/" : "//" )
+					.append( f % 4 == 0 ? "Trel-1-0" : "" ).append( '\n' );
+				}
+
+			writeAdminFiles
+				( new File( root, dirName ), "big/" + dirName, lines.toString() );
+			}
+		writeAdminFiles( root, "big", top.toString() );
+
+		final long before = usedHeap();
+
+		final CVSProject project = new CVSProject( new CVSClient() );
+		project.openProject( root );
+		project.loadAllEntries();
+
+		final long after = usedHeap();
+
+		final CVSEntryVector entries = new CVSEntryVector();
+		project.getRootEntry().addAllSubTreeEntries( entries );
+		final long perEntry = ( after - before ) / entries.size();
+
+		this.check( "footprint of " + entries.size() + " entries, "
+						+ perEntry + " bytes each",
+						entries.size() == dirCount * filesPerDir
+							&& perEntry < 250 );
+		}
+
+	private static void
+	writeAdminFiles( final File dir, final String repository, final String entries )
+		throws IOException
+		{
+		final File adminDir = new File( dir, "CVS" );
+		adminDir.mkdirs();
+
+		Files.write( new File( adminDir, "Root" ).toPath(),
+			":pserver:fake@127.0.0.1:/cvs\n".getBytes( StandardCharsets.ISO_8859_1 ) );
+		Files.write( new File( adminDir, "Repository" ).toPath(),
+			( "/cvs/" + repository + '\n' ).getBytes( StandardCharsets.ISO_8859_1 ) );
+		Files.write( new File( adminDir, "Entries" ).toPath(),
+			entries.getBytes( StandardCharsets.ISO_8859_1 ) );
+		}
+
+	private static long
+	usedHeap()
+		{
+		final Runtime rt = Runtime.getRuntime();
+		for ( int i = 0 ; i < 4 ; ++i )
+			{
+			System.gc();
+			}
+
+		return rt.totalMemory() - rt.freeMemory();
+		}
+
+	/**
+	 * Checks that the metrics can be read through JMX.
+	 */
+	private void
+	checkMBean()
+		{
+		Object servers = null;
+
+		if ( this.metrics.register() )
+			{
+			try {
+				servers =
+					ManagementFactory.getPlatformMBeanServer().getAttribute
+						( new ObjectName( CVSMetrics.OBJECT_NAME ), "Servers" );
+				}
+			catch ( final JMException ex )
+				{
+				System.err.println( "        " + ex );
+				}
+
+			this.metrics.unregister();
+			}
+
+		this.check( "metrics are readable through JMX", servers != null );
+		}
+
+	/**
+	 * Rewrites a working file. The file is dated an hour back, since
+	 * the client could not tell an edit from the checkout within the
+	 * same second.
+	 */
+	private void
+	edit( final File f, final byte[] contents )
+		throws IOException
+		{
+		Files.write( f.toPath(), contents );
+		f.setLastModified( f.lastModified() - 60 * 60 * 1000 );
+		}
+
+	/**
+	 * Checks that the working copy holds the head revision
+	 * of every file of the repository.
+	 */
+	private boolean
+	matches( final SyntheticRepository repos, final File root )
+		throws IOException
+		{
+		final String prefix = repos.getModule();
+
+		for ( final String dir : repos.getAllDirectories() )
+			{
+			final File local =
+				new File( root, dir.substring( prefix.length() ) );
+
+			for ( final String name : repos.getFileNames( dir ) )
+				{
+				final File f = new File( local, name );
+				if ( ! f.isFile() || ! Arrays.equals
+						( repos.getContents( dir + '/' + name ),
+							Files.readAllBytes( f.toPath() ) ) )
+					{
+					System.err.println( "        mismatch: " + f );
+					return false;
+					}
+				}
+			}
+
+		return true;
+		}
+
+	private static int
+	count( final String text, final String pattern )
+		{
+		int result = 0;
+		for ( int i = text.indexOf( pattern ) ; i >= 0 ; i = text.indexOf( pattern, i + 1 ) )
+			++result;
+		return result;
+		}
+
+	private static void
+	deleteTree( final File f )
+		{
+		final File[] list = f.listFiles();
+		if ( list != null )
+			for ( final File child : list )
+				deleteTree( child );
+		f.delete();
+		}
+
+	}
@@ -0,0 +1,266 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+
+/**
+ * An in-memory pipe, whose output stream is written by one thread
+ * while its input stream is read by another. This stands in for a
+ * socket between a CVSClient and a FakeCVSServer in the same process.
+ *
+ * Closing the output stream gives the reader an end of file, once it
+ * has read what was written. Closing the input stream makes further
+ * writes fail, as a broken connection would.
+ *
+ * @version $Revision: 1.1 $
+ * @see FakeCVSServer
+ */
+
+final
+class		MemoryPipe
+	{
+	public static final String		RCS_ID = "$Id: MemoryPipe.java,v 1.1 $";
+	public static final String		RCS_REV = "$Revision: 1.1 $";
+
+	private static final int		DEFAULT_SIZE = 64 * 1024;
+
+	private final byte[]			buffer;
+	private int						readPos;
+	private int						count;
+	private boolean					writerClosed;
+	private boolean					readerClosed;
+
+	private final InputStream		input;
+	private final OutputStream		output;
+
+
+	MemoryPipe()
+		{
+		this( DEFAULT_SIZE );
+		}
+
+	MemoryPipe( final int size )
+		{
+		super();
+
+		this.buffer = new byte[ size ];
+		this.readPos = 0;
+		this.count = 0;
+		this.writerClosed = false;
+		this.readerClosed = false;
+
+		this.input = new PipeInput();
+		this.output = new PipeOutput();
+		}
+
+	public InputStream
+	getInputStream()
+		{
+		return this.input;
+		}
+
+	public OutputStream
+	getOutputStream()
+		{
+		return this.output;
+		}
+
+	private synchronized int
+	take( final byte[] bytes, final int offset, final int length )
+		throws IOException
+		{
+		while ( this.count == 0 )
+			{
+			if ( this.writerClosed || this.readerClosed )
+				return -1;
+
+			this.await();
+			}
+
+		final int size = this.buffer.length;
+		int done = 0;
+
+		while ( done < length && this.count > 0 )
+			{
+			final int chunk =
+				Math.min( length - done,
+					Math.min( this.count, size - this.readPos ) );
+
+			System.arraycopy
+				( this.buffer, this.readPos, bytes, offset + done, chunk );
+
+			this.readPos = ( this.readPos + chunk ) % size;
+			this.count -= chunk;
+			done += chunk;
+			}
+
+		this.notifyAll();
+
+		return done;
+		}
+
+	private synchronized void
+	put( final byte[] bytes, int offset, int length )
+		throws IOException
+		{
+		final int size = this.buffer.length;
+
+		while ( length > 0 )
+			{
+			if ( this.readerClosed )
+				throw new IOException( "pipe closed by reader" );
+
+			if ( this.writerClosed )
+				throw new IOException( "pipe closed" );
+
+			if ( this.count == size )
+				{
+				this.await();
+				continue;
+				}
+
+			final int writePos = ( this.readPos + this.count ) % size;
+			final int chunk =
+				Math.min( length,
+					Math.min( size - this.count, size - writePos ) );
+
+			System.arraycopy( bytes, offset, this.buffer, writePos, chunk );
+
+			this.count += chunk;
+			offset += chunk;
+			length -= chunk;
+
+			this.notifyAll();
+			}
+		}
+
+	private void
+	await()
+		throws IOException
+		{
+		try {
+			this.wait();
+			}
+		catch ( final InterruptedException ex )
+			{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException( "pipe interrupted" );
+			}
+		}
+
+	private synchronized void
+	closeWriter()
+		{
+		this.writerClosed = true;
+		this.notifyAll();
+		}
+
+	private synchronized void
+	closeReader()
+		{
+		this.readerClosed = true;
+		this.notifyAll();
+		}
+
+	private synchronized int
+	available()
+		{
+		return this.count;
+		}
+
+	private final
+	class		PipeInput
+	extends		InputStream
+		{
+		@Override
+		public int
+		read()
+			throws IOException
+			{
+			final byte[] one = new byte[1];
+			return this.read( one, 0, 1 ) < 0 ? -1 : one[0] & 0xFF;
+			}
+
+		@Override
+		public int
+		read( final byte[] bytes, final int offset, final int length )
+			throws IOException
+			{
+			if ( length == 0 )
+				return 0;
+
+			return MemoryPipe.this.take( bytes, offset, length );
+			}
+
+		@Override
+		public int
+		available()
+			{
+			return MemoryPipe.this.available();
+			}
+
+		@Override
+		public void
+		close()
+			{
+			MemoryPipe.this.closeReader();
+			}
+		}
+
+	private final
+	class		PipeOutput
+	extends		OutputStream
+		{
+		@Override
+		public void
+		write( final int b )
+			throws IOException
+			{
+			MemoryPipe.this.put( new byte[] { (byte) b }, 0, 1 );
+			}
+
+		@Override
+		public void
+		write( final byte[] bytes, final int offset, final int length )
+			throws IOException
+			{
+			MemoryPipe.this.put( bytes, offset, length );
+			}
+
+		@Override
+		public void
+		close()
+			{
+			MemoryPipe.this.closeWriter();
+			}
+		}
+
+	}
@@ -0,0 +1,614 @@
+/*
+** Java cvs client library package.
+** Copyright (c) 1997-2003 by Timothy Gerard Endres
+**
+** This program is free software.
+**
+** You may redistribute it and/or modify it under the terms of the GNU
+** Library General Public License (LGPL) as published by the Free Software
+** Foundation.
+**
+** Version 2 of the license should be included with this distribution in
+** the file LICENSE.txt, as well as License.html. If the license is not
+** included	with this distribution, you may find a copy at the FSF web
+** site at 'www.gnu.org' or 'www.fsf.org', or you may write to the Free
+** Software Foundation at 59 Temple Place - Suite 330, Boston, MA 02111 USA.
+**
+** THIS SOFTWARE IS PROVIDED AS-IS WITHOUT WARRANTY OF ANY KIND,
+** NOT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY. THE AUTHOR
+** OF THIS SOFTWARE, ASSUMES _NO_ RESPONSIBILITY FOR ANY
+** CONSEQUENCE RESULTING FROM THE USE, MODIFICATION, OR
+** REDISTRIBUTION OF THIS SOFTWARE.
+**
+*/
+
+
+package com.ice.cvsc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Hashtable;
+import java.util.Random;
+import java.util.Vector;
+
+
+/**
+ * A generated cvs repository for a FakeCVSServer. The repository
+ * holds one module, whose top level directories each hold a number of
+ * subdirectories, and where every directory holds the same number of
+ * files. Every few files is a binary file. The contents of a file
+ * revision are generated from its path and revision number, so that
+ * even a module of hundreds of thousands of files costs very little
+ * memory. Only revisions that are committed are kept.
+ *
+ * Paths are relative to the repository root, such as
+ * 'module/t001/s002/f0003.txt'. All of the methods are thread safe.
+ *
+ * @version $Revision: 1.1 $
+ * @see FakeCVSServer
+ */
+
+public final
+class		SyntheticRepository
+	{
+	public static final String		RCS_ID = "$Id: SyntheticRepository.java,v 1.1 $";
+	public static final String		RCS_REV = "$Revision: 1.1 $";
+
+	private static final String[]	WORDS =
+		{
+		"public", "static", "final", "class", "return", "this", "null",
+		"entry", "request", "response", "server", "client", "repository",
+		"revision", "directory", "module", "update", "commit", "checkout",
+		"{", "}", "(", ")", ";", "=", "+", "if", "else", "for", "while",
+		};
+
+	private final String			module;
+	private volatile int			topDirs;
+	private final int				subDirs;
+	private final int				filesPerDir;
+	private final int				binaryEvery;
+	private final int				averageSize;
+	private final long				seed;
+
+	/**
+	 * The revisions that differ from the generated revision 1.1,
+	 * by file path.
+	 */
+	private final Hashtable<String, Revision>	revisions;
+
+	/**
+	 * Files that have been added by commits, by directory path.
+	 */
+	private final Hashtable<String, Vector<String>>	addedFiles;
+
+
+	/**
+	 * Creates a repository with a module of the given shape.
+	 *
+	 * @param module The name of the module.
+	 * @param topDirs The number of top level directories in the module.
+	 * @param subDirs The number of subdirectories in each top level directory.
+	 * @param filesPerDir The number of files in every directory,
+	 *        including the module's own directory.
+	 */
+	public
+	SyntheticRepository(
+			final String module, final int topDirs,
+			final int subDirs, final int filesPerDir )
+		{
+		this( module, topDirs, subDirs, filesPerDir, 10, 4096, 1L );
+		}
+
+	/**
+	 * @param binaryEvery Every binaryEvery'th file is binary, zero for none.
+	 * @param averageSize The average size of a file in bytes.
+	 * @param seed The seed of the generated contents.
+	 */
+	public
+	SyntheticRepository(
+			final String module, final int topDirs, final int subDirs,
+			final int filesPerDir, final int binaryEvery,
+			final int averageSize, final long seed )
+		{
+		super();
+
+		this.module = module;
+		this.topDirs = topDirs;
+		this.subDirs = subDirs;
+		this.filesPerDir = filesPerDir;
+		this.binaryEvery = binaryEvery;
+		this.averageSize = averageSize;
+		this.seed = seed;
+
+		this.revisions = new Hashtable<>();
+		this.addedFiles = new Hashtable<>();
+		}
+
+	public String
+	getModule()
+		{
+		return this.module;
+		}
+
+	/**
+	 * Adds a top level directory to the module, with the same
+	 * subdirectories and generated files as the others, as if
+	 * someone had imported it.
+	 *
+	 * @return The path of the new directory.
+	 */
+	public synchronized String
+	addTopDirectory()
+		{
+		final String result = String.format( "%s/t%03d", this.module, this.topDirs );
+		++this.topDirs;
+		return result;
+		}
+
+	public int
+	getDirectoryCount()
+		{
+		return 1 + this.topDirs + this.topDirs * this.subDirs;
+		}
+
+	public int
+	getFileCount()
+		{
+		int added = 0;
+		synchronized ( this )
+			{
+			for ( final Vector<String> v : this.addedFiles.values() )
+				added += v.size();
+			}
+
+		return this.getDirectoryCount() * this.filesPerDir + added;
+		}
+
+	/**
+	 * Returns the paths of every directory of the module, parents
+	 * before their children.
+	 */
+	public Vector<String>
+	getAllDirectories()
+		{
+		final Vector<String> result = new Vector<>();
+		this.addDirectories( this.module, result );
+		return result;
+		}
+
+	private void
+	addDirectories( final String dir, final Vector<String> result )
+		{
+		result.addElement( dir );
+
+		for ( final String sub : this.getSubdirectories( dir ) )
+			this.addDirectories( dir + '/' + sub, result );
+		}
+
+	public boolean
+	isDirectory( final String path )
+		{
+		return this.directoryLevel( path ) >= 0;
+		}
+
+	/**
+	 * Returns the depth of the directory below the module, or
+	 * -1 if the path is not a directory of the module.
+	 */
+	private int
+	directoryLevel( final String path )
+		{
+		if ( path.equals( this.module ) )
+			return 0;
+
+		if ( ! path.startsWith( this.module + '/' ) )
+			return -1;
+
+		final String[] parts =
+			path.substring( this.module.length() + 1 ).split( "/" );
+
+		if ( parts.length > 2 )
+			return -1;
+
+		if ( indexOf( parts[0], 't' ) >= this.topDirs )
+			return -1;
+
+		if ( parts.length == 2 && indexOf( parts[1], 's' ) >= this.subDirs )
+			return -1;
+
+		return parts.length;
+		}
+
+	private static int
+	indexOf( final String name, final char prefix )
+		{
+		if ( name.length() != 4 || name.charAt(0) != prefix )
+			return Integer.MAX_VALUE;
+
+		try {
+			return Integer.parseInt( name.substring( 1 ) );
+			}
+		catch ( final NumberFormatException ex )
+			{
+			return Integer.MAX_VALUE;
+			}
+		}
+
+	/**
+	 * Returns the names of the subdirectories of a directory.
+	 */
+	public Vector<String>
+	getSubdirectories( final String dir )
+		{
+		final Vector<String> result = new Vector<>();
+		final int level = this.directoryLevel( dir );
+
+		if ( level == 0 )
+			{
+			for ( int i = 0 ; i < this.topDirs ; ++i )
+				result.addElement( String.format( "t%03d", i ) );
+			}
+		else if ( level == 1 )
+			{
+			for ( int i = 0 ; i < this.subDirs ; ++i )
+				result.addElement( String.format( "s%03d", i ) );
+			}
+
+		return result;
+		}
+
+	/**
+	 * Returns the names of the files of a directory, not
+	 * including those that have been removed.
+	 */
+	public Vector<String>
+	getFileNames( final String dir )
+		{
+		final Vector<String> result = new Vector<>();
+
+		if ( ! this.isDirectory( dir ) )
+			return result;
+
+		for ( int i = 0 ; i < this.filesPerDir ; ++i )
+			{
+			final String name = this.generatedName( i );
+			if ( this.getRevision( dir + '/' + name ) != null )
+				result.addElement( name );
+			}
+
+		synchronized ( this )
+			{
+			final Vector<String> added = this.addedFiles.get( dir );
+			if ( added != null )
+				{
+				for ( final String name : added )
+					if ( this.getRevision( dir + '/' + name ) != null )
+						result.addElement( name );
+				}
+			}
+
+		return result;
+		}
+
+	private String
+	generatedName( final int index )
+		{
+		return String.format
+			( this.isBinaryIndex( index ) ? "f%04d.bin" : "f%04d.txt", index );
+		}
+
+	private boolean
+	isBinaryIndex( final int index )
+		{
+		return this.binaryEvery > 0 && index % this.binaryEvery == this.binaryEvery - 1;
+		}
+
+	private boolean
+	isGenerated( final String path )
+		{
+		final int slash = path.lastIndexOf( '/' );
+		if ( slash < 0 || ! this.isDirectory( path.substring( 0, slash ) ) )
+			return false;
+
+		final String name = path.substring( slash + 1 );
+		if ( name.length() != 9 || name.charAt(0) != 'f' )
+			return false;
+
+		try {
+			final int index = Integer.parseInt( name.substring( 1, 5 ) );
+			return index < this.filesPerDir
+				&& name.equals( this.generatedName( index ) );
+			}
+		catch ( final NumberFormatException ex )
+			{
+			return false;
+			}
+		}
+
+	public boolean
+	isBinary( final String path )
+		{
+		return path.endsWith( ".bin" );
+		}
+
+	/**
+	 * Returns the head revision of a file, such as "1.3",
+	 * or null if there is no such file.
+	 */
+	public synchronized String
+	getRevision( final String path )
+		{
+		final Revision rev = this.revisions.get( path );
+
+		if ( rev != null )
+			return rev.removed ? null : "1." + rev.number;
+
+		return this.isGenerated( path ) ? "1.1" : null;
+		}
+
+	/**
+	 * Returns the contents of the head revision of a file,
+	 * or null if there is no such file.
+	 */
+	public byte[]
+	getContents( final String path )
+		{
+		final Revision rev;
+
+		synchronized ( this )
+			{
+			rev = this.revisions.get( path );
+
+			if ( rev == null && ! this.isGenerated( path ) )
+				return null;
+			}
+
+		if ( rev == null )
+			return this.generate( path, 1 );
+
+		if ( rev.removed )
+			return null;
+
+		return rev.contents != null
+			? rev.contents : this.generate( path, rev.number );
+		}
+
+	/**
+	 * Returns the contents of a revision of a file, such as "1.2",
+	 * or null if the file has no such revision.
+	 */
+	public byte[]
+	getContents( final String path, final String revision )
+		{
+		final int number;
+		try {
+			number = revision.startsWith( "1." )
+				? Integer.parseInt( revision.substring( 2 ) ) : -1;
+			}
+		catch ( final NumberFormatException ex )
+			{
+			return null;
+			}
+
+		Revision rev;
+
+		synchronized ( this )
+			{
+			rev = this.revisions.get( path );
+
+			if ( rev == null && ! this.isGenerated( path ) )
+				return null;
+			}
+
+		if ( number < 1 || number > ( rev == null ? 1 : rev.number ) )
+			return null;
+
+		for ( ; rev != null && rev.number > number ; rev = rev.previous )
+			;
+
+		if ( rev != null && rev.number == number )
+			{
+			if ( rev.removed )
+				return null;
+
+			return rev.contents != null
+				? rev.contents : this.generate( path, number );
+			}
+
+		return this.isGenerated( path ) ? this.generate( path, number ) : null;
+		}
+
+	/**
+	 * Returns the log messages of the revisions of a file,
+	 * the head revision first.
+	 */
+	public synchronized Vector<String>
+	getLogMessages( final String path )
+		{
+		final Vector<String> result = new Vector<>();
+
+		Revision rev = this.revisions.get( path );
+		int number = 1;
+
+		if ( rev != null )
+			{
+			number = rev.number;
+
+			for ( ; rev != null ; rev = rev.previous )
+				{
+				for ( ; number > rev.number ; --number )
+					result.addElement( "Generated revision 1." + number + '.' );
+
+				result.addElement( rev.message );
+				--number;
+				}
+			}
+
+		for ( ; number >= 1 ; --number )
+			result.addElement
+				( number == 1 ? "Initial revision." : "Generated revision 1." + number + '.' );
+
+		return result;
+		}
+
+	/**
+	 * Commits new contents of a file, which is added if it does
+	 * not yet exist.
+	 *
+	 * @return The new revision.
+	 */
+	public synchronized String
+	commit( final String path, final byte[] contents, final String message )
+		{
+		final Revision prev = this.revisions.get( path );
+
+		if ( prev == null && ! this.isGenerated( path ) )
+			{
+			final int slash = path.lastIndexOf( '/' );
+			final String dir = path.substring( 0, slash );
+
+			Vector<String> added = this.addedFiles.get( dir );
+			if ( added == null )
+				{
+				added = new Vector<>();
+				this.addedFiles.put( dir, added );
+				}
+
+			added.addElement( path.substring( slash + 1 ) );
+
+			this.revisions.put
+				( path, new Revision( 1, contents, message, null ) );
+
+			return "1.1";
+			}
+
+		final int number =
+			prev == null ? 2 : prev.number + 1;
+
+		this.revisions.put
+			( path, new Revision( number, contents, message, prev ) );
+
+		return "1." + number;
+		}
+
+	/**
+	 * Removes a file from the head of the module.
+	 */
+	public synchronized void
+	remove( final String path, final String message )
+		{
+		final Revision prev = this.revisions.get( path );
+		final int number = prev == null ? 2 : prev.number + 1;
+
+		final Revision rev = new Revision( number, null, message, prev );
+		rev.removed = true;
+
+		this.revisions.put( path, rev );
+		}
+
+	/**
+	 * Creates a new revision of a fraction of the files of the
+	 * module, as if other users had committed changes.
+	 *
+	 * @param fraction The fraction of the files to revise, 0.0 to 1.0.
+	 * @param touchSeed The seed that picks the files.
+	 * @return The number of files revised.
+	 */
+	public int
+	reviseFiles( final double fraction, final long touchSeed )
+		{
+		final Random rand = new Random( touchSeed );
+		int result = 0;
+
+		for ( final String dir : this.getAllDirectories() )
+			{
+			for ( final String name : this.getFileNames( dir ) )
+				{
+				if ( rand.nextDouble() < fraction )
+					{
+					final String path = dir + '/' + name;
+					synchronized ( this )
+						{
+						final Revision prev = this.revisions.get( path );
+						final int number = prev == null ? 2 : prev.number + 1;
+						this.revisions.put
+							( path, new Revision
+								( number, null,
+									"Generated revision 1." + number + '.', prev ) );
+						}
+					++result;
+					}
+				}
+			}
+
+		return result;
+		}
+
+	/**
+	 * Generates the contents of a revision of a file.
+	 */
+	private byte[]
+	generate( final String path, final int number )
+		{
+		final Random rand =
+			new Random( this.seed * 31 + path.hashCode() * 131L + number );
+
+		final int size =
+			this.averageSize / 2 + rand.nextInt( Math.max( 1, this.averageSize ) );
+
+		if ( this.isBinary( path ) )
+			{
+			final byte[] result = new byte[ size ];
+			rand.nextBytes( result );
+			return result;
+			}
+
+		final StringBuilder buf = new StringBuilder( size + 80 );
+
+		buf.append( "// " ).append( path )
+			.append( " revision 1." ).append( number ).append( '\n' );
+
+		int column = 0;
+		while ( buf.length() < size )
+			{
+			final String word = WORDS[ rand.nextInt( WORDS.length ) ];
+			buf.append( word );
+			column += word.length() + 1;
+
+			if ( column > 60 )
+				{
+				buf.append( '\n' );
+				column = 0;
+				}
+			else
+				{
+				buf.append( ' ' );
+				}
+			}
+
+		buf.append( '\n' );
+
+		return buf.toString().getBytes( StandardCharsets.ISO_8859_1 );
+		}
+
+	private static final
+	class		Revision
+		{
+		private final int			number;
+		private final byte[]		contents;
+		private final String		message;
+		private final Revision		previous;
+		private boolean				removed;
+
+		private Revision(
+				final int number, final byte[] contents,
+				final String message, final Revision previous )
+			{
+			this.number = number;
+			this.contents = contents;
+			this.message = message;
+			this.previous = previous;
+			this.removed = false;
+			}
+		}
+
+	}